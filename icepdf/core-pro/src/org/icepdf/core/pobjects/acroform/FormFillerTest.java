@@ -0,0 +1,284 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.acroform;
+
+import org.icepdf.core.pobjects.*;
+import org.icepdf.core.pobjects.Dictionary;
+import org.icepdf.core.pobjects.annotations.AbstractWidgetAnnotation;
+import org.icepdf.core.pobjects.annotations.Annotation;
+import org.icepdf.core.pobjects.annotations.Appearance;
+import org.icepdf.core.util.Library;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.logging.Logger;
+
+import static org.icepdf.core.util.TestChecks.check;
+
+/**
+ * Testing of the form filler.  A fixture form with a merged text field, a
+ * text field with two widgets, a check box, a radio group and a combo box is
+ * filled twice with and twice without flattening.  Fills with the same values
+ * must write the same bytes, the filled copies must open with the filled
+ * values and the template must be left the way it was after every fill.
+ *
+ * @since 6.2
+ */
+public class FormFillerTest {
+
+    private static final Logger logger =
+            Logger.getLogger(FormFillerTest.class.toString());
+
+    private static final int WIDGETS = 7;
+
+    public static void main(String[] args) throws Exception {
+        try {
+            new FormFillerTest().testFillTwice();
+            logger.info("FormFillerTest passed");
+        } finally {
+            Library.shutdownThreadPool();
+        }
+    }
+
+    public void testFillTwice() throws Exception {
+        Document template = new Document();
+        byte[] form = buildForm();
+        template.setByteArray(form, 0, form.length, null);
+        try {
+            FormFiller filler = new FormFiller(template);
+            check(filler.getFieldNames().equals(new HashSet<String>(
+                    Arrays.asList("name", "addr", "agree", "color", "pick"))),
+                    "field names " + filler.getFieldNames());
+            Map<Object, Object> state = getTemplateState(template);
+
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put("name", "Alice");
+            values.put("addr", "12 Main St");
+            values.put("agree", Boolean.TRUE);
+            values.put("color", "Blue");
+            values.put("pick", "Cherry");
+            Map<String, Object> otherValues = new HashMap<String, Object>();
+            otherValues.put("name", "Bob");
+            otherValues.put("agree", Boolean.FALSE);
+            otherValues.put("color", "Red");
+
+            byte[] filled = fill(filler, values, template, state);
+            check(Arrays.equals(filled, fill(filler, values, template, state)), "second fill differs");
+            // a fill with other values in between mustn't leave anything behind.
+            fill(filler, otherValues, template, state);
+            check(Arrays.equals(filled, fill(filler, values, template, state)), "fill after other values differs");
+
+            filler.setFlatten(true);
+            byte[] flattened = fill(filler, values, template, state);
+            check(Arrays.equals(flattened, fill(filler, values, template, state)), "second flattened fill differs");
+            check(!Arrays.equals(filled, flattened), "flattening changed nothing");
+
+            filler.setOptimizedSave(true);
+            byte[] optimized = fill(filler, values, template, state);
+            check(Arrays.equals(optimized, fill(filler, values, template, state)), "second optimized fill differs");
+
+            checkFilled(filled);
+            checkFlattened(flattened, form.length);
+            checkFlattened(optimized, 0);
+        } finally {
+            template.dispose();
+        }
+    }
+
+    private static byte[] fill(FormFiller filler, Map<String, Object> values, Document template,
+                               Map<Object, Object> state) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long length = filler.fill(values, out);
+        check(length == out.size(), "fill returned " + length + " for " + out.size() + " bytes");
+        check(template.getStateManager().getChangedSize() == 0,
+                "changes left " + template.getStateManager().getChangedSize());
+        check(getTemplateState(template).equals(state), "template state changed");
+        return out.toByteArray();
+    }
+
+    /**
+     * Copies the entries of all the template's objects, the content and
+     * placement of its streams and the appearance states selected on its
+     * widgets.  Stream entries are left out as the library swaps resolved
+     * resources in to them.
+     */
+    private static Map<Object, Object> getTemplateState(Document document) throws Exception {
+        Library library = document.getCatalog().getLibrary();
+        Map<Object, Object> state = new HashMap<Object, Object>();
+        for (int i = 1; i < 23; i++) {
+            Object object = library.getObject(new Reference(i, 0));
+            if (object instanceof Stream) {
+                Stream stream = (Stream) object;
+                state.put(i, new String(stream.getDecodedStreamBytes(), "ISO-8859-1"));
+                state.put("bbox " + i, String.valueOf(stream.getEntries().get(Form.BBOX_KEY)));
+                state.put("matrix " + i, String.valueOf(stream.getEntries().get(Form.MATRIX_KEY)));
+            } else if (object instanceof Dictionary) {
+                state.put(i, new HashMap<Object, Object>(((Dictionary) object).getEntries()));
+            } else if (object instanceof HashMap) {
+                state.put(i, new HashMap<Object, Object>((HashMap<?, ?>) object));
+            }
+            if (object instanceof AbstractWidgetAnnotation) {
+                AbstractWidgetAnnotation<?> widget = (AbstractWidgetAnnotation<?>) object;
+                Appearance appearance = widget.getAppearances().get(widget.getCurrentAppearance());
+                if (appearance != null) {
+                    state.put("selected " + i, appearance.getSelectedName());
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Opens a copy filled without flattening and checks the field values.
+     */
+    private static void checkFilled(byte[] filled) throws Exception {
+        Document document = new Document();
+        document.setByteArray(filled, 0, filled.length, null);
+        try {
+            Library library = document.getCatalog().getLibrary();
+            check(document.getCatalog().getInteractiveForm() != null, "form missing");
+            check(document.getPageTree().getPage(0).getAnnotations().size() == WIDGETS, "widgets missing");
+            check("Alice".equals(getValue(library, 10)), "name " + getValue(library, 10));
+            check("12 Main St".equals(getValue(library, 11)), "addr " + getValue(library, 11));
+            check("Cherry".equals(getValue(library, 21)), "pick " + getValue(library, 21));
+            check(new Name("Yes").equals(getEntry(library, 14, Annotation.APPEARANCE_STATE_KEY)), "agree");
+            check(new Name("Blue").equals(getValue(library, 16)), "color " + getValue(library, 16));
+            check(new Name("Off").equals(getEntry(library, 17, Annotation.APPEARANCE_STATE_KEY)), "red");
+            check(new Name("Blue").equals(getEntry(library, 18, Annotation.APPEARANCE_STATE_KEY)), "blue");
+        } finally {
+            document.dispose();
+        }
+    }
+
+    /**
+     * Opens a flattened copy and checks the widgets were drawn in to the
+     * page.
+     *
+     * @param templateLength length of the template if the copy is an
+     *                       incremental update of it, otherwise 0.
+     */
+    private static void checkFlattened(byte[] flattened, int templateLength) throws Exception {
+        check(flattened.length > templateLength, "copy is shorter than the template");
+        Document document = new Document();
+        document.setByteArray(flattened, 0, flattened.length, null);
+        try {
+            check(document.getCatalog().getInteractiveForm() == null, "form kept");
+            Page page = document.getPageTree().getPage(0);
+            check(page.getAnnotations() == null || page.getAnnotations().isEmpty(), "widgets kept");
+            StringBuilder content = new StringBuilder();
+            for (String stream : page.getDecodedContentSteam()) {
+                content.append(stream);
+            }
+            int draws = 0;
+            for (int i = content.indexOf(" Do Q"); i >= 0; i = content.indexOf(" Do Q", i + 1)) {
+                draws++;
+            }
+            // the hidden off state of the red radio button is drawn too.
+            check(draws == WIDGETS, "flattened widgets " + draws);
+            check(content.indexOf("Form template") >= 0, "page content lost");
+        } finally {
+            document.dispose();
+        }
+    }
+
+    private static Object getValue(Library library, int objectNumber) {
+        Object value = getEntry(library, objectNumber, FieldDictionary.V_KEY);
+        if (value instanceof StringObject) {
+            return ((StringObject) value).getDecryptedLiteralString(library.getSecurityManager());
+        }
+        return value;
+    }
+
+    private static Object getEntry(Library library, int objectNumber, Name key) {
+        Object object = library.getObject(new Reference(objectNumber, 0));
+        if (object instanceof Dictionary) {
+            return library.getObject(((Dictionary) object).getEntries(), key);
+        } else if (object instanceof HashMap) {
+            return library.getObject((HashMap<?, ?>) object, key);
+        }
+        return null;
+    }
+
+    /**
+     * Writes the fixture form.
+     */
+    private static byte[] buildForm() throws Exception {
+        TreeMap<Integer, String> objects = new TreeMap<Integer, String>();
+        objects.put(1, "<< /Type /Catalog /Pages 2 0 R /AcroForm 4 0 R >>");
+        objects.put(2, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>");
+        objects.put(3, "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Contents 5 0 R " +
+                "/Resources << /Font << /F1 6 0 R >> >> " +
+                "/Annots [10 0 R 12 0 R 13 0 R 14 0 R 17 0 R 18 0 R 21 0 R] >>");
+        objects.put(4, "<< /Fields [10 0 R 11 0 R 14 0 R 16 0 R 21 0 R] " +
+                "/DR << /Font << /Helv 6 0 R >> >> /DA (/Helv 12 Tf 0 g) >>");
+        objects.put(5, stream("", "BT /F1 18 Tf 72 720 Td (Form template) Tj ET"));
+        objects.put(6, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>");
+        // merged text field with an appearance.
+        objects.put(10, "<< /Type /Annot /Subtype /Widget /FT /Tx /T (name) /V (old) /DA (/Helv 12 Tf 0 g) " +
+                "/Rect [72 640 300 664] /P 3 0 R /F 4 /AP << /N 7 0 R >> >>");
+        objects.put(7, stream("/Type /XObject /Subtype /Form /BBox [0 0 228 24] /Resources << /Font << /Helv 6 0 R >> >>",
+                "/Tx BMC q BT /Helv 12 Tf 0 g 2 7 Td (old) Tj ET Q EMC"));
+        // text field with two widgets and no appearances.
+        objects.put(11, "<< /FT /Tx /T (addr) /DA (/Helv 10 Tf 0 0 1 rg) /Kids [12 0 R 13 0 R] >>");
+        objects.put(12, "<< /Type /Annot /Subtype /Widget /Parent 11 0 R /Rect [72 600 300 620] /P 3 0 R /F 4 >>");
+        objects.put(13, "<< /Type /Annot /Subtype /Widget /Parent 11 0 R /Rect [320 600 540 620] /P 3 0 R /F 4 >>");
+        // check box.
+        objects.put(14, "<< /Type /Annot /Subtype /Widget /FT /Btn /T (agree) /V /Off /AS /Off " +
+                "/Rect [72 560 90 578] /P 3 0 R /F 4 /AP << /N << /Yes 8 0 R /Off 9 0 R >> >> >>");
+        objects.put(8, stream("/Type /XObject /Subtype /Form /BBox [0 0 18 18]",
+                "0 0 0 RG 1 1 16 16 re S 0 g 3 3 12 12 re f"));
+        objects.put(9, stream("/Type /XObject /Subtype /Form /BBox [0 0 18 18]", "0 0 0 RG 1 1 16 16 re S"));
+        // radio group.
+        objects.put(16, "<< /FT /Btn /Ff 49152 /T (color) /V /Off /Kids [17 0 R 18 0 R] >>");
+        objects.put(17, "<< /Type /Annot /Subtype /Widget /Parent 16 0 R /AS /Off /Rect [72 520 90 538] " +
+                "/P 3 0 R /F 4 /AP << /N << /Red 19 0 R /Off 9 0 R >> >> >>");
+        objects.put(18, "<< /Type /Annot /Subtype /Widget /Parent 16 0 R /AS /Off /Rect [110 520 128 538] " +
+                "/P 3 0 R /F 4 /AP << /N << /Blue 20 0 R /Off 9 0 R >> >> >>");
+        objects.put(19, stream("/Type /XObject /Subtype /Form /BBox [0 0 18 18]",
+                "1 0 0 rg 3 3 12 12 re f 0 0 0 RG 1 1 16 16 re S"));
+        objects.put(20, stream("/Type /XObject /Subtype /Form /BBox [0 0 18 18]",
+                "0 0 1 rg 3 3 12 12 re f 0 0 0 RG 1 1 16 16 re S"));
+        // combo box.
+        objects.put(21, "<< /Type /Annot /Subtype /Widget /FT /Ch /Ff 131072 /T (pick) " +
+                "/Opt [(Apple) (Banana) (Cherry)] /V (Apple) /DA (/Helv 12 Tf 0 g) " +
+                "/Rect [72 470 300 494] /P 3 0 R /F 4 /AP << /N 22 0 R >> >>");
+        objects.put(22, stream("/Type /XObject /Subtype /Form /BBox [0 0 228 24] /Resources << /Font << /Helv 6 0 R >> >>",
+                "/Tx BMC q BT /Helv 12 Tf 0 g 4 4 Td (Apple) Tj ET Q EMC"));
+
+        StringBuilder pdf = new StringBuilder("%PDF-1.6\n");
+        int size = objects.lastKey() + 1;
+        long[] offsets = new long[size];
+        for (Map.Entry<Integer, String> object : objects.entrySet()) {
+            offsets[object.getKey()] = pdf.length();
+            pdf.append(object.getKey()).append(" 0 obj\n").append(object.getValue()).append("\nendobj\n");
+        }
+        int xref = pdf.length();
+        pdf.append("xref\n0 ").append(size).append('\n');
+        for (int i = 0; i < size; i++) {
+            if (offsets[i] == 0) {
+                pdf.append("0000000000 65535 f \n");
+            } else {
+                pdf.append(String.format("%010d 00000 n \n", offsets[i]));
+            }
+        }
+        pdf.append("trailer\n<< /Size ").append(size).append(" /Root 1 0 R >>\nstartxref\n")
+                .append(xref).append("\n%%EOF\n");
+        return pdf.toString().getBytes("ISO-8859-1");
+    }
+
+    private static String stream(String entries, String content) {
+        return "<< " + entries + " /Length " + content.length() + " >>\nstream\n" + content + "\nendstream";
+    }
+}
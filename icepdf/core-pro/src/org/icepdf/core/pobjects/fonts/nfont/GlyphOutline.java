@@ -0,0 +1,231 @@
+package org.icepdf.core.pobjects.fonts.nfont;
+
+import java.awt.*;
+import java.awt.geom.*;
+
+
+/**
+ * Reusable, growable coordinate buffer that charstring interpreters emit glyph outlines into.
+ * Segment types and coordinates are kept in packed primitive arrays and only copied,
+ * at their exact size, into an immutable {@link Shape} once the glyph has been fully built,
+ * so a font builds all of its glyphs through a single buffer rather than growing a
+ * {@link GeneralPath} per glyph.
+ * <p/>
+ * Follows {@link Path2D} semantics: consecutive movetos collapse into one, a closepath directly
+ * after a closepath is ignored, and line or curve segments require a current point.
+ * <p/>
+ * Instances are not thread safe, callers must synchronize on the buffer while building.
+ */
+/*package-private*/
+final class GlyphOutline {
+
+    private byte[] types_ = new byte[32];
+    private float[] coords_ = new float[128];
+    private int ntypes_, ncoords_;
+
+    /**
+     * Clears the buffer for the next glyph, keeping the allocated arrays.
+     */
+    void reset() {
+        ntypes_ = ncoords_ = 0;
+    }
+
+    /**
+     * True if a segment has been added, same as <code>GeneralPath.getCurrentPoint()!=null</code>.
+     */
+    boolean hasCurrentPoint() {
+        return ntypes_ > 0;
+    }
+
+    void moveTo(float x, float y) {
+        if (ntypes_ > 0 && types_[ntypes_ - 1] == PathIterator.SEG_MOVETO) {
+            coords_[ncoords_ - 2] = x;
+            coords_[ncoords_ - 1] = y;
+        } else {
+            ensure(2);
+            types_[ntypes_++] = PathIterator.SEG_MOVETO;
+            coords_[ncoords_++] = x;
+            coords_[ncoords_++] = y;
+        }
+    }
+
+    void lineTo(float x, float y) {
+        ensureCurrentPoint();
+        ensure(2);
+        types_[ntypes_++] = PathIterator.SEG_LINETO;
+        coords_[ncoords_++] = x;
+        coords_[ncoords_++] = y;
+    }
+
+    void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+        ensureCurrentPoint();
+        ensure(6);
+        types_[ntypes_++] = PathIterator.SEG_CUBICTO;
+        float[] c = coords_;
+        int i = ncoords_;
+        c[i] = x1;
+        c[i + 1] = y1;
+        c[i + 2] = x2;
+        c[i + 3] = y2;
+        c[i + 4] = x3;
+        c[i + 5] = y3;
+        ncoords_ = i + 6;
+    }
+
+    void closePath() {
+        if (ntypes_ == 0 || types_[ntypes_ - 1] != PathIterator.SEG_CLOSE) {
+            ensure(0);
+            types_[ntypes_++] = PathIterator.SEG_CLOSE;
+        }
+    }
+
+    /**
+     * Copies the current outline into a compact, immutable shape.
+     *
+     * @param windingRule {@link PathIterator#WIND_EVEN_ODD} or {@link PathIterator#WIND_NON_ZERO}
+     */
+    Shape toShape(int windingRule) {
+        byte[] types = new byte[ntypes_];
+        float[] coords = new float[ncoords_];
+        System.arraycopy(types_, 0, types, 0, ntypes_);
+        System.arraycopy(coords_, 0, coords, 0, ncoords_);
+        return new Packed(windingRule, types, coords);
+    }
+
+    private void ensureCurrentPoint() {
+        if (ntypes_ == 0) {
+            throw new IllegalPathStateException("missing initial moveto in path definition");
+        }
+    }
+
+    private void ensure(int ncoords) {
+        if (ntypes_ == types_.length) {
+            byte[] types = new byte[types_.length * 2];
+            System.arraycopy(types_, 0, types, 0, ntypes_);
+            types_ = types;
+        }
+        if (ncoords_ + ncoords > coords_.length) {
+            float[] coords = new float[Math.max(coords_.length * 2, ncoords_ + ncoords)];
+            System.arraycopy(coords_, 0, coords, 0, ncoords_);
+            coords_ = coords;
+        }
+    }
+
+
+    /**
+     * Immutable glyph shape backed by exactly sized segment and coordinate arrays.
+     */
+    private static final class Packed implements Shape {
+        private final int rule_;
+        private final byte[] types_;
+        private final float[] coords_;
+        private Rectangle2D bounds_;
+
+        Packed(int rule, byte[] types, float[] coords) {
+            rule_ = rule;
+            types_ = types;
+            coords_ = coords;
+        }
+
+        public Rectangle getBounds() {
+            return getBounds2D().getBounds();
+        }
+
+        public Rectangle2D getBounds2D() {
+            if (bounds_ == null) {
+                float[] c = coords_;
+                if (c.length == 0) {
+                    bounds_ = new Rectangle2D.Float();
+                } else {
+                    float x1 = c[0], y1 = c[1], x2 = x1, y2 = y1;
+                    for (int i = 2; i < c.length; i += 2) {
+                        float x = c[i], y = c[i + 1];
+                        if (x < x1) x1 = x;
+                        else if (x > x2) x2 = x;
+                        if (y < y1) y1 = y;
+                        else if (y > y2) y2 = y;
+                    }
+                    bounds_ = new Rectangle2D.Float(x1, y1, x2 - x1, y2 - y1);
+                }
+            }
+            return (Rectangle2D) bounds_.clone();
+        }
+
+        public boolean contains(double x, double y) {
+            return Path2D.contains(getPathIterator(null), x, y);
+        }
+
+        public boolean contains(Point2D p) {
+            return contains(p.getX(), p.getY());
+        }
+
+        public boolean intersects(double x, double y, double w, double h) {
+            return Path2D.intersects(getPathIterator(null), x, y, w, h);
+        }
+
+        public boolean intersects(Rectangle2D r) {
+            return intersects(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+        }
+
+        public boolean contains(double x, double y, double w, double h) {
+            return Path2D.contains(getPathIterator(null), x, y, w, h);
+        }
+
+        public boolean contains(Rectangle2D r) {
+            return contains(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+        }
+
+        public PathIterator getPathIterator(AffineTransform at) {
+            return new Iterator(this, at);
+        }
+
+        public PathIterator getPathIterator(AffineTransform at, double flatness) {
+            return new FlatteningPathIterator(getPathIterator(at), flatness);
+        }
+    }
+
+    private static final class Iterator implements PathIterator {
+        private static final int[] NCOORDS = {2, 2, 4, 6, 0};
+
+        private final Packed shape_;
+        private final AffineTransform at_;
+        private int typei_, coordi_;
+
+        Iterator(Packed shape, AffineTransform at) {
+            shape_ = shape;
+            at_ = at != null && !at.isIdentity() ? at : null;
+        }
+
+        public int getWindingRule() {
+            return shape_.rule_;
+        }
+
+        public boolean isDone() {
+            return typei_ >= shape_.types_.length;
+        }
+
+        public void next() {
+            coordi_ += NCOORDS[shape_.types_[typei_++]];
+        }
+
+        public int currentSegment(float[] coords) {
+            int type = shape_.types_[typei_];
+            int n = NCOORDS[type];
+            if (at_ != null)
+                at_.transform(shape_.coords_, coordi_, coords, 0, n / 2);
+            else
+                System.arraycopy(shape_.coords_, coordi_, coords, 0, n);
+            return type;
+        }
+
+        public int currentSegment(double[] coords) {
+            int type = shape_.types_[typei_];
+            int n = NCOORDS[type];
+            if (at_ != null)
+                at_.transform(shape_.coords_, coordi_, coords, 0, n / 2);
+            else
+                for (int i = 0; i < n; i++) coords[i] = shape_.coords_[coordi_ + i];
+            return type;
+        }
+    }
+}
@@ -922,7 +922,7 @@ public class NFontTrueType extends NFontSfnt implements /*java.awt.nfont.OpenTyp
                 spacech_ = ch;
             else if ((gid = getEchToGid(' ')) != NOTDEF_CHAR && canDisplayGID(gid)) {
                 boolean fra = ra_ == null;
-                spacech_ = ((GeneralPath) getGlyph(gid)).getPathIterator(new AffineTransform()).isDone() ? ' ' : NOTDEF_CHAR;
+                spacech_ = getGlyph(gid).getPathIterator(null).isDone() ? ' ' : NOTDEF_CHAR;
                 if (fra) releaseRA();
             } else
                 spacech_ = NOTVALID_CHAR;
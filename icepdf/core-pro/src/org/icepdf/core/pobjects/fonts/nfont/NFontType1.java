@@ -336,6 +336,12 @@ public class NFontType1 extends NFontSimple implements Cloneable {
      * LATER: maybe antialias cache as bitmaps so can control scaling.
      */
     private SoftReference/*<Shape>*/[] paths_;    // share paths across point sizes
+    /**
+     * Reusable outline buffer and interpreter scratch space shared by all glyph builds of this
+     * nfont and its derived instances, guarded by synchronizing on the outline buffer.
+     */
+    private final GlyphOutline outline_ = new GlyphOutline();
+    private final CharstringScratch scratch_ = new CharstringScratch();
     /**
      * Widths, in glyph space, indexed by glyph (already did a mapping through glyph names).
      */
@@ -1416,7 +1422,10 @@ public class NFontType1 extends NFontSimple implements Cloneable {
             for (int i = 0; i < maxGlyph; i++) {
                 byte[] cs = charstrings_[i];
                 if (cs == null) continue;
-                float w = buildChar(i, null);
+                float w;
+                synchronized (outline_) {
+                    w = buildChar(i, null, scratch_, null, null, 0f, 0f);
+                }
                 int fd = fds_ == null ? 0 : fds_[i];
                 if (fcff)
                     w = WIDTH_INVALID == w ? dw[fd] : w + nw[fd];
@@ -1526,8 +1535,11 @@ public class NFontType1 extends NFontSimple implements Cloneable {
         SoftReference ref = paths_[gid];
         Shape s = ref != null ? (Shape) ref.get() : null;
         if (s == null) {
-            s = new GeneralPath(GeneralPath.WIND_EVEN_ODD);
-            buildChar(gid, (GeneralPath) s);
+            synchronized (outline_) {
+                outline_.reset();
+                buildChar(gid, outline_);
+                s = outline_.toShape(PathIterator.WIND_EVEN_ODD);
+            }
             paths_[gid] = new SoftReference(s);
         }
 
@@ -1535,17 +1547,21 @@ public class NFontType1 extends NFontSimple implements Cloneable {
     }
 
     /**
-     * Interprets charstring as {@link java.awt.geom.GeneralPath}.
+     * Interprets charstring into the packed outline buffer.
      *
      * @return width, in character space
      * @see "Adobe Technical Note #5177: The Type 2 Charstring Format"
      * If <var>path</var> is <code>null</code>, parsing stops as soon as width is determined.
      */
-    private float buildChar(int gid, GeneralPath path) {
-        return buildChar(gid, path, null, null, 0f, 0f);
+    private float buildChar(int gid, GlyphOutline path) {
+        return buildChar(gid, path, scratch_, null, null, 0f, 0f);
     }
 
-    private float buildChar(int gid, GeneralPath path, boolean[] fsubr, boolean[] fgsubr, float x, float y) {
+    /**
+     * Callers must hold the lock on {@link #outline_} when passing the shared {@link #scratch_};
+     * nested seac/endchar components get their own scratch so the caller's stacks survive.
+     */
+    private float buildChar(int gid, GlyphOutline path, CharstringScratch st, boolean[] fsubr, boolean[] fgsubr, float x, float y) {
         byte[] charstring = null;
         if (charstrings_ != null)
             charstring = charstrings_[gid];
@@ -1571,17 +1587,17 @@ public class NFontType1 extends NFontSimple implements Cloneable {
 
         float width = WIDTH_INVALID;
 
-        byte[][] css = new byte[10][];
-        int[] pcs = new int[10];
+        byte[][] css = st.css;
+        int[] pcs = st.pcs;
         int csi = 0;
         byte[] cs = css[0] = charstring;    // recursive way has to pass too much state back up: stack index, endchar (which can happen in subr)
         float cx1, cy1, cx2, cy2;
-        float[] s = new float[48];
+        float[] s = st.s;
         int si = 0;    // operand stack
-        float[] ta = new float[32];    // temporaries
-        float[] pss = new float[20];
+        float[] ta = st.ta;    // temporaries
+        float[] pss = st.pss;
         int psi = 0;    // simulated PostScript stack for OtherSubr
-        float[] xs = new float[14];
+        float[] xs = st.xs;
         int xi = 0;
         boolean fx = false;    // old style flex -- rare
         int hintcnt = 0;
@@ -1818,8 +1834,9 @@ public class NFontType1 extends NFontSimple implements Cloneable {
                     // finishing a path
                     case CS_ENDCHAR:    // - endchar (14) |-
                         if (si == 4) {    // or deprecated: - adx ady bchar achar endchar (14) |-
-                            buildChar(intrinsic_.getChar(Encoding.ADOBE_STANDARD.getName((char) s[2])), path, fsubr, fgsubr, 0f, 0f);
-                            buildChar(intrinsic_.getChar(Encoding.ADOBE_STANDARD.getName((char) s[3])), path, fsubr, fgsubr, s[0], s[1]);
+                            CharstringScratch accent = new CharstringScratch();
+                            buildChar(intrinsic_.getChar(Encoding.ADOBE_STANDARD.getName((char) s[2])), path, accent, fsubr, fgsubr, 0f, 0f);
+                            buildChar(intrinsic_.getChar(Encoding.ADOBE_STANDARD.getName((char) s[3])), path, accent, fsubr, fgsubr, s[0], s[1]);
                         }
                         pc = pcmax;
                         si = 0;
@@ -1998,7 +2015,7 @@ public class NFontType1 extends NFontSimple implements Cloneable {
                         si = 0;
                         break;
                     case CS_CLOSEPATH:    //  closepath (9) |-
-                        if (path.getCurrentPoint() != null)/*guard required by bad Type 1's*/
+                        if (path.hasCurrentPoint())/*guard required by bad Type 1's*/
                             path.closePath();
                         si = 0;
                         break;
@@ -2065,8 +2082,9 @@ public class NFontType1 extends NFontSimple implements Cloneable {
                         if (si != 5) {
                             throw new IllegalStateException();
                         }
-                        buildChar(intrinsic_.getChar(Encoding.ADOBE_STANDARD.getName((char) s[3])), path, fsubr, fgsubr, 0f, 0f);
-                        buildChar(intrinsic_.getChar(Encoding.ADOBE_STANDARD.getName((char) s[4])), path, fsubr, fgsubr, s[1] - s[0], s[2]);
+                        CharstringScratch accent = new CharstringScratch();
+                        buildChar(intrinsic_.getChar(Encoding.ADOBE_STANDARD.getName((char) s[3])), path, accent, fsubr, fgsubr, 0f, 0f);
+                        buildChar(intrinsic_.getChar(Encoding.ADOBE_STANDARD.getName((char) s[4])), path, accent, fsubr, fgsubr, s[1] - s[0], s[2]);
                         si = 0;
                         break;
                     // END: CharString==1 ONLY (reserved in Type 2 charstring)
@@ -2102,7 +2120,7 @@ public class NFontType1 extends NFontSimple implements Cloneable {
 
         //if (path!=null && path.getCurrentPoint()!=null) path.closePath(); -- NO, linux/default/ghostscript/hrger.pfa
         if (hintcnt > 0) hint_ = 1;
-        if (path != null && path.getCurrentPoint() == null)
+        if (path != null && !path.hasCurrentPoint())
             path.moveTo(width, 0);    // GeneralPath needs at least one point
         return width;
     }
@@ -2224,7 +2242,7 @@ public class NFontType1 extends NFontSimple implements Cloneable {
                 spacech_ = touni_.fromSelector(' ');
             else if (encoding_ != null && (ch = encoding_.getChar("space")) != NOTDEF_CHAR && canDisplayEchar(ch))
                 spacech_ = ch;
-            else if ((gid = c2g_.toSelector(' ')) != NOTDEF_CHAR && canDisplayGID(gid) && ((GeneralPath) getGlyph(gid)).getPathIterator(new AffineTransform()).isDone())
+            else if ((gid = c2g_.toSelector(' ')) != NOTDEF_CHAR && canDisplayGID(gid) && getGlyph(gid).getPathIterator(null).isDone())
                 spacech_ = ' ';    // Java GeneralPath strips final moveto
             else
                 spacech_ = NOTVALID_CHAR;    // -- sometimes is 0!
@@ -2473,4 +2491,17 @@ public class NFontType1 extends NFontSimple implements Cloneable {
         outline = outline.createTransformedArea(transform);
         return outline;
     }
+
+    /**
+     * Operand, temporary and call stacks of the charstring interpreter, kept as primitive arrays
+     * so they can be reused from glyph to glyph instead of being reallocated for every build.
+     */
+    private static final class CharstringScratch {
+        final byte[][] css = new byte[10][];
+        final int[] pcs = new int[10];
+        final float[] s = new float[48];
+        final float[] ta = new float[32];
+        final float[] pss = new float[20];
+        final float[] xs = new float[14];
+    }
 }
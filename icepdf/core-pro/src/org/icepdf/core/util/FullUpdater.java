@@ -0,0 +1,264 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.util;
+
+import org.icepdf.core.pobjects.*;
+import org.icepdf.core.pobjects.Dictionary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * FullUpdater writes a document as a whole new file instead of appending an
+ * incremental update to the original.  Only the objects that can be reached
+ * from the trailer's Root and Info are written, in the revision the document
+ * currently shows, so the dead revisions of earlier incremental updates are
+ * dropped.  Streams with the same dictionary and bytes, fonts and images
+ * embedded more than once for example, are written once, all objects are
+ * renumbered densely and objects other than streams are packed in to
+ * compressed object streams listed by a cross-reference stream.
+ * <p/>
+ * The document is read twice, once to find the reachable objects and once to
+ * write them, and no more than one object is held at a time beyond what the
+ * library caches, so documents larger than the heap can be rewritten as long
+ * as their largest stream fits.  Encrypted documents can't be rewritten as
+ * their strings and streams are encrypted with their object numbers.
+ *
+ * @since 6.2
+ */
+public class FullUpdater {
+    private static final Logger logger =
+            Logger.getLogger(FullUpdater.class.toString());
+
+    private static final Name OBJECT_STREAM = new Name("ObjStm");
+    private static final Name XREF = new Name("XRef");
+
+    private final Document document;
+    private final Library library;
+
+    // new reference of every reachable object, duplicate streams share one.
+    private final HashMap<Reference, Reference> renumbered = new HashMap<Reference, Reference>();
+    // reachable objects in the order of their new object numbers.
+    private final ArrayList<Reference> objects = new ArrayList<Reference>();
+    // first stream of each digest.
+    private final HashMap<ByteBuffer, Reference> streamDigests = new HashMap<ByteBuffer, Reference>();
+    private MessageDigest digest;
+    private int duplicates;
+
+    /**
+     * Writes the document as a new file with garbage collected, deduplicated
+     * and densely numbered objects.
+     *
+     * @param document The Document that's being saved, must not be encrypted
+     * @param out      OutputStream to write the document to
+     * @return The number of bytes written
+     * @throws java.io.IOException
+     */
+    public static long writeFullUpdate(Document document, OutputStream out)
+            throws IOException {
+        if (document.getSecurityManager() != null) {
+            throw new IOException("Encrypted documents can't be rewritten.");
+        }
+        FullUpdater updater = new FullUpdater(document);
+        updater.collect();
+        return updater.write(out);
+    }
+
+    private FullUpdater(Document document) {
+        this.document = document;
+        library = document.getCatalog().getLibrary();
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            logger.log(Level.WARNING, "Streams can't be deduplicated without SHA-1.", e);
+        }
+    }
+
+    /**
+     * Walks the objects that can be reached from the trailer breadth first,
+     * numbering them in the order they are found.
+     */
+    private void collect() {
+        LinkedList<Reference> queue = new LinkedList<Reference>();
+        HashSet<Reference> seen = new HashSet<Reference>();
+        HashMap<?, ?> trailer = getTrailer().getDictionary();
+        addReferences(trailer.get(PTrailer.ROOT_KEY), queue, seen);
+        addReferences(trailer.get(PTrailer.INFO_KEY), queue, seen);
+        while (!queue.isEmpty()) {
+            Reference reference = queue.removeFirst();
+            Object object = library.getObject(reference);
+            if (object == null ||
+                    (object instanceof Dictionary && ((Dictionary) object).isDeleted())) {
+                // references to missing objects are written as null.
+                continue;
+            }
+            if (object instanceof Stream) {
+                Stream stream = (Stream) object;
+                Name type = library.getName(stream.getEntries(), Dictionary.TYPE_KEY);
+                if (OBJECT_STREAM.equals(type) || XREF.equals(type)) {
+                    continue;
+                }
+                Reference original = findDuplicate(reference, stream);
+                if (original != null) {
+                    renumbered.put(reference, renumbered.get(original));
+                    duplicates++;
+                    continue;
+                }
+            }
+            objects.add(reference);
+            renumbered.put(reference, new Reference(objects.size(), 0));
+            if (object instanceof Stream) {
+                // the length is written directly, it needn't be kept.
+                HashMap<Object, Object> entries = ((Stream) object).getEntries();
+                for (Object key : entries.keySet()) {
+                    if (!Stream.LENGTH_KEY.equals(key)) {
+                        addReferences(entries.get(key), queue, seen);
+                    }
+                }
+            } else {
+                addReferences(object, queue, seen);
+            }
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Full update of " + objects.size() + " objects, " +
+                    duplicates + " duplicate streams dropped.");
+        }
+    }
+
+    /**
+     * Queues the references held by the given value that weren't seen yet.
+     */
+    private static void addReferences(Object value, LinkedList<Reference> queue,
+                                      HashSet<Reference> seen) {
+        if (value instanceof Reference) {
+            if (seen.add((Reference) value)) {
+                queue.add((Reference) value);
+            }
+        } else if (value instanceof Dictionary) {
+            addReferences(((Dictionary) value).getEntries(), queue, seen);
+        } else if (value instanceof Map) {
+            for (Object child : ((Map) value).values()) {
+                addReferences(child, queue, seen);
+            }
+        } else if (value instanceof List) {
+            for (Object child : (List<?>) value) {
+                addReferences(child, queue, seen);
+            }
+        }
+    }
+
+    /**
+     * Gets the stream already found with the same dictionary and bytes as
+     * the given one, or remembers the given one if there is none.
+     *
+     * @return first stream with the same digest, null if the stream is new.
+     */
+    private Reference findDuplicate(Reference reference, Stream stream) {
+        if (digest == null) {
+            return null;
+        }
+        digest.reset();
+        StringBuilder description = new StringBuilder();
+        describe(stream.getEntries(), description);
+        try {
+            digest.update(description.toString().getBytes("UTF-8"));
+        } catch (IOException e) {
+            return null;
+        }
+        byte[] rawBytes = stream.getRawBytes();
+        digest.update(stream.isRawBytesCompressed() ? (byte) 1 : (byte) 0);
+        if (rawBytes != null) {
+            digest.update(rawBytes);
+        }
+        ByteBuffer key = ByteBuffer.wrap(digest.digest());
+        Reference original = streamDigests.get(key);
+        if (original == null) {
+            streamDigests.put(key, reference);
+        }
+        return original;
+    }
+
+    /**
+     * Describes a dictionary's entries with its keys in order, the length is
+     * left out as it is the length of the bytes that are compared anyway.
+     */
+    private static void describe(Object value, StringBuilder description) {
+        if (value instanceof Dictionary) {
+            value = ((Dictionary) value).getEntries();
+        }
+        if (value instanceof Map) {
+            TreeMap<String, Object> sorted = new TreeMap<String, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!Stream.LENGTH_KEY.equals(entry.getKey())) {
+                    sorted.put(entry.getKey().toString(), entry.getValue());
+                }
+            }
+            description.append("<<");
+            for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+                description.append('/').append(entry.getKey()).append(' ');
+                describe(entry.getValue(), description);
+            }
+            description.append(">>");
+        } else if (value instanceof List) {
+            description.append('[');
+            for (Object child : (List<?>) value) {
+                describe(child, description);
+            }
+            description.append(']');
+        } else if (value != null) {
+            description.append(value.getClass().getName()).append(':')
+                    .append(value).append(' ');
+        } else {
+            description.append("null ");
+        }
+    }
+
+    /**
+     * Writes the reachable objects under their new numbers.
+     */
+    private long write(OutputStream out) throws IOException {
+        IncrementalUpdater updater = IncrementalUpdater.createFullUpdater(
+                document, out, renumbered, objects.size() + 1);
+        updater.beginFullUpdate();
+        for (Reference reference : objects) {
+            Object object = library.getObject(reference);
+            if (object == null) {
+                throw new IOException("Object " + reference + " could not be read again.");
+            }
+            updater.writeObject(reference, object);
+        }
+        HashMap<Object, Object> trailer = new HashMap<Object, Object>();
+        HashMap<?, ?> previous = getTrailer().getDictionary();
+        trailer.put(PTrailer.ROOT_KEY, previous.get(PTrailer.ROOT_KEY));
+        if (previous.get(PTrailer.INFO_KEY) != null) {
+            trailer.put(PTrailer.INFO_KEY, previous.get(PTrailer.INFO_KEY));
+        }
+        if (previous.get(PTrailer.ID_KEY) != null) {
+            trailer.put(PTrailer.ID_KEY, previous.get(PTrailer.ID_KEY));
+        }
+        return updater.endFullUpdate(trailer);
+    }
+
+    private PTrailer getTrailer() {
+        return document.getStateManager().getTrailer();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.util;
+
+import org.icepdf.core.pobjects.*;
+import org.icepdf.core.pobjects.Dictionary;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.logging.Logger;
+
+import static org.icepdf.core.util.TestChecks.check;
+
+/**
+ * Testing of full updates.  A two page document drawing the same image,
+ * embedded twice, on both pages, with objects nothing refers to and with an
+ * incremental update that revised the first page, is edited and saved as a
+ * new file.  The new file must hold only the objects that are still used,
+ * with the image once, and must open with the same pages and the edit.
+ *
+ * @since 6.2
+ */
+public class FullUpdaterTest {
+
+    private static final Logger logger =
+            Logger.getLogger(FullUpdaterTest.class.toString());
+
+    private static final Name ROTATE_KEY = new Name("Rotate");
+    private static final Name ORPHAN_KEY = new Name("Orphan");
+
+    private static final String PAGE_ONE = "q 100 0 0 100 72 600 cm /Im1 Do Q BT /F1 12 Tf 72 500 Td (page one) Tj ET";
+    private static final String PAGE_TWO = "q 100 0 0 100 72 600 cm /Im1 Do Q BT /F1 12 Tf 72 500 Td (page two) Tj ET";
+    // 2 by 2 gray image.
+    private static final String IMAGE = "\u0000\u00FF\u00FF\u0000";
+
+    // objects that can still be reached: catalog, pages, two pages, two
+    // contents, one image, font and info.
+    private static final int REACHABLE = 9;
+
+    public static void main(String[] args) throws Exception {
+        try {
+            new FullUpdaterTest().testFullUpdate();
+            logger.info("FullUpdaterTest passed");
+        } finally {
+            Library.shutdownThreadPool();
+        }
+    }
+
+    public void testFullUpdate() throws Exception {
+        byte[] original = buildDocument();
+        byte[] saved;
+        Document document = new Document();
+        try {
+            document.setByteArray(original, 0, original.length, null);
+            Page page = document.getPageTree().getPage(1);
+            page.getEntries().put(ROTATE_KEY, 180);
+            document.getStateManager().addChange(new PObject(page, page.getPObjectReference()));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long length = document.saveOptimizedToOutputStream(out);
+            saved = out.toByteArray();
+            check(length == saved.length, "saved " + length + " for " + saved.length + " bytes");
+        } finally {
+            document.dispose();
+        }
+        String text = new String(saved, "ISO-8859-1");
+        check(text.startsWith("%PDF-") && text.indexOf("startxref") == text.lastIndexOf("startxref"),
+                "not a single revision");
+
+        document = new Document();
+        try {
+            document.setByteArray(saved, 0, saved.length, null);
+            Library library = document.getCatalog().getLibrary();
+            // the reachable objects, one object stream and the xref stream.
+            int size = document.getStateManager().getTrailer().getNumberOfObjects();
+            check(size == REACHABLE + 3, "size " + size);
+            int images = 0;
+            for (int i = 1; i < size; i++) {
+                Object object = library.getObject(new Reference(i, 0));
+                check(object != null, "object " + i + " is missing");
+                HashMap<?, ?> entries = object instanceof Dictionary ? ((Dictionary) object).getEntries() :
+                        object instanceof HashMap ? (HashMap<?, ?>) object : null;
+                check(entries == null || !entries.containsKey(ORPHAN_KEY), "orphan " + i + " was written");
+                if (entries != null && new Name("Image").equals(entries.get(new Name("Subtype")))) {
+                    images++;
+                }
+            }
+            check(images == 1, images + " images");
+
+            check(document.getNumberOfPages() == 2, "page count " + document.getNumberOfPages());
+            Page first = document.getPageTree().getPage(0);
+            Page second = document.getPageTree().getPage(1);
+            check(library.getInt(first.getEntries(), ROTATE_KEY) == 90, "revised page rotation");
+            check(library.getInt(second.getEntries(), ROTATE_KEY) == 180, "edited page rotation");
+            checkContent(first, PAGE_ONE);
+            checkContent(second, PAGE_TWO);
+            Reference firstImage = getImage(first, library);
+            check(firstImage != null && firstImage.equals(getImage(second, library)),
+                    "images " + firstImage + " and " + getImage(second, library));
+            Stream image = (Stream) library.getObject(firstImage);
+            check(new String(image.getDecodedStreamBytes(0), "ISO-8859-1").equals(IMAGE), "image data");
+            check("Full update".equals(document.getInfo().getTitle()), "title " + document.getInfo().getTitle());
+        } finally {
+            document.dispose();
+        }
+    }
+
+    private static void checkContent(Page page, String content) {
+        String[] decoded = page.getDecodedContentSteam();
+        check(decoded != null && decoded.length == 1 && decoded[0].equals(content),
+                "content " + (decoded != null ? Arrays.asList(decoded) : null));
+    }
+
+    /**
+     * Gets the reference of the image named Im1 in a page's resources.
+     */
+    private static Reference getImage(Page page, Library library) {
+        Object resources = library.getObject(page.getEntries(), new Name("Resources"));
+        HashMap<?, ?> resourceEntries = resources instanceof Dictionary ?
+                ((Dictionary) resources).getEntries() : (HashMap<?, ?>) resources;
+        Object xObjects = library.getObject(resourceEntries.get(new Name("XObject")));
+        Object image = xObjects instanceof HashMap ? ((HashMap<?, ?>) xObjects).get(new Name("Im1")) : null;
+        return image instanceof Reference ? (Reference) image : null;
+    }
+
+    /**
+     * Builds a two page document, both pages draw an image embedded twice,
+     * an orphaned dictionary and stream aren't used by anything, and an
+     * incremental update rotates the first page.
+     */
+    private static byte[] buildDocument() throws Exception {
+        TreeMap<Integer, String> objects = new TreeMap<Integer, String>();
+        objects.put(1, "<< /Type /Catalog /Pages 2 0 R >>");
+        objects.put(2, "<< /Type /Pages /Kids [3 0 R 4 0 R] /Count 2 >>");
+        objects.put(3, page(5, 7));
+        objects.put(4, page(6, 8));
+        objects.put(5, stream("", PAGE_ONE));
+        objects.put(6, stream("", PAGE_TWO));
+        String image = "/Type /XObject /Subtype /Image /Width 2 /Height 2 /ColorSpace /DeviceGray /BitsPerComponent 8";
+        objects.put(7, stream(image, IMAGE));
+        objects.put(8, stream(image, IMAGE));
+        objects.put(9, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>");
+        objects.put(10, "<< /Orphan true /Kids [3 0 R] >>");
+        objects.put(11, stream("/Orphan true", "orphaned stream"));
+        objects.put(12, "<< /Title (Full update) >>");
+
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        int size = objects.lastKey() + 1;
+        long[] offsets = new long[size];
+        for (Map.Entry<Integer, String> object : objects.entrySet()) {
+            offsets[object.getKey()] = pdf.length();
+            pdf.append(object.getKey()).append(" 0 obj\n").append(object.getValue()).append("\nendobj\n");
+        }
+        int xref = pdf.length();
+        pdf.append("xref\n0 ").append(size).append('\n');
+        pdf.append("0000000000 65535 f \n");
+        for (int i = 1; i < size; i++) {
+            pdf.append(String.format("%010d 00000 n \n", offsets[i]));
+        }
+        pdf.append("trailer\n<< /Size ").append(size).append(" /Root 1 0 R /Info 12 0 R >>\nstartxref\n")
+                .append(xref).append("\n%%EOF\n");
+
+        // the update revises the first page, its first revision is dead.
+        int revision = pdf.length();
+        pdf.append("3 0 obj\n").append(page(5, 7).replace(">>\n>>", ">>\n/Rotate 90 >>")).append("\nendobj\n");
+        int updateXref = pdf.length();
+        pdf.append("xref\n0 1\n0000000000 65535 f \n3 1\n").append(String.format("%010d 00000 n \n", revision));
+        pdf.append("trailer\n<< /Size ").append(size).append(" /Root 1 0 R /Info 12 0 R /Prev ").append(xref)
+                .append(" >>\nstartxref\n").append(updateXref).append("\n%%EOF\n");
+        return pdf.toString().getBytes("ISO-8859-1");
+    }
+
+    private static String page(int contents, int image) {
+        return "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Contents " + contents + " 0 R " +
+                "/Resources << /Font << /F1 9 0 R >> /XObject << /Im1 " + image + " 0 R >> >>\n>>";
+    }
+
+    private static String stream(String entries, String content) {
+        return "<< " + entries + " /Length " + content.length() + " >>\nstream\n" + content + "\nendstream";
+    }
+}
@@ -14,6 +14,7 @@
  */
 package org.icepdf.core.util;
 
+import org.icepdf.core.io.ContentWriter;
 import org.icepdf.core.io.CountingOutputStream;
 import org.icepdf.core.pobjects.*;
 import org.icepdf.core.pobjects.Dictionary;
@@ -29,6 +30,16 @@ import java.util.zip.Deflater;
 /**
  * IncrementalUpdater iterates over the Document's StateManager to to
  * write out the objects it contains.
+ * <p/>
+ * A document whose last cross-reference section is a stream is updated with
+ * a compressed cross-reference stream, changed objects other than streams
+ * are then packed in to compressed object streams.  Documents with a classic
+ * cross-reference table keep getting a table, so the update can still be
+ * read by PDF 1.4 readers, unless org.icepdf.core.save.compressed is set.
+ * The number of objects packed in to one object stream is set by
+ * org.icepdf.core.save.objectStreamSize, default 100.  Objects of encrypted
+ * documents are never packed, their strings are already encrypted and the
+ * object stream holding them would be encrypted again.
  *
  * @since 5.0
  */
@@ -38,11 +49,13 @@ public class IncrementalUpdater {
 
     private static final boolean PRETTY = false;
 
+    // buffered output is written to the stream once it grows past this size.
+    private static final int FLUSH_SIZE = 64 * 1024;
+
     private static final byte[] SPACE = " ".getBytes();
     private static final byte[] NEWLINE = "\r\n".getBytes();
     private static final byte[] TRUE = "true".getBytes();
     private static final byte[] FALSE = "false".getBytes();
-    private static final byte[] NAME = "/".getBytes();
     private static final byte[] REFERENCE = "R".getBytes();
     private static final byte[] LITERAL_STRING_ESCAPE = "\\".getBytes();
 
@@ -63,22 +76,37 @@ public class IncrementalUpdater {
     private static final byte[] TRAILER = "trailer\r\n".getBytes();
     private static final byte[] STARTXREF = "\r\n\r\nstartxref\r\n".getBytes();
     private static final byte[] COMMENT_EOF = "\r\n%%EOF\r\n".getBytes();
+    // header of a full update, the binary comment marks the file as binary.
+    private static final byte[] HEADER = {'%', 'P', 'D', 'F', '-', '1', '.', '7', '\r', '\n',
+            '%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\r', '\n'};
 
-    // data widths of entries that make up a compressed xref stream
-    private static ArrayList<Integer> widths = new ArrayList<Integer>(3);
+    private static boolean compressedSave;
+    private static int objectStreamSize;
 
     static {
-        widths.add(4);// int
-        widths.add(8);// long
-        widths.add(4);// int
+        compressedSave = Defs.sysPropertyBoolean("org.icepdf.core.save.compressed", false);
+        objectStreamSize = Math.max(1, Defs.intProperty("org.icepdf.core.save.objectStreamSize", 100));
     }
 
-
     private CountingOutputStream output;
+    // objects are written in to the buffer and the buffer to the output.
+    private ContentWriter buffer;
     private long startingPosition;
     private long xrefPosition;
     private List<Entry> entries;
+    // false once an entry was added out of object number sequence.
+    private boolean entriesSorted = true;
+    private int greatestObjectNumber;
     private SecurityManager securityManager;
+    // new references of the objects of a full update, null for an
+    // incremental update.  References that aren't in it are written as null.
+    private Map<Reference, Reference> renumbered;
+    // number of the next object stream of a full update, which writes its
+    // object streams as soon as they are full.
+    private int nextObjectStreamNumber;
+    // object streams the changed objects are packed in to, null if objects
+    // are written on their own.
+    private List<ObjectStreamWriter> objectStreams;
 
     /**
      * For simplicity, expose this one single method for appending an
@@ -113,7 +141,15 @@ public class IncrementalUpdater {
         if (!document.getStateManager().isChanged())
             return 0L;
 
+        // type=XRef and we'll be writing a compressed cross reference stream.
+        PTrailer trailer = document.getStateManager().getTrailer();
+        boolean compressed = compressedSave ||
+                trailer.getDictionary().containsKey(new Name("Type"));
+
         IncrementalUpdater updater = new IncrementalUpdater(document, out, documentLength);
+        if (compressed && updater.securityManager == null) {
+            updater.objectStreams = new ArrayList<ObjectStreamWriter>();
+        }
         updater.begin();
 
         Iterator<PObject> changes =
@@ -124,15 +160,16 @@ public class IncrementalUpdater {
         }
 
         // check if we write a standard xref/trailer
-        if (!document.getStateManager().getTrailer().getDictionary().containsKey(new Name("Type"))) {
+        if (!compressed) {
             // Write out xref table, based on IncrementalUpdater entries
             updater.writeXRefTable();
             // Write trailer
-            updater.writeTrailer(document.getStateManager().getTrailer());
+            updater.writeTrailer(trailer);
         } else {
-            // type=XRef and we'll be writing a compressed cross reference stream.
-            updater.writeCompressedXRefTable(document.getStateManager().getTrailer());
+            updater.writeObjectStreams(trailer);
+            updater.writeCompressedXRefTable(trailer);
         }
+        updater.flush();
 
         return updater.getIncrementalUpdateLength();
     }
@@ -174,6 +211,7 @@ public class IncrementalUpdater {
             updater = new IncrementalUpdater(document,
                     out, 0);
             updater.writeObject(pobject.getReference(), pobject.getObject());
+            updater.flush();
             objects[i] = out.toByteArray();
         }
 
@@ -182,11 +220,60 @@ public class IncrementalUpdater {
 
     private IncrementalUpdater(Document document, OutputStream out, long sp) {
         output = new CountingOutputStream(out);
+        buffer = new ContentWriter(4096);
         startingPosition = sp;
         entries = new ArrayList<Entry>(32);
         securityManager = document.getSecurityManager();
     }
 
+    /**
+     * Creates an updater that writes a whole new document rather than an
+     * update, see FullUpdater.  Objects are written under their new
+     * references and non-stream objects are packed in to object streams.
+     *
+     * @param document                The Document that's being saved, must not be encrypted
+     * @param out                     OutputStream to write the document to
+     * @param renumbered              new reference of every object that is written
+     * @param firstObjectStreamNumber number of the first object stream, after all renumbered objects
+     * @return updater to write the objects with.
+     */
+    static IncrementalUpdater createFullUpdater(Document document, OutputStream out,
+                                                Map<Reference, Reference> renumbered,
+                                                int firstObjectStreamNumber) {
+        IncrementalUpdater updater = new IncrementalUpdater(document, out, 0);
+        updater.securityManager = null;
+        updater.renumbered = renumbered;
+        updater.nextObjectStreamNumber = firstObjectStreamNumber;
+        updater.objectStreams = new ArrayList<ObjectStreamWriter>();
+        return updater;
+    }
+
+    /**
+     * Start the process of writing a full update, writes the file header.
+     *
+     * @throws java.io.IOException
+     */
+    void beginFullUpdate() throws IOException {
+        buffer.write(HEADER);
+        // head of the free list.
+        addEntry(new Entry(new Reference(0, 65534)));
+    }
+
+    /**
+     * Finishes a full update with the remaining object stream and a cross
+     * reference stream.
+     *
+     * @param trailer entries of the new trailer, Root and Info with their old references
+     * @return The number of bytes written
+     * @throws java.io.IOException
+     */
+    long endFullUpdate(HashMap<Object, Object> trailer) throws IOException {
+        writeObjectStreams(null);
+        writeXRefStream(trailer, getNextObjectNumber(null));
+        flush();
+        return getIncrementalUpdateLength();
+    }
+
     /**
      * Start the process of writing the incremental update
      *
@@ -196,7 +283,7 @@ public class IncrementalUpdater {
         // Old EOF might been immediately after %%EOF, so if we just start
         // writing, we'll still be in a comment. Write a newline to terminate
         // the potentially still active comment.
-        output.write(NEWLINE);
+        buffer.write(NEWLINE);
     }
 
     /**
@@ -205,14 +292,27 @@ public class IncrementalUpdater {
      *
      * @throws java.io.IOException
      */
-    private void writeObject(Reference ref, Object obj) throws IOException {
-        if (obj instanceof Stream) {
-            writeObjectStream((Stream) obj);
+    void writeObject(Reference ref, Object obj) throws IOException {
+        if (renumbered != null) {
+            // full update, objects are written under their new reference.
+            ref = renumbered.get(ref);
+            if (ref == null)
+                throw new IllegalArgumentException("No new reference for object: " + obj);
         } else if (obj instanceof Dictionary) {
-            writeObjectDictionary((Dictionary) obj);
+            ref = ((Dictionary) obj).getPObjectReference();
+        }
+        if (objectStreams != null && isPackable(ref, obj)) {
+            packObject(ref, obj);
+        } else if (obj instanceof Stream) {
+            writeObjectStream(ref, (Stream) obj);
+        } else if (obj instanceof Dictionary) {
+            writeObjectDictionary(ref, (Dictionary) obj);
         } else {
             writeObjectValue(ref, obj);
         }
+        if (buffer.size() > FLUSH_SIZE) {
+            writeBuffer();
+        }
     }
 
     /**
@@ -222,6 +322,7 @@ public class IncrementalUpdater {
      * @throws java.io.IOException
      */
     private void writeXRefTable() throws IOException {
+        sortEntries();
         // Link each deleted entry to the next deleted entry by iterating
         // backwards through the entries, which are sorted by object number.
 
@@ -242,13 +343,13 @@ public class IncrementalUpdater {
         zero.setNextDeletedObjectNumber(nextDeletedObjectNumber);
         entries.add(0, zero);
 
-        output.write(NEWLINE);
-        xrefPosition = startingPosition + output.getCount();
-        output.write(XREF);
+        buffer.write(NEWLINE);
+        xrefPosition = getPosition();
+        buffer.write(XREF);
         for (int i = 0; i < entries.size(); ) {
             i += writeXrefSubSection(i);
         }
-        output.write(NEWLINE);
+        buffer.write(NEWLINE);
     }
 
     /**
@@ -273,52 +374,185 @@ public class IncrementalUpdater {
 
         // Output sub-section header
         writeInteger(beginObjNum);
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeInteger(subSectionLength);
-        output.write(NEWLINE);
+        buffer.write(NEWLINE);
 
         for (int i = beginIndex; i < (beginIndex + subSectionLength); i++) {
             Entry entry = entries.get(i);
             if (entry.isDeleted()) {
                 // 10-digit-integer:nextFreeObjectNumber SPACE 5-digit-integer:generationNumber SPACE 'f' CRLF
                 writeZeroPaddedLong(entry.getNextDeletedObjectNumber(), 10);
-                output.write(' ');
+                buffer.write(' ');
                 writeZeroPaddedLong(entry.getReference().getGenerationNumber() + 1, 5);
-                output.write(' ');
-                output.write('f');
-                output.write('\r');
-                output.write('\n');
+                buffer.write(' ');
+                buffer.write('f');
+                buffer.write('\r');
+                buffer.write('\n');
             } else {
                 // 10-digit-integer:byteOffset SPACE 5-digit-integer:generationNumber SPACE 'n' CRLF
                 writeZeroPaddedLong(entry.getPosition(), 10);
-                output.write(' ');
+                buffer.write(' ');
                 writeZeroPaddedLong(entry.getReference().getGenerationNumber(), 5);
-                output.write(' ');
-                output.write('n');
-                output.write('\r');
-                output.write('\n');
+                buffer.write(' ');
+                buffer.write('n');
+                buffer.write('\r');
+                buffer.write('\n');
             }
         }
 
         return subSectionLength;
     }
 
+    /**
+     * Objects other than streams can be packed in to an object stream, as
+     * long as their generation is zero and they aren't deleted.
+     */
+    private static boolean isPackable(Reference ref, Object obj) {
+        if (obj instanceof Stream || ref == null || ref.getGenerationNumber() != 0) {
+            return false;
+        }
+        return !(obj instanceof Dictionary) || !((Dictionary) obj).isDeleted();
+    }
+
+    /**
+     * Writes an object in to the object stream being filled, the object stream
+     * itself is written once all objects were packed.
+     *
+     * @throws java.io.IOException
+     */
+    private void packObject(Reference ref, Object obj) throws IOException {
+        logger.log(Level.FINER, "packObject()  ref: {0}", ref);
+        ObjectStreamWriter objectStream = objectStreams.isEmpty() ? null :
+                objectStreams.get(objectStreams.size() - 1);
+        if (objectStream == null || objectStream.size() >= objectStreamSize) {
+            objectStream = new ObjectStreamWriter();
+            objectStreams.add(objectStream);
+        }
+        addEntry(objectStream.add(ref));
+        // the write methods all write to the buffer, so the object stream's
+        // body stands in for it while the object is written.
+        ContentWriter objectBuffer = buffer;
+        buffer = objectStream.body;
+        try {
+            writeValue(obj, obj);
+            buffer.write(NEWLINE);
+        } finally {
+            buffer = objectBuffer;
+        }
+        // a full update numbers its object streams up front, so they are
+        // written out as soon as they are full.
+        if (nextObjectStreamNumber > 0 && objectStream.size() >= objectStreamSize) {
+            objectStreams.remove(objectStreams.size() - 1);
+            writePackedObjects(objectStream, nextObjectStreamNumber++);
+        }
+    }
+
+    /**
+     * Writes the object streams holding the packed objects, they are
+     * numbered after every object of the document and every object written.
+     *
+     * @param prevTrailer The pre-existing PDF's ending trailer, null for a full update
+     * @throws java.io.IOException
+     */
+    private void writeObjectStreams(PTrailer prevTrailer) throws IOException {
+        if (objectStreams == null) {
+            return;
+        }
+        for (ObjectStreamWriter objectStream : objectStreams) {
+            writePackedObjects(objectStream, nextObjectStreamNumber > 0 ?
+                    nextObjectStreamNumber++ : getNextObjectNumber(prevTrailer));
+        }
+        objectStreams = null;
+    }
+
+    /**
+     * Writes an object stream holding packed objects.
+     *
+     * @param objectStream packed objects.
+     * @param objectNumber object number of the object stream.
+     * @throws java.io.IOException
+     */
+    private void writePackedObjects(ObjectStreamWriter objectStream, int objectNumber)
+            throws IOException {
+        Reference ref = new Reference(objectNumber, 0);
+        HashMap<Object, Object> streamEntries = new HashMap<Object, Object>();
+        streamEntries.put(Dictionary.TYPE_KEY, new Name("ObjStm"));
+        streamEntries.put(ObjectStream.N_KEY, objectStream.size());
+        streamEntries.put(Stream.FILTER_KEY, new Name("FlateDecode"));
+        ContentWriter data = new ContentWriter(objectStream.body.size() + 16 * objectStream.size());
+        // object number and offset pairs, the objects follow at First.
+        for (int i = 0, max = objectStream.size(); i < max; i++) {
+            data.writeInt(objectStream.entries.get(i).getReference().getObjectNumber());
+            data.write(' ');
+            data.writeInt(objectStream.offsets.get(i));
+            data.write(' ');
+        }
+        data.write('\n');
+        streamEntries.put(ObjectStream.FIRST_KEY, data.size());
+        data.write(objectStream.body.toByteArray());
+
+        Stream stream = new Stream(null, streamEntries, new byte[0]);
+        stream.setPObjectReference(ref);
+        stream.setRawBytes(data.toByteArray());
+        for (Entry entry : objectStream.entries) {
+            entry.setObjectStreamNumber(ref.getObjectNumber());
+        }
+        writeObjectStream(ref, stream);
+    }
+
+    /**
+     * Gets an object number that is neither used in the document nor by any
+     * object written so far.
+     */
+    private int getNextObjectNumber(PTrailer prevTrailer) {
+        int next = getGreatestObjectNumberWritten() + 1;
+        return prevTrailer != null ? Math.max(prevTrailer.getNumberOfObjects(), next) : next;
+    }
+
     /**
      * Creates byte[] that represents the compressed xref table format.
      *
+     * @param widths byte widths of the three fields of an entry.
      * @return byte[] of byte that will make up the compressed xref table.
-     * @throws IOException exception writing byte array output.
      */
-    private byte[] createXrefDataStream() throws IOException {
-        ByteArrayOutputStream tmp = new ByteArrayOutputStream();
+    private byte[] createXrefDataStream(int[] widths) {
+        ContentWriter tmp = new ContentWriter(entries.size() * (widths[0] + widths[1] + widths[2]));
         for (Entry entry : entries) {
-            Utils.writeInteger(tmp, CrossReference.Entry.TYPE_USED);
-            Utils.writeLong(tmp, entry.getPosition());
-            Utils.writeInteger(tmp, 0);
+            writeField(tmp, entry.getType(), widths[0]);
+            writeField(tmp, entry.getField2(), widths[1]);
+            writeField(tmp, entry.getField3(), widths[2]);
         }
         return tmp.toByteArray();
     }
 
+    /**
+     * Gets the smallest byte widths the three fields of the entries fit in.
+     */
+    private int[] createXrefWidths() {
+        long maxField2 = 0;
+        long maxField3 = 0;
+        for (Entry entry : entries) {
+            maxField2 = Math.max(maxField2, entry.getField2());
+            maxField3 = Math.max(maxField3, entry.getField3());
+        }
+        return new int[]{1, getByteWidth(maxField2), getByteWidth(maxField3)};
+    }
+
+    private static int getByteWidth(long value) {
+        int width = 1;
+        while (width < 8 && (value >>> (width * 8)) != 0) {
+            width++;
+        }
+        return width;
+    }
+
+    private static void writeField(ContentWriter out, long value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            out.write((int) (value >>> (i * 8)) & 0xFF);
+        }
+    }
+
     /**
      * Create the index array used for compressed xref tables.
      * <p/>
@@ -383,12 +617,12 @@ public class IncrementalUpdater {
             xrefPos = -1;
         }
 
-        output.write(TRAILER);
+        buffer.write(TRAILER);
         this.writeDictionary(null, newTrailer);
-        output.write(STARTXREF);
+        buffer.write(STARTXREF);
         this.writeLong(xrefPos);
-        output.write(NEWLINE);
-        output.write(COMMENT_EOF);
+        buffer.write(NEWLINE);
+        buffer.write(COMMENT_EOF);
     }
 
     /**
@@ -398,22 +632,38 @@ public class IncrementalUpdater {
      * @throws IOException
      */
     public void writeCompressedXRefTable(PTrailer prevTrailer) throws IOException {
-        HashMap newTrailer = (HashMap)
+        HashMap<Object, Object> newTrailer = (HashMap<Object, Object>)
                 prevTrailer.getDictionary().clone();
-        int oldSize = prevTrailer.getNumberOfObjects();
-        int greatestWritten = getGreatestObjectNumberWritten();
-        // create new reference number for the new xref stream.
-        int trailerObjectRef = greatestWritten + 1;
-        int newSize = Math.max(oldSize, trailerObjectRef + 1);
-        newTrailer.put(new Name("Size"), newSize);
         long prevTrailerPos = prevTrailer.getPosition();
         newTrailer.put(new Name("Prev"), prevTrailerPos);
-        long xrefPos = startingPosition + output.getCount();
+        newTrailer.remove(PTrailer.XREFSTM_KEY);
+        // create new reference number for the new xref stream.
+        writeXRefStream(newTrailer, getNextObjectNumber(prevTrailer));
+    }
+
+    /**
+     * Write a cross reference stream of the objects written so far, followed
+     * by the startxref, final byte offset and EOF marker.
+     *
+     * @param newTrailer       trailer entries of the stream.
+     * @param trailerObjectRef object number of the stream.
+     * @throws IOException
+     */
+    private void writeXRefStream(HashMap<Object, Object> newTrailer, int trailerObjectRef)
+            throws IOException {
+        sortEntries();
+        newTrailer.put(Dictionary.TYPE_KEY, new Name("XRef"));
+        newTrailer.put(new Name("Size"), trailerObjectRef + 1);
+        long xrefPos = getPosition();
 
         // prune compression keys if any
         newTrailer.remove(Stream.DECODEPARAM_KEY);
         newTrailer.put(Stream.FILTER_KEY, new Name("FlateDecode"));
 
+        // the xref stream lists itself along with the objects written.
+        Reference ref = new Reference(trailerObjectRef, 0);
+        addEntry(new Entry(ref, xrefPos));
+
         // End chain by pointing to head. If none del, chain back on itself.
         int nextDeletedObjectNumber = 0;
         for (int i = entries.size() - 1; i >= 0; i--) {
@@ -426,7 +676,12 @@ public class IncrementalUpdater {
         }
 
         // write the W entry or bits widths for the data
-        newTrailer.put(new Name("W"), widths);
+        int[] widths = createXrefWidths();
+        ArrayList<Integer> w = new ArrayList<Integer>(3);
+        for (int width : widths) {
+            w.add(width);
+        }
+        newTrailer.put(new Name("W"), w);
 
         // write the index entry
         ArrayList<Integer> index = new ArrayList<Integer>();
@@ -437,34 +692,50 @@ public class IncrementalUpdater {
 
         // build out the bytes that will make up the compressed entries.
         Stream crossReferenceStream = new Stream(null, newTrailer, new byte[0]);
-        crossReferenceStream.setPObjectReference(new Reference(trailerObjectRef, 0));
+        crossReferenceStream.setPObjectReference(ref);
 
         // tack on the cross reference data.
-        byte[] outputData = createXrefDataStream();
-
-        crossReferenceStream.setRawBytes(outputData);
-        writeObjectStream(crossReferenceStream);
-        output.write(STARTXREF);
+        crossReferenceStream.setRawBytes(createXrefDataStream(widths));
+        // cross reference streams are never encrypted.
+        writeStream(ref, crossReferenceStream, false);
+        buffer.write(STARTXREF);
         this.writeLong(xrefPos);
-        output.write(NEWLINE);
-        output.write(COMMENT_EOF);
+        buffer.write(NEWLINE);
+        buffer.write(COMMENT_EOF);
     }
 
-
     /**
      * Flush the OutputStream that we wrap
      *
      * @throws java.io.IOException
      */
     private void flush() throws IOException {
+        writeBuffer();
         output.flush();
     }
 
+    /**
+     * Writes the buffered objects to the OutputStream that we wrap
+     *
+     * @throws java.io.IOException
+     */
+    private void writeBuffer() throws IOException {
+        buffer.writeTo(output);
+        buffer.reset();
+    }
+
+    /**
+     * @return The file position of the next byte written, buffered bytes included
+     */
+    private long getPosition() {
+        return startingPosition + output.getCount() + buffer.size();
+    }
+
     /**
      * @return The number of bytes written as part of the incremental update
      */
     private long getIncrementalUpdateLength() {
-        return output.getCount();
+        return output.getCount() + buffer.size();
     }
 
     /**
@@ -472,11 +743,10 @@ public class IncrementalUpdater {
      *
      * @throws java.io.IOException
      */
-    private void writeObjectDictionary(Dictionary obj) throws IOException {
+    private void writeObjectDictionary(Reference ref, Dictionary obj) throws IOException {
         logger.log(Level.FINER, "writeObjectDictionary()  obj: {0}", obj);
         if (obj == null)
             throw new IllegalArgumentException("Object must be non-null");
-        Reference ref = obj.getPObjectReference();
         logger.log(Level.FINER, "writeObjectDictionary()  ref: {0}", ref);
         if (ref == null)
             throw new IllegalArgumentException("Reference must be non-null for object: " + obj);
@@ -490,22 +760,21 @@ public class IncrementalUpdater {
             addEntry(new Entry(ref));
             return;
         }
-        addEntry(new Entry(ref, startingPosition + output.getCount()));
+        addEntry(new Entry(ref, getPosition()));
 
         writeInteger(ref.getObjectNumber());
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeInteger(ref.getGenerationNumber());
-        output.write(SPACE);
-        output.write(BEGIN_OBJECT);
+        buffer.write(SPACE);
+        buffer.write(BEGIN_OBJECT);
         writeDictionary(obj, 0);
-        output.write(END_OBJECT);
+        buffer.write(END_OBJECT);
     }
 
-    private void writeObjectStream(Stream obj) throws IOException {
+    private void writeObjectStream(Reference ref, Stream obj) throws IOException {
         logger.log(Level.FINER, "writeObjectStream()  obj: {0}", obj);
         if (obj == null)
             throw new IllegalArgumentException("Object must be non-null");
-        Reference ref = obj.getPObjectReference();
         logger.log(Level.FINER, "writeObjectStream()  ref: {0}", ref);
         if (ref == null)
             throw new IllegalArgumentException("Reference must be non-null for object: " + obj);
@@ -519,25 +788,30 @@ public class IncrementalUpdater {
             addEntry(new Entry(ref));
             return;
         }
-        addEntry(new Entry(ref, startingPosition + output.getCount()));
+        addEntry(new Entry(ref, getPosition()));
+        writeStream(ref, obj, securityManager != null);
+    }
 
+    /**
+     * Writes a stream object at the current position, its entry must already
+     * have been added.
+     *
+     * @param ref     reference the stream is written under.
+     * @param obj     stream to write.
+     * @param encrypt true if the stream data is to be encrypted.
+     * @throws java.io.IOException
+     */
+    private void writeStream(Reference ref, Stream obj, boolean encrypt) throws IOException {
         byte[] outputData;
         // check if the stream should be zipped.
         if (!obj.isRawBytesCompressed() &&
                 obj.getEntries().containsKey(Stream.FILTER_KEY)) {
-            byte[] rawBytes = obj.getRawBytes();
-            byte[] output = new byte[rawBytes.length];
-            Deflater compressor = new Deflater();
-            compressor.setInput(rawBytes);
-            compressor.finish();
-            int compressedDataLength = compressor.deflate(output);
-            outputData = new byte[compressedDataLength];
-            System.arraycopy(output, 0, outputData, 0, compressedDataLength);
+            outputData = deflate(obj.getRawBytes());
         } else {
             outputData = obj.getRawBytes();
         }
         // check if cypt filters are being used and if so encrypte the stream.
-        if (securityManager != null) {
+        if (encrypt) {
             // test to write a none encrypted entry
 //            HashMap<Object, Object> entries = obj.getEntries();
 //            HashMap<Object, Object> cryptEntries = new HashMap<Object, Object>(2);
@@ -567,15 +841,36 @@ public class IncrementalUpdater {
         }
 
         writeInteger(ref.getObjectNumber());
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeInteger(ref.getGenerationNumber());
-        output.write(SPACE);
-        output.write(BEGIN_OBJECT);
+        buffer.write(SPACE);
+        buffer.write(BEGIN_OBJECT);
         writeDictionary(obj, outputData.length);
-        output.write(BEGIN_STREAM);
+        buffer.write(BEGIN_STREAM);
         writeStreamBytes(outputData);
-        output.write(END_STREAM);
-        output.write(END_OBJECT);
+        buffer.write(END_STREAM);
+        buffer.write(END_OBJECT);
+    }
+
+    /**
+     * Compresses the given bytes, the compressed bytes may be longer than
+     * the given ones.
+     */
+    private static byte[] deflate(byte[] data) {
+        Deflater compressor = new Deflater();
+        try {
+            compressor.setInput(data);
+            compressor.finish();
+            ContentWriter out = new ContentWriter(Math.max(64, data.length / 2));
+            byte[] chunk = new byte[8192];
+            while (!compressor.finished()) {
+                int length = compressor.deflate(chunk);
+                out.write(chunk, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            compressor.end();
+        }
     }
 
     /**
@@ -591,15 +886,15 @@ public class IncrementalUpdater {
             throw new IllegalArgumentException("Reference must be non-null for object: " + obj);
         if (obj == null)
             throw new IllegalArgumentException("Object must be non-null");
-        addEntry(new Entry(ref, startingPosition + output.getCount()));
+        addEntry(new Entry(ref, getPosition()));
 
         writeInteger(ref.getObjectNumber());
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeInteger(ref.getGenerationNumber());
-        output.write(SPACE);
-        output.write(BEGIN_OBJECT);
+        buffer.write(SPACE);
+        buffer.write(BEGIN_OBJECT);
         writeValue(obj, obj);
-        output.write(END_OBJECT);
+        buffer.write(END_OBJECT);
     }
 
 
@@ -639,25 +934,25 @@ public class IncrementalUpdater {
 
     private void writeDictionary(Object parent, HashMap<Object, Object> dictEntries) throws IOException {
         logger.log(Level.FINER, "writeDictionary()  dictEntries: {0}", dictEntries);
-        output.write(BEGIN_DICTIONARY);
+        buffer.write(BEGIN_DICTIONARY);
         if (PRETTY)
-            output.write(NEWLINE);
+            buffer.write(NEWLINE);
         Set<Object> keys = dictEntries.keySet();
         for (Object key : keys) {
             Object val = dictEntries.get(key);
             writeName(key.toString());
-            output.write(SPACE);
+            buffer.write(SPACE);
             try {
                 writeValue(parent, val);
             } catch (IllegalArgumentException e) {
                 throw new IllegalArgumentException(e.getMessage() + " for key: " + key, e);
             }
             if (PRETTY)
-                output.write(NEWLINE);
+                buffer.write(NEWLINE);
             else
-                output.write(SPACE); // Technically unnecessary
+                buffer.write(SPACE); // Technically unnecessary
         }
-        output.write(END_DICTIONARY);
+        buffer.write(END_DICTIONARY);
     }
 
     /**
@@ -667,7 +962,8 @@ public class IncrementalUpdater {
      * @throws java.io.IOException
      */
     private void writeValue(Object parent, Object val) throws IOException {
-        if (val == null) {
+        if (val == null || "null".equals(val)) {
+            // the parser keeps the null keyword as a java.lang.String.
             writeByteString("null");
         } else if (val instanceof Name) {
             writeName((Name) val);
@@ -710,93 +1006,77 @@ public class IncrementalUpdater {
     }
 
     private void writeName(String name) throws IOException {
-        output.write(NAME);
-
         // The String value of a name should be output as UTF-8, but the
-        // UTF-8 bytes are then escaped such that non-ASCII, ASCII control,
-        // and whitespace characters are replaces with # then the 2 digit
-        // hex value of the character. The # symbol itself is escaped with
-        // its hex value (#23). Escape characters outside the range of
-        // EXCLAMATION MARK(21h) (!) to TILDE (7Eh) (~). Decimal 33-126.
-
-        final int pound = 0x23;
-        byte[] bytes = name.getBytes("UTF-8");
-        for (int b : bytes) {
-            b &= 0xFF;
-            if (b == pound || b < 0x21 || b > 0x7E) {
-                output.write(pound);
-                int hexVal = ((b >> 4) & 0x0F);
-                int hexDigit = hexVal + ((hexVal >= 10) ? 'A' : '0');
-                output.write(hexDigit);
-                hexVal = (b & 0x0F);
-                hexDigit = hexVal + ((hexVal >= 10) ? 'A' : '0');
-                output.write(hexDigit);
-            } else {
-                output.write(b);
-            }
-        }
+        // UTF-8 bytes are then escaped such that delimiters, #, non-ASCII,
+        // ASCII control and whitespace characters are replaced with # then
+        // the 2 digit hex value of the character.
+        buffer.writeName(name);
     }
 
     private void writeReference(Reference ref) throws IOException {
+        if (renumbered != null) {
+            // a full update drops unreachable objects, references to them are null.
+            ref = renumbered.get(ref);
+            if (ref == null) {
+                writeByteString("null");
+                return;
+            }
+        }
         writeInteger(ref.getObjectNumber());
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeInteger(ref.getGenerationNumber());
-        output.write(SPACE);
-        output.write(REFERENCE);
+        buffer.write(SPACE);
+        buffer.write(REFERENCE);
     }
 
     private void writeArray(Object parent, List array) throws IOException {
-        output.write(BEGIN_ARRAY);
+        buffer.write(BEGIN_ARRAY);
         final int size = array.size();
         for (int i = 0; i < size; i++) {
             writeValue(parent, array.get(i));
             if (i < (size - 1))
-                output.write(SPACE);
+                buffer.write(SPACE);
         }
-        output.write(END_ARRAY);
+        buffer.write(END_ARRAY);
     }
 
     private void writeAffineTransform(AffineTransform af) throws IOException {
-        output.write(BEGIN_ARRAY);
+        buffer.write(BEGIN_ARRAY);
         writeLong((long) af.getScaleX());
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeLong((long) af.getShearX());
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeLong((long) af.getTranslateX());
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeLong((long) af.getScaleY());
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeLong((long) af.getShearY());
-        output.write(SPACE);
+        buffer.write(SPACE);
         writeLong((long) af.getTranslateY());
-        output.write(END_ARRAY);
+        buffer.write(END_ARRAY);
     }
 
     private void writeBoolean(boolean b) throws IOException {
         if (b)
-            output.write(TRUE);
+            buffer.write(TRUE);
         else
-            output.write(FALSE);
+            buffer.write(FALSE);
     }
 
     private void writeInteger(int i) throws IOException {
-        String str = Integer.toString(i);
-        writeByteString(str);
+        buffer.writeInt(i);
     }
 
     private void writeLong(long i) throws IOException {
-        String str = Long.toString(i);
-        writeByteString(str);
+        buffer.writeLong(i);
     }
 
     private void writeReal(float r) throws IOException {
-        String str = Float.toString(r);
-        writeByteString(str);
+        buffer.writeReal(r);
     }
 
     private void writeReal(Number r) throws IOException {
-        String str = r.toString();
-        writeByteString(str);
+        buffer.writeReal(r.doubleValue());
     }
 
     /**
@@ -808,9 +1088,9 @@ public class IncrementalUpdater {
      * @throws java.io.IOException
      */
     private void writeLiteralString(LiteralStringObject lso) throws IOException {
-        output.write(BEGIN_LITERAL_STRING);
+        buffer.write(BEGIN_LITERAL_STRING);
         writeByteString(lso.getLiteralString().replaceAll("(?=[()\\\\])", "\\\\"));
-        output.write(END_LITERAL_STRING);
+        buffer.write(END_LITERAL_STRING);
     }
 
     /**
@@ -822,12 +1102,14 @@ public class IncrementalUpdater {
      * @throws java.io.IOException
      */
     private void writeHexString(HexStringObject hso) throws IOException {
-        output.write(BEGIN_HEX_STRING);
+        buffer.write(BEGIN_HEX_STRING);
         writeByteString(hso.getHexString().replaceAll("(?=[<>\\\\])", "\\\\"));
-        output.write(END_HEX_STRING);
+        buffer.write(END_HEX_STRING);
     }
 
     private void writeStreamBytes(byte[] streamBytes) throws IOException {
+        // stream data goes straight out rather than being copied in to the buffer.
+        writeBuffer();
         output.write(streamBytes);
     }
 
@@ -916,61 +1198,95 @@ public class IncrementalUpdater {
      * @throws java.io.IOException
      */
     private void writeByteString(String str) throws IOException {
-        int len = str.length();
-        for (int i = 0; i < len; i++) {
-            int val = ((int) str.charAt(i)) & 0xFF;
-            output.write(val);
-        }
+        buffer.writeAscii(str);
     }
 
     private void writeZeroPaddedLong(long val, int len) throws IOException {
-        String str = Long.toString(val);
-        if (str.length() > len)
-            str = str.substring(str.length() - len);
-        int padding = len - str.length();
-        for (int i = 0; i < padding; i++)
-            output.write('0');
-        writeByteString(str);
+        buffer.writeZeroPadded(val, len);
     }
 
     /**
-     * Add Entry object in ascending object number sequence. Since we know that
-     * we're iterating over StateManager's PObjects in ascending object number
-     * sequence, appending to the end of our entries should be sufficient.
+     * Add Entry object. Since we know that we're iterating over StateManager's
+     * PObjects in ascending object number sequence, entries are mostly
+     * appended in order, the object streams of a full update are not, so
+     * entries are only sorted once the cross reference is written.
      *
      * @param entry Entry to be added
      */
     private void addEntry(Entry entry) {
         int entryObjNum = entry.getReference().getObjectNumber();
-        int index = entries.size();
-        while (index > 0) {
-            Entry prev = entries.get(index - 1);
-            int prevObjNum = prev.getReference().getObjectNumber();
+        if (!entries.isEmpty()) {
+            int prevObjNum = entries.get(entries.size() - 1).getReference().getObjectNumber();
             if (prevObjNum == entryObjNum) {
                 // StateManager is allowing double entries for same reference
                 throw new IllegalArgumentException(
                         "Multiple entries with same object number: " + entryObjNum);
-            } else if (prevObjNum < entryObjNum)
-                break;
-            index--;
+            } else if (prevObjNum > entryObjNum) {
+                entriesSorted = false;
+            }
+        }
+        entries.add(entry);
+        greatestObjectNumber = Math.max(greatestObjectNumber, entryObjNum);
+    }
+
+    /**
+     * Sorts the entries by ascending object number.
+     */
+    private void sortEntries() {
+        if (entriesSorted) {
+            return;
         }
-        entries.add(index, entry);
+        Collections.sort(entries, new Comparator<Entry>() {
+            public int compare(Entry entry1, Entry entry2) {
+                int objNum1 = entry1.getReference().getObjectNumber();
+                int objNum2 = entry2.getReference().getObjectNumber();
+                return objNum1 < objNum2 ? -1 : objNum1 == objNum2 ? 0 : 1;
+            }
+        });
+        for (int i = 1; i < entries.size(); i++) {
+            int objNum = entries.get(i).getReference().getObjectNumber();
+            if (entries.get(i - 1).getReference().getObjectNumber() == objNum)
+                throw new IllegalArgumentException(
+                        "Multiple entries with same object number: " + objNum);
+        }
+        entriesSorted = true;
     }
 
     private int getGreatestObjectNumberWritten() {
-        // entries are insertion sorted by ascending object number, so the
-        // greatest object number is in the Entry at the greatest index
-        return (entries.isEmpty()) ? 0 :
-                entries.get(entries.size() - 1).getReference().getObjectNumber();
+        return greatestObjectNumber;
     }
 
 
+    /**
+     * Objects packed in to one object stream, the body holds the objects one
+     * after the other and the offsets where each of them starts.
+     */
+    private static class ObjectStreamWriter {
+        private final ContentWriter body = new ContentWriter(4096);
+        private final List<Entry> entries = new ArrayList<Entry>();
+        private final List<Integer> offsets = new ArrayList<Integer>();
+
+        Entry add(Reference ref) {
+            Entry entry = new Entry(ref, entries.size());
+            entries.add(entry);
+            offsets.add(body.size());
+            return entry;
+        }
+
+        int size() {
+            return entries.size();
+        }
+    }
+
     private static class Entry {
         private static final long POSITION_DELETED = -1;
+        private static final long POSITION_COMPRESSED = -2;
 
         private Reference reference;
         private long position;
         private int nextDeletedObjectNumber;
+        private int objectStreamNumber;
+        private int objectStreamIndex;
 
         /**
          * This is for new or modified objects, that hve been written out
@@ -988,6 +1304,16 @@ public class IncrementalUpdater {
             position = POSITION_DELETED;
         }
 
+        /**
+         * This is for objects packed in to an object stream, the stream's
+         * object number is set once the stream is written
+         */
+        Entry(Reference ref, int index) {
+            reference = ref;
+            position = POSITION_COMPRESSED;
+            objectStreamIndex = index;
+        }
+
         Reference getReference() {
             return reference;
         }
@@ -1007,5 +1333,42 @@ public class IncrementalUpdater {
         int getNextDeletedObjectNumber() {
             return nextDeletedObjectNumber;
         }
+
+        void setObjectStreamNumber(int objectStreamNumber) {
+            this.objectStreamNumber = objectStreamNumber;
+        }
+
+        /**
+         * @return The entry type in a cross reference stream
+         */
+        int getType() {
+            if (position == POSITION_DELETED)
+                return CrossReference.Entry.TYPE_FREE;
+            else if (position == POSITION_COMPRESSED)
+                return CrossReference.Entry.TYPE_COMPRESSED;
+            return CrossReference.Entry.TYPE_USED;
+        }
+
+        /**
+         * @return The second field of the entry in a cross reference stream
+         */
+        long getField2() {
+            if (position == POSITION_DELETED)
+                return nextDeletedObjectNumber;
+            else if (position == POSITION_COMPRESSED)
+                return objectStreamNumber;
+            return position;
+        }
+
+        /**
+         * @return The third field of the entry in a cross reference stream
+         */
+        long getField3() {
+            if (position == POSITION_DELETED)
+                return reference.getGenerationNumber() + 1;
+            else if (position == POSITION_COMPRESSED)
+                return objectStreamIndex;
+            return reference.getGenerationNumber();
+        }
     }
 }
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.util;
+
+import org.icepdf.core.io.SeekableByteArrayInputStream;
+import org.icepdf.core.io.SeekableInput;
+import org.icepdf.core.pobjects.*;
+import org.icepdf.core.pobjects.Dictionary;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.logging.Logger;
+
+import static org.icepdf.core.util.TestChecks.check;
+
+/**
+ * Testing of incremental updates ending in a cross-reference stream.  A
+ * document whose cross reference is a stream, with its Info dictionary in an
+ * object stream and an object of generation one, is edited and saved twice.
+ * Each saved copy must open with the edits, and its last cross-reference
+ * stream must point at every object it lists: objects of generation zero
+ * other than streams packed in to new object streams, the others written on
+ * their own under their own generation.
+ *
+ * @since 6.2
+ */
+public class IncrementalUpdaterTest {
+
+    private static final Logger logger =
+            Logger.getLogger(IncrementalUpdaterTest.class.toString());
+
+    private static final Name ROTATE_KEY = new Name("Rotate");
+    private static final Name EXTRA_KEY = new Name("Extra");
+    private static final Name VALUE_KEY = new Name("Value");
+    private static final Name TITLE_KEY = new Name("Title");
+
+    // size of the document that is edited.
+    private static final int SIZE = 9;
+
+    public static void main(String[] args) throws Exception {
+        try {
+            new IncrementalUpdaterTest().testObjectStreamUpdates();
+            logger.info("IncrementalUpdaterTest passed");
+        } finally {
+            Library.shutdownThreadPool();
+        }
+    }
+
+    public void testObjectStreamUpdates() throws Exception {
+        byte[] original = buildDocument();
+        Reference extra;
+        byte[] saved;
+        Document document = open(original);
+        try {
+            Library library = document.getCatalog().getLibrary();
+            StateManager stateManager = document.getStateManager();
+            Page page = document.getPageTree().getPage(0);
+            extra = stateManager.getNewReferencNumber();
+            HashMap<Object, Object> extraEntries = new HashMap<Object, Object>();
+            extraEntries.put(VALUE_KEY, 42);
+            stateManager.addChange(new PObject(extraEntries, extra));
+            page.getEntries().put(ROTATE_KEY, 90);
+            page.getEntries().put(EXTRA_KEY, extra);
+            stateManager.addChange(new PObject(page, page.getPObjectReference()));
+            setTitle(document, "Edited");
+            stateManager.addChange(new PObject(new LiteralStringObject("generation one edited"),
+                    new Reference(5, 1)));
+            Stream content = (Stream) library.getObject(new Reference(4, 0));
+            content.setRawBytes("BT /F1 24 Tf 72 720 Td (edited) Tj ET".getBytes("ISO-8859-1"));
+            stateManager.addChange(new PObject(content, content.getPObjectReference()));
+            saved = save(document, original);
+        } finally {
+            document.dispose();
+        }
+        Map<Integer, long[]> entries = checkXrefStream(saved, original.length, SIZE);
+        // changed objects of generation zero are packed, the others aren't.
+        checkPacked(entries, 3, true);
+        checkPacked(entries, 7, true);
+        checkPacked(entries, extra.getObjectNumber(), true);
+        checkPacked(entries, 4, false);
+        checkPacked(entries, 5, false);
+        check(entries.get(5)[2] == 1, "generation of object 5 is " + entries.get(5)[2]);
+        checkDocument(saved, "Edited", "BT /F1 24 Tf 72 720 Td (edited) Tj ET", extra);
+
+        // an update of the update, with the packed Info changed again.
+        byte[] savedTwice;
+        document = open(saved);
+        try {
+            setTitle(document, "Edited twice");
+            savedTwice = save(document, saved);
+        } finally {
+            document.dispose();
+        }
+        int size = 0;
+        for (Integer objectNumber : entries.keySet()) {
+            size = Math.max(size, objectNumber + 1);
+        }
+        entries = checkXrefStream(savedTwice, saved.length, size);
+        checkPacked(entries, 7, true);
+        check(!entries.containsKey(3) && !entries.containsKey(4), "unchanged objects were written again");
+        checkDocument(savedTwice, "Edited twice", "BT /F1 24 Tf 72 720 Td (edited) Tj ET", extra);
+    }
+
+    private static void setTitle(Document document, String title) {
+        Library library = document.getCatalog().getLibrary();
+        Reference infoReference = (Reference) document.getStateManager().getTrailer()
+                .getDictionary().get(PTrailer.INFO_KEY);
+        @SuppressWarnings("unchecked")
+        HashMap<Object, Object> info = (HashMap<Object, Object>) library.getObject(infoReference);
+        info.put(TITLE_KEY, new LiteralStringObject(title));
+        document.getStateManager().addChange(new PObject(info, infoReference));
+    }
+
+    /**
+     * Opens a saved copy and checks it shows every edit.
+     */
+    private static void checkDocument(byte[] data, String title, String content, Reference extra)
+            throws Exception {
+        Document document = open(data);
+        try {
+            Library library = document.getCatalog().getLibrary();
+            check(document.getNumberOfPages() == 1, "page count " + document.getNumberOfPages());
+            Page page = document.getPageTree().getPage(0);
+            check(library.getInt(page.getEntries(), ROTATE_KEY) == 90, "page rotation");
+            Object extraEntries = library.getObject(page.getEntries(), EXTRA_KEY);
+            check(extraEntries instanceof HashMap &&
+                            library.getInt((HashMap) extraEntries, VALUE_KEY) == 42,
+                    "new object " + extra + " is " + extraEntries);
+            check(title.equals(document.getInfo().getTitle()), "title " + document.getInfo().getTitle());
+            Object generationOne = library.getObject(new Reference(5, 1));
+            check(generationOne instanceof StringObject && "generation one edited".equals(
+                    ((StringObject) generationOne).getLiteralString()), "object 5 1 is " + generationOne);
+            String[] decoded = page.getDecodedContentSteam();
+            check(decoded != null && decoded.length == 1 && decoded[0].equals(content),
+                    "content " + (decoded != null ? Arrays.asList(decoded) : null));
+        } finally {
+            document.dispose();
+        }
+    }
+
+    private static void checkPacked(Map<Integer, long[]> entries, int objectNumber, boolean packed) {
+        long[] entry = entries.get(objectNumber);
+        check(entry != null, "object " + objectNumber + " isn't in the update");
+        check((entry[0] == 2) == packed, "object " + objectNumber + " has type " + entry[0]);
+    }
+
+    /**
+     * Reads the last cross-reference stream of a saved copy and checks its
+     * entries: objects written on their own must start at their offset with
+     * their number and generation, packed objects must be listed by their
+     * object stream at their index.  New objects must be numbered from the
+     * previous size on.
+     *
+     * @param data        saved copy.
+     * @param previousXref end of the copy that was updated, where the update starts.
+     * @param previousSize size of the copy that was updated.
+     * @return type and the two fields of each entry by object number.
+     */
+    private static Map<Integer, long[]> checkXrefStream(byte[] data, int previousXref, int previousSize)
+            throws Exception {
+        String text = new String(data, "ISO-8859-1");
+        int startXref = text.lastIndexOf("startxref");
+        long xrefOffset = Long.parseLong(text.substring(startXref + 9).trim().split("\\s+")[0]);
+        check(xrefOffset > previousXref, "xref offset " + xrefOffset);
+
+        Library library = new Library();
+        // the parser reads a cross-reference stream in to a trailer, the
+        // stream data is decoded from the file.
+        PObject xrefObject = parseObject(data, xrefOffset, library);
+        check(xrefObject.getObject() instanceof PTrailer, "xref is " + xrefObject.getObject());
+        HashMap<?, ?> xrefEntries = ((PTrailer) xrefObject.getObject()).getDictionary();
+        int length = ((Number) xrefEntries.get(Dictionary.LENGTH_KEY)).intValue();
+        int dataStart = text.indexOf("stream\r\n", (int) xrefOffset) + "stream\r\n".length();
+        Stream xref = new Stream(library, xrefEntries, Arrays.copyOfRange(data, dataStart, dataStart + length));
+        check(new Name("XRef").equals(xrefEntries.get(Dictionary.TYPE_KEY)), "xref type");
+        long prev = ((Number) xrefEntries.get(PTrailer.PREV_KEY)).longValue();
+        check(prev < previousXref && parseObject(data, prev, library).getObject() instanceof PTrailer,
+                "previous xref " + prev);
+        List<?> widths = (List<?>) xrefEntries.get(CrossReference.W_KEY);
+        List<?> index = (List<?>) xrefEntries.get(CrossReference.INDEX_KEY);
+        int size = ((Number) xrefEntries.get(PTrailer.SIZE_KEY)).intValue();
+        if (index == null) {
+            index = Arrays.asList(0, size);
+        }
+        byte[] fields = xref.getDecodedStreamBytes(0);
+        int[] w = new int[3];
+        for (int i = 0; i < 3; i++) {
+            w[i] = ((Number) widths.get(i)).intValue();
+        }
+
+        Map<Integer, long[]> entries = new TreeMap<Integer, long[]>();
+        int position = 0;
+        for (int i = 0; i < index.size(); i += 2) {
+            int first = ((Number) index.get(i)).intValue();
+            int count = ((Number) index.get(i + 1)).intValue();
+            for (int objectNumber = first; objectNumber < first + count; objectNumber++) {
+                long[] entry = new long[3];
+                for (int field = 0; field < 3; field++) {
+                    // a missing type field means type 1.
+                    entry[field] = w[field] == 0 && field == 0 ? 1 : 0;
+                    for (int b = 0; b < w[field]; b++) {
+                        entry[field] = (entry[field] << 8) | (fields[position++] & 0xFF);
+                    }
+                }
+                if (objectNumber != 0) {
+                    check(size > objectNumber, "object " + objectNumber + " past the size " + size);
+                    entries.put(objectNumber, entry);
+                }
+            }
+        }
+        check(position == fields.length, "xref data of " + fields.length + " bytes, read " + position);
+        check(entries.containsKey(xrefObject.getReference().getObjectNumber()), "xref has no entry");
+
+        for (Map.Entry<Integer, long[]> entry : entries.entrySet()) {
+            int objectNumber = entry.getKey();
+            long[] fieldValues = entry.getValue();
+            if (fieldValues[0] == 1) {
+                check(fieldValues[1] >= previousXref, "object " + objectNumber + " written before the update");
+                PObject object = parseObject(data, fieldValues[1], library);
+                check(object.getReference().equals(new Reference(objectNumber, (int) fieldValues[2])),
+                        "object at " + fieldValues[1] + " is " + object.getReference() +
+                                " instead of " + objectNumber + " " + fieldValues[2]);
+            } else if (fieldValues[0] == 2) {
+                int objectStreamNumber = (int) fieldValues[1];
+                long[] objectStreamEntry = entries.get(objectStreamNumber);
+                check(objectStreamNumber >= previousSize && objectStreamEntry != null &&
+                        objectStreamEntry[0] == 1, "object stream " + objectStreamNumber);
+                int[] packed = getObjectNumbers(parseObject(data, objectStreamEntry[1], library));
+                check(fieldValues[2] < packed.length && packed[(int) fieldValues[2]] == objectNumber,
+                        "object " + objectNumber + " isn't at " + fieldValues[2] +
+                                " in object stream " + objectStreamNumber);
+            } else {
+                throw new AssertionError("object " + objectNumber + " has type " + fieldValues[0]);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the numbers of the objects packed in an object stream.
+     */
+    private static int[] getObjectNumbers(PObject object) throws Exception {
+        check(object.getObject() instanceof Stream, "object stream is " + object.getObject());
+        Stream stream = (Stream) object.getObject();
+        check(new Name("ObjStm").equals(stream.getEntries().get(Dictionary.TYPE_KEY)), "object stream type");
+        int n = ((Number) stream.getEntries().get(ObjectStream.N_KEY)).intValue();
+        int first = ((Number) stream.getEntries().get(ObjectStream.FIRST_KEY)).intValue();
+        String[] header = new String(stream.getDecodedStreamBytes(0), 0, first, "ISO-8859-1")
+                .trim().split("\\s+");
+        check(header.length == 2 * n, "object stream header " + Arrays.asList(header));
+        int[] objectNumbers = new int[n];
+        for (int i = 0; i < n; i++) {
+            objectNumbers[i] = Integer.parseInt(header[2 * i]);
+        }
+        return objectNumbers;
+    }
+
+    private static PObject parseObject(byte[] data, long offset, Library library) throws Exception {
+        SeekableByteArrayInputStream input = new SeekableByteArrayInputStream(data);
+        input.seekAbsolute(offset);
+        Object object = new Parser((SeekableInput) input).getObject(library);
+        check(object instanceof PObject, "no object at " + offset);
+        return (PObject) object;
+    }
+
+    private static Document open(byte[] data) throws Exception {
+        Document document = new Document();
+        document.setByteArray(data, 0, data.length, null);
+        return document;
+    }
+
+    private static byte[] save(Document document, byte[] original) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long length = document.saveToOutputStream(out);
+        byte[] saved = out.toByteArray();
+        check(length == saved.length, "saved " + length + " for " + saved.length + " bytes");
+        check(saved.length > original.length &&
+                Arrays.equals(original, Arrays.copyOf(saved, original.length)), "original bytes changed");
+        return saved;
+    }
+
+    /**
+     * Builds a document with a cross-reference stream, an Info dictionary
+     * packed in an object stream and a string object of generation one.
+     */
+    private static byte[] buildDocument() throws Exception {
+        String content = "BT /F1 24 Tf 72 720 Td (original) Tj ET";
+        TreeMap<Integer, String> objects = new TreeMap<Integer, String>();
+        objects.put(1, "<< /Type /Catalog /Pages 2 0 R >>");
+        objects.put(2, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>");
+        objects.put(3, "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Contents 4 0 R " +
+                "/Resources << /Font << /F1 << /Type /Font /Subtype /Type1 /BaseFont /Helvetica >> >> >> >>");
+        objects.put(4, "<< /Length " + content.length() + " >>\nstream\n" + content + "\nendstream");
+        objects.put(5, "(generation one)");
+        String packedHeader = "7 0\n";
+        String packed = "<< /Title (Original) /Subject 5 1 R >>";
+        String objectStream = packedHeader + packed;
+        objects.put(6, "<< /Type /ObjStm /N 1 /First " + packedHeader.length() + " /Length " +
+                objectStream.length() + " >>\nstream\n" + objectStream + "\nendstream");
+
+        StringBuilder pdf = new StringBuilder("%PDF-1.5\n");
+        long[] offsets = new long[SIZE];
+        for (Map.Entry<Integer, String> object : objects.entrySet()) {
+            int objectNumber = object.getKey();
+            offsets[objectNumber] = pdf.length();
+            pdf.append(objectNumber).append(objectNumber == 5 ? " 1" : " 0").append(" obj\n")
+                    .append(object.getValue()).append("\nendobj\n");
+        }
+        int xref = pdf.length();
+        offsets[8] = xref;
+        // type, offset or object stream, generation or index in 1, 4 and 2 bytes.
+        StringBuilder fields = new StringBuilder();
+        for (int i = 0; i < SIZE; i++) {
+            if (i == 0) {
+                appendField(fields, 0, 1);
+                appendField(fields, 0, 4);
+                appendField(fields, 65535, 2);
+            } else if (i == 7) {
+                appendField(fields, 2, 1);
+                appendField(fields, 6, 4);
+                appendField(fields, 0, 2);
+            } else {
+                appendField(fields, 1, 1);
+                appendField(fields, offsets[i], 4);
+                appendField(fields, i == 5 ? 1 : 0, 2);
+            }
+        }
+        pdf.append("8 0 obj\n<< /Type /XRef /Size ").append(SIZE).append(" /W [1 4 2] /Root 1 0 R ")
+                .append("/Info 7 0 R /Length ").append(fields.length()).append(" >>\nstream\n")
+                .append(fields).append("\nendstream\nendobj\nstartxref\n").append(xref).append("\n%%EOF\n");
+        return pdf.toString().getBytes("ISO-8859-1");
+    }
+
+    private static void appendField(StringBuilder fields, long value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            fields.append((char) ((value >> (8 * i)) & 0xFF));
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a SeekableInput through a window of buffered bytes so the Parser can
+ * lex a document's objects without going to the file for every byte.  The
+ * window starts small, objects loaded through the cross reference are
+ * usually only a few hundred bytes long, and doubles in size each time it
+ * slides forward so sequential reads of the whole document get large reads.
+ * <p/>
+ * The window keeps its own position and always seeks the underlying input
+ * before reading from it, other readers can move the underlying input
+ * between two reads of the window.  The position of the underlying input is
+ * undefined after the window was read.  Mark and reset only remember an
+ * absolute position so there is no limit on how far back a reset can go.
+ *
+ * @since 6.2
+ */
+public class BufferedSeekableInput extends InputStream implements SeekableInput {
+
+    private static final int MIN_WINDOW_SIZE = 1024;
+    private static final int MAX_WINDOW_SIZE = 64 * 1024;
+
+    private SeekableInput in;
+
+    private byte[] buffer;
+    // file position of buffer[0].
+    private long windowPosition;
+    private int pos;
+    private int count;
+    // number of bytes to read on the next fill.
+    private int fillSize = MIN_WINDOW_SIZE;
+
+    private long markPosition;
+
+    /**
+     * Creates a new window starting at the input's current position.
+     *
+     * @param in input to read.
+     * @throws IOException error getting the input's position.
+     */
+    public BufferedSeekableInput(SeekableInput in) throws IOException {
+        this.in = in;
+        buffer = new byte[MIN_WINDOW_SIZE];
+        windowPosition = in.getAbsolutePosition();
+        markPosition = windowPosition;
+    }
+
+    /**
+     * Gets the input read by this window.
+     *
+     * @return underlying input.
+     */
+    public SeekableInput getSeekableInput() {
+        return in;
+    }
+
+    /**
+     * Slides the window to the current position and reads the next bytes.
+     * The byte before the current position is kept so a peek() that slides
+     * the window can still be followed by an unread().
+     *
+     * @return false if there are no more bytes to read.
+     */
+    private boolean fill() throws IOException {
+        int keep = pos > 0 ? 1 : 0;
+        windowPosition += pos - keep;
+        pos = keep;
+        count = 0;
+        if (fillSize > buffer.length) {
+            buffer = new byte[fillSize];
+        }
+        in.seekAbsolute(windowPosition);
+        while (count < fillSize) {
+            int read = in.read(buffer, count, fillSize - count);
+            if (read <= 0) {
+                break;
+            }
+            count += read;
+        }
+        if (fillSize < MAX_WINDOW_SIZE) {
+            fillSize <<= 1;
+        }
+        return count > pos;
+    }
+
+    public int read() throws IOException {
+        if (pos >= count && !fill()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    /**
+     * Gets the next byte without reading it.
+     *
+     * @return next byte, -1 at the end of the input.
+     * @throws IOException error reading the input.
+     */
+    public int peek() throws IOException {
+        if (pos >= count && !fill()) {
+            return -1;
+        }
+        return buffer[pos] & 0xFF;
+    }
+
+    /**
+     * Steps back over the byte just read, only one byte can be unread after
+     * each call to read().
+     */
+    public void unread() {
+        if (pos > 0) {
+            pos--;
+        }
+    }
+
+    public int read(byte[] bytes) throws IOException {
+        return read(bytes, 0, bytes.length);
+    }
+
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length <= 0) {
+            return 0;
+        }
+        int available = count - pos;
+        if (available >= length) {
+            System.arraycopy(buffer, pos, bytes, offset, length);
+            pos += length;
+            return length;
+        }
+        // hand out what is buffered and read the rest straight from the input.
+        if (available > 0) {
+            System.arraycopy(buffer, pos, bytes, offset, available);
+        }
+        long position = windowPosition + count;
+        windowPosition = position;
+        pos = 0;
+        count = 0;
+        in.seekAbsolute(position);
+        int read = available;
+        while (read < length) {
+            int currRead = in.read(bytes, offset + read, length - read);
+            if (currRead <= 0) {
+                break;
+            }
+            read += currRead;
+        }
+        windowPosition = position + (read - available);
+        return read > 0 ? read : -1;
+    }
+
+    /**
+     * Searches for the given bytes from the current position on, moving the
+     * window through the input as needed.  When found the window is left at
+     * the first byte of the match, otherwise it is left at the end of the
+     * input.
+     *
+     * @param pattern bytes to look for.
+     * @return absolute position of the match, -1 if it wasn't found.
+     * @throws IOException error reading the input.
+     */
+    public long indexOf(byte[] pattern) throws IOException {
+        int length = pattern.length;
+        byte first = pattern[0];
+        while (true) {
+            // make sure a whole match can fit in to what is buffered.
+            while (count - pos < length) {
+                int remaining = count - pos;
+                long end = windowPosition + count;
+                // the fill slides the window so it starts at the current position.
+                if (!fill() || count - pos <= remaining) {
+                    // nothing more to read, leave the window at the end.
+                    seekAbsolute(end);
+                    return -1;
+                }
+            }
+            int last = count - length;
+            for (int i = pos; i <= last; i++) {
+                if (buffer[i] == first) {
+                    int j = 1;
+                    while (j < length && buffer[i + j] == pattern[j]) {
+                        j++;
+                    }
+                    if (j == length) {
+                        pos = i;
+                        return windowPosition + i;
+                    }
+                }
+            }
+            // keep the tail that could be the start of a match.
+            pos = last + 1;
+        }
+    }
+
+    public void close() throws IOException {
+        // the underlying input is owned by the document.
+    }
+
+    public int available() {
+        return count - pos;
+    }
+
+    public void mark(int readLimit) {
+        markPosition = windowPosition + pos;
+    }
+
+    public boolean markSupported() {
+        return true;
+    }
+
+    public void reset() throws IOException {
+        seekAbsolute(markPosition);
+    }
+
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        seekRelative(n);
+        return n;
+    }
+
+    public void seekAbsolute(long absolutePosition) throws IOException {
+        if (absolutePosition >= windowPosition && absolutePosition <= windowPosition + count) {
+            pos = (int) (absolutePosition - windowPosition);
+        } else {
+            windowPosition = absolutePosition < 0 ? 0 : absolutePosition;
+            pos = 0;
+            count = 0;
+        }
+    }
+
+    public void seekRelative(long relativeOffset) throws IOException {
+        seekAbsolute(windowPosition + pos + relativeOffset);
+    }
+
+    public void seekEnd() throws IOException {
+        seekAbsolute(in.getLength());
+    }
+
+    public long getAbsolutePosition() throws IOException {
+        return windowPosition + pos;
+    }
+
+    public long getLength() throws IOException {
+        return in.getLength();
+    }
+
+    public InputStream getInputStream() {
+        return this;
+    }
+
+    public void beginThreadAccess() {
+        in.beginThreadAccess();
+    }
+
+    public void endThreadAccess() {
+        in.endThreadAccess();
+    }
+}
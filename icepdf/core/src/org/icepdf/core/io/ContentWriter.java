@@ -0,0 +1,275 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+
+/**
+ * Growable byte buffer for writing PDF content streams and objects.  Tokens,
+ * names and numbers are written straight in to the buffer as bytes, integers
+ * are formatted without going through a String and real numbers are written
+ * in plain fixed point notation with at most five decimal places, never in
+ * the exponent notation of Double.toString that PDF doesn't allow.
+ * <p/>
+ * A writer can be reset and reused, so encoding many content streams or
+ * objects in a row keeps using the same buffer.  Writers are not thread
+ * safe.
+ *
+ * @since 6.2
+ */
+public class ContentWriter {
+
+    private static final int PRECISION = 5;
+    private static final long SCALE = 100000;
+    // reals at least this large are written as integers, their fraction can't be held in a long.
+    private static final double MAX_FIXED = 1e13;
+
+    private static final byte[] DIGITS = "0123456789ABCDEF".getBytes();
+
+    // printable ASCII that must be escaped in a name, delimiters and #.
+    private static final boolean[] NAME_ESCAPES = new boolean[128];
+
+    static {
+        for (byte b : "()<>[]{}/%#".getBytes()) {
+            NAME_ESCAPES[b] = true;
+        }
+    }
+
+    private byte[] buffer;
+    private int count;
+    // digits of a number, written backwards.
+    private final byte[] scratch = new byte[20];
+
+    public ContentWriter() {
+        this(256);
+    }
+
+    /**
+     * Creates a new writer.
+     *
+     * @param capacity initial buffer capacity in bytes.
+     */
+    public ContentWriter(int capacity) {
+        buffer = new byte[Math.max(16, capacity)];
+    }
+
+    private void ensureCapacity(int extra) {
+        int needed = count + extra;
+        if (needed > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(needed, buffer.length << 1)];
+            System.arraycopy(buffer, 0, newBuffer, 0, count);
+            buffer = newBuffer;
+        }
+    }
+
+    public ContentWriter write(int b) {
+        if (count == buffer.length) {
+            ensureCapacity(1);
+        }
+        buffer[count++] = (byte) b;
+        return this;
+    }
+
+    public ContentWriter write(byte[] bytes) {
+        return write(bytes, 0, bytes.length);
+    }
+
+    public ContentWriter write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+        return this;
+    }
+
+    /**
+     * Writes the low byte of each of the string's chars, for tokens and other
+     * ASCII strings or binary data held in a string.
+     *
+     * @param str string to write.
+     * @return this writer.
+     */
+    public ContentWriter writeAscii(String str) {
+        int length = str.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[count++] = (byte) str.charAt(i);
+        }
+        return this;
+    }
+
+    public ContentWriter writeSpace() {
+        return write(' ');
+    }
+
+    public ContentWriter writeNewLine() {
+        ensureCapacity(2);
+        buffer[count++] = '\r';
+        buffer[count++] = '\n';
+        return this;
+    }
+
+    public ContentWriter writeInt(int value) {
+        return writeLong(value);
+    }
+
+    public ContentWriter writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            return writeAscii(Long.toString(value));
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int digits = 0;
+        do {
+            scratch[digits++] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        } while (value != 0);
+        ensureCapacity(digits);
+        while (digits > 0) {
+            buffer[count++] = scratch[--digits];
+        }
+        return this;
+    }
+
+    /**
+     * Writes a real number rounded to five decimal places with trailing zeros
+     * dropped, whole numbers are written without a decimal point.  NaN and
+     * infinite values are written as 0.
+     *
+     * @param value number to write.
+     * @return this writer.
+     */
+    public ContentWriter writeReal(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return write('0');
+        }
+        if (Math.abs(value) >= MAX_FIXED) {
+            // whole numbers at this size, too large for a long past 2^63.
+            return Math.abs(value) < Long.MAX_VALUE ? writeLong(Math.round(value)) :
+                    writeAscii(new BigDecimal(value).toPlainString());
+        }
+        long scaled = Math.round(Math.abs(value) * SCALE);
+        if (scaled == 0) {
+            return write('0');
+        }
+        if (value < 0) {
+            write('-');
+        }
+        writeLong(scaled / SCALE);
+        long fraction = scaled % SCALE;
+        if (fraction != 0) {
+            int digits = PRECISION;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            write('.');
+            writeZeroPadded(fraction, digits);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a positive number padded with leading zeros to the given number
+     * of digits, only the last digits are written if the number is longer.
+     *
+     * @param value  number to write.
+     * @param length number of digits.
+     * @return this writer.
+     */
+    public ContentWriter writeZeroPadded(long value, int length) {
+        ensureCapacity(length);
+        for (int i = count + length - 1; i >= count; i--) {
+            buffer[i] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        }
+        count += length;
+        return this;
+    }
+
+    /**
+     * Writes a name object.  The name is encoded as UTF-8 and, as PDF 7.3.5
+     * asks, every byte that isn't a regular character is escaped with a # and
+     * its two digit hex value: the delimiters ( ) &lt; &gt; [ ] { } / and %,
+     * the # sign itself, white space and any byte outside 0x21 to 0x7E.
+     *
+     * @param name name to write, without its leading slash.
+     * @return this writer.
+     */
+    public ContentWriter writeName(String name) {
+        write('/');
+        byte[] bytes;
+        try {
+            bytes = name.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            bytes = name.getBytes();
+        }
+        ensureCapacity(bytes.length);
+        for (int b : bytes) {
+            b &= 0xFF;
+            if (b < 0x21 || b > 0x7E || NAME_ESCAPES[b]) {
+                ensureCapacity(3);
+                buffer[count++] = '#';
+                buffer[count++] = DIGITS[(b >> 4) & 0x0F];
+                buffer[count++] = DIGITS[b & 0x0F];
+            } else {
+                write(b);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Gets the number of bytes written since the writer was created or
+     * last reset.
+     *
+     * @return number of bytes in the buffer.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity for reuse.
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[count];
+        System.arraycopy(buffer, 0, bytes, 0, count);
+        return bytes;
+    }
+
+    /**
+     * Writes the buffer's content to the given stream.
+     *
+     * @param out stream to write to.
+     * @throws IOException error writing to the stream.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, count);
+    }
+
+    public String toString() {
+        return new String(buffer, 0, count);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.io;
+
+import org.icepdf.core.pobjects.Name;
+
+import java.util.logging.Logger;
+
+import static org.icepdf.core.util.TestChecks.check;
+
+/**
+ * Testing of the name and number encoding of the content writer.
+ *
+ * @since 6.2
+ */
+public class ContentWriterTest {
+
+    private static final Logger logger =
+            Logger.getLogger(ContentWriterTest.class.toString());
+
+    public static void main(String[] args) {
+        ContentWriterTest test = new ContentWriterTest();
+        test.testWriteName();
+        test.testWriteReal();
+        test.testWriteLong();
+        logger.info("ContentWriterTest passed");
+    }
+
+    public void testWriteName() {
+        checkName("Helv", "/Helv");
+        checkName("", "/");
+        // printable ASCII other than the delimiters and # is regular.
+        checkName("A;B-C_D.E*F!G~H", "/A;B-C_D.E*F!G~H");
+        checkName("Lime Green", "/Lime#20Green");
+        checkName("a#b", "/a#23b");
+        checkName("(x)", "/#28x#29");
+        checkName("<>[]{}/%", "/#3C#3E#5B#5D#7B#7D#2F#25");
+        checkName("tab\tnl\ncr\rff\f", "/tab#09nl#0Acr#0Dff#0C");
+        checkName("nul\u0000del\u007F", "/nul#00del#7F");
+        // non ASCII characters are escaped UTF-8 bytes.
+        checkName("café", "/caf#C3#A9");
+        checkName("中", "/#E4#B8#AD");
+
+        // names the parser reads back the same.
+        String[] names = {"Helv", "Lime Green", "a#b", "(x)", "<>[]{}/%", "A;B~"};
+        for (String name : names) {
+            String written = new ContentWriter().writeName(name).toString();
+            String read = new Name(written.substring(1)).getName();
+            check(name.equals(read), "read back " + written + " as " + read);
+        }
+    }
+
+    public void testWriteReal() {
+        checkReal(0, "0");
+        checkReal(-0.0, "0");
+        checkReal(1, "1");
+        checkReal(-1, "-1");
+        checkReal(612, "612");
+        checkReal(1.5, "1.5");
+        checkReal(-1.5, "-1.5");
+        checkReal(0.1 + 0.2, "0.3");
+        checkReal(0.0025, "0.0025");
+        checkReal(2.0 / 3, "0.66667");
+        checkReal(-2.0 / 3, "-0.66667");
+        checkReal(123456.789012, "123456.78901");
+        checkReal(1.000001, "1");
+        checkReal(9.999996, "10");
+        // no exponent notation, however small or large.
+        checkReal(1e-7, "0");
+        checkReal(-1e-7, "0");
+        checkReal(0.000005, "0.00001");
+        checkReal(1.5e-5, "0.00002");
+        checkReal(1e13, "10000000000000");
+        checkReal(-2.5e15, "-2500000000000000");
+        checkReal(1e20, "100000000000000000000");
+        checkReal(Double.NaN, "0");
+        checkReal(Double.POSITIVE_INFINITY, "0");
+        checkReal(Double.NEGATIVE_INFINITY, "0");
+        checkReal(0.1f, "0.1");
+        checkReal(72.12f, "72.12");
+    }
+
+    public void testWriteLong() {
+        ContentWriter writer = new ContentWriter(16);
+        writer.writeInt(0).writeSpace().writeInt(-42).writeSpace().writeInt(Integer.MAX_VALUE)
+                .writeSpace().writeLong(Long.MIN_VALUE).writeSpace().writeZeroPadded(42, 10);
+        check(writer.toString().equals("0 -42 2147483647 -9223372036854775808 0000000042"),
+                "numbers " + writer);
+        // a reset writer is reused from the start of its buffer.
+        writer.reset();
+        writer.writeName("F1").writeSpace().writeReal(12).writeSpace().writeAscii("Tf");
+        check(writer.toString().equals("/F1 12 Tf"), "after reset " + writer);
+        check(writer.size() == writer.toByteArray().length, "size " + writer.size());
+    }
+
+    private static void checkName(String name, String expected) {
+        String written = new ContentWriter(1).writeName(name).toString();
+        check(written.equals(expected), "name " + name + " written as " + written + " not " + expected);
+    }
+
+    private static void checkReal(double value, String expected) {
+        String written = new ContentWriter(1).writeReal(value).toString();
+        check(written.equals(expected), "real " + value + " written as " + written + " not " + expected);
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SeekableInput over a stream that is still being downloaded.  A background
+ * thread copies the source stream in to memory, or in to a cache file when
+ * one is given, and reads of bytes that haven't arrived yet block until they
+ * do.  A linearized document can so be opened and its first page shown as
+ * soon as the first part of the file is in, while the rest keeps arriving.
+ * <p/>
+ * The length of the input is only known up front if the source gave one,
+ * a content length for example, otherwise getLength() and seekEnd() block
+ * until the whole stream was read.  The input owns the source stream and
+ * closes it once the download ends or the input is closed.
+ *
+ * @since 6.2
+ */
+public class ProgressiveSeekableInput extends InputStream implements SeekableInput {
+
+    private static final Logger logger =
+            Logger.getLogger(ProgressiveSeekableInput.class.toString());
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private InputStream source;
+    private final long expectedLength;
+
+    // memory storage, chunks are never reallocated once added.
+    private ArrayList<byte[]> chunks;
+    // file storage, used when a cache file is given.
+    private RandomAccessFile cacheFile;
+
+    // guards received, complete, closed and error, waiting readers are
+    // notified whenever more bytes arrive.
+    private final Object progressLock = new Object();
+    private long received;
+    private boolean complete;
+    private boolean closed;
+    private IOException error;
+
+    private long position;
+    private long markPosition;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Creates a new input and starts the download of the source stream.
+     *
+     * @param source         stream to download, closed once the download ends.
+     * @param expectedLength length of the stream if known, otherwise -1.
+     * @param file           file to cache the stream in, null to keep it in memory.
+     * @throws IOException error opening the cache file.
+     */
+    public ProgressiveSeekableInput(InputStream source, long expectedLength, File file)
+            throws IOException {
+        this.source = source;
+        this.expectedLength = expectedLength;
+        if (file != null) {
+            cacheFile = new RandomAccessFile(file, "rw");
+        } else {
+            chunks = new ArrayList<byte[]>();
+        }
+        Thread downloadThread = new Thread(new Runnable() {
+            public void run() {
+                download();
+            }
+        });
+        downloadThread.setName("ICEpdf-progressive-download");
+        downloadThread.setDaemon(true);
+        downloadThread.start();
+    }
+
+    private void download() {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try {
+            while (true) {
+                int length = source.read(buffer, 0, buffer.length);
+                if (length < 0) {
+                    break;
+                }
+                synchronized (progressLock) {
+                    if (closed) {
+                        return;
+                    }
+                }
+                if (length > 0) {
+                    store(buffer, length);
+                    synchronized (progressLock) {
+                        received += length;
+                        progressLock.notifyAll();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            synchronized (progressLock) {
+                if (!closed) {
+                    logger.log(Level.WARNING, "Error downloading document.", e);
+                    error = e;
+                }
+            }
+        } finally {
+            try {
+                source.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Error closing document source stream.", e);
+            }
+            synchronized (progressLock) {
+                complete = true;
+                progressLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Appends bytes after the ones received so far, only called by the
+     * download thread.
+     */
+    private void store(byte[] buffer, int length) throws IOException {
+        long end = received;
+        if (cacheFile != null) {
+            synchronized (cacheFile) {
+                cacheFile.seek(end);
+                cacheFile.write(buffer, 0, length);
+            }
+        } else {
+            int offset = 0;
+            while (offset < length) {
+                int chunkOffset = (int) (end & (CHUNK_SIZE - 1));
+                if (chunkOffset == 0) {
+                    synchronized (chunks) {
+                        chunks.add(new byte[CHUNK_SIZE]);
+                    }
+                }
+                byte[] chunk;
+                synchronized (chunks) {
+                    chunk = chunks.get(chunks.size() - 1);
+                }
+                int count = Math.min(length - offset, CHUNK_SIZE - chunkOffset);
+                System.arraycopy(buffer, offset, chunk, chunkOffset, count);
+                offset += count;
+                end += count;
+            }
+        }
+    }
+
+    /**
+     * Blocks until the bytes up to the given position have arrived or the
+     * download ended.
+     *
+     * @param end position to wait for.
+     * @return number of bytes received.
+     * @throws IOException the download failed or the wait was interrupted.
+     */
+    private long waitFor(long end) throws IOException {
+        synchronized (progressLock) {
+            while (received < end && !complete) {
+                try {
+                    progressLock.wait();
+                } catch (InterruptedException e) {
+                    // keep the flag so callers such as Page.init() see the cancellation.
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for document data.");
+                }
+            }
+            if (error != null && received < end) {
+                throw error;
+            }
+            return received;
+        }
+    }
+
+    /**
+     * Gets the number of bytes downloaded so far.
+     *
+     * @return number of bytes that can be read without blocking.
+     */
+    public long getBytesReceived() {
+        synchronized (progressLock) {
+            return received;
+        }
+    }
+
+    /**
+     * Indicates the whole source stream was downloaded.
+     *
+     * @return true if the download ended.
+     */
+    public boolean isComplete() {
+        synchronized (progressLock) {
+            return complete;
+        }
+    }
+
+    /**
+     * Blocks until the whole source stream was downloaded.
+     *
+     * @throws IOException the download failed or the wait was interrupted.
+     */
+    public void waitForCompletion() throws IOException {
+        waitFor(Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets the length of the source stream given when the input was created,
+     * without waiting for the download.
+     *
+     * @return expected length, -1 if it isn't known.
+     */
+    public long getExpectedLength() {
+        return expectedLength;
+    }
+
+    public int read() throws IOException {
+        if (waitFor(position + 1) <= position) {
+            return -1;
+        }
+        byte[] single = new byte[1];
+        copy(position, single, 0, 1);
+        position++;
+        return single[0] & 0xFF;
+    }
+
+    public int read(byte[] buffer) throws IOException {
+        return read(buffer, 0, buffer.length);
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length <= 0) {
+            return 0;
+        }
+        // only wait for the first byte, hand out whatever else is there.
+        long available = waitFor(position + 1) - position;
+        if (available <= 0) {
+            return -1;
+        }
+        int count = (int) Math.min(length, available);
+        copy(position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    private void copy(long from, byte[] buffer, int offset, int length) throws IOException {
+        if (cacheFile != null) {
+            synchronized (cacheFile) {
+                cacheFile.seek(from);
+                cacheFile.readFully(buffer, offset, length);
+            }
+        } else {
+            while (length > 0) {
+                byte[] chunk;
+                synchronized (chunks) {
+                    chunk = chunks.get((int) (from >> CHUNK_SHIFT));
+                }
+                int chunkOffset = (int) (from & (CHUNK_SIZE - 1));
+                int count = Math.min(length, CHUNK_SIZE - chunkOffset);
+                System.arraycopy(chunk, chunkOffset, buffer, offset, count);
+                from += count;
+                offset += count;
+                length -= count;
+            }
+        }
+    }
+
+    /**
+     * Stops the download and releases the downloaded bytes.
+     */
+    public void close() throws IOException {
+        synchronized (progressLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!complete) {
+                // readers waiting for more bytes fail rather than see a short file.
+                error = new IOException("Document download was cancelled.");
+            }
+            complete = true;
+            progressLock.notifyAll();
+        }
+        // unblocks the download thread, which also closes it.
+        try {
+            source.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error closing document source stream.", e);
+        }
+        if (cacheFile != null) {
+            synchronized (cacheFile) {
+                cacheFile.close();
+            }
+        }
+    }
+
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, getBytesReceived() - position));
+    }
+
+    public void mark(int readLimit) {
+        markPosition = position;
+    }
+
+    public boolean markSupported() {
+        return true;
+    }
+
+    public void reset() throws IOException {
+        position = markPosition;
+    }
+
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        position += n;
+        return n;
+    }
+
+    //
+    // SeekableInput implementation
+    //
+
+    public void seekAbsolute(long absolutePosition) throws IOException {
+        position = absolutePosition < 0 ? 0 : absolutePosition;
+    }
+
+    public void seekRelative(long relativeOffset) throws IOException {
+        seekAbsolute(position + relativeOffset);
+    }
+
+    public void seekEnd() throws IOException {
+        position = getLength();
+    }
+
+    public long getAbsolutePosition() throws IOException {
+        return position;
+    }
+
+    public long getLength() throws IOException {
+        if (expectedLength >= 0) {
+            return expectedLength;
+        }
+        return waitFor(Long.MAX_VALUE);
+    }
+
+    public InputStream getInputStream() {
+        return this;
+    }
+
+    public void beginThreadAccess() {
+        lock.lock();
+    }
+
+    public void endThreadAccess() {
+        lock.unlock();
+    }
+}
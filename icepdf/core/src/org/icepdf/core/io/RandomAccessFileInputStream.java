@@ -16,6 +16,8 @@
 package org.icepdf.core.io;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -133,6 +135,33 @@ public class RandomAccessFileInputStream extends InputStream implements Seekable
         return this;
     }
 
+    /**
+     * Copies a part of the file to the given channel.  The bytes are moved by
+     * the file system where it can and aren't read in to the heap, the read
+     * position of this stream isn't changed.
+     *
+     * @param position file position to start copying from.
+     * @param count    number of bytes to copy.
+     * @param target   channel the bytes are written to.
+     * @return number of bytes copied, less than count if the file is shorter.
+     * @throws IOException error reading the file or writing the channel.
+     * @since 6.2
+     */
+    public long transferTo(long position, long count, WritableByteChannel target)
+            throws IOException {
+        FileChannel channel = m_RandomAccessFile.getChannel();
+        long transferred = 0;
+        while (transferred < count) {
+            long length = channel.transferTo(position + transferred,
+                    count - transferred, target);
+            if (length <= 0) {
+                break;
+            }
+            transferred += length;
+        }
+        return transferred;
+    }
+
     public void beginThreadAccess() {
         lock.lock();
 
@@ -0,0 +1,495 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects;
+
+import org.icepdf.core.io.SeekableInput;
+import org.icepdf.core.util.Defs;
+import org.icepdf.core.util.LazyObjectLoader;
+import org.icepdf.core.util.Library;
+import org.icepdf.core.util.Parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rebuilds the cross reference of a damaged document without parsing its
+ * objects.  The file is split in to chunks which are scanned concurrently
+ * for "N G obj" object headers, stream boundaries, trailer keywords and the
+ * /XRef, /ObjStm and /Catalog names, the only bytes ever looked at are the
+ * bytes of the file.  The chunks' findings are then merged in file order:
+ * headers found inside stream data are dropped, the last header of an
+ * object number wins and the objects of any object streams are added as
+ * compressed entries.
+ * <p/>
+ * The trailer is made up from all the trailer dictionaries and cross
+ * reference stream dictionaries in the file, later ones taking precedence,
+ * and the last /Catalog object is used as the root if the trailer doesn't
+ * lead to one.  Objects are then loaded lazily through the LazyObjectLoader
+ * as for any other document.
+ * <p/>
+ * The chunk size defaults to 4MB and can be set in bytes with the system
+ * property org.icepdf.core.recovery.chunkSize.
+ *
+ * @since 6.2
+ */
+public class CrossReferenceRecovery {
+
+    private static final Logger logger =
+            Logger.getLogger(CrossReferenceRecovery.class.toString());
+
+    private static int chunkSize;
+
+    static {
+        chunkSize = Defs.intProperty("org.icepdf.core.recovery.chunkSize", 4 * 1024 * 1024);
+        if (chunkSize < 4096) {
+            chunkSize = 4096;
+        }
+    }
+
+    // bytes read either side of a chunk so keywords on its edges are whole.
+    private static final int LOOK_BEHIND = 32;
+    private static final int LOOK_AHEAD = 16;
+
+    private static final int HEADER = 0;
+    private static final int STREAM = 1;
+    private static final int END_STREAM = 2;
+    private static final int TRAILER = 3;
+    private static final int XREF = 4;
+    private static final int OBJECT_STREAM = 5;
+    private static final int CATALOG = 6;
+
+    private static final byte[] OBJ = "obj".getBytes();
+    private static final byte[] STREAM_KEYWORD = "stream".getBytes();
+    private static final byte[] END_STREAM_KEYWORD = "endstream".getBytes();
+    private static final byte[] TRAILER_KEYWORD = "trailer".getBytes();
+    private static final byte[] XREF_NAME = "/XRef".getBytes();
+    private static final byte[] OBJECT_STREAM_NAME = "/ObjStm".getBytes();
+    private static final byte[] CATALOG_NAME = "/Catalog".getBytes();
+
+    private static final Name[] TRAILER_KEYS = {PTrailer.SIZE_KEY, PTrailer.ROOT_KEY,
+            PTrailer.ENCRYPT_KEY, PTrailer.INFO_KEY, PTrailer.ID_KEY};
+
+    /**
+     * Something found by the scan.
+     */
+    private static class Marker {
+        int type;
+        long position;
+        int objectNumber;
+        int generation;
+
+        Marker(int type, long position) {
+            this.type = type;
+            this.position = position;
+        }
+    }
+
+    private Library library;
+    private SeekableInput input;
+
+    private CrossReference crossReference;
+    private List<Long> trailers = new ArrayList<Long>();
+    private List<Reference> xrefStreams = new ArrayList<Reference>();
+    private List<Reference> objectStreams = new ArrayList<Reference>();
+    private List<Reference> catalogs = new ArrayList<Reference>();
+    private Marker lastHeader;
+
+    public CrossReferenceRecovery(Library library, SeekableInput input) {
+        this.library = library;
+        this.input = input;
+    }
+
+    /**
+     * Scans the document and builds its cross reference.  A LazyObjectLoader
+     * reading through the rebuilt cross reference is set on the library.
+     *
+     * @return trailer of the document, its root is null if no catalog was
+     * found.
+     * @throws IOException error reading the document.
+     */
+    public PTrailer recover() throws IOException {
+        List<Marker> markers = scan();
+        crossReference = new CrossReference();
+        merge(markers);
+        library.setLazyObjectLoader(new LazyObjectLoader(library, input, crossReference));
+
+        // later trailers are incremental updates and take precedence.
+        HashMap<Object, Object> trailerDictionary = new HashMap<Object, Object>();
+        int xrefIndex = 0;
+        for (Long trailerPosition : trailers) {
+            // cross reference streams are trailers too, keep them in file order.
+            while (xrefIndex < xrefStreams.size() &&
+                    getPosition(xrefStreams.get(xrefIndex)) < trailerPosition) {
+                addXRefStream(trailerDictionary, xrefStreams.get(xrefIndex++));
+            }
+            addTrailer(trailerDictionary, trailerPosition);
+        }
+        while (xrefIndex < xrefStreams.size()) {
+            addXRefStream(trailerDictionary, xrefStreams.get(xrefIndex++));
+        }
+        // the offsets of the previous sections are just as broken.
+        trailerDictionary.remove(PTrailer.PREV_KEY);
+        trailerDictionary.remove(PTrailer.XREFSTM_KEY);
+        PTrailer trailer = new PTrailer(library, trailerDictionary, crossReference, null);
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Recovered " + (markers.size()) + " markers, " + trailers.size() +
+                    " trailers, " + xrefStreams.size() + " xref streams and " +
+                    objectStreams.size() + " object streams.");
+        }
+        return trailer;
+    }
+
+    /**
+     * Adds the objects held in the document's object streams to the cross
+     * reference as compressed entries, objects found in the file itself are
+     * kept.  Object streams can be encrypted, so this must be called once
+     * the document's security manager is ready.
+     */
+    public void addObjectStreamEntries() {
+        for (Reference reference : objectStreams) {
+            Object object = library.getObject(reference);
+            if (!(object instanceof ObjectStream)) {
+                continue;
+            }
+            int[] objectNumbers = ((ObjectStream) object).getObjectNumbers();
+            if (objectNumbers == null) {
+                continue;
+            }
+            for (int i = 0; i < objectNumbers.length; i++) {
+                if (crossReference.getEntryForObject(objectNumbers[i]) == null) {
+                    crossReference.addCompressedEntry(objectNumbers[i], reference.getObjectNumber(), i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes sure the trailer leads to a catalog, pointing its root at the
+     * last /Catalog object in the file if it doesn't.
+     *
+     * @param trailer recovered trailer.
+     * @return the document's catalog, null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public Catalog findCatalog(PTrailer trailer) {
+        Catalog catalog = trailer.getRootCatalog();
+        for (int i = catalogs.size() - 1; catalog == null && i >= 0; i--) {
+            Object object = library.getObject(catalogs.get(i));
+            if (object instanceof Catalog) {
+                catalog = (Catalog) object;
+                trailer.getDictionary().put(PTrailer.ROOT_KEY, catalogs.get(i));
+            }
+        }
+        return catalog;
+    }
+
+    private long getPosition(Reference reference) {
+        CrossReference.Entry entry = crossReference.getEntryForObject(reference.getObjectNumber());
+        if (entry instanceof CrossReference.UsedEntry) {
+            return ((CrossReference.UsedEntry) entry).getFilePositionOfObject();
+        }
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addTrailer(HashMap<Object, Object> trailerDictionary, long position) {
+        try {
+            input.beginThreadAccess();
+            input.seekAbsolute(position + TRAILER_KEYWORD.length);
+            Parser parser = new Parser(input, Parser.PARSE_MODE_OBJECT_STREAM);
+            Object dictionary = parser.getObject(library);
+            if (dictionary instanceof Dictionary) {
+                dictionary = ((Dictionary) dictionary).getEntries();
+            }
+            if (dictionary instanceof HashMap) {
+                trailerDictionary.putAll((HashMap) dictionary);
+            }
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Error reading trailer at " + position, e);
+        } finally {
+            input.endThreadAccess();
+        }
+    }
+
+    private void addXRefStream(HashMap<Object, Object> trailerDictionary, Reference reference) {
+        Object object = library.getObject(reference);
+        if (object instanceof PTrailer) {
+            // only the trailer keys, the rest describe the stream itself.
+            HashMap<?, ?> dictionary = ((PTrailer) object).getDictionary();
+            for (Name key : TRAILER_KEYS) {
+                if (dictionary.containsKey(key)) {
+                    trailerDictionary.put(key, dictionary.get(key));
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans all the chunks of the file, the calling thread scans the first
+     * chunk and the others are handed to the library's image band pool, the
+     * scan is cpu work that never waits on other tasks just like image bands.
+     */
+    private List<Marker> scan() throws IOException {
+        final long length = input.getLength();
+        int chunks = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+        List<FutureTask<List<Marker>>> tasks =
+                new ArrayList<FutureTask<List<Marker>>>(chunks - 1);
+        for (int i = 1; i < chunks; i++) {
+            final long start = (long) i * chunkSize;
+            final long end = Math.min(length, start + chunkSize);
+            FutureTask<List<Marker>> task = new FutureTask<List<Marker>>(new Callable<List<Marker>>() {
+                public List<Marker> call() throws IOException {
+                    return scanChunk(start, end, length);
+                }
+            });
+            tasks.add(task);
+            if (!Library.executeImageBand(task)) {
+                task.run();
+            }
+        }
+        List<Marker> markers;
+        try {
+            markers = scanChunk(0, Math.min(length, chunkSize), length);
+            for (FutureTask<List<Marker>> task : tasks) {
+                markers.addAll(task.get());
+            }
+        } catch (InterruptedException e) {
+            cancel(tasks);
+            Thread.currentThread().interrupt();
+            throw new IOException("Cross reference recovery interrupted");
+        } catch (ExecutionException e) {
+            cancel(tasks);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause.getMessage());
+        } catch (IOException e) {
+            cancel(tasks);
+            throw e;
+        } catch (RuntimeException e) {
+            cancel(tasks);
+            throw e;
+        }
+        return markers;
+    }
+
+    private static void cancel(List<FutureTask<List<Marker>>> tasks) {
+        for (FutureTask<List<Marker>> task : tasks) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Scans the bytes of one chunk, only keywords starting inside the chunk
+     * are reported.
+     */
+    private List<Marker> scanChunk(long start, long end, long length) throws IOException {
+        long readStart = Math.max(0, start - LOOK_BEHIND);
+        long readEnd = Math.min(length, end + LOOK_AHEAD);
+        byte[] bytes = new byte[(int) (readEnd - readStart)];
+        int count = 0;
+        try {
+            input.beginThreadAccess();
+            input.seekAbsolute(readStart);
+            while (count < bytes.length) {
+                int read = input.read(bytes, count, bytes.length - count);
+                if (read <= 0) {
+                    break;
+                }
+                count += read;
+            }
+        } finally {
+            input.endThreadAccess();
+        }
+
+        List<Marker> markers = new ArrayList<Marker>();
+        int last = (int) Math.min(count, end - readStart);
+        for (int i = (int) (start - readStart); i < last; i++) {
+            byte b = bytes[i];
+            if (b == 'o') {
+                if (matches(bytes, count, i, OBJ) && !isRegular(bytes, count, i + OBJ.length)) {
+                    Marker header = parseHeader(bytes, i, readStart);
+                    if (header != null) {
+                        markers.add(header);
+                    }
+                }
+            } else if (b == 's') {
+                // the stream keyword is followed by an end of line.
+                if (matches(bytes, count, i, STREAM_KEYWORD) &&
+                        !isRegular(bytes, count, i - 1) &&
+                        i + STREAM_KEYWORD.length < count &&
+                        (bytes[i + STREAM_KEYWORD.length] == 13 ||
+                                bytes[i + STREAM_KEYWORD.length] == 10)) {
+                    markers.add(new Marker(STREAM, readStart + i));
+                }
+            } else if (b == 'e') {
+                if (matches(bytes, count, i, END_STREAM_KEYWORD) &&
+                        !isRegular(bytes, count, i + END_STREAM_KEYWORD.length)) {
+                    markers.add(new Marker(END_STREAM, readStart + i));
+                }
+            } else if (b == 't') {
+                if (matches(bytes, count, i, TRAILER_KEYWORD) &&
+                        !isRegular(bytes, count, i - 1) &&
+                        !isRegular(bytes, count, i + TRAILER_KEYWORD.length)) {
+                    markers.add(new Marker(TRAILER, readStart + i));
+                }
+            } else if (b == '/') {
+                if (matches(bytes, count, i, XREF_NAME) &&
+                        !isRegular(bytes, count, i + XREF_NAME.length)) {
+                    markers.add(new Marker(XREF, readStart + i));
+                } else if (matches(bytes, count, i, OBJECT_STREAM_NAME) &&
+                        !isRegular(bytes, count, i + OBJECT_STREAM_NAME.length)) {
+                    markers.add(new Marker(OBJECT_STREAM, readStart + i));
+                } else if (matches(bytes, count, i, CATALOG_NAME) &&
+                        !isRegular(bytes, count, i + CATALOG_NAME.length)) {
+                    markers.add(new Marker(CATALOG, readStart + i));
+                }
+            }
+        }
+        return markers;
+    }
+
+    /**
+     * Reads the object and generation numbers in front of an obj keyword.
+     */
+    private static Marker parseHeader(byte[] bytes, int obj, long readStart) {
+        int i = obj - 1;
+        if (i < 0 || !Parser.isWhitespace((char) bytes[i])) {
+            return null;
+        }
+        while (i >= 0 && Parser.isWhitespace((char) bytes[i])) {
+            i--;
+        }
+        long generation = 0;
+        long multiplier = 1;
+        int digits = 0;
+        while (i >= 0 && bytes[i] >= '0' && bytes[i] <= '9' && digits < 5) {
+            generation += (bytes[i--] - '0') * multiplier;
+            multiplier *= 10;
+            digits++;
+        }
+        if (digits == 0 || i < 0 || !Parser.isWhitespace((char) bytes[i])) {
+            return null;
+        }
+        while (i >= 0 && Parser.isWhitespace((char) bytes[i])) {
+            i--;
+        }
+        long objectNumber = 0;
+        multiplier = 1;
+        digits = 0;
+        while (i >= 0 && bytes[i] >= '0' && bytes[i] <= '9' && digits < 10) {
+            objectNumber += (bytes[i--] - '0') * multiplier;
+            multiplier *= 10;
+            digits++;
+        }
+        // the number has to be preceded by white space, a delimiter or the start of the file.
+        if (digits == 0 || objectNumber > Integer.MAX_VALUE ||
+                (i >= 0 && isRegular(bytes, bytes.length, i)) || (i < 0 && readStart > 0)) {
+            return null;
+        }
+        Marker header = new Marker(HEADER, readStart + i + 1);
+        header.objectNumber = (int) objectNumber;
+        header.generation = (int) generation;
+        return header;
+    }
+
+    /**
+     * Merges the markers in file order, markers between a stream keyword and
+     * its endstream are part of the stream's data and are dropped.  A stream
+     * without an endstream before the next stream is taken as truncated and
+     * the markers after it are kept.
+     */
+    private void merge(List<Marker> markers) {
+        List<Marker> pending = new ArrayList<Marker>();
+        boolean inStream = false;
+        for (Marker marker : markers) {
+            if (marker.type == STREAM) {
+                if (inStream) {
+                    commit(pending);
+                }
+                inStream = true;
+            } else if (marker.type == END_STREAM) {
+                pending.clear();
+                inStream = false;
+            } else if (inStream) {
+                pending.add(marker);
+            } else {
+                add(marker);
+            }
+        }
+        commit(pending);
+    }
+
+    private void commit(List<Marker> pending) {
+        for (Marker marker : pending) {
+            add(marker);
+        }
+        pending.clear();
+    }
+
+    private void add(Marker marker) {
+        if (marker.type == HEADER) {
+            crossReference.addUsedEntry(marker.objectNumber, marker.position, marker.generation);
+            lastHeader = marker;
+        } else if (marker.type == TRAILER) {
+            trailers.add(marker.position);
+        } else if (lastHeader != null) {
+            Reference reference = new Reference(lastHeader.objectNumber, lastHeader.generation);
+            List<Reference> references = marker.type == XREF ? xrefStreams :
+                    marker.type == OBJECT_STREAM ? objectStreams : catalogs;
+            if (references.isEmpty() || !references.get(references.size() - 1).equals(reference)) {
+                references.add(reference);
+            }
+        }
+    }
+
+    private static boolean matches(byte[] bytes, int count, int offset, byte[] keyword) {
+        if (offset + keyword.length > count) {
+            return false;
+        }
+        for (int i = 1; i < keyword.length; i++) {
+            if (bytes[offset + i] != keyword[i]) {
+                return false;
+            }
+        }
+        return bytes[offset] == keyword[0];
+    }
+
+    /**
+     * Regular characters are anything but white space and delimiters, the
+     * end of the data counts as a delimiter.
+     */
+    private static boolean isRegular(byte[] bytes, int count, int offset) {
+        if (offset < 0 || offset >= count) {
+            return false;
+        }
+        char c = (char) (bytes[offset] & 0xFF);
+        return !(Parser.isWhitespace(c) || c == '[' || c == ']' || c == '(' || c == ')' ||
+                c == '<' || c == '>' || c == '{' || c == '}' || c == '/' || c == '%');
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects;
+
+import org.icepdf.core.util.Library;
+
+import java.util.HashMap;
+import java.util.logging.Logger;
+
+import static org.icepdf.core.util.TestChecks.check;
+
+/**
+ * Testing of the cross reference recovery scan.  Documents with a broken
+ * startxref are built with object headers and stream keywords placed
+ * across the boundaries of the smallest scan chunk, 4096 bytes, and then
+ * opened, which must rebuild the cross reference from the scan.
+ *
+ * @since 6.2
+ */
+public class CrossReferenceRecoveryTest {
+
+    private static final Logger logger =
+            Logger.getLogger(CrossReferenceRecoveryTest.class.toString());
+
+    private static final int CHUNK = 4096;
+
+    private static final String CONTENT_START = "BT /F1 12 Tf 72 720 Td (recovered) Tj ET\n";
+    // a header look alike in stream data which the merge must drop.
+    private static final String FAKE_HEADER = "% 9 0 obj << /Type /Catalog >>\n";
+
+    public static void main(String[] args) throws Exception {
+        // must be set before the recovery class is loaded.
+        System.setProperty("org.icepdf.core.recovery.chunkSize", String.valueOf(CHUNK));
+        try {
+            CrossReferenceRecoveryTest test = new CrossReferenceRecoveryTest();
+            test.testChunkBoundaries(true);
+            test.testChunkBoundaries(false);
+            logger.info("CrossReferenceRecoveryTest passed");
+        } finally {
+            Library.shutdownThreadPool();
+        }
+    }
+
+    /**
+     * Opens a document whose page object's "obj" keyword straddles the first
+     * chunk boundary, whose content stream's header numbers and keyword are
+     * split by the second and whose "endstream" straddles the third.
+     *
+     * @param withTrailer false to leave out the trailer so that the catalog
+     *                    has to be found by type.
+     */
+    public void testChunkBoundaries(boolean withTrailer) throws Exception {
+        StringBuilder content = new StringBuilder(CONTENT_START);
+        content.append(FAKE_HEADER);
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        pdf.append("1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+        pdf.append("2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n");
+        // "3 0 o|bj"
+        padTo(pdf, CHUNK - "3 0 o".length());
+        pdf.append("3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] " +
+                "/Contents 4 0 R /Resources << /Font << /F1 5 0 R >> >> >>\nendobj\n");
+        // "4 0| obj"
+        padTo(pdf, 2 * CHUNK - "4 0".length());
+        pdf.append("4 0 obj\n");
+        // stream data up to "end|stream", the content is padded with comments.
+        int dataStart = pdf.length() + ("<< /Length 00000 >>\nstream\n").length();
+        int dataEnd = 3 * CHUNK - "\nend".length();
+        int remaining;
+        while ((remaining = dataEnd - dataStart - content.length()) > 0) {
+            int line = Math.min(80, remaining);
+            if (line > 1) {
+                content.append('%');
+                for (int i = 2; i < line; i++) {
+                    content.append('x');
+                }
+            }
+            content.append('\n');
+        }
+        String length = String.valueOf(content.length());
+        while (length.length() < 5) {
+            length = "0" + length;
+        }
+        pdf.append("<< /Length ").append(length).append(" >>\nstream\n");
+        check(pdf.length() == dataStart, "stream data offset " + pdf.length());
+        pdf.append(content);
+        pdf.append("\nendstream\nendobj\n");
+        check(pdf.indexOf("endstream", dataStart) == 3 * CHUNK - "end".length(),
+                "endstream offset " + pdf.indexOf("endstream", dataStart));
+        pdf.append("5 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>\nendobj\n");
+        pdf.append("xref\n0 6\nbroken\n");
+        if (withTrailer) {
+            pdf.append("trailer\n<< /Size 6 /Root 1 0 R >>\n");
+        }
+        // points nowhere near the xref.
+        pdf.append("startxref\n123456789\n%%EOF\n");
+
+        Document document = new Document();
+        try {
+            document.setByteArray(pdf.toString().getBytes("ISO-8859-1"), 0, pdf.length(), null);
+            check(document.getNumberOfPages() == 1, "page count " + document.getNumberOfPages());
+            Page page = document.getPageTree().getPage(0);
+            check(page.getMediaBox().getWidth() == 612, "media box " + page.getMediaBox());
+            String[] decoded = page.getDecodedContentSteam();
+            check(decoded != null && decoded.length == 1, "content streams");
+            check(decoded[0].equals(content.toString()), "content stream data");
+            Library library = document.getCatalog().getLibrary();
+            check(library.getObject(new Reference(9, 0)) == null, "header in stream data was kept");
+            Object font = library.getObject(new Reference(5, 0));
+            check(font instanceof HashMap || font instanceof Dictionary,
+                    "font object " + font);
+        } finally {
+            document.dispose();
+        }
+    }
+
+    private static void padTo(StringBuilder pdf, int offset) {
+        check(offset - pdf.length() >= 2, "padding " + pdf.length() + " to " + offset);
+        pdf.append('%');
+        while (pdf.length() < offset - 1) {
+            pdf.append('x');
+        }
+        pdf.append('\n');
+    }
+}
@@ -34,12 +34,17 @@ import org.icepdf.core.util.Parser;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -80,6 +85,8 @@ public class Document {
 
     private static final String INCREMENTAL_UPDATER =
             "org.icepdf.core.util.IncrementalUpdater";
+    private static final String FULL_UPDATER =
+            "org.icepdf.core.util.FullUpdater";
     public static boolean foundIncrementalUpdater;
 
     static {
@@ -123,10 +130,23 @@ public class Document {
     private static boolean isCachingEnabled;
     private static boolean isFileCachingEnabled;
     private static int fileCacheMaxSize;
+    // open url documents while they are downloaded.
+    private static boolean isProgressiveLoadingEnabled;
+
+    // linearization dictionary must be in the first object, within the first 1K.
+    private static final int LINEARIZATION_SCAN_LENGTH = 1024;
+    private static final byte[] LINEARIZED = "/Linearized".getBytes();
+    private static final byte[] ENDOBJ = "endobj".getBytes();
 
     // repository of all PDF object associated with this document.
     private Library library = null;
-    private SeekableInput documentSeekableInput;
+    // volatile, a viewer polls the download of a document opened with setUrl().
+    private volatile SeekableInput documentSeekableInput;
+
+    // linearization parameters, null if the document isn't linearized.
+    private LinearizationDictionary linearization;
+    // catalog initialization still reading a progressively loaded document.
+    private FutureTask<Object> catalogInit;
 
     static {
         // sets if file caching is enabled or disabled.
@@ -137,6 +157,8 @@ public class Document {
         isFileCachingEnabled = Defs.sysPropertyBoolean("org.icepdf.core.filecache.enabled",
                 true);
         fileCacheMaxSize = Defs.intProperty("org.icepdf.core.filecache.size", 200000000);
+        isProgressiveLoadingEnabled = Defs.sysPropertyBoolean("org.icepdf.core.progressive.enabled",
+                true);
     }
 
     /**
@@ -207,7 +229,10 @@ public class Document {
         File file = new File(filepath);
         FileInputStream inputStream = new FileInputStream(file);
         int fileLength = inputStream.available();
-        if (isFileCachingEnabled && file.length() > 0 && fileLength <= fileCacheMaxSize) {
+        // a linearized file is read in place so its first page can be shown
+        // without first copying the whole file.
+        if (isFileCachingEnabled && file.length() > 0 && fileLength <= fileCacheMaxSize &&
+                !isLinearized(inputStream)) {
             // copy the file contents into byte[], for direct memory mapping.
             byte[] data = new byte[fileLength];
             inputStream.read(data);
@@ -222,11 +247,38 @@ public class Document {
         }
     }
 
+    /**
+     * Checks if the first object of a file is a linearization dictionary,
+     * leaving the stream at the start of the file.
+     *
+     * @param inputStream file to check.
+     * @return true if the file looks linearized.
+     * @throws IOException error reading the file.
+     */
+    private static boolean isLinearized(FileInputStream inputStream) throws IOException {
+        byte[] head = new byte[LINEARIZATION_SCAN_LENGTH];
+        int length = 0;
+        int read;
+        while (length < head.length &&
+                (read = inputStream.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        inputStream.getChannel().position(0);
+        return findLinearizationEnd(head, length) > 0;
+    }
+
     /**
      * Load a PDF file from the given URL and initiates the document's Catalog.
      * If the system property org.icepdf.core.streamcache.enabled=true, the file
      * will be cached to a temp file; otherwise, the complete document stream will
      * be stored in memory.
+     * <p/>
+     * Unless the system property org.icepdf.core.progressive.enabled=false,
+     * the document is opened while it is still being downloaded.  For a
+     * linearized document this method returns once the first page can be
+     * read and the rest of the document, the page tree included, keeps
+     * loading in the background, see #getPageTree().  Other documents are
+     * only opened once the end of the file arrived.
      *
      * @param url location of file.
      * @throws PDFException         an invalid file encoding.
@@ -246,7 +298,24 @@ public class Document {
 
             String pathOrURL = url.toString();
 
-            setInputStream(in, pathOrURL);
+            if (isProgressiveLoadingEnabled) {
+                File tempFile = null;
+                if (isCachingEnabled) {
+                    tempFile = File.createTempFile(
+                            "ICEpdfTempFile" + getClass().hashCode(),
+                            ".tmp");
+                    // Delete temp file on exit
+                    tempFile.deleteOnExit();
+                    setDocumentCachedFilePath(tempFile.getAbsolutePath());
+                }
+                ProgressiveSeekableInput progressiveInput = new ProgressiveSeekableInput(
+                        in, urlConnection.getContentLength(), tempFile);
+                // the progressive input now owns the stream and closes it.
+                in = null;
+                setInputStream((SeekableInput) progressiveInput, pathOrURL);
+            } else {
+                setInputStream(in, pathOrURL);
+            }
         } finally {
             if (in != null) {
                 in.close();
@@ -437,7 +506,13 @@ public class Document {
                 // initiate the catalog, build the outline for the document
                 // this is the best test to see if everything is in order.
                 if (catalog != null) {
-                    catalog.init();
+                    if (linearization != null && in instanceof ProgressiveSeekableInput &&
+                            !((ProgressiveSeekableInput) in).isComplete()) {
+                        // the page tree usually comes last, show the first page meanwhile.
+                        initCatalogInBackground((ProgressiveSeekableInput) in);
+                    } else {
+                        catalog.init();
+                    }
                 }
 
                 loaded = true;
@@ -461,6 +536,7 @@ public class Document {
                 }
                 library = new Library();
                 pTrailer = null;
+                linearization = null;
 
                 in.seekAbsolute(0L);
                 loadDocumentViaLinearTraversal(in);
@@ -504,25 +580,25 @@ public class Document {
             throws PDFException, PDFSecurityException, IOException {
         //if( true ) throw new RuntimeException("Fallback to linear traversal");
         int offset = skipPastAnyPrefixJunk(in);
-        long xrefPosition = getInitialCrossReferencePosition(in) + offset;
         PTrailer documentTrailer = null;
+        // a linearized document is read from the first page cross reference
+        // that follows the linearization dictionary, the main cross reference
+        // at the end of the file is then only read through the trailer's Prev.
+        long xrefPosition = loadLinearization(in, offset);
         if (xrefPosition > 0L) {
-            in.seekAbsolute(xrefPosition);
-
-            Parser parser = new Parser(in);
-            Object obj = parser.getObject(library);
-            if (obj instanceof PObject)
-                obj = ((PObject) obj).getObject();
-            PTrailer trailer = (PTrailer) obj;
-            //PTrailer trailer = (PTrailer) parser.getObject( library );
-            if (trailer == null)
-                throw new RuntimeException("Could not find trailer");
-            if (trailer.getPrimaryCrossReference() == null)
-                throw new RuntimeException("Could not find cross reference");
-            trailer.setPosition(xrefPosition);
-
-            documentTrailer = trailer;
-            // any prev/next trails are loaded lazily
+            try {
+                documentTrailer = loadTrailer(in, xrefPosition);
+            } catch (RuntimeException e) {
+                logger.log(Level.FINE, "Error loading first page cross reference.", e);
+                linearization = null;
+            }
+        }
+        if (documentTrailer == null) {
+            xrefPosition = getInitialCrossReferencePosition(in) + offset;
+            if (xrefPosition > 0L) {
+                documentTrailer = loadTrailer(in, xrefPosition);
+                // any prev/next trails are loaded lazily
+            }
         }
         if (documentTrailer == null)
             throw new RuntimeException("Could not find document trailer");
@@ -551,6 +627,204 @@ public class Document {
         configurePermissions();
     }
 
+    private PTrailer loadTrailer(SeekableInput in, long xrefPosition) throws PDFException, IOException {
+        in.seekAbsolute(xrefPosition);
+
+        Parser parser = new Parser(in);
+        Object obj = parser.getObject(library);
+        if (obj instanceof PObject)
+            obj = ((PObject) obj).getObject();
+        if (!(obj instanceof PTrailer))
+            throw new RuntimeException("Could not find trailer");
+        PTrailer trailer = (PTrailer) obj;
+        if (trailer.getPrimaryCrossReference() == null)
+            throw new RuntimeException("Could not find cross reference");
+        trailer.setPosition(xrefPosition);
+        return trailer;
+    }
+
+    /**
+     * Reads the linearization dictionary if the document's first object is
+     * one and it is valid for the length of the input.
+     *
+     * @param in     input to read.
+     * @param offset position of the document header.
+     * @return position of the first page cross reference, -1 if the document
+     * isn't linearized.
+     * @throws PDFException error parsing the dictionary.
+     * @throws IOException  error reading the input.
+     */
+    private long loadLinearization(SeekableInput in, int offset) throws PDFException, IOException {
+        byte[] head = new byte[LINEARIZATION_SCAN_LENGTH];
+        in.seekAbsolute(offset);
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        int end = findLinearizationEnd(head, length);
+        if (end < 0) {
+            return -1;
+        }
+        in.seekAbsolute(offset);
+        Parser parser = new Parser(in);
+        Object obj = parser.getObject(library);
+        if (obj instanceof PObject) {
+            obj = ((PObject) obj).getObject();
+        }
+        if (!(obj instanceof HashMap) ||
+                !LinearizationDictionary.isLinearizationDictionary((HashMap<?, ?>) obj)) {
+            return -1;
+        }
+        LinearizationDictionary dictionary = new LinearizationDictionary(library, (HashMap<?, ?>) obj);
+        // an update appended to the file makes the linearization useless,
+        // note that the input's length may only be known once it was all read.
+        if (!dictionary.isValid(in.getLength() - offset)) {
+            return -1;
+        }
+        linearization = dictionary;
+        return offset + end;
+    }
+
+    /**
+     * Finds the end of the document's first object if it holds a
+     * linearization dictionary.
+     *
+     * @param head   first bytes of the document.
+     * @param length number of bytes in head.
+     * @return position of the first token after the object, -1 if the first
+     * object isn't a linearization dictionary.
+     */
+    private static int findLinearizationEnd(byte[] head, int length) {
+        int start = indexOf(head, length, LINEARIZED, 0);
+        if (start < 0) {
+            return -1;
+        }
+        // the first endobj must close the dictionary.
+        int end = indexOf(head, length, ENDOBJ, 0);
+        if (end < start) {
+            return -1;
+        }
+        end += ENDOBJ.length;
+        while (end < length && Parser.isWhitespace((char) (head[end] & 0xFF))) {
+            end++;
+        }
+        return end < length ? end : -1;
+    }
+
+    private static int indexOf(byte[] data, int length, byte[] pattern, int from) {
+        int last = length - pattern.length;
+        for (int i = from; i <= last; i++) {
+            int j = 0;
+            while (j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Initializes the catalog on the common thread pool once the download of
+     * the document completed, callers that need the page tree wait for it
+     * with waitForCatalog().  Waiting for the download first keeps the init
+     * from blocking in the middle of a read, holding the input's lock while
+     * the first page is read.
+     *
+     * @param in input still being downloaded.
+     */
+    private void initCatalogInBackground(final ProgressiveSeekableInput in) {
+        final Catalog documentCatalog = catalog;
+        catalogInit = new FutureTask<Object>(new Callable<Object>() {
+            public Object call() throws Exception {
+                in.waitForCompletion();
+                documentCatalog.init();
+                return null;
+            }
+        });
+        Library.execute(catalogInit);
+    }
+
+    /**
+     * Indicates the catalog and page tree were initialized.
+     *
+     * @return false while a progressively loaded document's page tree is read.
+     */
+    private boolean isCatalogReady() {
+        FutureTask<Object> init = catalogInit;
+        return init == null || init.isDone();
+    }
+
+    /**
+     * Waits for the catalog initialization of a progressively loaded
+     * document, if any.
+     */
+    private void waitForCatalog() {
+        FutureTask<Object> init = catalogInit;
+        if (init == null) {
+            return;
+        }
+        // runs the init on this thread if the pool hasn't started it yet.
+        init.run();
+        try {
+            init.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Error initializing document catalog.", e.getCause());
+        } catch (CancellationException e) {
+            // document was disposed.
+        }
+    }
+
+    /**
+     * Indicates the page tree was read.  A linearized document opened from a
+     * URL reads its page tree once the download completed, until then only
+     * the first page and the number of pages are known.
+     *
+     * @return true if #getPageTree() returns without waiting, otherwise false.
+     */
+    public boolean isPageTreeLoaded() {
+        return isCatalogReady();
+    }
+
+    /**
+     * Indicates the specified page can be read without waiting for the page
+     * tree, views use it to leave the pages of a downloading document blank
+     * rather than block.
+     *
+     * @param pageNumber zero-based page number.
+     * @return true if #getPage(int) returns without waiting for the page tree.
+     */
+    public boolean isPageAvailable(int pageNumber) {
+        return isCatalogReady() || (pageNumber == 0 && linearization != null);
+    }
+
+    /**
+     * Gets a page, the first page of a linearized document is read directly
+     * while the page tree is still loading.  Other pages wait for the page
+     * tree, see #isPageAvailable(int).
+     *
+     * @param pageNumber zero-based page number.
+     * @return page, null if not found.
+     */
+    public Page getPage(int pageNumber) {
+        if (pageNumber == 0 && linearization != null && !isCatalogReady()) {
+            Object page = library.getObject(
+                    new Reference(linearization.getFirstPageObjectNumber(), 0));
+            if (page instanceof Page) {
+                // linearization requires inheritable attributes on each page.
+                ((Page) page).setInheritedAttributesPushedDown(true);
+                ((Page) page).setPageIndex(0);
+                return (Page) page;
+            }
+        }
+        waitForCatalog();
+        return catalog.getPageTree().getPage(pageNumber);
+    }
+
     private long getInitialCrossReferencePosition(SeekableInput in) throws IOException {
         in.seekEnd();
 
@@ -588,9 +862,10 @@ public class Document {
     }
 
     /**
-     * Uitily method for parsing a PDF documents object.  This should only be
-     * called when the xref lookup fails or the file is being loaded
-     * via byte input because file caching is not enabled.
+     * Uitily method for recovering a PDF documents objects.  This should only
+     * be called when the xref lookup fails.  The cross reference is rebuilt
+     * from a scan of the file's bytes and the objects are then loaded lazily
+     * through it, see CrossReferenceRecovery.
      *
      * @param seekableInput stream representing whole pdf document
      * @throws PDFException         an invalid stream or file encoding
@@ -600,174 +875,25 @@ public class Document {
     private void loadDocumentViaLinearTraversal(SeekableInput seekableInput)
             throws PDFException, PDFSecurityException, IOException {
 
-        InputStream in = seekableInput.getInputStream();
-
-        int objectsOffset = skipPastAnyPrefixJunk(in);
-
         library.setLinearTraversal();
 
-        // NOTE: when we implement linerized document we should be able to
-        //       rework this method.
-        Parser parser = new Parser(in);
-
-        // document Trailer, holds encryption info
-        PTrailer documentTrailer = null;
-
-        // Loop through all objects that where parsed from the data stream
-        List<PObject> documentObjects = new ArrayList<PObject>();
-        Object pdfObject;
-        while (true) {
-            // parse all of the objects in the stream,  objects are added
-            // to the library object.
-            pdfObject = parser.getObject(library);
-
-            // eof or io error result in break
-            if (pdfObject == null) {
-                break;
-            }
-
-            // unwrap pObject for catalog and ptrailer lookups.
-            if (pdfObject instanceof PObject) {
-                PObject tmp = (PObject) pdfObject;
-                // apply the offset value of the object.
-                tmp.setLinearTraversalOffset(objectsOffset + parser.getLinearTraversalOffset());
-                // store reference so we can rebuild the xref table.
-                documentObjects.add(tmp);
-                Object obj = tmp.getObject();
-                if (obj != null)
-                    pdfObject = obj;
-            }
-
-            // find the catalog which has information on outlines
-            // which is need by the gui
-            if (pdfObject instanceof Catalog) {
-                catalog = (Catalog) pdfObject;
-            }
-
-            // Find the trailer object so that we can get the encryption information
-            // trailer information is not a PObject and thus there should
-            if (pdfObject instanceof PTrailer) {
-                if (documentTrailer == null) {
-                    documentTrailer = (PTrailer) pdfObject;
-                } else {
-                    // add more trailer data to the original
-                    PTrailer nextTrailer = (PTrailer) pdfObject;
-                    if (nextTrailer.getPrev() > 0) {
-                        documentTrailer.addNextTrailer(nextTrailer);
-                        documentTrailer = nextTrailer;
-                    }
-                }
-            }
-        }
-
-        // apply the new object offset values so that the object can be retrieved
-        // using the actual index in the file
-        CrossReference refs = documentTrailer.getPrimaryCrossReference();
-        Object entry;
-        for (PObject pObject : documentObjects) {
-            entry = refs.getEntryForObject(pObject.getReference().getObjectNumber());
-            if (entry != null && entry instanceof CrossReference.UsedEntry) {
-                ((CrossReference.UsedEntry) entry).setFilePositionOfObject(
-                        pObject.getLinearTraversalOffset());
-            } else {
-                refs.addUsedEntry(pObject.getReference().getObjectNumber(),
-                        pObject.getLinearTraversalOffset(),
-                        pObject.getReference().getGenerationNumber());
-            }
-        }
-
-        if (logger.isLoggable(Level.FINER)) {
-            for (PObject pobjects : documentObjects) {
-                // display object information in debug mode
-                logger.finer(pobjects.getClass().getName() + " " +
-                        pobjects.getLinearTraversalOffset() + " " +
-                        pobjects);
-            }
-        }
-
+        CrossReferenceRecovery recovery = new CrossReferenceRecovery(library, seekableInput);
+        PTrailer documentTrailer = recovery.recover();
+        pTrailer = documentTrailer;
 
-        // The LazyObjectLoader is used for both reading from a SeekableInput,
-        //  and also accessing ObjectStreams.
-        // So, even with linear traversal, we still need it for PDF 1.5 documents
-        if (documentTrailer != null) {
-            LazyObjectLoader lol = new LazyObjectLoader(
-                    library, seekableInput, documentTrailer.getPrimaryCrossReference());
-            library.setLazyObjectLoader(lol);
-        }
+        // object streams may be encrypted, so setup security before reading them.
+        boolean madeSecurityManager = makeSecurityManager(documentTrailer);
+        if (madeSecurityManager)
+            attemptAuthorizeSecurityManager();
 
-        pTrailer = documentTrailer;
+        recovery.addObjectStreamEntries();
+        catalog = recovery.findCatalog(documentTrailer);
         library.setCatalog(catalog);
 
-        // Add Document information object to catalog
-        if (documentTrailer != null) {
-            boolean madeSecurityManager = makeSecurityManager(documentTrailer);
-            if (madeSecurityManager)
-                attemptAuthorizeSecurityManager();
-        }
-
         // setup a signature handler
         configurePermissions();
     }
 
-    /**
-     * Typically, if we're doing a linear traversal, it's because the PDF file
-     * is corrupted, usually by junk being appended to it, or the ending
-     * being truncated, or, in this case, from junk being inserted into the
-     * beginning of the file, skewing all the xref object offsets.
-     * <p/>
-     * We're going to look for the "%PDF-1." string that most PDF files start
-     * with. If we do find it, then leave the InputStream after the next
-     * whitespace, else rewind back to the beginning, in case the file was
-     * never encoded with the PDF version comment.
-     *
-     * @param in InputStream derived from SeekableInput.getInputStream()
-     */
-    private int skipPastAnyPrefixJunk(InputStream in) {
-        if (!in.markSupported())
-            return 0;
-        try {
-            final int scanLength = 2048;
-            final String scanFor = "%PDF-";
-            final int scanForLength = scanFor.length();
-            int scanForIndex = 0;
-            boolean scanForWhiteSpace = false;
-            in.mark(scanLength);
-            for (int i = 0; i < scanLength; i++) {
-                int data = in.read();
-                if (data < 0) {
-                    in.reset();
-                    return 0;
-                }
-                // scan to the end of the comment line and return the offset
-                if (scanForWhiteSpace) {
-                    scanForIndex++;
-                    if (Parser.isWhitespace((char) data)) {
-                        return scanForIndex;
-                    }
-                } else {
-                    if (data == scanFor.charAt(scanForIndex)) {
-                        scanForIndex++;
-                        if (scanForIndex == scanForLength) {
-                            // Now read until we find white space
-                            scanForWhiteSpace = true;
-                        }
-                    } else
-                        scanForIndex = 0;
-                }
-            }
-            // Searched through scanLength number of bytes and didn't find it,
-            //  so reset, in case it was never there to find
-            in.reset();
-        } catch (IOException e) {
-            try {
-                in.reset();
-            } catch (IOException e2) {
-                // forget about it.
-            }
-        }
-        return 0;
-    }
-
     /**
      * Skips junk and keeps track of the offset so that later corrections can
      * be made for object seeks.
@@ -925,7 +1051,7 @@ public class Document {
      * @see #getPageDimension(int, float, float)
      */
     public PDimension getPageDimension(int pageNumber, float userRotation) {
-        Page page = catalog.getPageTree().getPage(pageNumber);
+        Page page = getPage(pageNumber);
         return page.getSize(userRotation);
     }
 
@@ -943,7 +1069,7 @@ public class Document {
      * @see #getPageDimension(int, float)
      */
     public PDimension getPageDimension(int pageNumber, float userRotation, float userZoom){
-        Page page = catalog.getPageTree().getPage(pageNumber);
+        Page page = getPage(pageNumber);
         if (page != null) {
             return page.getSize(userRotation, userZoom);
         } else {
@@ -996,6 +1122,9 @@ public class Document {
      */
     public int getNumberOfPages() {
         try {
+            if (linearization != null && !isCatalogReady()) {
+                return linearization.getNumberOfPages();
+            }
             return catalog.getPageTree().getNumberOfPages();
         } catch (Exception e) {
             logger.log(Level.FINE, "Error getting number of pages.", e);
@@ -1019,7 +1148,7 @@ public class Document {
      */
     public void paintPage(int pageNumber, Graphics g, final int renderHintType,
                           final int pageBoundary, float userRotation, float userZoom) throws InterruptedException {
-        Page page = catalog.getPageTree().getPage(pageNumber);
+        Page page = getPage(pageNumber);
         page.init();
         PDimension sz = page.getSize(userRotation, userZoom);
         int pageWidth = (int) sz.getWidth();
@@ -1036,6 +1165,10 @@ public class Document {
      */
     public void dispose() {
 
+        if (catalogInit != null) {
+            catalogInit.cancel(true);
+        }
+
         if (documentSeekableInput != null) {
             try {
                 documentSeekableInput.close();
@@ -1060,6 +1193,10 @@ public class Document {
      * and write it to the provided OutputStream.
      * The OutputStream is not flushed or closed, in case this method's
      * caller requires otherwise.
+     * <p/>
+     * A document opened from a file and written to a FileOutputStream is
+     * copied by the file system without the bytes passing through the heap,
+     * any other combination is copied through a large buffer.
      *
      * @param out OutputStream to which the PDF file bytes are written.
      * @return The length of the PDF file copied
@@ -1067,12 +1204,25 @@ public class Document {
      */
     public long writeToOutputStream(OutputStream out) throws IOException {
         long documentLength = documentSeekableInput.getLength();
+        if (documentSeekableInput instanceof RandomAccessFileInputStream &&
+                out instanceof FileOutputStream) {
+            documentSeekableInput.beginThreadAccess();
+            try {
+                long copied = ((RandomAccessFileInputStream) documentSeekableInput).transferTo(
+                        0L, documentLength, ((FileOutputStream) out).getChannel());
+                if (copied != documentLength) {
+                    throw new EOFException("Copied " + copied + " of " +
+                            documentLength + " document bytes.");
+                }
+                return documentLength;
+            } finally {
+                documentSeekableInput.endThreadAccess();
+            }
+        }
         SeekableInputConstrainedWrapper wrapper = new SeekableInputConstrainedWrapper(
                 documentSeekableInput, 0L, documentLength);
         try {
-
-
-            byte[] buffer = new byte[4096];
+            byte[] buffer = new byte[64 * 1024];
             int length;
             while ((length = wrapper.read(buffer, 0, buffer.length)) > 0) {
                 out.write(buffer, 0, length);
@@ -1117,6 +1267,43 @@ public class Document {
         return documentLength;
     }
 
+    /**
+     * Writes the document, edits included, as a new optimized PDF file to the
+     * specified OutputStream.  Unlike saveToOutputStream(OutputStream out) the
+     * pre-existing PDF file isn't copied, only the objects the document still
+     * uses are written, without the dead revisions of earlier incremental
+     * updates, with duplicate streams written once and with the other objects
+     * renumbered and compressed in to object streams.
+     * <p/>
+     * Encrypted documents, or documents without PDF write support on the
+     * class path, can't be rewritten and are saved by
+     * saveToOutputStream(OutputStream out) instead.
+     *
+     * @param out OutputStream to which the PDF file bytes are written.
+     * @return The length of the PDF file saved
+     * @throws IOException if there is some problem reading or writing the PDF data
+     */
+    public long saveOptimizedToOutputStream(OutputStream out) throws IOException {
+        if (!foundIncrementalUpdater || library.isEncrypted()) {
+            return saveToOutputStream(out);
+        }
+        try {
+            Class<?> fullUpdaterClass = Class.forName(FULL_UPDATER);
+            Method method = fullUpdaterClass.getDeclaredMethod(
+                    "writeFullUpdate", new Class[]{Document.class, OutputStream.class});
+            return (Long) method.invoke(null, this, out);
+        } catch (InvocationTargetException e) {
+            // the file may already be partly written, so errors aren't hidden.
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(String.valueOf(e.getCause()));
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Could not call full updater.", e);
+            return saveToOutputStream(out);
+        }
+    }
+
     /**
      * Gets an Image of the specified page.  The image size is automatically
      * calculated given the page boundary, user rotation and zoom.  The rendering
@@ -1138,7 +1325,7 @@ public class Document {
     public Image getPageImage(int pageNumber,
                               final int renderHintType, final int pageBoundary,
                               float userRotation, float userZoom) throws InterruptedException {
-        Page page = catalog.getPageTree().getPage(pageNumber);
+        Page page = getPage(pageNumber);
         page.init();
         PDimension sz = page.getSize(pageBoundary, userRotation, userZoom);
 
@@ -1168,9 +1355,8 @@ public class Document {
      * @see #getPageViewText(int).
      */
     public PageText getPageText(int pageNumber) throws InterruptedException {
-        PageTree pageTree = catalog.getPageTree();
-        if (pageNumber >= 0 && pageNumber < pageTree.getNumberOfPages()) {
-            Page pg = pageTree.getPage(pageNumber);
+        if (pageNumber >= 0 && pageNumber < getNumberOfPages()) {
+            Page pg = getPage(pageNumber);
             return pg.getText();
         } else {
             return null;
@@ -1188,9 +1374,8 @@ public class Document {
      * @return page PageText data Structure.
      */
     public PageText getPageViewText(int pageNumber) throws InterruptedException{
-        PageTree pageTree = catalog.getPageTree();
-        if (pageNumber >= 0 && pageNumber < pageTree.getNumberOfPages()) {
-            Page pg = pageTree.getPage(pageNumber);
+        if (pageNumber >= 0 && pageNumber < getNumberOfPages()) {
+            Page pg = getPage(pageNumber);
             return pg.getViewText();
         } else {
             return null;
@@ -1240,6 +1425,9 @@ public class Document {
      */
     public void setFormHighlight(boolean highlight) {
         // iterate over the document annotations and set the appropriate highlight value.
+        if (catalog != null) {
+            waitForCatalog();
+        }
         if (catalog != null && catalog.getInteractiveForm() != null) {
             InteractiveForm interactiveForm = catalog.getInteractiveForm();
             ArrayList<Object> widgets = interactiveForm.getFields();
@@ -1290,7 +1478,7 @@ public class Document {
      * @return vector of Images inside the current page
      */
     public List<Image> getPageImages(int pageNumber) throws InterruptedException {
-        Page pg = catalog.getPageTree().getPage(pageNumber);
+        Page pg = getPage(pageNumber);
         pg.init();
         return pg.getImages();
     }
@@ -1300,11 +1488,18 @@ public class Document {
      * hierarchy.  The PageTree can be used to obtain detailed information about
      * the Page object which makes up the document.
      *
+     * <p/>
+     * While a linearized document opened from a URL is still downloading this
+     * method blocks until the page tree was read, the first page and the
+     * number of pages are available earlier through #getNumberOfPages() and
+     * the page methods of this class.
+     *
      * @return PageTree specified by the document hierarchy. Null if the document
      * has not yet loaded or the catalog can not be found.
      */
     public PageTree getPageTree() {
         if (catalog != null) {
+            waitForCatalog();
             PageTree pageTree = catalog.getPageTree();
             if (pageTree != null) {
                 pageTree.setWatermarkCallback(watermarkCallback);
@@ -1315,6 +1510,30 @@ public class Document {
         }
     }
 
+    /**
+     * Gets the input a document opened with #setUrl(URL) is downloaded in,
+     * viewers poll it to show the download progress and close it to cancel
+     * the download.
+     *
+     * @return input being downloaded, null if the document wasn't opened
+     * progressively or isn't open yet.
+     */
+    public ProgressiveSeekableInput getProgressiveInput() {
+        SeekableInput in = documentSeekableInput;
+        return in instanceof ProgressiveSeekableInput ? (ProgressiveSeekableInput) in : null;
+    }
+
+    /**
+     * Gets the library holding the document's objects.  Unlike
+     * getCatalog().getLibrary() this doesn't wait for the page tree of a
+     * document that is still downloading.
+     *
+     * @return document's library, null if no document was loaded.
+     */
+    public Library getLibrary() {
+        return library;
+    }
+
     /**
      * Gets the Document's Catalog as specified by the Document hierarchy. The
      * Catalog can be used to traverse the Document's hierarchy.
@@ -1322,6 +1541,9 @@ public class Document {
      * @return document's Catalog object; null, if one does not exist.
      */
     public Catalog getCatalog() {
+        if (catalog != null) {
+            waitForCatalog();
+        }
         return catalog;
     }
 
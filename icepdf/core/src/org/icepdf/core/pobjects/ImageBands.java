@@ -0,0 +1,135 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects;
+
+import org.icepdf.core.util.Defs;
+import org.icepdf.core.util.Library;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+/**
+ * Splits row based image work in to horizontal bands which are processed
+ * concurrently on the library's image band pool.  The calling thread always
+ * processes the first band itself and then waits for the others, so bands
+ * never wait on each other and work can't starve the pool.
+ * <p/>
+ * Only images with at least -Dorg.icepdf.core.imageBands.minPixels pixels,
+ * default 1048576, are split up, smaller images are processed on the calling
+ * thread in a single band.
+ *
+ * @since 6.2
+ */
+public class ImageBands {
+
+    private static final Logger logger =
+            Logger.getLogger(ImageBands.class.toString());
+
+    private static int minPixels;
+
+    // smallest band worth handing off to another thread.
+    private static final int MIN_BAND_ROWS = 16;
+
+    static {
+        minPixels = Defs.intProperty("org.icepdf.core.imageBands.minPixels", 1 << 20);
+    }
+
+    /**
+     * Work done on a range of image rows, implementations must only touch
+     * the rows they are given.
+     */
+    public interface Band {
+        void process(int startRow, int endRow) throws IOException;
+    }
+
+    private ImageBands() {
+    }
+
+    /**
+     * Processes all the rows of an image, splitting them in to bands when the
+     * image is large enough.
+     *
+     * @param width    image width.
+     * @param height   image height.
+     * @param parallel false if the band work isn't thread safe, in which case
+     *                 the rows are processed as a single band.
+     * @param band     row work.
+     * @throws IOException error processing one of the bands.
+     */
+    public static void process(int width, int height, boolean parallel, final Band band)
+            throws IOException {
+        int bands = Math.min(Library.getImageBandPoolThreads() + 1, height / MIN_BAND_ROWS);
+        if (!parallel || bands < 2 || (long) width * height < minPixels) {
+            band.process(0, height);
+            return;
+        }
+        int rows = (height + bands - 1) / bands;
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(bands - 1);
+        for (int i = 1; i < bands; i++) {
+            final int start = i * rows;
+            final int end = Math.min(height, start + rows);
+            if (start >= end) break;
+            FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+                public Void call() throws IOException {
+                    band.process(start, end);
+                    return null;
+                }
+            });
+            tasks.add(task);
+            if (!Library.executeImageBand(task)) {
+                task.run();
+            }
+        }
+        try {
+            band.process(0, Math.min(height, rows));
+            for (FutureTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (IOException e) {
+            cancel(tasks);
+            throw e;
+        } catch (InterruptedException e) {
+            cancel(tasks);
+            Thread.currentThread().interrupt();
+            logger.fine("Image band processing interrupted");
+        } catch (ExecutionException e) {
+            cancel(tasks);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause.getMessage());
+        } catch (RuntimeException e) {
+            cancel(tasks);
+            throw e;
+        }
+    }
+
+    private static void cancel(List<FutureTask<Void>> tasks) {
+        for (FutureTask<Void> task : tasks) {
+            task.cancel(false);
+        }
+    }
+}
@@ -163,9 +163,30 @@ public class ImageStream extends Stream {
      * @param resources     resources containing image reference
      * @return new image object
      */
+    public BufferedImage getImage(GraphicsState graphicsState, Resources resources) throws InterruptedException {
+        return getImage(graphicsState, resources, 1);
+    }
+
+    /**
+     * Gets the image object for the given resource decoded at a reduced
+     * resolution.  Only every subsampling'th column of every subsampling'th
+     * row is decoded, which for JPEG and JPEG 2000 images is done by the
+     * image reader and for raw and CCITTFax data by skipping the unneeded
+     * samples, so large images never have to be held at full resolution.
+     * Formats that can't be subsampled are decoded at full resolution.
+     * <p/>
+     * Subsampled images aren't added to the library's image pool, but a pooled
+     * full resolution image is returned if available.
+     *
+     * @param graphicsState graphic state for image or parent form
+     * @param resources     resources containing image reference
+     * @param subsampling   column and row step, 1 decodes the full image.
+     * @return new image object
+     */
     // was synchronized, not think it is needed?
     @SuppressWarnings("unchecked")
-    public synchronized BufferedImage getImage(GraphicsState graphicsState, Resources resources) throws InterruptedException {
+    public synchronized BufferedImage getImage(GraphicsState graphicsState, Resources resources,
+                                               int subsampling) throws InterruptedException {
         // check the pool encase we already parse this image.
 
         if (pObjectReference != null) {
@@ -174,6 +195,9 @@ public class ImageStream extends Stream {
                 return tmp;
             }
         }
+        if (subsampling < 1) {
+            subsampling = 1;
+        }
 
         // parse colour space, lock is to insure that getColorSpace()
         // will return only after colourSpace has been set.
@@ -236,7 +260,7 @@ public class ImageStream extends Stream {
         if (smaskObj instanceof Stream) {
             ImageStream smaskStream = (ImageStream) smaskObj;
             if (smaskStream.isImageSubtype()) {
-                smaskImage = smaskStream.getImage(graphicsState, resources);
+                smaskImage = smaskStream.getImage(graphicsState, resources, subsampling);
             }
         }
 
@@ -247,7 +271,7 @@ public class ImageStream extends Stream {
             if (maskObj instanceof Stream) {
                 ImageStream maskStream = (ImageStream) maskObj;
                 if (maskStream.isImageSubtype()) {
-                    maskImage = maskStream.getImage(graphicsState, resources);
+                    maskImage = maskStream.getImage(graphicsState, resources, subsampling);
                 }
             } else if (maskObj instanceof List) {
                 List maskVector = (List) maskObj;
@@ -299,9 +323,9 @@ public class ImageStream extends Stream {
                 isImageMask,
                 decode,
                 smaskImage, maskImage,
-                maskMinRGB, maskMaxRGB, maskMinIndex, maskMaxIndex);
+                maskMinRGB, maskMaxRGB, maskMinIndex, maskMaxIndex, subsampling);
         // add the image to the pool, just encase it get painted again.
-        if (pObjectReference != null) {
+        if (pObjectReference != null && subsampling == 1) {
             library.getImagePool().put(pObjectReference, image);
         }
         return image;
@@ -326,6 +350,7 @@ public class ImageStream extends Stream {
      * @param maskMaxRGB          min rgb values for the mask.
      * @param maskMinIndex        max indexed colour values for the mask.
      * @param maskMaxIndex        min indexed colour values for the mask.
+     * @param subsampling         column and row step, 1 decodes the full image.
      * @return buffered image of decoded image stream, null if an error occured.
      */
     private BufferedImage getImage(
@@ -339,15 +364,19 @@ public class ImageStream extends Stream {
             BufferedImage sMaskImage,
             BufferedImage maskImage,
             int[] maskMinRGB, int[] maskMaxRGB,
-            int maskMinIndex, int maskMaxIndex) {
+            int maskMinIndex, int maskMaxIndex, int subsampling) {
 
         // check to see if we need to create an imge with alpha, a mask
         // will have imageMask=true and in this case we don't need alpha
         BufferedImage decodedImage = null;
+        // raw data, subsampled if requested, kept for the fallback decode.
+        byte[] rawData = null;
+        int rawWidth = width;
+        int rawHeight = height;
 
         // JPEG writes out image if successful
         if (shouldUseDCTDecode()) {
-            decodedImage = dctDecode(width, height, colourSpace, bitsPerComponent, decode);
+            decodedImage = dctDecode(width, height, colourSpace, bitsPerComponent, decode, subsampling);
         }
         // JBIG2 writes out image if successful
         else if (shouldUseJBIG2Decode()) {
@@ -355,14 +384,14 @@ public class ImageStream extends Stream {
         }
         // JPEG2000 writes out image if successful
         else if (shouldUseJPXDecode()) {
-            decodedImage = jpxDecode(width, height, colourSpace, bitsPerComponent, decode);
+            decodedImage = jpxDecode(width, height, colourSpace, bitsPerComponent, decode, subsampling);
         }
         // CCITTFax data is raw byte decode.
         else if (shouldUseCCITTFaxDecode()) {
             // try default ccittfax decode.
             decodedImage = ccittFaxDecode(colourSpace, graphicsState, width, height,
                     colorSpaceCompCount, bitsPerComponent, isImageMask, decode, sMaskImage, maskImage,
-                    maskMinRGB, maskMaxRGB, maskMinIndex, maskMaxIndex, false);
+                    maskMinRGB, maskMaxRGB, maskMinIndex, maskMaxIndex, false, subsampling);
         }
         // we have some raw data so, CCITTfax or some other image primitive.
         else {
@@ -370,6 +399,17 @@ public class ImageStream extends Stream {
                     width * height
                             * colourSpace.getNumComponents()
                             * bitsPerComponent / 8);
+            // drop the samples that aren't needed before any colour work is done.
+            if (subsampling > 1 && canSubsampleRaw(colourSpace, isImageMask, bitsPerComponent)) {
+                int bitsPerPixel = colorSpaceCompCount * bitsPerComponent;
+                byte[] subsampled = ImageUtility.subsample(data, width, height, bitsPerPixel, subsampling);
+                if (subsampled != null) {
+                    data = subsampled;
+                    rawWidth = ImageUtility.subsampledSize(width, subsampling);
+                    rawHeight = ImageUtility.subsampledSize(height, subsampling);
+                    rawData = data;
+                }
+            }
             int dataLength = data.length;
             // finally push the bytes though the common image processor to try
             // and build a a Buffered image.
@@ -377,7 +417,7 @@ public class ImageStream extends Stream {
                 decodedImage = ImageUtility.makeImageWithRasterFromBytes(
                         colourSpace,
                         graphicsState,
-                        width, height,
+                        rawWidth, rawHeight,
                         colorSpaceCompCount,
                         bitsPerComponent,
                         isImageMask,
@@ -395,15 +435,20 @@ public class ImageStream extends Stream {
 
         // Fallback image cod the will use pixel primitives to build out the image.
         if (decodedImage == null) {
-            byte[] data = getDecodedStreamBytes(
-                    width * height
-                            * colourSpace.getNumComponents()
-                            * bitsPerComponent / 8);
+            byte[] data = rawData;
+            if (data == null) {
+                rawWidth = width;
+                rawHeight = height;
+                data = getDecodedStreamBytes(
+                        width * height
+                                * colourSpace.getNumComponents()
+                                * bitsPerComponent / 8);
+            }
             // decodes the image stream and returns an image object. Legacy fallback
             // code, should never get here, but there are always corner cases. .
             decodedImage = parseImage(
-                    width,
-                    height,
+                    rawWidth,
+                    rawHeight,
                     colourSpace,
                     isImageMask,
                     graphicsState,
@@ -455,7 +500,7 @@ public class ImageStream extends Stream {
             BufferedImage sMaskImage,
             BufferedImage maskImage,
             int[] maskMinRGB, int[] maskMaxRGB,
-            int maskMinIndex, int maskMaxIndex, boolean forceJAI) {
+            int maskMinIndex, int maskMaxIndex, boolean forceJAI, int subsampling) {
         BufferedImage decodedImage = null;
 
         byte[] data = getDecodedStreamBytes(
@@ -520,11 +565,23 @@ public class ImageStream extends Stream {
                 logger.finer("Failed to do secondary load attempt with ccittFax");
             }
         }
+        // skip the rows and columns that aren't needed, decoded rows are byte aligned.
+        int imageWidth = width;
+        int imageHeight = height;
+        if (subsampling > 1 && dataLength == height * ((width + 7) >> 3)) {
+            byte[] subsampled = ImageUtility.subsample(data, width, height, 1, subsampling);
+            if (subsampled != null) {
+                data = subsampled;
+                dataLength = data.length;
+                imageWidth = ImageUtility.subsampledSize(width, subsampling);
+                imageHeight = ImageUtility.subsampledSize(height, subsampling);
+            }
+        }
         try {
             decodedImage = ImageUtility.makeImageWithRasterFromBytes(
                     colourSpace,
                     graphicsState,
-                    width, height,
+                    imageWidth, imageHeight,
                     colorSpaceCompCount,
                     bitsPerComponent,
                     isImageMask,
@@ -539,7 +596,7 @@ public class ImageStream extends Stream {
             if (!forceJAI) {
                 decodedImage = ccittFaxDecode(colourSpace, graphicsState, width, height,
                         colorSpaceCompCount, bitsPerComponent, isImageMask, decode, sMaskImage, maskImage,
-                        maskMinRGB, maskMaxRGB, maskMinIndex, maskMaxIndex, true);
+                        maskMinRGB, maskMaxRGB, maskMinIndex, maskMaxIndex, true, subsampling);
             }
         }
         return decodedImage;
@@ -556,7 +613,7 @@ public class ImageStream extends Stream {
      */
     private BufferedImage dctDecode(
             int width, int height, PColorSpace colourSpace, int bitspercomponent,
-            float[] decode) {
+            float[] decode, int subsampling) {
 
         // BIS's buffer size should be equal to mark() size, and greater than data size (below)
         InputStream input = getDecodedByteArrayInputStream();
@@ -611,6 +668,9 @@ public class ImageStream extends Stream {
             // read the raster data only, as we have our own logic to covert
             // the raster data to RGB colours.
             ImageReadParam param = reader.getDefaultReadParam();
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
             WritableRaster wr = (WritableRaster) reader.readRaster(0, param);
 
             if (jpegEncoding == ImageUtility.JPEG_ENC_RGB && bitspercomponent == 8) {
@@ -763,7 +823,7 @@ public class ImageStream extends Stream {
      * occurred during the decode.
      */
     private BufferedImage jpxDecode(int width, int height, PColorSpace colourSpace,
-                                    int bitsPerComponent, float[] decode) {
+                                    int bitsPerComponent, float[] decode, int subsampling) {
         BufferedImage tmpImage = null;
         try {
             // Verify that ImageIO can read JPEG2000
@@ -804,6 +864,9 @@ public class ImageStream extends Stream {
                 return null;
             }
             ImageReadParam param = reader.getDefaultReadParam();
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
             reader.setInput(imageInputStream, true, true);
             try {
                 tmpImage = reader.read(0, param);
@@ -940,51 +1003,156 @@ public class ImageStream extends Stream {
             float[] decode,
             byte[] baCCITTFaxData) {
 
-        // store for manipulating bits in image
-        int[] imageBits = new int[width];
-
         // RGB value for colour used as fill for image
         int fillRGB = 1;
         if (graphicsState != null) {
             fillRGB = graphicsState.getFillColor().getRGB();
         }
 
+        // Create the memory hole where where the buffered image will be written
+        // too, bit by painful bit.
+        BufferedImage bim = ImageUtility.createTranslucentCompatibleImage(width, height);
+
+        ImageRowParser parser = new ImageRowParser(bim, width, height, colorSpace,
+                imageMask, bitsPerColour, decode, fillRGB);
+        try {
+            if (baCCITTFaxData != null) {
+                // bands can only be located in complete data and when pixels can
+                // be converted without going through the colour space.
+                boolean parallel = parser.isThreadSafe() &&
+                        (long) baCCITTFaxData.length * 8 >=
+                                (long) width * height * parser.getBitsPerPixel();
+                parser.setData(baCCITTFaxData);
+                ImageBands.process(width, height, parallel, parser);
+            } else {
+                InputStream dataInput = getDecodedByteArrayInputStream();
+                if (dataInput == null)
+                    return null;
+                BitStream in = new BitStream(dataInput);
+                parser.parseRows(in, 0, height);
+                // final clean up.
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error parsing image.", e);
+        }
+
+        return bim;
+    }
+
+    /**
+     * Decodes rows of bit packed image data in to an image.  Instances can be
+     * used to decode bands of the same image concurrently when
+     * {@link #isThreadSafe()} is true, as pixels are then converted through
+     * tables rather than the colour space.
+     */
+    private static class ImageRowParser implements ImageBands.Band {
+
+        private final BufferedImage bim;
+        private final int width;
+        private final PColorSpace colorSpace;
+        private final boolean imageMask;
+        private final int bitsPerColour;
+        private final float[] decode;
+        private final int fillRGB;
+
         // Number of colour components in image, should be 3 for RGB or 4
         // for ARGB.
-        int colorSpaceCompCount = colorSpace.getNumComponents();
-        boolean isDeviceRGB = colorSpace instanceof DeviceRGB;
-        boolean isDeviceGray = colorSpace instanceof DeviceGray;
-
+        private final int colorSpaceCompCount;
+        private final boolean isDeviceRGB;
+        private final boolean isDeviceGray;
         // Max value used to represent a colour,  usually 255, min is 0
-        int maxColourValue = ((1 << bitsPerColour) - 1);
+        private final int maxColourValue;
+        // image mask from
+        private final float imageMaskValue;
+        private int[] colourTable;
+
+        private byte[] data;
+
+        ImageRowParser(BufferedImage bim, int width, int height, PColorSpace colorSpace,
+                       boolean imageMask, int bitsPerColour, float[] decode, int fillRGB) {
+            this.bim = bim;
+            this.width = width;
+            this.colorSpace = colorSpace;
+            this.imageMask = imageMask;
+            this.bitsPerColour = bitsPerColour;
+            this.decode = decode;
+            this.fillRGB = fillRGB;
+            colorSpaceCompCount = colorSpace.getNumComponents();
+            isDeviceRGB = colorSpace instanceof DeviceRGB;
+            isDeviceGray = colorSpace instanceof DeviceGray;
+            maxColourValue = ((1 << bitsPerColour) - 1);
+            imageMaskValue = decode[0];
+
+            // a single component colour space has at most maxColourValue + 1
+            // colours, so convert each of them once rather than once per pixel.
+            if (!imageMask && colorSpaceCompCount == 1 && !isDeviceGray &&
+                    bitsPerColour <= 8 && (long) width * height > maxColourValue + 1) {
+                int[] f = new int[1];
+                float[] ff = new float[1];
+                colourTable = new int[maxColourValue + 1];
+                for (int i = 0; i <= maxColourValue; i++) {
+                    f[0] = i;
+                    colorSpace.normaliseComponentsToFloats(f, ff, maxColourValue);
+                    colourTable[i] = colorSpace.getColor(ff).getRGB();
+                }
+            }
+        }
 
-        int f[] = new int[colorSpaceCompCount];
-        float ff[] = new float[colorSpaceCompCount];
+        void setData(byte[] data) {
+            this.data = data;
+        }
 
-        // image mask from
-        float imageMaskValue = decode[0];
+        /**
+         * Number of bits read for each pixel.
+         */
+        int getBitsPerPixel() {
+            if (imageMask) {
+                return bitsPerColour;
+            } else if (colorSpaceCompCount == 1 || colorSpaceCompCount == 3 ||
+                    colorSpaceCompCount == 4 || colorSpace instanceof DeviceN) {
+                return colorSpaceCompCount * bitsPerColour;
+            }
+            return 0;
+        }
 
-        // Create the memory hole where where the buffered image will be written
-        // too, bit by painful bit.
-        BufferedImage bim = ImageUtility.createTranslucentCompatibleImage(width, height);
+        /**
+         * True if rows can be parsed without calling the colour space.
+         */
+        boolean isThreadSafe() {
+            if (imageMask || getBitsPerPixel() == 0) {
+                return true;
+            } else if (colorSpaceCompCount == 1) {
+                return isDeviceGray || colourTable != null;
+            }
+            return colorSpaceCompCount == 3 && isDeviceRGB;
+        }
 
-        // create the buffer and get the first series of bytes from the cached
-        // stream
-        BitStream in;
-        if (baCCITTFaxData != null) {
-            in = new BitStream(new ByteArrayInputStream(baCCITTFaxData));
-        } else {
-            InputStream dataInput = getDecodedByteArrayInputStream();
-            if (dataInput == null)
-                return null;
-            in = new BitStream(dataInput);
+        public void process(int startRow, int endRow) throws IOException {
+            // rows aren't byte aligned, find the first bit of the band.
+            long startBit = (long) startRow * width * getBitsPerPixel();
+            int offset = (int) (startBit >> 3);
+            BitStream in = new BitStream(
+                    new ByteArrayInputStream(data, offset, data.length - offset));
+            int skip = (int) (startBit & 7);
+            if (skip > 0) {
+                in.getBits(skip);
+            }
+            parseRows(in, startRow, endRow);
         }
 
-        try {
+        void parseRows(BitStream in, int startRow, int endRow) throws IOException {
+
+            // store for manipulating bits in image
+            int[] imageBits = new int[width];
+
+            int f[] = new int[colorSpaceCompCount];
+            float ff[] = new float[colorSpaceCompCount];
+
             // Start encoding bit stream into an image,  we work one pixel at
             // a time,  and grap the need bit information for the images
             // colour space and bits per colour
-            for (int y = 0; y < height; y++) {
+            for (int y = startRow; y < endRow; y++) {
 
                 for (int x = 0; x < width; x++) {
 
@@ -1028,6 +1196,8 @@ public class ImageStream extends Stream {
                                             bit);
                                 }
                                 imageBits[x] = bit;
+                            } else if (colourTable != null) {
+                                imageBits[x] = colourTable[bit];
                             } else {
                                 f[0] = bit;
                                 colorSpace.normaliseComponentsToFloats(f, ff, maxColourValue);
@@ -1086,13 +1256,7 @@ public class ImageStream extends Stream {
                 // Assign the new bits for this pixel
                 bim.setRGB(0, y, width, 1, imageBits, 0, 1);
             }
-            // final clean up.
-            in.close();
-        } catch (IOException e) {
-            logger.log(Level.FINE, "Error parsing image.", e);
         }
-
-        return bim;
     }
 
     /**
@@ -1123,6 +1287,20 @@ public class ImageStream extends Stream {
         return false;
     }
 
+    /**
+     * Raw data can be subsampled when every pixel starts on a byte boundary or,
+     * for single component images that are built as packed rasters, when rows
+     * are byte aligned.
+     */
+    private static boolean canSubsampleRaw(PColorSpace colourSpace, boolean isImageMask,
+                                           int bitsPerComponent) {
+        if (bitsPerComponent % 8 == 0) {
+            return true;
+        }
+        return (bitsPerComponent == 1 || bitsPerComponent == 2 || bitsPerComponent == 4) &&
+                (isImageMask || colourSpace instanceof DeviceGray || colourSpace instanceof Indexed);
+    }
+
     private boolean containsFilter(String[] searchFilterNames) {
         List filterNames = getFilterNames();
         if (filterNames == null)
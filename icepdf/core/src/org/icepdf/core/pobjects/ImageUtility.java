@@ -541,23 +541,31 @@ public class ImageUtility {
             // aways create a new buffer as we need leave the pevioius image un change for some type of masks.
             argbImage = ImageUtility.createTranslucentCompatibleImage(baseWidth, baseHeight);
         }
-        int[] srcBand = new int[baseWidth];
-        int[] maskBnd = new int[baseWidth];
-        // iterate over each band to apply the mask
-        for (int i = 0; i < baseHeight; i++) {
-            baseImage.getRGB(0, i, baseWidth, 1, srcBand, 0, baseWidth);
-            maskImage.getRGB(0, i, baseWidth, 1, maskBnd, 0, baseWidth);
-            // apply the soft mask blending
-            for (int j = 0; j < baseWidth; j++) {
-                if (maskBnd[j] == 0 || maskBnd[j] == 0xffffff) {
-                    //  set the pixel as transparent
-                    maskBnd[j] = 0xff;
-                } else {
-                    maskBnd[j] = srcBand[j];
+        final BufferedImage src = baseImage;
+        final BufferedImage mask = maskImage;
+        final BufferedImage dest = argbImage;
+        final int width = baseWidth;
+        processRows(width, baseHeight, new ImageBands.Band() {
+            public void process(int startRow, int endRow) {
+                int[] srcBand = new int[width];
+                int[] maskBnd = new int[width];
+                // iterate over each band to apply the mask
+                for (int i = startRow; i < endRow; i++) {
+                    src.getRGB(0, i, width, 1, srcBand, 0, width);
+                    mask.getRGB(0, i, width, 1, maskBnd, 0, width);
+                    // apply the soft mask blending
+                    for (int j = 0; j < width; j++) {
+                        if (maskBnd[j] == 0 || maskBnd[j] == 0xffffff) {
+                            //  set the pixel as transparent
+                            maskBnd[j] = 0xff;
+                        } else {
+                            maskBnd[j] = srcBand[j];
+                        }
+                    }
+                    dest.setRGB(0, i, width, 1, maskBnd, 0, width);
                 }
             }
-            argbImage.setRGB(0, i, baseWidth, 1, maskBnd, 0, baseWidth);
-        }
+        });
         baseImage.flush();
         baseImage = argbImage;
 
@@ -646,24 +654,50 @@ public class ImageUtility {
             // aways create a new buffer as we need leave the pevioius image un change for some type of masks.
             argbImage = ImageUtility.createTranslucentCompatibleImage(baseWidth, baseHeight);
         }
-        int[] srcBand = new int[baseWidth];
-        int[] sMaskBand = new int[baseWidth];
-        // iterate over each band to apply the mask
-        for (int i = 0; i < baseHeight; i++) {
-            baseImage.getRGB(0, i, baseWidth, 1, srcBand, 0, baseWidth);
-            sMaskImage.getRGB(0, i, baseWidth, 1, sMaskBand, 0, baseWidth);
-            // apply the soft mask blending
-            for (int j = 0; j < baseWidth; j++) {
-                // take any one of the primaries and apply src image alpha.
-                int red = (sMaskBand[j] >> 16) & 0x000000FF;
-                int alpha = (srcBand[j] >> 24) & 0x000000FF;
-                int sa = ((int) (red * (alpha / 255.0f))) << 24;
-                // apply the smask value as the alpha value
-                srcBand[j] = sa
-                        | (srcBand[j] & ~0xff000000);
-            }
-            argbImage.setRGB(0, i, baseWidth, 1, srcBand, 0, baseWidth);
+        final BufferedImage src = baseImage;
+        final BufferedImage sMask = sMaskImage;
+        final BufferedImage dest = argbImage;
+        final int width = baseWidth;
+        // work on the pixel arrays directly when the images are in the usual int formats.
+        final int[] srcPixels = getIntPixels(src, false);
+        final int[] sMaskPixels = getIntPixels(sMask, true);
+        final int[] destPixels = getIntPixels(dest, false);
+        if (srcPixels != null && sMaskPixels != null && destPixels != null) {
+            processRows(width, baseHeight, new ImageBands.Band() {
+                public void process(int startRow, int endRow) {
+                    for (int i = startRow * width, end = endRow * width; i < end; i++) {
+                        int red = (sMaskPixels[i] >> 16) & 0x000000FF;
+                        int alpha = (srcPixels[i] >> 24) & 0x000000FF;
+                        destPixels[i] = ((int) (red * (alpha / 255.0f))) << 24
+                                | (srcPixels[i] & ~0xff000000);
+                    }
+                }
+            });
+            baseImage.flush();
+            return argbImage;
         }
+        processRows(width, baseHeight, new ImageBands.Band() {
+            public void process(int startRow, int endRow) {
+                int[] srcBand = new int[width];
+                int[] sMaskBand = new int[width];
+                // iterate over each band to apply the mask
+                for (int i = startRow; i < endRow; i++) {
+                    src.getRGB(0, i, width, 1, srcBand, 0, width);
+                    sMask.getRGB(0, i, width, 1, sMaskBand, 0, width);
+                    // apply the soft mask blending
+                    for (int j = 0; j < width; j++) {
+                        // take any one of the primaries and apply src image alpha.
+                        int red = (sMaskBand[j] >> 16) & 0x000000FF;
+                        int alpha = (srcBand[j] >> 24) & 0x000000FF;
+                        int sa = ((int) (red * (alpha / 255.0f))) << 24;
+                        // apply the smask value as the alpha value
+                        srcBand[j] = sa
+                                | (srcBand[j] & ~0xff000000);
+                    }
+                    dest.setRGB(0, i, width, 1, srcBand, 0, width);
+                }
+            }
+        });
         baseImage.flush();
         baseImage = argbImage;
 
@@ -750,23 +784,37 @@ public class ImageUtility {
             argbImage = ImageUtility.createTranslucentCompatibleImage(baseWidth, baseHeight);
         }
 
-        int[] srcBand = new int[baseWidth];
-        int[] sMaskBand = new int[baseWidth];
-        // iterate over each band to apply the outline,  where the outline is any pixel with alpha.
-        for (int i = 0; i < baseHeight; i++) {
-            baseImage.getRGB(0, i, baseWidth, 1, srcBand, 0, baseWidth);
-            sMaskImage.getRGB(0, i, baseWidth, 1, sMaskBand, 0, baseWidth);
-            for (int j = 0; j < baseWidth; j++) {
-                // take any one of the primaries and apply src image alpha.
-                int alpha = (sMaskBand[j] >> 24) & 0x000000FF;
-                int sa = alpha << 24;
-                // apply the smask value as the alpha value
-                if (sMaskBand[j] == 0)
-                    srcBand[j] = sa
-                            | (srcBand[j] & ~0xff000000);
+        final BufferedImage src = baseImage;
+        final BufferedImage sMask = sMaskImage;
+        final BufferedImage dest = argbImage;
+        final int width = baseWidth;
+        final int[] srcPixels = getIntPixels(src, false);
+        final int[] sMaskPixels = getIntPixels(sMask, false);
+        final int[] destPixels = getIntPixels(dest, false);
+        processRows(width, baseHeight, new ImageBands.Band() {
+            public void process(int startRow, int endRow) {
+                // only pixels the outline doesn't cover change, they become transparent.
+                if (srcPixels != null && sMaskPixels != null && destPixels != null) {
+                    for (int i = startRow * width, end = endRow * width; i < end; i++) {
+                        destPixels[i] = sMaskPixels[i] == 0 ?
+                                srcPixels[i] & ~0xff000000 : srcPixels[i];
+                    }
+                    return;
+                }
+                int[] srcBand = new int[width];
+                int[] sMaskBand = new int[width];
+                // iterate over each band to apply the outline,  where the outline is any pixel with alpha.
+                for (int i = startRow; i < endRow; i++) {
+                    src.getRGB(0, i, width, 1, srcBand, 0, width);
+                    sMask.getRGB(0, i, width, 1, sMaskBand, 0, width);
+                    for (int j = 0; j < width; j++) {
+                        if (sMaskBand[j] == 0)
+                            srcBand[j] = srcBand[j] & ~0xff000000;
+                    }
+                    dest.setRGB(0, i, width, 1, srcBand, 0, width);
+                }
             }
-            argbImage.setRGB(0, i, baseWidth, 1, srcBand, 0, baseWidth);
-        }
+        });
         baseImage.flush();
         baseImage = argbImage;
 
@@ -796,27 +844,74 @@ public class ImageUtility {
         }
         // apply the mask by simply painting white to the base image where
         // the mask specified no colour.
-        int[] srcBand = new int[baseWidth];
-        int[] maskBnd = new int[baseWidth];
-        int fillRgb = fill.getRGB();
-        // iterate over each band to apply the mask
-        for (int i = 0; i < baseHeight; i++) {
-            baseImage.getRGB(0, i, baseWidth, 1, srcBand, 0, baseWidth);
-            imageMask.getRGB(0, i, baseWidth, 1, maskBnd, 0, baseWidth);
-            // apply the soft mask blending
-            for (int j = 0; j < baseWidth; j++) {
-                if (!(srcBand[j] == -1 || srcBand[j] == 0xffffff)) {
-                    maskBnd[j] = fillRgb;
+        final BufferedImage src = baseImage;
+        final BufferedImage dest = imageMask;
+        final int fillRgb = fill.getRGB();
+        final int width = baseWidth;
+        processRows(width, baseHeight, new ImageBands.Band() {
+            public void process(int startRow, int endRow) {
+                int[] srcBand = new int[width];
+                int[] maskBnd = new int[width];
+                // iterate over each band to apply the mask
+                for (int i = startRow; i < endRow; i++) {
+                    src.getRGB(0, i, width, 1, srcBand, 0, width);
+                    dest.getRGB(0, i, width, 1, maskBnd, 0, width);
+                    // apply the soft mask blending
+                    for (int j = 0; j < width; j++) {
+                        if (!(srcBand[j] == -1 || srcBand[j] == 0xffffff)) {
+                            maskBnd[j] = fillRgb;
+                        }
+                    }
+                    dest.setRGB(0, i, width, 1, maskBnd, 0, width);
                 }
             }
-            imageMask.setRGB(0, i, baseWidth, 1, maskBnd, 0, baseWidth);
-        }
+        });
         // clean up the old image.
         baseImage.flush();
         // return the mask.
         return imageMask;
     }
 
+    /**
+     * Gets the pixel array of an int packed image whose rows are laid out one
+     * after the other, so mask work can be done on the array rather than
+     * through getRGB/setRGB.  Images handed out by this method are no longer
+     * accelerated, which is fine for the scratch buffers masks are applied to.
+     *
+     * @param image       image to get the pixels of.
+     * @param allowOpaque true if an opaque int RGB image can be used, its
+     *                    alpha bits are undefined.
+     * @return pixel array in row order, null if the image has any other layout.
+     */
+    private static int[] getIntPixels(BufferedImage image, boolean allowOpaque) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_ARGB &&
+                !(allowOpaque && type == BufferedImage.TYPE_INT_RGB)) {
+            return null;
+        }
+        WritableRaster raster = image.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        if (raster.getParent() != null || dataBuffer.getOffset() != 0 ||
+                !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel) ||
+                ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() !=
+                        image.getWidth()) {
+            return null;
+        }
+        return ((DataBufferInt) dataBuffer).getData();
+    }
+
+    /**
+     * Runs in memory row work through {@link ImageBands}, large images are
+     * split in to bands which are processed concurrently.
+     */
+    private static void processRows(int width, int height, ImageBands.Band band) {
+        try {
+            ImageBands.process(width, height, true, band);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error processing image rows.", e);
+        }
+    }
+
     /**
      * Temporarily pulled out the index colur model application for images
      * from the raw image decode.  This method is only called from JPEG2000
@@ -1261,7 +1356,7 @@ public class ImageUtility {
                 img = ImageUtility.createCompatibleImage(width, height);
                 // convert image data to rgb, seems to to give better colour tones. ?
                 int[] dataToRGB = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
-                copyDecodedStreamBytesIntoGray(data, dataToRGB, decode);
+                copyDecodedStreamBytesIntoGray(data, dataToRGB, decode, width, height);
             }
         } else if (colourSpace instanceof DeviceRGB) {
             if (bitsPerComponent == 8) {
@@ -1271,7 +1366,7 @@ public class ImageUtility {
                 img = new BufferedImage(width, height, type);
                 // convert image data to rgb, a little out of order maybe?
                 int[] dataToRGB = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
-                copyDecodedStreamBytesIntoRGB(data, dataToRGB);
+                copyDecodedStreamBytesIntoRGB(data, dataToRGB, width, height);
                 // apply alpha data.
                 if (usingAlpha) {
                     img = ImageUtility.alterBufferedImageAlpha(img, maskMinRGB, maskMaxRGB);
@@ -1401,64 +1496,109 @@ public class ImageUtility {
         return img;
     }
 
-    private static void copyDecodedStreamBytesIntoRGB(byte[] data, int[] pixels) {
-        byte[] rgb = new byte[3];
-        try {
-            InputStream input = new ByteArrayInputStream(data);
-            for (int pixelIndex = 0; pixelIndex < pixels.length; pixelIndex++) {
-                int argb = 0xFF000000;
-                final int toRead = 3;
-                int haveRead = 0;
-                while (haveRead < toRead) {
-                    int currRead = input.read(rgb, haveRead, toRead - haveRead);
-                    if (currRead < 0)
-                        break;
-                    haveRead += currRead;
+    /**
+     * Number of samples left along an axis of the given size once subsampled.
+     *
+     * @param size        width or height of the full image.
+     * @param subsampling column and row step.
+     * @return subsampled width or height.
+     */
+    public static int subsampledSize(int size, int subsampling) {
+        return (size + subsampling - 1) / subsampling;
+    }
+
+    /**
+     * Picks every subsampling'th pixel of every subsampling'th row out of raw
+     * image data, rows of both the source and the result start on a byte
+     * boundary.
+     *
+     * @param data         raw image data.
+     * @param width        image width in pixels.
+     * @param height       image height in pixels.
+     * @param bitsPerPixel bits per pixel, either 1, 2, 4 or a multiple of 8.
+     * @param subsampling  column and row step.
+     * @return subsampled data, or null if the data is shorter than the image
+     * which is left to the usual decode.
+     */
+    public static byte[] subsample(byte[] data, int width, int height,
+                                   int bitsPerPixel, int subsampling) {
+        int rowBytes = (width * bitsPerPixel + 7) >> 3;
+        if (data.length < rowBytes * height) {
+            return null;
+        }
+        int newWidth = subsampledSize(width, subsampling);
+        int newHeight = subsampledSize(height, subsampling);
+        int newRowBytes = (newWidth * bitsPerPixel + 7) >> 3;
+        byte[] out = new byte[newRowBytes * newHeight];
+        if ((bitsPerPixel & 7) == 0) {
+            int pixelBytes = bitsPerPixel >> 3;
+            int step = pixelBytes * subsampling;
+            for (int y = 0; y < newHeight; y++) {
+                int src = y * subsampling * rowBytes;
+                int dest = y * newRowBytes;
+                for (int x = 0; x < newWidth; x++, src += step, dest += pixelBytes) {
+                    System.arraycopy(data, src, out, dest, pixelBytes);
+                }
+            }
+        } else {
+            int mask = (1 << bitsPerPixel) - 1;
+            for (int y = 0; y < newHeight; y++) {
+                int src = y * subsampling * rowBytes;
+                int dest = y * newRowBytes;
+                for (int x = 0; x < newWidth; x++) {
+                    int srcBit = x * subsampling * bitsPerPixel;
+                    int value = (data[src + (srcBit >> 3)] >> (8 - bitsPerPixel - (srcBit & 7))) & mask;
+                    int destBit = x * bitsPerPixel;
+                    out[dest + (destBit >> 3)] |= value << (8 - bitsPerPixel - (destBit & 7));
                 }
-                if (haveRead >= 1)
-                    argb |= ((((int) rgb[0]) << 16) & 0x00FF0000);
-                if (haveRead >= 2)
-                    argb |= ((((int) rgb[1]) << 8) & 0x0000FF00);
-                if (haveRead >= 3)
-                    argb |= (((int) rgb[2]) & 0x000000FF);
-                pixels[pixelIndex] = argb;
             }
-            input.close();
-        } catch (IOException e) {
-            logger.log(Level.FINE, "Problem copying decoding stream bytes: ", e);
         }
+        return out;
     }
 
-    private static void copyDecodedStreamBytesIntoGray(byte[] data, int[] pixels, float[] decode) {
-        byte[] rgb = new byte[1];
-        boolean defaultDecode = 0.0f == decode[0];
-        int Y;
-        try {
-            InputStream input = new ByteArrayInputStream(data);
-            for (int pixelIndex = 0; pixelIndex < pixels.length; pixelIndex++) {
-                int argb = 0xFF000000;
-                final int toRead = 1;
-                int haveRead = 0;
-                while (haveRead < toRead) {
-                    int currRead = input.read(rgb, haveRead, toRead - haveRead);
-                    if (currRead < 0)
-                        break;
-                    haveRead += currRead;
+    private static void copyDecodedStreamBytesIntoRGB(final byte[] data, final int[] pixels,
+                                                      final int width, int height) {
+        processRows(width, height, new ImageBands.Band() {
+            public void process(int startRow, int endRow) {
+                // missing trailing bytes are left black.
+                int end = Math.min(pixels.length, endRow * width);
+                for (int pixelIndex = startRow * width, i = pixelIndex * 3; pixelIndex < end;
+                     pixelIndex++, i += 3) {
+                    int argb = 0xFF000000;
+                    if (i < data.length)
+                        argb |= ((((int) data[i]) << 16) & 0x00FF0000);
+                    if (i + 1 < data.length)
+                        argb |= ((((int) data[i + 1]) << 8) & 0x0000FF00);
+                    if (i + 2 < data.length)
+                        argb |= (((int) data[i + 2]) & 0x000000FF);
+                    pixels[pixelIndex] = argb;
                 }
-                Y = (int) rgb[0] & 0xff;
-                Y = defaultDecode ? Y : 255 - Y;
-                argb |= (Y << 16) & 0x00FF0000;
-                argb |= (Y << 8) & 0x0000FF00;
-                argb |= (Y & 0x000000FF);
-                pixels[pixelIndex] = argb;
             }
-            input.close();
-        } catch (IOException e) {
-            logger.log(Level.FINE, "Problem copying decoding stream bytes: ", e);
-        }
+        });
+    }
+
+    private static void copyDecodedStreamBytesIntoGray(final byte[] data, final int[] pixels,
+                                                       float[] decode, final int width, int height) {
+        final boolean defaultDecode = 0.0f == decode[0];
+        // past the end of the data the last value is repeated.
+        final int last = data.length > 0 ? (int) data[data.length - 1] & 0xff : 0;
+        processRows(width, height, new ImageBands.Band() {
+            public void process(int startRow, int endRow) {
+                int end = Math.min(pixels.length, endRow * width);
+                int Y;
+                for (int pixelIndex = startRow * width; pixelIndex < end; pixelIndex++) {
+                    int argb = 0xFF000000;
+                    Y = pixelIndex < data.length ? (int) data[pixelIndex] & 0xff : last;
+                    Y = defaultDecode ? Y : 255 - Y;
+                    argb |= (Y << 16) & 0x00FF0000;
+                    argb |= (Y << 8) & 0x0000FF00;
+                    argb |= (Y & 0x000000FF);
+                    pixels[pixelIndex] = argb;
+                }
+            }
+        });
     }
 
-    // default version of createBufferedImage
     public static BufferedImage createBufferedImage(Image imageIn) {
         return createBufferedImage(imageIn, BufferedImage.TYPE_INT_ARGB);
     }
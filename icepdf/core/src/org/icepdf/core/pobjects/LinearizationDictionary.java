@@ -0,0 +1,141 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects;
+
+import org.icepdf.core.util.Library;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <p>The linearization parameter dictionary is the first object of a
+ * linearized, or "Fast Web View", PDF file.  A linearized file is laid out so
+ * that the objects of the first page come first and are followed by their
+ * own cross-reference section, a viewer can so show the first page before
+ * the rest of the file was read.</p>
+ * <p/>
+ * <p>The dictionary is only valid if the file length it records matches the
+ * actual length of the file, an incremental update appended to a linearized
+ * file invalidates the linearization and the file must then be read like any
+ * other from its last cross-reference section.</p>
+ *
+ * @since 6.2
+ */
+public class LinearizationDictionary extends Dictionary {
+
+    public static final Name LINEARIZED_KEY = new Name("Linearized");
+    public static final Name L_KEY = new Name("L");
+    public static final Name H_KEY = new Name("H");
+    public static final Name O_KEY = new Name("O");
+    public static final Name E_KEY = new Name("E");
+    public static final Name N_KEY = new Name("N");
+    public static final Name T_KEY = new Name("T");
+
+    public LinearizationDictionary(Library library, HashMap<?, ?> entries) {
+        super(library, entries);
+    }
+
+    /**
+     * Indicates the given dictionary is a linearization parameter dictionary.
+     *
+     * @param entries dictionary entries to check.
+     * @return true if the dictionary has a Linearized entry.
+     */
+    public static boolean isLinearizationDictionary(HashMap<?, ?> entries) {
+        return entries != null && entries.get(LINEARIZED_KEY) instanceof Number;
+    }
+
+    /**
+     * Gets the linearization version.
+     *
+     * @return version number, usually 1.
+     */
+    public float getVersion() {
+        return library.getFloat(entries, LINEARIZED_KEY);
+    }
+
+    /**
+     * Gets the length of the entire file in bytes.
+     *
+     * @return file length.
+     */
+    public long getFileLength() {
+        return library.getLong(entries, L_KEY);
+    }
+
+    /**
+     * Gets the offsets and lengths of the primary and overflow hint streams.
+     *
+     * @return hint stream offsets and lengths, null if not present.
+     */
+    public List<?> getHintStreams() {
+        Object hints = library.getObject(entries, H_KEY);
+        if (hints instanceof List) {
+            return (List<?>) hints;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the object number of the first page's page object.
+     *
+     * @return first page object number.
+     */
+    public int getFirstPageObjectNumber() {
+        return library.getInt(entries, O_KEY);
+    }
+
+    /**
+     * Gets the offset of the end of the first page, everything needed to
+     * show the first page comes before this offset.
+     *
+     * @return end of first page offset.
+     */
+    public long getFirstPageEnd() {
+        return library.getLong(entries, E_KEY);
+    }
+
+    /**
+     * Gets the number of pages in the document.
+     *
+     * @return number of pages.
+     */
+    public int getNumberOfPages() {
+        return library.getInt(entries, N_KEY);
+    }
+
+    /**
+     * Gets the offset of the white-space character preceding the first entry
+     * of the main cross-reference table.
+     *
+     * @return main cross-reference table offset.
+     */
+    public long getMainCrossReferenceOffset() {
+        return library.getLong(entries, T_KEY);
+    }
+
+    /**
+     * Checks the dictionary against the length of the file it was read from,
+     * the linearization can't be trusted if the two differ.
+     *
+     * @param length length of the file.
+     * @return true if the linearization is valid.
+     */
+    public boolean isValid(long length) {
+        return getFileLength() == length && getFirstPageObjectNumber() > 0 &&
+                getNumberOfPages() > 0;
+    }
+}
@@ -81,6 +81,17 @@ public class ObjectStream extends Stream {
 
     }
 
+    /**
+     * Gets the numbers of the objects held in this stream, in the order of
+     * their index within the stream.
+     *
+     * @return object numbers, null if the stream couldn't be read.
+     */
+    public int[] getObjectNumbers() {
+        init();
+        return objectNumbers;
+    }
+
     public Object loadObject(Library library, int objectIndex) {
 //System.out.println("ObjectStream.loadObject()  objectIndex: " + objectIndex);
         init();
@@ -18,6 +18,7 @@ package org.icepdf.core.pobjects;
 import org.icepdf.core.events.*;
 import org.icepdf.core.io.SeekableInput;
 import org.icepdf.core.pobjects.annotations.Annotation;
+import org.icepdf.core.pobjects.annotations.AnnotationIndex;
 import org.icepdf.core.pobjects.annotations.FreeTextAnnotation;
 import org.icepdf.core.pobjects.graphics.Shapes;
 import org.icepdf.core.pobjects.graphics.WatermarkCallback;
@@ -156,6 +157,8 @@ public class Page extends Dictionary {
     private Resources resources;
     // Vector of annotations
     private List<Annotation> annotations;
+    // spatial index of the annotations, used to cull painting and hit testing.
+    private AnnotationIndex annotationIndex;
     // Contents
     private List<Stream> contents;
     // Container for all shapes stored on page
@@ -188,6 +191,10 @@ public class Page extends Dictionary {
     private boolean pageInitialized;
     private boolean pagePainted;
 
+    // inheritable attributes are all in the page's own dictionary, the parent
+    // page tree isn't read for them.
+    private boolean inheritedAttributesPushedDown;
+
     private WatermarkCallback watermarkCallback;
 
     /**
@@ -244,7 +251,7 @@ public class Page extends Dictionary {
         Resources res = library.getResources(entries, RESOURCES_KEY);
         PageTree pageTree;
         if (res == null) {
-            pageTree = getParent();
+            pageTree = getInheritanceParent();
             while (pageTree != null) {
                 if (Thread.currentThread().isInterrupted()) {
                     throw new InterruptedException("Page Resource initialization thread interrupted");
@@ -321,6 +328,7 @@ public class Page extends Dictionary {
                             a != null ? " " + a.getPObjectReference() + a.getEntries() : "");
                 }
             }
+            annotationIndex = new AnnotationIndex(annotations);
         }
     }
 
@@ -589,6 +597,20 @@ public class Page extends Dictionary {
 
     private void paintPageContent(Graphics2D g2, int renderHintType, float userRotation, float userZoom,
                                   boolean paintAnnotations, boolean paintSearchHighlight) throws InterruptedException {
+        // the whole paint sees the same edits, even if annotations are changed meanwhile.
+        StateManager stateManager = library.getStateManager();
+        StateManager.Snapshot pinned = stateManager != null ? stateManager.pinSnapshot() : null;
+        try {
+            renderPageContent(g2, renderHintType, userRotation, userZoom, paintAnnotations, paintSearchHighlight);
+        } finally {
+            if (pinned != null) {
+                stateManager.unpinSnapshot(pinned);
+            }
+        }
+    }
+
+    private void renderPageContent(Graphics2D g2, int renderHintType, float userRotation, float userZoom,
+                                   boolean paintAnnotations, boolean paintSearchHighlight) throws InterruptedException {
         // draw page content
         if (shapes != null) {
             pagePainted = false;
@@ -608,10 +630,13 @@ public class Page extends Dictionary {
         // paint annotations if available and desired.
         if (annotations != null && paintAnnotations) {
             float totalRotation = getTotalRotation(userRotation);
-            int num = annotations.size();
+            // only the annotations that can paint in to the clip.
+            List<Annotation> paintable =
+                    annotationIndex.getPaintableAnnotations(getUserSpaceClip(g2));
+            int num = paintable.size();
             Annotation annotation;
             for (int i = 0; i < num; i++) {
-                annotation = annotations.get(i);
+                annotation = paintable.get(i);
                 annotation.render(g2, renderHintType, totalRotation, userZoom, false);
             }
         }
@@ -625,9 +650,15 @@ public class Page extends Dictionary {
                         SELECTION_ALPHA));
                 // paint the sprites
                 GeneralPath textPath;
-                // iterate over the data structure.
-                if (pageText.getPageLines() != null) {
-                    for (LineText lineText : pageText.getPageLines()) {
+                // iterate over the lines that can paint in to the clip.
+                ArrayList<LineText> pageLines = pageText.getPageLines();
+                if (pageLines != null) {
+                    Rectangle2D clip = getUserSpaceClip(g2);
+                    int[] visibleLines = clip != null ? pageText.getTextIndex().findLines(clip) : null;
+                    int max = visibleLines != null ? visibleLines.length : pageLines.size();
+                    LineText lineText;
+                    for (int i = 0; i < max; i++) {
+                        lineText = pageLines.get(visibleLines != null ? visibleLines[i] : i);
                         if (lineText != null) {
                             for (WordText wordText : lineText.getWords()) {
                                 // paint whole word
@@ -833,6 +864,7 @@ public class Page extends Dictionary {
             stateManager.addChange(annotsPObject);
 
             this.annotations = new ArrayList<Annotation>();
+            this.annotationIndex = new AnnotationIndex(null);
         }
 
         // update parent page reference.
@@ -841,6 +873,7 @@ public class Page extends Dictionary {
 
         // add the annotations to the parsed annotations list
         this.annotations.add(newAnnotation);
+        annotationIndex.add(newAnnotation);
 
         // add the new annotations to the library
         library.addObject(newAnnotation, newAnnotation.getPObjectReference());
@@ -929,6 +962,7 @@ public class Page extends Dictionary {
         // remove the annotations form the annotation cache in the page object
         if (annotations != null) {
             annotations.remove(annot);
+            annotationIndex.remove(annot);
         }
         // finally remove it from the library to free up the memory
         library.removeObject(annot.getPObjectReference());
@@ -980,6 +1014,7 @@ public class Page extends Dictionary {
             // page and annotations creation has already been done.
             stateManager.addChange(
                     new PObject(annotation, annotation.getPObjectReference()));
+            annotationIndex.update(annotation);
             return true;
         }
         // we have to do the checks for page and annot dictionary entry.
@@ -990,6 +1025,7 @@ public class Page extends Dictionary {
 
             // add the annotations to the parsed annotations list
             this.annotations.add(annotation);
+            annotationIndex.add(annotation);
 
             // add the new annotations to the library
             library.addObject(annotation, annotation.getPObjectReference());
@@ -1277,7 +1313,7 @@ public class Page extends Dictionary {
         }
         // check parent to see if value has been set
         else {
-            PageTree pageTree = getParent();
+            PageTree pageTree = getInheritanceParent();
             while (pageTree != null) {
                 if (pageTree.isRotationFactor) {
                     pageRotation = pageTree.rotationFactor;
@@ -1312,6 +1348,77 @@ public class Page extends Dictionary {
         return annotations;
     }
 
+    /**
+     * Gets the annotations whose rectangle contains the given point.  The
+     * annotations are found through a spatial index of the page's
+     * annotations, which is faster than testing every annotation on pages
+     * with a lot of annotations.
+     *
+     * @param point point in user space.
+     * @return annotations in painting order, topmost last; empty if none.
+     */
+    public List<Annotation> getAnnotations(Point2D point) {
+        getAnnotations();
+        if (annotationIndex == null) {
+            return new ArrayList<Annotation>(0);
+        }
+        return annotationIndex.getAnnotations(point);
+    }
+
+    /**
+     * Gets the annotations whose rectangle intersects the given rectangle.
+     *
+     * @param area rectangle in user space.
+     * @return annotations in painting order, topmost last; empty if none.
+     * @see #getAnnotations(java.awt.geom.Point2D)
+     */
+    public List<Annotation> getAnnotations(Rectangle2D area) {
+        getAnnotations();
+        if (annotationIndex == null) {
+            return new ArrayList<Annotation>(0);
+        }
+        return annotationIndex.getAnnotations(area);
+    }
+
+    /**
+     * Gets the annotations that may paint in to the given rectangle, the
+     * ones intersecting it and the ones that don't paint inside their
+     * rectangle because of the NoZoom or NoRotate flags.
+     *
+     * @param area rectangle in user space, null for all annotations.
+     * @return annotations in painting order; empty if none.
+     */
+    public List<Annotation> getPaintableAnnotations(Rectangle2D area) {
+        getAnnotations();
+        if (annotationIndex == null) {
+            return new ArrayList<Annotation>(0);
+        }
+        return annotationIndex.getPaintableAnnotations(area);
+    }
+
+    /**
+     * Maps the clip of the given graphics back to user space, grown by a
+     * couple of pixels for antialiased edges.
+     *
+     * @param g2 graphics with the page's user space transform.
+     * @return clip bounds in user space, null if there is no clip.
+     */
+    private static Rectangle2D getUserSpaceClip(Graphics2D g2) {
+        Shape clip = g2.getClip();
+        if (clip == null) {
+            return null;
+        }
+        AffineTransform transform = g2.getTransform();
+        try {
+            Rectangle2D deviceClip = transform.createTransformedShape(clip).getBounds2D();
+            deviceClip.setRect(deviceClip.getX() - 2, deviceClip.getY() - 2,
+                    deviceClip.getWidth() + 4, deviceClip.getHeight() + 4);
+            return transform.createInverse().createTransformedShape(deviceClip).getBounds2D();
+        } catch (NoninvertibleTransformException e) {
+            return null;
+        }
+    }
+
     /**
      * Returns the decoded content stream for this page instance.  A page instance
      * can have more then one content stream associated with it.
@@ -1370,7 +1477,7 @@ public class Page extends Dictionary {
         }
         // If mediaBox is null check with the parent pages, as media box is inheritable
         if (mediaBox == null) {
-            PageTree pageTree = getParent();
+            PageTree pageTree = getInheritanceParent();
             while (pageTree != null && mediaBox == null) {
                 mediaBox = pageTree.getMediaBox();
                 if (mediaBox == null) {
@@ -1403,7 +1510,7 @@ public class Page extends Dictionary {
         // If cropbox is null check with the parent pages, as media box is inheritable
         boolean isParentCropBox = false;
         if (cropBox == null) {
-            PageTree pageTree = getParent();
+            PageTree pageTree = getInheritanceParent();
             while (pageTree != null && cropBox == null) {
                 if (pageTree.getCropBox() == null) {
                     break;
@@ -1636,6 +1743,22 @@ public class Page extends Dictionary {
         this.pageIndex = pageIndex;
     }
 
+    /**
+     * Marks the page as holding all of its inheritable attributes itself, as
+     * the pages of a linearized document do, so the page can be shown before
+     * its parent page tree was read.
+     *
+     * @param pushedDown true if the parent page tree shouldn't be read for
+     *                   inherited attributes.
+     */
+    protected void setInheritedAttributesPushedDown(boolean pushedDown) {
+        inheritedAttributesPushedDown = pushedDown;
+    }
+
+    private PageTree getInheritanceParent() {
+        return inheritedAttributesPushedDown ? null : getParent();
+    }
+
     /**
      * Gets a vector of Images where each index represents an image  inside
      * this page.
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects;
+
+import org.icepdf.core.util.BoundedLRUCache;
+import org.icepdf.core.util.Defs;
+
+/**
+ * The resource cache keeps the objects that resources resolve to, external
+ * graphics states, colour spaces and fonts, by the reference of the resource.
+ * Pages and forms that share a resource so resolve it once, even when the
+ * resource dictionaries themselves are read again after they were dropped
+ * from the library.  Only objects that aren't changed once built are cached,
+ * patterns and shadings take the matrix and graphics state of each use and
+ * are still built for every use.
+ * <p/>
+ * Each document's library has its own cache.  The cache is least recently
+ * used and holds at most org.icepdf.core.resource.cache.size objects,
+ * default 1024, a value of 0 disables the cache.  Hit and miss counts show
+ * how often resources were shared.
+ *
+ * @since 6.2
+ */
+public class ResourceCache {
+
+    private static int maxResources;
+
+    static {
+        maxResources = Defs.intProperty("org.icepdf.core.resource.cache.size", 1024);
+    }
+
+    private final BoundedLRUCache<Reference, Object> resources =
+            new BoundedLRUCache<Reference, Object>(maxResources);
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Gets the object a resource reference resolved to.
+     *
+     * @param reference resource reference.
+     * @param type      expected class of the object.
+     * @return cached object, null if not cached or not of the given type.
+     */
+    public synchronized <T> T get(Reference reference, Class<T> type) {
+        if (maxResources <= 0 || reference == null) {
+            return null;
+        }
+        Object resource = resources.get(reference);
+        if (type.isInstance(resource)) {
+            hits++;
+            return type.cast(resource);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Adds a resolved resource to the cache.  Cached objects are shared by
+     * all pages and must not be changed.
+     *
+     * @param reference resource reference.
+     * @param resource  object the reference resolved to.
+     */
+    public void put(Reference reference, Object resource) {
+        resources.put(reference, resource);
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public int size() {
+        return resources.size();
+    }
+
+    public void clear() {
+        resources.clear();
+    }
+}
@@ -93,9 +93,19 @@ public class Resources extends Dictionary {
             // every resource has a color space entry and o can be tmp in it.
             if (colorspaces != null && colorspaces.get(o) != null) {
                 tmp = colorspaces.get(o);
-                PColorSpace cs = PColorSpace.getColorSpace(library, tmp);
+                ResourceCache resourceCache = library.getResourceCache();
+                Reference reference = tmp instanceof Reference ? (Reference) tmp : null;
+                PColorSpace cs = resourceCache.get(reference, PColorSpace.class);
+                if (cs != null) {
+                    return cs;
+                }
+                cs = PColorSpace.getColorSpace(library, tmp);
                 if (cs != null) {
                     cs.init();
+                    // a pattern colour space takes the pattern of each use.
+                    if (!(cs instanceof PatternColor)) {
+                        resourceCache.put(reference, cs);
+                    }
                 }
                 return cs;
             }
@@ -142,19 +152,24 @@ public class Resources extends Dictionary {
             // the default value is most likely Reference
             else if (ob instanceof Reference) {
                 Reference ref = (Reference) ob;
-                ob = library.getObject((Reference) ob);
-                if (ob instanceof PObject) {
-                    ob = ((PObject) ob).getObject();
-                }
-                if (ob instanceof org.icepdf.core.pobjects.fonts.Font) {
-                    font = (org.icepdf.core.pobjects.fonts.Font) ob;
-                } else {
-                    font = FontFactory.getInstance().getFont(library, (HashMap) ob);
-                }
-                // cache the font for later use.
-                if (font != null) {
-                    library.addObject(font, ref);
-                    font.setPObjectReference(ref);
+                ResourceCache resourceCache = library.getResourceCache();
+                font = resourceCache.get(ref, org.icepdf.core.pobjects.fonts.Font.class);
+                if (font == null) {
+                    ob = library.getObject((Reference) ob);
+                    if (ob instanceof PObject) {
+                        ob = ((PObject) ob).getObject();
+                    }
+                    if (ob instanceof org.icepdf.core.pobjects.fonts.Font) {
+                        font = (org.icepdf.core.pobjects.fonts.Font) ob;
+                    } else {
+                        font = FontFactory.getInstance().getFont(library, (HashMap) ob);
+                    }
+                    // cache the font for later use.
+                    if (font != null) {
+                        library.addObject(font, ref);
+                        font.setPObjectReference(ref);
+                        resourceCache.put(ref, font);
+                    }
                 }
             }
             // if still null do a deeper search checking the base font name of
@@ -344,6 +359,14 @@ public class Resources extends Dictionary {
     public ExtGState getExtGState(Name namedReference) {
         ExtGState gsState = null;
         if (extGStates != null) {
+            // graphics states are only read, so one instance serves every use.
+            ResourceCache resourceCache = library.getResourceCache();
+            Object value = extGStates.get(namedReference);
+            Reference reference = value instanceof Reference ? (Reference) value : null;
+            gsState = resourceCache.get(reference, ExtGState.class);
+            if (gsState != null) {
+                return gsState;
+            }
             Object attribute = library.getObject(extGStates, namedReference);
             if (attribute instanceof HashMap) {
                 gsState = new ExtGState(library, (HashMap) attribute);
@@ -352,6 +375,7 @@ public class Resources extends Dictionary {
                         (HashMap) library.getObject(
                                 (Reference) attribute));
             }
+            resourceCache.put(reference, gsState);
         }
         return gsState;
     }
@@ -16,6 +16,8 @@
 package org.icepdf.core.pobjects;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -26,6 +28,17 @@ import java.util.logging.Logger;
  * <p/>
  * Once this object is created should be added to the library so that is
  * accessible by any PObject.
+ * <p/>
+ * The library checks the state manager on every object lookup, while the
+ * viewer adds changes from the awt thread and pages render on other threads.
+ * The changes are kept in a concurrent map so lookups never lock, a lookup
+ * in the empty map of an unchanged document costs next to nothing.  Changes
+ * are made under the manager's lock and each one increments the version.
+ * <p/>
+ * A thread can pin a snapshot of the changes, a page paint for example, and
+ * until it unpins it all of its lookups see the same changes even if an edit
+ * is made meanwhile.  Snapshots are immutable copies built at most once for
+ * each version.
  *
  * @since 4.0
  */
@@ -33,8 +46,16 @@ public class StateManager {
     private static final Logger logger =
             Logger.getLogger(StateManager.class.getName());
 
-    // a list is all we might need. 
-    private HashMap<Reference, PObject> changes;
+    // current changes.
+    private final ConcurrentHashMap<Reference, PObject> changes;
+    private volatile int version;
+    // copy of the changes at the last version a snapshot was asked for.
+    private Snapshot snapshot;
+
+    // snapshot pinned by a thread and the number of threads with one pinned,
+    // the thread local is only checked if any thread pinned a snapshot.
+    private final ThreadLocal<Snapshot> pinnedSnapshot = new ThreadLocal<Snapshot>();
+    private final AtomicInteger pinnedCount = new AtomicInteger();
 
     // access to xref size and next revision number.
     private PTrailer trailer;
@@ -49,7 +70,7 @@ public class StateManager {
     public StateManager(PTrailer trailer) {
         this.trailer = trailer;
         // cache of objects that have changed.
-        changes = new HashMap<Reference, PObject>();
+        changes = new ConcurrentHashMap<Reference, PObject>();
 
         // number of objects is always one more then the current size and
         // thus the next available number.
@@ -63,7 +84,7 @@ public class StateManager {
      *
      * @return valid reference number.
      */
-    public Reference getNewReferencNumber() {
+    public synchronized Reference getNewReferencNumber() {
         // zero revision number for now but technically we can reuse
         // deleted references and increment the rev number.  For no we
         // keep it simple
@@ -77,8 +98,9 @@ public class StateManager {
      *
      * @param pObject object to add to cache.
      */
-    public void addChange(PObject pObject) {
+    public synchronized void addChange(PObject pObject) {
         changes.put(pObject.getReference(), pObject);
+        version++;
         int objectNumber = pObject.getReference().getObjectNumber();
         // check the reference numbers
         if (nextReferenceNumber <= objectNumber) {
@@ -94,16 +116,22 @@ public class StateManager {
      * @return true if reference is already a key in the cache; otherwise, false.
      */
     public boolean contains(Reference reference) {
-        return changes.containsKey(reference);
+        return getChange(reference) != null;
     }
 
     /**
      * Returns an instance of the specified reference
      *
      * @param reference reference to look for an existing usage
-     * @return PObject of corresponding reference if present, false otherwise.
+     * @return PObject of corresponding reference if present, null otherwise.
      */
     public Object getChange(Reference reference) {
+        if (pinnedCount.get() > 0) {
+            Snapshot pinned = pinnedSnapshot.get();
+            if (pinned != null) {
+                return pinned.getChange(reference);
+            }
+        }
         return changes.get(reference);
     }
 
@@ -112,8 +140,10 @@ public class StateManager {
      *
      * @param pObject pObject to removed from the cache.
      */
-    public void removeChange(PObject pObject) {
-        changes.remove(pObject.getReference());
+    public synchronized void removeChange(PObject pObject) {
+        if (changes.remove(pObject.getReference()) != null) {
+            version++;
+        }
     }
 
     /**
@@ -132,11 +162,74 @@ public class StateManager {
         return changes.size();
     }
 
+    /**
+     * Gets the version of the changes, incremented each time a change is
+     * added or removed.
+     *
+     * @return current version.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the changes seen by the calling thread, the snapshot it pinned or
+     * else the current one.
+     *
+     * @return immutable snapshot of the changes.
+     */
+    public Snapshot getSnapshot() {
+        if (pinnedCount.get() > 0) {
+            Snapshot pinned = pinnedSnapshot.get();
+            if (pinned != null) {
+                return pinned;
+            }
+        }
+        return getCurrentSnapshot();
+    }
+
+    private synchronized Snapshot getCurrentSnapshot() {
+        if (snapshot == null || snapshot.version != version) {
+            snapshot = new Snapshot(new HashMap<Reference, PObject>(changes), version);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Pins the current snapshot to the calling thread, the thread's lookups
+     * see the pinned changes until it calls unpinSnapshot().  Pins don't
+     * nest, if the thread already pinned a snapshot it is kept.
+     *
+     * @return snapshot to pass to unpinSnapshot(), null if the thread
+     * already had one pinned.
+     */
+    public Snapshot pinSnapshot() {
+        if (pinnedSnapshot.get() != null) {
+            return null;
+        }
+        Snapshot pinned = getCurrentSnapshot();
+        pinnedSnapshot.set(pinned);
+        pinnedCount.incrementAndGet();
+        return pinned;
+    }
+
+    /**
+     * Releases a snapshot pinned by pinSnapshot().
+     *
+     * @param pinned snapshot returned by pinSnapshot(), null is ignored.
+     */
+    public void unpinSnapshot(Snapshot pinned) {
+        if (pinned != null) {
+            pinnedSnapshot.remove();
+            pinnedCount.decrementAndGet();
+        }
+    }
+
     /**
      * @return An Iterator<PObject> for all the changes objects, sorted
      */
     public Iterator<PObject> iteratorSortedByObjectNumber() {
-        Collection<PObject> coll = changes.values();
+        Collection<PObject> coll = getSnapshot().changes.values();
 /*
  * This code allows me to force an object to be treated as modified,
  * so I can debug how we write out that kind of object, before we
@@ -159,6 +252,40 @@ coll = hs;
     }
 
 
+    /**
+     * Immutable set of changes at a given version.
+     */
+    public static class Snapshot {
+
+        private final HashMap<Reference, PObject> changes;
+        private final int version;
+
+        private Snapshot(HashMap<Reference, PObject> changes, int version) {
+            this.changes = changes;
+            this.version = version;
+        }
+
+        public boolean contains(Reference reference) {
+            return !changes.isEmpty() && changes.containsKey(reference);
+        }
+
+        public PObject getChange(Reference reference) {
+            return changes.isEmpty() ? null : changes.get(reference);
+        }
+
+        public boolean isChanged() {
+            return !changes.isEmpty();
+        }
+
+        public int getChangedSize() {
+            return changes.size();
+        }
+
+        public int getVersion() {
+            return version;
+        }
+    }
+
     private static class PObjectComparatorByReferenceObjectNumber
             implements Comparator<PObject> {
         public int compare(PObject a, PObject b) {
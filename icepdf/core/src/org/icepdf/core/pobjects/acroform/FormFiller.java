@@ -0,0 +1,769 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.acroform;
+
+import org.icepdf.core.pobjects.*;
+import org.icepdf.core.pobjects.Dictionary;
+import org.icepdf.core.pobjects.annotations.*;
+import org.icepdf.core.util.Library;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fills the interactive form of a document without a viewer, each fill sets
+ * the values of a map of fully qualified field names and writes a filled copy
+ * of the document.  The document is opened and its form parsed once, after
+ * each fill the fields, widgets and state manager are put back the way they
+ * were so the same document serves as the template of any number of fills.
+ * <p/>
+ * Only the widgets of the fields named in a fill have their appearance
+ * streams regenerated, the fields are regenerated in parallel on the library's
+ * form pool.  Text and choice fields take the string value of the given
+ * object, check boxes and radio buttons take a Boolean or the name of the
+ * appearance state to turn on.  Fields that aren't named keep the values and
+ * appearances of the template.
+ * <p/>
+ * When flattening is enabled the normal appearances of the widgets are drawn
+ * in to the content of their pages and the widgets and the form are left out
+ * of the filled copy.  The copy is written as an incremental update of the
+ * template unless an optimized save is asked for, which writes a whole new
+ * file without the objects the flattening left behind.
+ * <p/>
+ * Fills of one filler are serialized, the document must not be used for
+ * anything else while it is filled.  Appearances shown by a page of the
+ * template are those of the last fill.
+ *
+ * @since 6.2
+ */
+public class FormFiller {
+
+    private static final Logger logger =
+            Logger.getLogger(FormFiller.class.toString());
+
+    private static final Name FLATTENED_FORM_PREFIX = new Name("FlatForm");
+
+    // bytes that save the page's graphics state before its own content.
+    private static final byte[] SAVE_STATE = {'q', '\n'};
+
+    private final Document document;
+    private final Library library;
+    private final StateManager stateManager;
+
+    // terminal fields by fully qualified name, in form order.
+    private final LinkedHashMap<String, Field> fields = new LinkedHashMap<String, Field>();
+    // widgets of all fields by reference.
+    private final HashMap<Reference, AbstractWidgetAnnotation<?>> widgets =
+            new HashMap<Reference, AbstractWidgetAnnotation<?>>();
+    // appearance forms generated for widgets that had none, reused by every
+    // fill so fills don't use up new object numbers.
+    private final ConcurrentHashMap<Reference, Form> generatedForms =
+            new ConcurrentHashMap<Reference, Form>();
+    // content streams added to flattened pages, reused by every fill.
+    private final HashMap<Reference, Reference[]> flattenedStreams =
+            new HashMap<Reference, Reference[]>();
+
+    private boolean flatten;
+    private boolean optimizedSave;
+
+    /**
+     * A terminal field and the widgets showing it.
+     */
+    private static class Field {
+        final String name;
+        // dictionary holding the value, the widget's own if they are merged.
+        final FieldDictionary dictionary;
+        final ArrayList<AbstractWidgetAnnotation<?>> widgets = new ArrayList<AbstractWidgetAnnotation<?>>(1);
+
+        Field(String name, FieldDictionary dictionary) {
+            this.name = name;
+            this.dictionary = dictionary;
+        }
+    }
+
+    /**
+     * Entries, appearance selections and appearance streams a fill changes,
+     * saved before any of the fill's tasks runs.
+     */
+    private class SavedState {
+        final IdentityHashMap<HashMap<Object, Object>, HashMap<Object, Object>> entries =
+                new IdentityHashMap<HashMap<Object, Object>, HashMap<Object, Object>>();
+        final IdentityHashMap<Appearance, Name> selections = new IdentityHashMap<Appearance, Name>();
+        // appearance streams of the file, regenerated in place.
+        final HashSet<Reference> streams = new HashSet<Reference>();
+
+        void save(Field field) {
+            save(field.dictionary.getEntries());
+            for (AbstractWidgetAnnotation<?> widget : field.widgets) {
+                save(widget.getEntries());
+                Appearance appearance = widget.getAppearances().get(widget.getCurrentAppearance());
+                if (appearance != null && !selections.containsKey(appearance)) {
+                    selections.put(appearance, appearance.getSelectedName());
+                }
+                Object normal = library.getObject(widget.getEntries(), Annotation.APPEARANCE_STREAM_KEY);
+                if (normal instanceof HashMap) {
+                    normal = ((HashMap<?, ?>) normal).get(Annotation.APPEARANCE_STREAM_NORMAL_KEY);
+                }
+                if (normal instanceof Reference && !generatedForms.containsKey(widget.getPObjectReference())) {
+                    streams.add((Reference) normal);
+                }
+            }
+        }
+
+        private void save(HashMap<Object, Object> map) {
+            if (!entries.containsKey(map)) {
+                entries.put(map, new HashMap<Object, Object>(map));
+            }
+        }
+
+        /**
+         * Restores the saved entries and selections, the regenerated
+         * appearance streams are dropped from the library so they are read
+         * from the file again.
+         */
+        void restore() {
+            for (Map.Entry<HashMap<Object, Object>, HashMap<Object, Object>> saved : entries.entrySet()) {
+                saved.getKey().clear();
+                saved.getKey().putAll(saved.getValue());
+            }
+            for (Map.Entry<Appearance, Name> saved : selections.entrySet()) {
+                saved.getKey().setSelectedName(saved.getValue());
+            }
+            for (Reference stream : streams) {
+                library.removeObject(stream);
+            }
+        }
+    }
+
+    /**
+     * Creates a filler for the form of the given document and initializes
+     * the widgets of its fields.
+     *
+     * @param document document to use as the template of the fills.
+     * @throws InterruptedException the widget initialization was interrupted.
+     */
+    public FormFiller(Document document) throws InterruptedException {
+        this.document = document;
+        library = document.getCatalog().getLibrary();
+        stateManager = document.getStateManager();
+        InteractiveForm interactiveForm = document.getCatalog().getInteractiveForm();
+        if (interactiveForm != null) {
+            List<?> roots = library.getArray(interactiveForm.getEntries(), InteractiveForm.FIELDS_KEY);
+            if (roots != null) {
+                collectFields(roots, null, null, new HashSet<Reference>());
+            }
+        }
+    }
+
+    /**
+     * Sets whether the widgets are drawn in to their pages' content instead of
+     * being written as fields.
+     *
+     * @param flatten true to flatten the form, default false.
+     */
+    public void setFlatten(boolean flatten) {
+        this.flatten = flatten;
+    }
+
+    public boolean isFlatten() {
+        return flatten;
+    }
+
+    /**
+     * Sets whether the filled copies are written as whole new files with
+     * {@link Document#saveOptimizedToOutputStream(OutputStream)} instead of
+     * incremental updates of the template.
+     *
+     * @param optimizedSave true for whole new files, default false.
+     */
+    public void setOptimizedSave(boolean optimizedSave) {
+        this.optimizedSave = optimizedSave;
+    }
+
+    public boolean isOptimizedSave() {
+        return optimizedSave;
+    }
+
+    /**
+     * Gets the fully qualified names of the form's terminal fields.
+     *
+     * @return field names in form order.
+     */
+    public Set<String> getFieldNames() {
+        return Collections.unmodifiableSet(fields.keySet());
+    }
+
+    /**
+     * Fills the form with the given values, writes the filled copy and puts
+     * the template back the way it was.  Names that aren't fields of the form
+     * are logged and skipped.
+     *
+     * @param values field values by fully qualified field name.
+     * @param out    stream to write the filled copy to.
+     * @return number of bytes written.
+     * @throws IOException error regenerating an appearance or writing the copy.
+     */
+    public synchronized long fill(Map<String, ?> values, OutputStream out) throws IOException {
+        StateManager.Snapshot baseline = stateManager.getSnapshot();
+        SavedState saved = new SavedState();
+        try {
+            ArrayList<FutureTask<Object>> tasks = new ArrayList<FutureTask<Object>>(values.size());
+            for (Map.Entry<String, ?> value : values.entrySet()) {
+                final Field field = fields.get(value.getKey());
+                if (field == null) {
+                    logger.warning("Form has no field named " + value.getKey());
+                    continue;
+                }
+                saved.save(field);
+                final Object fieldValue = value.getValue();
+                tasks.add(new FutureTask<Object>(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        try {
+                            fillField(field, fieldValue);
+                        } catch (RuntimeException e) {
+                            IOException error = new IOException(
+                                    "Error regenerating appearance of form field " + field.name);
+                            error.initCause(e);
+                            throw error;
+                        }
+                        return null;
+                    }
+                }));
+            }
+            regenerate(tasks);
+            if (flatten) {
+                flatten();
+            }
+            return optimizedSave ? document.saveOptimizedToOutputStream(out) :
+                    document.saveToOutputStream(out);
+        } finally {
+            revert(baseline, saved);
+        }
+    }
+
+    /**
+     * Runs the field tasks on the form pool and the calling thread and waits
+     * for all of them, the template can only be put back once none is left
+     * running.
+     */
+    private void regenerate(ArrayList<FutureTask<Object>> tasks) throws IOException {
+        for (int i = 1; i < tasks.size(); i++) {
+            if (!Library.executeForm(tasks.get(i))) {
+                tasks.get(i).run();
+            }
+        }
+        if (!tasks.isEmpty()) {
+            tasks.get(0).run();
+        }
+        Throwable error = null;
+        boolean interrupted = false;
+        for (FutureTask<Object> task : tasks) {
+            while (true) {
+                try {
+                    task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted filling form.");
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error != null) {
+            IOException e = new IOException("Error regenerating form field appearance.");
+            e.initCause(error);
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the value of a field and regenerates the appearances of its
+     * widgets, runs on a form pool thread.
+     */
+    private void fillField(Field field, Object value) throws InterruptedException {
+        Object fieldValue = null;
+        for (AbstractWidgetAnnotation<?> widget : field.widgets) {
+            Reference reference = widget.getPObjectReference();
+            if (widget instanceof ButtonWidgetAnnotation) {
+                ButtonWidgetAnnotation button = (ButtonWidgetAnnotation) widget;
+                if (button.getFieldDictionary().getButtonFieldType() ==
+                        ButtonFieldDictionary.ButtonFieldType.PUSH_BUTTON) {
+                    return;
+                }
+                Appearance appearance = button.getAppearances().get(button.getCurrentAppearance());
+                if (appearance == null) {
+                    continue;
+                }
+                Name state = getStateName(appearance, value);
+                if (state != null && state.equals(appearance.getOnName())) {
+                    button.turnOn();
+                    fieldValue = state;
+                } else {
+                    button.turnOff();
+                }
+                if (field.dictionary.getEntries() == button.getEntries()) {
+                    button.getFieldDictionary().setFieldValue(appearance.getSelectedName(), reference);
+                }
+                button.resetAppearanceStream(new AffineTransform());
+            } else if (widget instanceof TextWidgetAnnotation ||
+                    widget instanceof ChoiceWidgetAnnotation) {
+                fieldValue = value != null ? value.toString() : "";
+                if (widget instanceof ChoiceWidgetAnnotation) {
+                    ChoiceWidgetAnnotation choice = (ChoiceWidgetAnnotation) widget;
+                    if (choice.getFieldDictionary().getOptions() == null) {
+                        choice.getFieldDictionary().setOptions(choice.generateChoices());
+                    }
+                }
+                widget.getFieldDictionary().setFieldValue(fieldValue, reference);
+                regenerate(widget);
+            }
+        }
+        // a field with separate widgets keeps its own value.
+        FieldDictionary dictionary = field.dictionary;
+        if (!field.widgets.isEmpty() && dictionary.getEntries() != field.widgets.get(0).getEntries() &&
+                dictionary.getPObjectReference() != null) {
+            if (fieldValue == null) {
+                fieldValue = new Name("Off");
+            }
+            if (fieldValue instanceof Name) {
+                dictionary.getEntries().put(FieldDictionary.V_KEY, fieldValue);
+            } else {
+                if (dictionary instanceof ChoiceFieldDictionary &&
+                        ((ChoiceFieldDictionary) dictionary).getOptions() == null) {
+                    ((ChoiceFieldDictionary) dictionary).setOptions(
+                            new ArrayList<ChoiceFieldDictionary.ChoiceOption>());
+                }
+                dictionary.setFieldValue(fieldValue, dictionary.getPObjectReference());
+            }
+            stateManager.addChange(new PObject(dictionary, dictionary.getPObjectReference()));
+        }
+    }
+
+    /**
+     * Regenerates the appearance of a text or choice widget, a widget that had
+     * no appearance form gets the one generated by an earlier fill.
+     */
+    private void regenerate(AbstractWidgetAnnotation<?> widget) {
+        Reference reference = widget.getPObjectReference();
+        Form form = reference != null ? generatedForms.get(reference) : null;
+        if (form != null) {
+            HashMap<Object, Object> appearanceRefs = new HashMap<Object, Object>();
+            appearanceRefs.put(Annotation.APPEARANCE_STREAM_NORMAL_KEY, form.getPObjectReference());
+            widget.getEntries().put(Annotation.APPEARANCE_STREAM_KEY, appearanceRefs);
+            library.addObject(form, form.getPObjectReference());
+        }
+        boolean generated = form == null && !widget.hasAppearanceStream();
+        widget.resetAppearanceStream(new AffineTransform());
+        if (generated && reference != null) {
+            Stream stream = widget.getAppearanceStream();
+            if (stream instanceof Form) {
+                generatedForms.put(reference, (Form) stream);
+            }
+        }
+    }
+
+    private static Name getStateName(Appearance appearance, Object value) {
+        if (value instanceof Boolean) {
+            return ((Boolean) value) ? appearance.getOnName() : appearance.getOffName();
+        } else if (value instanceof Name) {
+            return (Name) value;
+        } else if (value != null) {
+            return new Name(value.toString());
+        }
+        return null;
+    }
+
+    /**
+     * Draws the widgets of the form in to the content of their pages and
+     * leaves the widgets and the form out of the written copy.
+     */
+    private void flatten() {
+        PageTree pageTree = document.getPageTree();
+        for (int i = 0, max = pageTree.getNumberOfPages(); i < max; i++) {
+            Reference pageReference = pageTree.getPageReference(i);
+            Page page = pageTree.getPage(i);
+            if (pageReference == null || page == null) {
+                continue;
+            }
+            HashMap<Object, Object> pageEntries = page.getEntries();
+            List<?> annots = library.getArray(pageEntries, Page.ANNOTS_KEY);
+            if (annots == null) {
+                continue;
+            }
+            ArrayList<Object> keptAnnots = new ArrayList<Object>(annots.size());
+            HashMap<Object, Object> resources = null;
+            HashMap<Object, Object> xObjects = null;
+            StringBuilder content = new StringBuilder();
+            boolean flattened = false;
+            for (Object annot : annots) {
+                AbstractWidgetAnnotation<?> widget = annot instanceof Reference ? widgets.get(annot) : null;
+                if (widget == null) {
+                    keptAnnots.add(annot);
+                    continue;
+                }
+                flattened = true;
+                Reference appearanceReference = getAppearanceReference(widget);
+                if (appearanceReference == null || widget.getFlagHidden()) {
+                    continue;
+                }
+                AffineTransform placement = getPlacement(widget, appearanceReference);
+                if (placement == null) {
+                    continue;
+                }
+                if (resources == null) {
+                    resources = getResources(pageEntries);
+                    Object tmp = library.getObject(resources, Resources.XOBJECT_KEY);
+                    HashMap<Object, Object> entries = getEntries(tmp);
+                    xObjects = entries != null ? new HashMap<Object, Object>(entries) :
+                            new HashMap<Object, Object>();
+                    resources.put(Resources.XOBJECT_KEY, xObjects);
+                }
+                Name name;
+                int count = xObjects.size();
+                do {
+                    name = new Name(FLATTENED_FORM_PREFIX.getName() + (++count));
+                } while (xObjects.containsKey(name));
+                xObjects.put(name, appearanceReference);
+                double[] matrix = new double[6];
+                placement.getMatrix(matrix);
+                content.append("q ");
+                for (double value : matrix) {
+                    content.append(formatNumber(value)).append(' ');
+                }
+                content.append("cm /").append(name.getName()).append(" Do Q\n");
+            }
+            if (!flattened) {
+                continue;
+            }
+            HashMap<Object, Object> flattenedPage = new HashMap<Object, Object>(pageEntries);
+            if (keptAnnots.isEmpty()) {
+                flattenedPage.remove(Page.ANNOTS_KEY);
+            } else {
+                flattenedPage.put(Page.ANNOTS_KEY, keptAnnots);
+            }
+            if (content.length() > 0) {
+                flattenedPage.put(Page.RESOURCES_KEY, resources);
+                flattenedPage.put(Page.CONTENTS_KEY, getFlattenedContents(pageReference, pageEntries,
+                        "Q\n" + content));
+            }
+            stateManager.addChange(new PObject(flattenedPage, pageReference));
+        }
+        // the fields went with their widgets.
+        Object catalogReference = stateManager.getTrailer().getDictionary().get(PTrailer.ROOT_KEY);
+        if (catalogReference instanceof Reference) {
+            HashMap<Object, Object> catalog = new HashMap<Object, Object>(document.getCatalog().getEntries());
+            catalog.remove(Catalog.ACRO_FORM_KEY);
+            stateManager.addChange(new PObject(catalog, (Reference) catalogReference));
+        }
+    }
+
+    /**
+     * Gets the reference of the widget's normal appearance stream in its
+     * current state.
+     */
+    private Reference getAppearanceReference(AbstractWidgetAnnotation<?> widget) {
+        Object appearances = library.getObject(widget.getEntries(), Annotation.APPEARANCE_STREAM_KEY);
+        if (!(appearances instanceof HashMap)) {
+            return null;
+        }
+        Object normal = ((HashMap<?, ?>) appearances).get(Annotation.APPEARANCE_STREAM_NORMAL_KEY);
+        if (normal instanceof Reference) {
+            Object stream = library.getObject((Reference) normal);
+            if (stream instanceof Stream) {
+                return (Reference) normal;
+            }
+            normal = stream;
+        }
+        if (normal instanceof HashMap) {
+            Object state = library.getObject(widget.getEntries(), Annotation.APPEARANCE_STATE_KEY);
+            Object stream = state != null ? ((HashMap<?, ?>) normal).get(state) : null;
+            if (stream instanceof Reference) {
+                return (Reference) stream;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the transform placing the widget's appearance form in its
+     * rectangle, the form's bounding box is transformed by its matrix and
+     * the result is scaled and moved on to the rectangle.
+     *
+     * @return transform to apply before drawing the form, null if the form or
+     * rectangle is empty.
+     */
+    private AffineTransform getPlacement(AbstractWidgetAnnotation<?> widget, Reference appearanceReference) {
+        Object stream = library.getObject(appearanceReference);
+        if (!(stream instanceof Stream)) {
+            return null;
+        }
+        HashMap<Object, Object> formEntries = ((Stream) stream).getEntries();
+        Rectangle2D rectangle = getRectangle(library.getArray(widget.getEntries(), Annotation.RECTANGLE_KEY));
+        Rectangle2D bbox = getRectangle(library.getArray(formEntries, Form.BBOX_KEY));
+        if (rectangle == null || bbox == null) {
+            return null;
+        }
+        AffineTransform matrix = new AffineTransform();
+        Object tmp = library.getObject(formEntries, Form.MATRIX_KEY);
+        if (tmp instanceof AffineTransform) {
+            matrix = (AffineTransform) tmp;
+        } else if (tmp instanceof List && ((List<?>) tmp).size() == 6) {
+            List<?> values = (List<?>) tmp;
+            double[] m = new double[6];
+            for (int i = 0; i < 6; i++) {
+                m[i] = values.get(i) instanceof Number ? ((Number) values.get(i)).doubleValue() : 0;
+            }
+            matrix = new AffineTransform(m);
+        }
+        Rectangle2D box = matrix.createTransformedShape(bbox).getBounds2D();
+        if (box.getWidth() <= 0 || box.getHeight() <= 0 ||
+                rectangle.getWidth() <= 0 || rectangle.getHeight() <= 0) {
+            return null;
+        }
+        double scaleX = rectangle.getWidth() / box.getWidth();
+        double scaleY = rectangle.getHeight() / box.getHeight();
+        return new AffineTransform(scaleX, 0, 0, scaleY,
+                rectangle.getX() - box.getX() * scaleX,
+                rectangle.getY() - box.getY() * scaleY);
+    }
+
+    /**
+     * Converts a PDF rectangle array in to a rectangle in PDF space.
+     */
+    private static Rectangle2D getRectangle(List<?> values) {
+        if (values == null || values.size() != 4) {
+            return null;
+        }
+        double[] points = new double[4];
+        for (int i = 0; i < 4; i++) {
+            if (!(values.get(i) instanceof Number)) {
+                return null;
+            }
+            points[i] = ((Number) values.get(i)).doubleValue();
+        }
+        Rectangle2D rectangle = new Rectangle2D.Double();
+        rectangle.setFrameFromDiagonal(points[0], points[1], points[2], points[3]);
+        return rectangle;
+    }
+
+    /**
+     * Gets a copy of the resources of a page, inherited ones included.
+     */
+    private HashMap<Object, Object> getResources(HashMap<Object, Object> pageEntries) {
+        HashMap<Object, Object> entries = pageEntries;
+        Set<HashMap<Object, Object>> seen =
+                Collections.newSetFromMap(new IdentityHashMap<HashMap<Object, Object>, Boolean>());
+        while (entries != null && seen.add(entries)) {
+            HashMap<Object, Object> resources = getEntries(library.getObject(entries, Page.RESOURCES_KEY));
+            if (resources != null) {
+                return new HashMap<Object, Object>(resources);
+            }
+            entries = getEntries(library.getObject(entries, Page.PARENT_KEY));
+        }
+        return new HashMap<Object, Object>();
+    }
+
+    /**
+     * Gets the entries of a dictionary object, the parser builds dictionaries
+     * without a type as plain maps of objects.
+     *
+     * @return entries, null if the object isn't a dictionary.
+     */
+    @SuppressWarnings("unchecked")
+    private static HashMap<Object, Object> getEntries(Object object) {
+        if (object instanceof Dictionary) {
+            return ((Dictionary) object).getEntries();
+        } else if (object instanceof HashMap) {
+            return (HashMap<Object, Object>) object;
+        }
+        return null;
+    }
+
+    /**
+     * Wraps the page's content in a saved graphics state and appends the
+     * drawing of the flattened widgets.
+     */
+    private List<Object> getFlattenedContents(Reference pageReference, HashMap<Object, Object> pageEntries,
+                                              String flattenedContent) {
+        Reference[] references = flattenedStreams.get(pageReference);
+        if (references == null) {
+            references = new Reference[]{stateManager.getNewReferencNumber(),
+                    stateManager.getNewReferencNumber()};
+            flattenedStreams.put(pageReference, references);
+        }
+        ArrayList<Object> contents = new ArrayList<Object>();
+        contents.add(references[0]);
+        Object tmp = pageEntries.get(Page.CONTENTS_KEY);
+        if (tmp instanceof Reference && library.getObject((Reference) tmp) instanceof List) {
+            tmp = library.getObject((Reference) tmp);
+        }
+        if (tmp instanceof List) {
+            contents.addAll((List<?>) tmp);
+        } else if (tmp != null) {
+            contents.add(tmp);
+        }
+        contents.add(references[1]);
+        addContentStream(references[0], SAVE_STATE);
+        addContentStream(references[1], flattenedContent.getBytes());
+        return contents;
+    }
+
+    private void addContentStream(Reference reference, byte[] content) {
+        HashMap<Object, Object> entries = new HashMap<Object, Object>();
+        entries.put(Stream.FILTER_KEY, new Name("FlateDecode"));
+        Stream stream = new Stream(library, entries, content);
+        stream.setRawBytes(content);
+        stream.setPObjectReference(reference);
+        stateManager.addChange(new PObject(stream, reference));
+    }
+
+    /**
+     * Writes a number for a content stream, which doesn't allow exponents.
+     */
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < Integer.MAX_VALUE) {
+            return Integer.toString((int) value);
+        }
+        return new BigDecimal(value).setScale(5, RoundingMode.HALF_UP)
+                .stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Puts the template back the way it was before the fill, the saved state
+     * is restored and the state manager's changes are brought back to the
+     * baseline.
+     */
+    private void revert(StateManager.Snapshot baseline, SavedState saved) {
+        saved.restore();
+        Iterator<PObject> changes = stateManager.iteratorSortedByObjectNumber();
+        while (changes.hasNext()) {
+            PObject change = changes.next();
+            PObject original = baseline.getChange(change.getReference());
+            if (original == null) {
+                stateManager.removeChange(change);
+            } else if (original != change) {
+                stateManager.addChange(original);
+            }
+        }
+    }
+
+    /**
+     * Walks the field hierarchy collecting the terminal fields and their
+     * widgets, a kid without a partial name is a widget of its parent.
+     */
+    private void collectFields(List<?> kids, String parentName, FieldDictionary parent,
+                               HashSet<Reference> seen) throws InterruptedException {
+        for (Object kid : kids) {
+            if (!(kid instanceof Reference) || !seen.add((Reference) kid)) {
+                continue;
+            }
+            Reference reference = (Reference) kid;
+            Object object = library.getObject(reference);
+            HashMap<Object, Object> entries = getEntries(object);
+            if (entries == null) {
+                continue;
+            }
+            boolean widget = Annotation.SUBTYPE_WIDGET.equals(
+                    library.getName(entries, Annotation.SUBTYPE_KEY));
+            Object partialName = library.getObject(entries, FieldDictionary.T_KEY);
+            if (parent != null && partialName == null && widget) {
+                addWidget(parentName, parent, reference, object, entries);
+                continue;
+            }
+            String name = partialName instanceof StringObject ?
+                    ((StringObject) partialName).getDecryptedLiteralString(library.getSecurityManager()) :
+                    partialName != null ? partialName.toString() : "";
+            if (parentName != null) {
+                name = parentName + "." + name;
+            }
+            FieldDictionary dictionary;
+            if (widget) {
+                AbstractWidgetAnnotation<?> annotation = addWidget(name, null, reference, object, entries);
+                if (annotation == null) {
+                    continue;
+                }
+                dictionary = annotation.getFieldDictionary();
+            } else {
+                dictionary = FieldDictionaryFactory.buildField(library, entries);
+                dictionary.setPObjectReference(reference);
+            }
+            List<?> children = library.getArray(entries, FieldDictionary.KIDS_KEY);
+            if (children != null) {
+                collectFields(children, name, dictionary, seen);
+            }
+        }
+    }
+
+    /**
+     * Adds a widget to the named field, the field is created for the given
+     * dictionary or, if that is null, the widget's own.
+     *
+     * @return widget, null if it couldn't be initialized.
+     */
+    private AbstractWidgetAnnotation<?> addWidget(String name, FieldDictionary dictionary, Reference reference,
+                                               Object object, HashMap<Object, Object> entries) throws InterruptedException {
+        AbstractWidgetAnnotation<?> widget = null;
+        if (object instanceof AbstractWidgetAnnotation) {
+            widget = (AbstractWidgetAnnotation<?>) object;
+        } else if (object instanceof HashMap) {
+            Annotation annotation = Annotation.buildAnnotation(library, entries);
+            if (annotation instanceof AbstractWidgetAnnotation) {
+                widget = (AbstractWidgetAnnotation<?>) annotation;
+            }
+        }
+        if (widget == null) {
+            return null;
+        }
+        widget.setPObjectReference(reference);
+        if (widget.getAppearances().isEmpty()) {
+            try {
+                widget.init();
+            } catch (IllegalStateException e) {
+                logger.log(Level.WARNING, "Malformed form widget " + reference + " skipped.", e);
+                return null;
+            }
+        }
+        Field field = fields.get(name);
+        if (field == null) {
+            field = new Field(name, dictionary != null ? dictionary : widget.getFieldDictionary());
+            fields.put(name, field);
+        }
+        field.widgets.add(widget);
+        widgets.put(reference, widget);
+        return widget;
+    }
+}
@@ -542,6 +542,8 @@ public abstract class Annotation extends Dictionary {
     protected Rectangle2D.Float userSpaceRectangle;
     // test for borderless annotation types
     protected boolean canDrawBorder;
+    // spatial index of the page the annotation is on, if indexed.
+    private AnnotationIndex annotationIndex;
 
     /**
      * Creates a new instance of an Annotation.
@@ -828,6 +830,22 @@ public abstract class Annotation extends Dictionary {
                     rect.width, rect.height);
             entries.put(Annotation.RECTANGLE_KEY,
                     PRectangle.getPRectangleVector(userSpaceRectangle));
+            updateAnnotationIndex();
+        }
+    }
+
+    AnnotationIndex getAnnotationIndex() {
+        return annotationIndex;
+    }
+
+    void setAnnotationIndex(AnnotationIndex annotationIndex) {
+        this.annotationIndex = annotationIndex;
+    }
+
+    private void updateAnnotationIndex() {
+        AnnotationIndex index = annotationIndex;
+        if (index != null) {
+            index.update(this);
         }
     }
 
@@ -1688,6 +1706,9 @@ public abstract class Annotation extends Dictionary {
             flag = flag | flagKey;
             entries.put(FLAG_KEY, flag);
         }
+        if ((flagKey & (FLAG_NO_ZOOM | FLAG_NO_ROTATE)) != 0) {
+            updateAnnotationIndex();
+        }
     }
 
     public void setModifiedDate(String modifiedDate) {
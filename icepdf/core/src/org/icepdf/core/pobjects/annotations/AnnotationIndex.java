@@ -0,0 +1,325 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.annotations;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+
+/**
+ * Spatial index of the annotations of a page.  The rectangles of the
+ * annotations are bucketed in to a grid of square cells in user space so
+ * painting a part of a page and hit testing a point or rectangle only look
+ * at the annotations near it instead of every annotation on the page.
+ * <p/>
+ * Annotations that cover a lot of cells are kept in a separate list that is
+ * always checked.  Annotations with the NoZoom or NoRotate flag don't paint
+ * inside their rectangle at every zoom and rotation so they are always
+ * painted, they are still hit tested against their rectangle.  Results are
+ * returned in the order the annotations were added, which is the page's
+ * painting order.
+ * <p/>
+ * The page owning the index keeps it up to date as annotations are added or
+ * removed, an annotation updates its own entry when its rectangle or flags
+ * are changed.
+ *
+ * @since 6.2
+ */
+public class AnnotationIndex {
+
+    // cell size in user space units, an inch.
+    private static final double CELL_SIZE = 72;
+    // annotations covering more cells go to the large list.
+    private static final int MAX_CELLS = 64;
+
+    private static class Entry {
+        final Annotation annotation;
+        // painting order.
+        final long sequence;
+        // rectangle the entry was indexed with, null if the annotation has none.
+        Rectangle2D rectangle;
+        boolean large;
+        boolean alwaysPainted;
+
+        Entry(Annotation annotation, long sequence) {
+            this.annotation = annotation;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> PAINT_ORDER = new Comparator<Entry>() {
+        public int compare(Entry entry1, Entry entry2) {
+            return entry1.sequence < entry2.sequence ? -1 :
+                    entry1.sequence == entry2.sequence ? 0 : 1;
+        }
+    };
+
+    private final IdentityHashMap<Annotation, Entry> entries =
+            new IdentityHashMap<Annotation, Entry>();
+    private final HashMap<Long, List<Entry>> cells = new HashMap<Long, List<Entry>>();
+    private final List<Entry> large = new ArrayList<Entry>();
+    private final List<Entry> alwaysPainted = new ArrayList<Entry>();
+    private long sequence;
+
+    /**
+     * Creates an index of the given annotations, null entries are skipped.
+     *
+     * @param annotations annotations in painting order.
+     */
+    public AnnotationIndex(List<Annotation> annotations) {
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                add(annotation);
+            }
+        }
+    }
+
+    /**
+     * Adds an annotation after the ones already in the index, an annotation
+     * that is already indexed keeps its place.
+     *
+     * @param annotation annotation to add.
+     */
+    public synchronized void add(Annotation annotation) {
+        if (annotation == null || entries.containsKey(annotation)) {
+            return;
+        }
+        Entry entry = new Entry(annotation, sequence++);
+        entries.put(annotation, entry);
+        insert(entry);
+        annotation.setAnnotationIndex(this);
+    }
+
+    /**
+     * Removes an annotation from the index.
+     *
+     * @param annotation annotation to remove.
+     */
+    public synchronized void remove(Annotation annotation) {
+        if (annotation == null) {
+            return;
+        }
+        Entry entry = entries.remove(annotation);
+        if (entry != null) {
+            delete(entry);
+            if (annotation.getAnnotationIndex() == this) {
+                annotation.setAnnotationIndex(null);
+            }
+        }
+    }
+
+    /**
+     * Indexes an annotation again after its rectangle or flags changed.
+     *
+     * @param annotation annotation to update.
+     */
+    public synchronized void update(Annotation annotation) {
+        Entry entry = annotation != null ? entries.get(annotation) : null;
+        if (entry != null) {
+            delete(entry);
+            insert(entry);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the annotations whose rectangle contains the given point.
+     *
+     * @param point point in user space.
+     * @return annotations in painting order, empty if none.
+     */
+    public synchronized List<Annotation> getAnnotations(Point2D point) {
+        ArrayList<Entry> found = new ArrayList<Entry>();
+        List<Entry> cell = cells.get(cellKey(cell(point.getX()), cell(point.getY())));
+        if (cell != null) {
+            for (Entry entry : cell) {
+                if (entry.rectangle.contains(point)) {
+                    found.add(entry);
+                }
+            }
+        }
+        for (Entry entry : large) {
+            if (entry.rectangle.contains(point)) {
+                found.add(entry);
+            }
+        }
+        return toAnnotations(found);
+    }
+
+    /**
+     * Gets the annotations whose rectangle intersects the given rectangle.
+     *
+     * @param area rectangle in user space.
+     * @return annotations in painting order, empty if none.
+     */
+    public synchronized List<Annotation> getAnnotations(Rectangle2D area) {
+        return toAnnotations(find(area, false));
+    }
+
+    /**
+     * Gets the annotations that may paint in to the given rectangle, those
+     * whose rectangle intersects it as well as those that are always painted.
+     *
+     * @param area rectangle in user space, null for all annotations.
+     * @return annotations in painting order, empty if none.
+     */
+    public synchronized List<Annotation> getPaintableAnnotations(Rectangle2D area) {
+        if (area == null) {
+            ArrayList<Entry> all = new ArrayList<Entry>(entries.values());
+            Collections.sort(all, PAINT_ORDER);
+            return toAnnotations(all);
+        }
+        return toAnnotations(find(area, true));
+    }
+
+    private List<Entry> find(Rectangle2D area, boolean paintable) {
+        ArrayList<Entry> found = new ArrayList<Entry>();
+        double minX = area.getMinX();
+        double minY = area.getMinY();
+        double maxX = area.getMaxX();
+        double maxY = area.getMaxY();
+        int x1 = cell(minX), x2 = cell(maxX);
+        int y1 = cell(minY), y2 = cell(maxY);
+        // an entry spanning several cells is seen once per cell.
+        IdentityHashMap<Entry, Entry> seen = new IdentityHashMap<Entry, Entry>();
+        if ((long) (x2 - x1 + 1) * (y2 - y1 + 1) > cells.size()) {
+            // the area covers more cells than are used, look at every cell.
+            for (List<Entry> cell : cells.values()) {
+                collect(cell, minX, minY, maxX, maxY, found, seen);
+            }
+        } else {
+            for (int x = x1; x <= x2; x++) {
+                for (int y = y1; y <= y2; y++) {
+                    List<Entry> cell = cells.get(cellKey(x, y));
+                    if (cell != null) {
+                        collect(cell, minX, minY, maxX, maxY, found, seen);
+                    }
+                }
+            }
+        }
+        collect(large, minX, minY, maxX, maxY, found, seen);
+        if (paintable) {
+            for (Entry entry : alwaysPainted) {
+                if (seen.put(entry, entry) == null) {
+                    found.add(entry);
+                }
+            }
+        }
+        Collections.sort(found, PAINT_ORDER);
+        return found;
+    }
+
+    private static void collect(List<Entry> cell, double minX, double minY, double maxX, double maxY,
+                                List<Entry> found, IdentityHashMap<Entry, Entry> seen) {
+        for (Entry entry : cell) {
+            Rectangle2D rectangle = entry.rectangle;
+            // touching rectangles count, an empty annotation still paints its border.
+            if (rectangle.getMaxX() >= minX && rectangle.getMinX() <= maxX &&
+                    rectangle.getMaxY() >= minY && rectangle.getMinY() <= maxY &&
+                    seen.put(entry, entry) == null) {
+                found.add(entry);
+            }
+        }
+    }
+
+    private static List<Annotation> toAnnotations(List<Entry> found) {
+        ArrayList<Annotation> annotations = new ArrayList<Annotation>(found.size());
+        for (Entry entry : found) {
+            annotations.add(entry.annotation);
+        }
+        return annotations;
+    }
+
+    private void insert(Entry entry) {
+        Annotation annotation = entry.annotation;
+        Rectangle2D.Float rect = annotation.getUserSpaceRectangle();
+        entry.rectangle = null;
+        entry.large = false;
+        entry.alwaysPainted = rect == null || annotation.getFlagNoZoom() ||
+                annotation.getFlagNoRotate();
+        if (entry.alwaysPainted) {
+            alwaysPainted.add(entry);
+        }
+        if (rect == null) {
+            return;
+        }
+        Rectangle2D rectangle = new Rectangle2D.Double();
+        rectangle.setFrameFromDiagonal(rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY());
+        entry.rectangle = rectangle;
+        int x1 = cell(rectangle.getMinX()), x2 = cell(rectangle.getMaxX());
+        int y1 = cell(rectangle.getMinY()), y2 = cell(rectangle.getMaxY());
+        if ((long) (x2 - x1 + 1) * (y2 - y1 + 1) > MAX_CELLS) {
+            entry.large = true;
+            large.add(entry);
+            return;
+        }
+        for (int x = x1; x <= x2; x++) {
+            for (int y = y1; y <= y2; y++) {
+                Long key = cellKey(x, y);
+                List<Entry> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<Entry>(4);
+                    cells.put(key, cell);
+                }
+                cell.add(entry);
+            }
+        }
+    }
+
+    private void delete(Entry entry) {
+        if (entry.alwaysPainted) {
+            alwaysPainted.remove(entry);
+        }
+        Rectangle2D rectangle = entry.rectangle;
+        if (rectangle == null) {
+            return;
+        }
+        if (entry.large) {
+            large.remove(entry);
+            return;
+        }
+        int x1 = cell(rectangle.getMinX()), x2 = cell(rectangle.getMaxX());
+        int y1 = cell(rectangle.getMinY()), y2 = cell(rectangle.getMaxY());
+        for (int x = x1; x <= x2; x++) {
+            for (int y = y1; y <= y2; y++) {
+                Long key = cellKey(x, y);
+                List<Entry> cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(entry);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int cell(double coordinate) {
+        // clamp so NaN and huge coordinates from broken files still index.
+        double cell = Math.floor(coordinate / CELL_SIZE);
+        if (cell != cell) {
+            return 0;
+        }
+        return (int) Math.max(-(1 << 24), Math.min(1 << 24, cell));
+    }
+
+    private static Long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+}
@@ -18,12 +18,17 @@ package org.icepdf.core.pobjects.functions;
 import org.icepdf.core.pobjects.Dictionary;
 import org.icepdf.core.pobjects.Stream;
 import org.icepdf.core.pobjects.functions.postscript.Lexer;
+import org.icepdf.core.pobjects.functions.postscript.Program;
+import org.icepdf.core.util.Defs;
 import org.icepdf.core.util.Utils;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Stack;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,11 +51,23 @@ public class Function_4 extends Function {
     private static final Logger logger =
             Logger.getLogger(Function_4.class.toString());
 
+    // maximum number of calculated values kept per function.
+    private static final int RESULT_CACHE_SIZE;
+
+    static {
+        RESULT_CACHE_SIZE = Defs.intProperty(
+                "org.icepdf.core.function4.cacheSize", 4096);
+    }
+
     // decoded content that makes up the type 4 functions.
     private byte[] functionContent;
 
-    // cache for calculated colour values
-    private ConcurrentHashMap<Integer, float[]> resultCache;
+    // function content compiled to bytecode, null if the content could not be
+    // compiled in which case we fall back on the Lexer.
+    private Program program;
+
+    // bounded least recently used cache for calculated colour values
+    private final Map<InputKey, float[]> resultCache;
 
     public Function_4(Dictionary d) {
         super(d);
@@ -61,12 +78,21 @@ public class Function_4 extends Function {
             if (logger.isLoggable(Level.FINER)) {
                 logger.finer("Function 4: " + Utils.convertByteArrayToByteString(functionContent));
             }
-
+            try {
+                program = Program.compile(functionContent);
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Could not compile type 4 function, using interpreter.", e);
+            }
         } else {
             logger.warning("Type 4 function operands could not be found.");
         }
         // cache for type 4 function results.
-        resultCache = new ConcurrentHashMap<Integer, float[]>();
+        resultCache = new LinkedHashMap<InputKey, float[]>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InputKey, float[]> eldest) {
+                return size() > RESULT_CACHE_SIZE;
+            }
+        };
     }
 
     /**
@@ -78,12 +104,49 @@ public class Function_4 extends Function {
     public float[] calculate(float[] x) {
 
         // check the cache in case we've already made the calculation.
-        Integer colourKey = calculateColourKey(x);
-        float[] result = resultCache.get(colourKey);
+        InputKey colourKey = new InputKey(x);
+        float[] result;
+        synchronized (resultCache) {
+            result = resultCache.get(colourKey);
+        }
         if (result != null) {
             return result;
         }
 
+        // length of output array
+        int n = range.length / 2;
+        // ready output array
+        float y[] = new float[n];
+
+        if (program != null) {
+            try {
+                program.execute(x, y);
+            } catch (Throwable e) {
+                logger.log(Level.WARNING, "Error Processing Type 4 definition", e);
+            }
+        } else {
+            interpret(x, y);
+        }
+
+        // apply the range bounds.
+        for (int i = 0; i < n; i++) {
+            y[i] = Math.min(Math.max(y[i], range[2 * i]), range[2 * i + 1]);
+        }
+        // add the new value to the cache.
+        synchronized (resultCache) {
+            resultCache.put(colourKey, y);
+        }
+        return y;
+    }
+
+    /**
+     * Runs the function content through the PostScript Lexer, used when the
+     * content could not be compiled.
+     */
+    private void interpret(float[] x, float[] y) {
+        if (functionContent == null) {
+            return;
+        }
         // setup the lexer stream
         InputStream content = new ByteArrayInputStream(functionContent);
         Lexer lex = new Lexer();
@@ -98,46 +161,36 @@ public class Function_4 extends Function {
 
         // get the remaining number on the stack which are the return values.
         Stack stack = lex.getStack();
-
-        // length of output array
-        int n = range.length / 2;
-        // ready output array
-        float y[] = new float[n];
-
-        // pop remaining items off the stack and apply the range bounds.
-        for (int i = 0; i < n; i++) {
-            y[i] = Math.min(Math.max((Float) stack.elementAt(i),
-                    range[2 * i]), range[2 * i + 1]);
+        for (int i = 0, max = Math.min(y.length, stack.size()); i < max; i++) {
+            Object value = stack.elementAt(i);
+            if (value instanceof Number) {
+                y[i] = ((Number) value).floatValue();
+            }
         }
-        // add the new value to the cache.
-        resultCache.put(colourKey, y);
-        return y;
     }
 
     /**
-     * Utility for creating a comparable colour key for colour components.
-     *
-     * @param colours one or more colour values,  usually maxes out at four.
-     * @return concatenation of colour values.
+     * Cache key holding a copy of the input values, compared by value so that
+     * distinct inputs can never share a cached result.
      */
-    private Integer calculateColourKey(float[] colours) {
-        int length = colours.length;
-        // only works for colour vlues 0-255
-        if (!(colours[0] <= 1.0)) {
-            if (length == 1) {
-                return (int) colours[0];
-            } else if (length == 2) {
-                return ((int) colours[1] << 8) | (int) colours[0];
-            } else if (length == 3) {
-                return ((int) colours[2] << 16) |
-                        ((int) colours[1] << 8) | (int) colours[0];
-            }
+    private static class InputKey {
+        private final float[] values;
+        private final int hash;
+
+        InputKey(float[] values) {
+            this.values = values.clone();
+            this.hash = Arrays.hashCode(values);
         }
-        // otherwise expensive hash generation.
-        StringBuilder builder = new StringBuilder();
-        for (float colour : colours) {
-            builder.append(colour);
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof InputKey &&
+                    Arrays.equals(values, ((InputKey) obj).values);
         }
-        return builder.toString().hashCode();
     }
 }
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.functions.postscript;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A type 4 PostScript calculator function compiled once into a flat bytecode
+ * program.  Unlike the {@link Lexer}, which re-tokenizes the function source and
+ * evaluates boxed operands on a {@link java.util.Stack} for every call, a
+ * Program is executed directly against a primitive float stack.
+ * <p/>
+ * Procedures can only occur as operands of <code>if</code> and
+ * <code>ifelse</code> in a calculator function, so they are compiled inline
+ * as conditional jumps.  Booleans share the float stack, stored as 1 or 0,
+ * with a parallel type flag so that <code>and</code>, <code>or</code>,
+ * <code>xor</code> and <code>not</code> can tell logical from bitwise use.
+ * <p/>
+ * A compiled program is immutable and can be executed concurrently.
+ *
+ * @since 6.2
+ */
+public class Program {
+
+    // maximum operand stack depth, PDF 32000 Annex C.1
+    private static final int MAX_STACK_DEPTH = 100;
+
+    // extra opcodes, on top of the OperatorNames operator types.
+    private static final int
+            OP_PUSH = 100,
+            OP_JUMP = 101,
+            OP_JUMP_IF_FALSE = 102;
+
+    private static final HashMap<String, Integer> operatorNames;
+
+    static {
+        operatorNames = new HashMap<String, Integer>(64);
+        String[] names = {"abs", "add", "and", "atan", "bitshift", "ceiling",
+                "cos", "copy", "cvi", "cvr", "div", "dup", "eq", "exch", "exp",
+                "false", "floor", "ge", "gt", "idiv", "if", "ifelse", "ln",
+                "index", "le", "log", "lt", "mod", "mul", "ne", "neg", "not",
+                "or", "pop", "roll", "round", "sin", "sqrt", "sub", "true",
+                "truncate", "xor"};
+        int[] types = {OperatorNames.OP_ABS, OperatorNames.OP_ADD,
+                OperatorNames.OP_AND, OperatorNames.OP_ATAN,
+                OperatorNames.OP_BITSHIFT, OperatorNames.OP_CEILING,
+                OperatorNames.OP_COS, OperatorNames.OP_COPY,
+                OperatorNames.OP_CVI, OperatorNames.OP_CVR,
+                OperatorNames.OP_DIV, OperatorNames.OP_DUP,
+                OperatorNames.OP_EQ, OperatorNames.OP_EXCH,
+                OperatorNames.OP_EXP, OperatorNames.OP_FALSE,
+                OperatorNames.OP_FLOOR, OperatorNames.OP_GE,
+                OperatorNames.OP_GT, OperatorNames.OP_IDIV,
+                OperatorNames.OP_IF, OperatorNames.OP_IFELSE,
+                OperatorNames.OP_LN, OperatorNames.OP_INDEX,
+                OperatorNames.OP_LE, OperatorNames.OP_LOG,
+                OperatorNames.OP_LT, OperatorNames.OP_MOD,
+                OperatorNames.OP_MUL, OperatorNames.OP_NE,
+                OperatorNames.OP_NEG, OperatorNames.OP_NOT,
+                OperatorNames.OP_OR, OperatorNames.OP_POP,
+                OperatorNames.OP_ROLL, OperatorNames.OP_ROUND,
+                OperatorNames.OP_SIN, OperatorNames.OP_SQRT,
+                OperatorNames.OP_SUB, OperatorNames.OP_TRUE,
+                OperatorNames.OP_TRUNCATE, OperatorNames.OP_XOR};
+        for (int i = 0; i < names.length; i++) {
+            operatorNames.put(names[i], types[i]);
+        }
+    }
+
+    // instructions, PUSH and JUMP* are followed by one operand word.
+    private final int[] code;
+
+    private Program(int[] code) {
+        this.code = code;
+    }
+
+    /**
+     * Compiles the decoded content of a type 4 function stream.
+     *
+     * @param content decoded function stream bytes, for example
+     *                <code>{ 360 mul sin 2 div exch 360 mul sin 2 div add }</code>
+     * @return compiled program ready for execution.
+     * @throws IOException if the content is not a valid calculator function.
+     */
+    public static Program compile(byte[] content) throws IOException {
+        if (content == null) {
+            throw new IOException("Type 4 function, null function content.");
+        }
+        Tokenizer tokenizer = new Tokenizer(content);
+        Object token = tokenizer.next();
+        if (token != Tokenizer.PROC_START) {
+            throw new IOException("Type 4 function must start with '{'.");
+        }
+        List<Object> root = parseProcedure(tokenizer);
+        IntBuffer code = new IntBuffer();
+        emit(root, code);
+        return new Program(code.toArray());
+    }
+
+    /**
+     * Executes the program.  The input values are pushed on the stack, the
+     * program run and the bottom <code>output.length</code> stack entries are
+     * copied into output.
+     *
+     * @param input  input values, x<sub>0</sub> .. x<sub>m-1</sub>.
+     * @param output output values, y<sub>0</sub> .. y<sub>n-1</sub>, entries the
+     *               program did not produce are left untouched.
+     * @return number of values left on the stack.
+     */
+    public int execute(float[] input, float[] output) {
+        float[] s = new float[MAX_STACK_DEPTH];
+        boolean[] b = new boolean[MAX_STACK_DEPTH];
+        int si = 0;
+        for (float in : input) {
+            s[si++] = in;
+        }
+        final int[] code = this.code;
+        float tmp;
+        int n, j, k;
+        for (int pc = 0, max = code.length; pc < max; ) {
+            switch (code[pc++]) {
+                case OP_PUSH:
+                    s[si] = Float.intBitsToFloat(code[pc++]);
+                    b[si++] = false;
+                    break;
+                case OperatorNames.OP_TRUE:
+                    s[si] = 1;
+                    b[si++] = true;
+                    break;
+                case OperatorNames.OP_FALSE:
+                    s[si] = 0;
+                    b[si++] = true;
+                    break;
+                case OP_JUMP:
+                    pc = code[pc];
+                    break;
+                case OP_JUMP_IF_FALSE:
+                    pc = s[--si] != 0 ? pc + 1 : code[pc];
+                    break;
+                // arithmetic
+                case OperatorNames.OP_ABS:
+                    s[si - 1] = Math.abs(s[si - 1]);
+                    break;
+                case OperatorNames.OP_ADD:
+                    s[si - 2] += s[--si];
+                    break;
+                case OperatorNames.OP_SUB:
+                    s[si - 2] -= s[--si];
+                    break;
+                case OperatorNames.OP_MUL:
+                    s[si - 2] *= s[--si];
+                    break;
+                case OperatorNames.OP_DIV:
+                    s[si - 2] /= s[--si];
+                    break;
+                case OperatorNames.OP_IDIV:
+                    tmp = s[--si];
+                    s[si - 1] = tmp != 0 ? (int) s[si - 1] / (int) tmp : 0;
+                    break;
+                case OperatorNames.OP_MOD:
+                    tmp = s[--si];
+                    s[si - 1] = tmp != 0 ? (int) s[si - 1] % (int) tmp : 0;
+                    break;
+                case OperatorNames.OP_NEG:
+                    s[si - 1] = -s[si - 1];
+                    break;
+                case OperatorNames.OP_CEILING:
+                    s[si - 1] = (float) Math.ceil(s[si - 1]);
+                    break;
+                case OperatorNames.OP_FLOOR:
+                    s[si - 1] = (float) Math.floor(s[si - 1]);
+                    break;
+                case OperatorNames.OP_ROUND:
+                    s[si - 1] = (float) Math.floor(s[si - 1] + 0.5);
+                    break;
+                case OperatorNames.OP_TRUNCATE:
+                case OperatorNames.OP_CVI:
+                    s[si - 1] = (int) s[si - 1];
+                    break;
+                case OperatorNames.OP_CVR:
+                    break;
+                case OperatorNames.OP_SQRT:
+                    s[si - 1] = (float) Math.sqrt(s[si - 1]);
+                    break;
+                case OperatorNames.OP_SIN:
+                    s[si - 1] = (float) Math.sin(Math.toRadians(s[si - 1]));
+                    break;
+                case OperatorNames.OP_COS:
+                    s[si - 1] = (float) Math.cos(Math.toRadians(s[si - 1]));
+                    break;
+                case OperatorNames.OP_ATAN:
+                    tmp = (float) Math.toDegrees(Math.atan2(s[si - 2], s[si - 1]));
+                    s[--si - 1] = tmp < 0 ? tmp + 360 : tmp;
+                    break;
+                case OperatorNames.OP_EXP:
+                    s[si - 2] = (float) Math.pow(s[si - 2], s[--si]);
+                    break;
+                case OperatorNames.OP_LN:
+                    s[si - 1] = (float) Math.log(s[si - 1]);
+                    break;
+                case OperatorNames.OP_LOG:
+                    s[si - 1] = (float) Math.log10(s[si - 1]);
+                    break;
+                // relational, boolean and bitwise
+                case OperatorNames.OP_EQ:
+                    si--;
+                    s[si - 1] = s[si - 1] == s[si] ? 1 : 0;
+                    b[si - 1] = true;
+                    break;
+                case OperatorNames.OP_NE:
+                    si--;
+                    s[si - 1] = s[si - 1] != s[si] ? 1 : 0;
+                    b[si - 1] = true;
+                    break;
+                case OperatorNames.OP_GE:
+                    si--;
+                    s[si - 1] = s[si - 1] >= s[si] ? 1 : 0;
+                    b[si - 1] = true;
+                    break;
+                case OperatorNames.OP_GT:
+                    si--;
+                    s[si - 1] = s[si - 1] > s[si] ? 1 : 0;
+                    b[si - 1] = true;
+                    break;
+                case OperatorNames.OP_LE:
+                    si--;
+                    s[si - 1] = s[si - 1] <= s[si] ? 1 : 0;
+                    b[si - 1] = true;
+                    break;
+                case OperatorNames.OP_LT:
+                    si--;
+                    s[si - 1] = s[si - 1] < s[si] ? 1 : 0;
+                    b[si - 1] = true;
+                    break;
+                case OperatorNames.OP_AND:
+                    si--;
+                    s[si - 1] = (int) s[si - 1] & (int) s[si];
+                    break;
+                case OperatorNames.OP_OR:
+                    si--;
+                    s[si - 1] = (int) s[si - 1] | (int) s[si];
+                    break;
+                case OperatorNames.OP_XOR:
+                    si--;
+                    s[si - 1] = (int) s[si - 1] ^ (int) s[si];
+                    break;
+                case OperatorNames.OP_NOT:
+                    s[si - 1] = b[si - 1] ? (s[si - 1] != 0 ? 0 : 1) : ~(int) s[si - 1];
+                    break;
+                case OperatorNames.OP_BITSHIFT:
+                    n = (int) s[--si];
+                    s[si - 1] = n >= 0 ? (int) s[si - 1] << n : (int) s[si - 1] >> -n;
+                    break;
+                // stack
+                case OperatorNames.OP_POP:
+                    si--;
+                    break;
+                case OperatorNames.OP_DUP:
+                    s[si] = s[si - 1];
+                    b[si] = b[si - 1];
+                    si++;
+                    break;
+                case OperatorNames.OP_EXCH:
+                    tmp = s[si - 1];
+                    s[si - 1] = s[si - 2];
+                    s[si - 2] = tmp;
+                    boolean bool = b[si - 1];
+                    b[si - 1] = b[si - 2];
+                    b[si - 2] = bool;
+                    break;
+                case OperatorNames.OP_COPY:
+                    n = (int) s[--si];
+                    System.arraycopy(s, si - n, s, si, n);
+                    System.arraycopy(b, si - n, b, si, n);
+                    si += n;
+                    break;
+                case OperatorNames.OP_INDEX:
+                    n = (int) s[si - 1];
+                    s[si - 1] = s[si - 2 - n];
+                    b[si - 1] = b[si - 2 - n];
+                    break;
+                case OperatorNames.OP_ROLL:
+                    j = (int) s[--si];
+                    n = (int) s[--si];
+                    if (n > 0) {
+                        j %= n;
+                        if (j < 0) j += n;
+                        // rotate the top n entries up by j using a reversal rotation.
+                        k = si - n;
+                        reverse(s, b, k, si - 1);
+                        reverse(s, b, k, k + j - 1);
+                        reverse(s, b, k + j, si - 1);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        // booleans are left as 1 or 0.
+        for (int i = 0, max = Math.min(si, output.length); i < max; i++) {
+            output[i] = s[i];
+        }
+        return si;
+    }
+
+    private static void reverse(float[] s, boolean[] b, int from, int to) {
+        float tmp;
+        boolean bool;
+        for (; from < to; from++, to--) {
+            tmp = s[from];
+            s[from] = s[to];
+            s[to] = tmp;
+            bool = b[from];
+            b[from] = b[to];
+            b[to] = bool;
+        }
+    }
+
+    /**
+     * Reads the tokens up to the matching '}'; nested procedures become lists.
+     */
+    private static List<Object> parseProcedure(Tokenizer tokenizer) throws IOException {
+        List<Object> procedure = new ArrayList<Object>();
+        Object token;
+        while ((token = tokenizer.next()) != null) {
+            if (token == Tokenizer.PROC_END) {
+                return procedure;
+            } else if (token == Tokenizer.PROC_START) {
+                procedure.add(parseProcedure(tokenizer));
+            } else {
+                procedure.add(token);
+            }
+        }
+        throw new IOException("Type 4 function, missing '}'.");
+    }
+
+    /**
+     * Emits the bytecode for the given procedure body.  Procedure literals are
+     * held back until the <code>if</code> or <code>ifelse</code> that consumes
+     * them is reached.
+     */
+    @SuppressWarnings("unchecked")
+    private static void emit(List<Object> procedure, IntBuffer code) throws IOException {
+        List<List<Object>> pending = new ArrayList<List<Object>>(2);
+        for (Object token : procedure) {
+            if (token instanceof List) {
+                pending.add((List<Object>) token);
+            } else if (token instanceof Float) {
+                code.add(OP_PUSH);
+                code.add(Float.floatToIntBits((Float) token));
+            } else {
+                int op = (Integer) token;
+                if (op == OperatorNames.OP_IF) {
+                    if (pending.size() != 1) {
+                        throw new IOException("Type 4 function, 'if' expects one procedure.");
+                    }
+                    code.add(OP_JUMP_IF_FALSE);
+                    int jump = code.reserve();
+                    emit(pending.get(0), code);
+                    code.set(jump, code.size());
+                } else if (op == OperatorNames.OP_IFELSE) {
+                    if (pending.size() != 2) {
+                        throw new IOException("Type 4 function, 'ifelse' expects two procedures.");
+                    }
+                    code.add(OP_JUMP_IF_FALSE);
+                    int elseJump = code.reserve();
+                    emit(pending.get(0), code);
+                    code.add(OP_JUMP);
+                    int endJump = code.reserve();
+                    code.set(elseJump, code.size());
+                    emit(pending.get(1), code);
+                    code.set(endJump, code.size());
+                } else {
+                    code.add(op);
+                }
+                pending.clear();
+            }
+        }
+        if (!pending.isEmpty()) {
+            throw new IOException("Type 4 function, procedure without 'if' or 'ifelse'.");
+        }
+    }
+
+    /**
+     * Minimal growable int array for the emitted bytecode.
+     */
+    private static class IntBuffer {
+        private int[] data = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                int[] tmp = new int[size * 2];
+                System.arraycopy(data, 0, tmp, 0, size);
+                data = tmp;
+            }
+            data[size++] = value;
+        }
+
+        int reserve() {
+            add(0);
+            return size - 1;
+        }
+
+        void set(int index, int value) {
+            data[index] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            int[] tmp = new int[size];
+            System.arraycopy(data, 0, tmp, 0, size);
+            return tmp;
+        }
+    }
+
+    /**
+     * Splits the function content into '{', '}', Float numbers and Integer
+     * operator types.
+     */
+    private static class Tokenizer {
+        static final Object PROC_START = new Object();
+        static final Object PROC_END = new Object();
+
+        private final byte[] content;
+        private int pos;
+
+        Tokenizer(byte[] content) {
+            this.content = content;
+        }
+
+        Object next() throws IOException {
+            int length = content.length;
+            // skip white space and comments.
+            while (pos < length) {
+                int c = content[pos];
+                if (c == '%') {
+                    while (pos < length && content[pos] != '\n' && content[pos] != '\r') {
+                        pos++;
+                    }
+                } else if (c == ' ' || c == '\t' || c == '\n' || c == '\r' ||
+                        c == '\f' || c == 0) {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (pos >= length) {
+                return null;
+            }
+            int c = content[pos];
+            if (c == '{') {
+                pos++;
+                return PROC_START;
+            } else if (c == '}') {
+                pos++;
+                return PROC_END;
+            }
+            int start = pos;
+            while (pos < length && !isDelimiter(content[pos])) {
+                pos++;
+            }
+            String token = new String(content, start, pos - start, "ISO-8859-1");
+            if (c == '-' || c == '+' || c == '.' || (c >= '0' && c <= '9')) {
+                try {
+                    return Float.parseFloat(token);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Type 4 function, invalid number: " + token);
+                }
+            }
+            Integer type = operatorNames.get(token);
+            if (type == null) {
+                throw new IOException("Type 4 function, unknown operator: " + token);
+            }
+            return type;
+        }
+
+        private static boolean isDelimiter(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r' ||
+                    c == '\f' || c == 0 || c == '{' || c == '}' || c == '%';
+        }
+    }
+}
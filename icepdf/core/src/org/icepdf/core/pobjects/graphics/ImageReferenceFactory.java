@@ -29,14 +29,17 @@ import org.icepdf.core.util.Defs;
  * <li>org.icepdf.core.imageReference = scaled</li>
  * <li>org.icepdf.core.imageReference = mipmap</li>
  * <li>org.icepdf.core.imageReference = smoothScaled</li>
+ * <li>org.icepdf.core.imageReference = subsampled</li>
  * </ul>
  * The default value returns an unaltered image,  scaled returns a scaled
  * image instance and there MIP mapped returns/picks a scaled image that
  * best fits the current zoom level for a balance of render speed and quality.
+ * Subsampled decodes only the pixels needed for the image's size on the page.
  *
  * @see MipMappedImageReference
  * @see ImageStreamReference
  * @see ScaledImageReference
+ * @see SubsampledImageReference
  * @since 5.0
  */
 public class ImageReferenceFactory {
@@ -44,11 +47,14 @@ public class ImageReferenceFactory {
     // allow scaling of large images to improve clarity on screen
 
     public enum ImageReference {
-        DEFAULT, SCALED, MIP_MAP, SMOOTH_SCALED // FLOYD_STEINBERG
+        DEFAULT, SCALED, MIP_MAP, SMOOTH_SCALED, SUBSAMPLED // FLOYD_STEINBERG
     }
 
     private static ImageReference scaleType;
 
+    // zoom of a draft render in progress on the current thread.
+    private static final ThreadLocal<Float> draftZoom = new ThreadLocal<Float>();
+
     static {
         // decide if large images will be scaled
         String imageReferencetype =
@@ -60,6 +66,8 @@ public class ImageReferenceFactory {
             scaleType = ImageReference.MIP_MAP;
         } else if ("smoothScaled".equals(imageReferencetype)) {
             scaleType = ImageReference.SMOOTH_SCALED;
+        } else if ("subsampled".equals(imageReferencetype)) {
+            scaleType = ImageReference.SUBSAMPLED;
         } else {
             scaleType = ImageReference.DEFAULT;
         }
@@ -76,6 +84,25 @@ public class ImageReferenceFactory {
         ImageReferenceFactory.scaleType = scaleType;
     }
 
+    /**
+     * Sets the zoom of a draft render for the calling thread.  While it is set
+     * pages initialized by the thread get subsampled image references that
+     * only decode enough pixels to paint their images at the draft zoom,
+     * regardless of the configured scale type.  Pages initialized this way
+     * should be reset once painted so other views don't paint the low
+     * resolution images.
+     *
+     * @param zoom draft zoom, null to go back to the configured scale type.
+     * @since 6.2
+     */
+    public static void setDraftZoom(Float zoom) {
+        if (zoom != null) {
+            draftZoom.set(zoom);
+        } else {
+            draftZoom.remove();
+        }
+    }
+
     /**
      * Gets an instance of an ImageReference object for the given image data.
      * The ImageReference is specified by the system property org.icepdf.core.imageReference
@@ -89,6 +116,10 @@ public class ImageReferenceFactory {
     public static org.icepdf.core.pobjects.graphics.ImageReference
     getImageReference(ImageStream imageStream, Resources resources, GraphicsState graphicsState,
                       Integer imageIndex, Page page) {
+        Float zoom = draftZoom.get();
+        if (zoom != null) {
+            return new SubsampledImageReference(imageStream, graphicsState, resources, imageIndex, page, zoom);
+        }
         switch (scaleType) {
             case SCALED:
                 return new ScaledImageReference(imageStream, graphicsState, resources, imageIndex, page);
@@ -96,6 +127,8 @@ public class ImageReferenceFactory {
                 return new SmoothScaledImageReference(imageStream, graphicsState, resources, imageIndex, page);
             case MIP_MAP:
                 return new MipMappedImageReference(imageStream, graphicsState, resources, imageIndex, page);
+            case SUBSAMPLED:
+                return new SubsampledImageReference(imageStream, graphicsState, resources, imageIndex, page);
             default:
                 return new ImageStreamReference(imageStream, graphicsState, resources, imageIndex, page);
         }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.graphics;
+
+import org.icepdf.core.util.BoundedLRUCache;
+import org.icepdf.core.util.Defs;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * The pattern cell cache keeps the rasterised cells of tiling patterns so a
+ * pattern used for many fills, on one page or many, is only painted once
+ * for a given device scale and rotation.  Cells are looked up by pattern,
+ * the scale and shear of the transform the cell is painted with rounded to
+ * 1/64, the cell's size in pixels and the colour of uncoloured patterns.
+ * <p/>
+ * Each document's library has its own cache so cells never outlive their
+ * document.  The cache is least recently used and holds at most
+ * org.icepdf.core.tiling.cache.pixels pixels, default 4194304, a value of 0
+ * disables the cache.
+ *
+ * @since 6.2
+ */
+public class PatternCellCache {
+
+    private static int maxPixels;
+
+    // transform entries are rounded to 1/TRANSFORM_BUCKETS.
+    private static final int TRANSFORM_BUCKETS = 64;
+
+    static {
+        maxPixels = Defs.intProperty("org.icepdf.core.tiling.cache.pixels", 1 << 22);
+    }
+
+    private final BoundedLRUCache<Object, BufferedImage> cells =
+            new BoundedLRUCache<Object, BufferedImage>(maxPixels) {
+                @Override
+                protected long sizeOf(BufferedImage cell) {
+                    return (long) cell.getWidth() * cell.getHeight();
+                }
+            };
+
+    /**
+     * Builds the lookup key for a pattern cell.
+     *
+     * @param pattern   pattern the cell belongs to.
+     * @param transform scale and shear the cell is painted with.
+     * @param width     cell width in pixels.
+     * @param height    cell height in pixels.
+     * @param color     colour of an uncoloured pattern, null for coloured patterns.
+     * @return cache key.
+     */
+    public static Object getKey(TilingPattern pattern, AffineTransform transform,
+                                int width, int height, Color color) {
+        return new Key(pattern, transform, width, height, color);
+    }
+
+    public BufferedImage get(Object key) {
+        return cells.get(key);
+    }
+
+    /**
+     * Adds a cell to the cache, the least recently used cells are removed
+     * until the cache is back under its budget.  Cells larger than the whole
+     * budget aren't cached.  Cached cells must not be painted to again.
+     *
+     * @param key  key from getKey.
+     * @param cell rasterised cell.
+     */
+    public void put(Object key, BufferedImage cell) {
+        cells.put(key, cell);
+    }
+
+    public void clear() {
+        cells.clear();
+    }
+
+    private static class Key {
+        private TilingPattern pattern;
+        private long scaleX, shearY, shearX, scaleY;
+        private int width, height;
+        private int rgb;
+        private int hashCode;
+
+        Key(TilingPattern pattern, AffineTransform transform, int width, int height, Color color) {
+            this.pattern = pattern;
+            scaleX = Math.round(transform.getScaleX() * TRANSFORM_BUCKETS);
+            shearY = Math.round(transform.getShearY() * TRANSFORM_BUCKETS);
+            shearX = Math.round(transform.getShearX() * TRANSFORM_BUCKETS);
+            scaleY = Math.round(transform.getScaleY() * TRANSFORM_BUCKETS);
+            this.width = width;
+            this.height = height;
+            rgb = color != null ? color.getRGB() : 0;
+            int hash = System.identityHashCode(pattern);
+            hash = 31 * hash + (int) (scaleX ^ (scaleX >>> 32));
+            hash = 31 * hash + (int) (shearY ^ (shearY >>> 32));
+            hash = 31 * hash + (int) (shearX ^ (shearX >>> 32));
+            hash = 31 * hash + (int) (scaleY ^ (scaleY >>> 32));
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            hashCode = 31 * hash + rgb;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return pattern == key.pattern && scaleX == key.scaleX && shearY == key.shearY &&
+                    shearX == key.shearX && scaleY == key.scaleY &&
+                    width == key.width && height == key.height && rgb == key.rgb;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
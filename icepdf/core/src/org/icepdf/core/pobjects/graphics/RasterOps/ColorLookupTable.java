@@ -0,0 +1,254 @@
+package org.icepdf.core.pobjects.graphics.RasterOps;
+
+import org.icepdf.core.pobjects.graphics.PColorSpace;
+import org.icepdf.core.util.Defs;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Lookup table used to convert whole 8 bit rasters from a colour space to RGB
+ * without going through {@link PColorSpace#getColor(float[])} for every pixel.
+ * <p/>
+ * Single band colour spaces get an exact 256 entry table.  Three and four band
+ * colour spaces are sampled on a regular grid, 33 nodes per axis for three
+ * bands and 17 for four, and pixels are tetrahedrally interpolated between the
+ * nodes, the fourth band, usually black, is interpolated linearly between two
+ * tetrahedral lookups.  As building a grid costs one colour space evaluation
+ * per node, grids are only used for rasters that have several times more
+ * pixels than the grid has nodes.  Tables are kept for the life of the colour
+ * space so every image that shares a colour space shares its table.
+ * <p/>
+ * Interpolation can be turned off with the system property
+ * -Dorg.icepdf.core.colorLookup.interpolate=false at which point only the
+ * exact single band tables are used.
+ *
+ * @since 6.2
+ */
+class ColorLookupTable {
+
+    private static final boolean interpolate;
+
+    // minimum pixels per grid node before a grid is considered worth building.
+    private static final int GRID_PIXEL_RATIO = 4;
+
+    private static final int GRID_3_NODES = 33;
+    private static final int GRID_4_NODES = 17;
+
+    static {
+        interpolate = Defs.booleanProperty(
+                "org.icepdf.core.colorLookup.interpolate", true);
+    }
+
+    // tables by colour space and band count, colour spaces have identity equality.
+    private static final Map<PColorSpace, ColorLookupTable[]> tables =
+            new WeakHashMap<PColorSpace, ColorLookupTable[]>();
+
+    private final int bands;
+    private final int nodes;
+    // packed rgb for each node
+    private final int[] rgb;
+    // grid cell and position in cell, 0-255, of each byte value.
+    private final int[] cell;
+    private final int[] fraction;
+
+    private ColorLookupTable(int bands, int nodes, int[] rgb) {
+        this.bands = bands;
+        this.nodes = nodes;
+        this.rgb = rgb;
+        if (nodes < 256) {
+            cell = new int[256];
+            fraction = new int[256];
+            for (int v = 0; v < 256; v++) {
+                int position = v * (nodes - 1);
+                int c = position / 255;
+                int f = position % 255;
+                // keep the last value in the last cell so c + 1 is always a node.
+                if (c == nodes - 1) {
+                    c = nodes - 2;
+                    f = 255;
+                }
+                cell[v] = c;
+                fraction[v] = f;
+            }
+        } else {
+            cell = null;
+            fraction = null;
+        }
+    }
+
+    /**
+     * Gets the lookup table for the given colour space and band count, building
+     * it if needed.
+     *
+     * @param colorSpace colour space that pixels are converted from.
+     * @param bands      number of bands in the source raster.
+     * @param pixels     number of pixels that are going to be converted.
+     * @return lookup table, or null if a table isn't worth building in which case
+     * pixels should be converted one at a time.
+     */
+    static ColorLookupTable getInstance(PColorSpace colorSpace, int bands, int pixels) {
+        int nodes;
+        if (bands == 1) {
+            nodes = 256;
+        } else if (bands == 3 && interpolate) {
+            nodes = GRID_3_NODES;
+        } else if (bands == 4 && interpolate) {
+            nodes = GRID_4_NODES;
+        } else {
+            return null;
+        }
+        int size = 1;
+        for (int i = 0; i < bands; i++) {
+            size *= nodes;
+        }
+        ColorLookupTable table;
+        synchronized (tables) {
+            ColorLookupTable[] byBands = tables.get(colorSpace);
+            table = byBands != null ? byBands[bands] : null;
+        }
+        if (table != null) {
+            return table;
+        }
+        if (pixels < size * GRID_PIXEL_RATIO && bands > 1) {
+            return null;
+        }
+        // colour spaces aren't necessarily thread safe, build on the colour
+        // space monitor, another thread may have beaten us to it.
+        synchronized (colorSpace) {
+            synchronized (tables) {
+                ColorLookupTable[] byBands = tables.get(colorSpace);
+                if (byBands != null && byBands[bands] != null) {
+                    return byBands[bands];
+                }
+            }
+            table = new ColorLookupTable(bands, nodes, sample(colorSpace, bands, nodes, size));
+            synchronized (tables) {
+                ColorLookupTable[] byBands = tables.get(colorSpace);
+                if (byBands == null) {
+                    byBands = new ColorLookupTable[5];
+                    tables.put(colorSpace, byBands);
+                }
+                byBands[bands] = table;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Evaluates the colour space at each grid node, components are passed in
+     * the same way as {@link PColorSpaceRasterOp} passes single pixels.
+     */
+    private static int[] sample(PColorSpace colorSpace, int bands, int nodes, int size) {
+        int[] rgb = new int[size];
+        float[] values = new float[Math.max(3, bands)];
+        int[] index = new int[bands];
+        float scale = 1.0f / (nodes - 1);
+        for (int node = 0; node < size; node++) {
+            for (int i = 0; i < bands; i++) {
+                values[i] = nodes == 256 ?
+                        index[i] / 255.0f : index[i] * scale;
+            }
+            for (int i = bands; i < values.length; i++) {
+                values[i] = 0;
+            }
+            PColorSpace.reverseInPlace(values);
+            rgb[node] = colorSpace.getColor(values).getRGB();
+            // next node, last band varies fastest.
+            for (int i = bands - 1; i >= 0; i--) {
+                if (++index[i] < nodes) break;
+                index[i] = 0;
+            }
+        }
+        return rgb;
+    }
+
+    /**
+     * Converts interleaved source pixels to packed RGB.
+     *
+     * @param src   interleaved 8 bit source pixels.
+     * @param dest  packed RGB destination.
+     */
+    void convert(byte[] src, int[] dest) {
+        int to = Math.min(dest.length, src.length / bands);
+        if (nodes == 256) {
+            for (int pixel = 0, i = 0; i < to; pixel += bands, i++) {
+                dest[i] = rgb[src[pixel] & 0xff];
+            }
+        } else if (bands == 3) {
+            int s0 = nodes * nodes;
+            int s1 = nodes;
+            for (int pixel = 0, i = 0; i < to; pixel += bands, i++) {
+                int v0 = src[pixel] & 0xff;
+                int v1 = src[pixel + 1] & 0xff;
+                int v2 = src[pixel + 2] & 0xff;
+                int base = cell[v0] * s0 + cell[v1] * s1 + cell[v2];
+                dest[i] = tetrahedral(base, s0, s1, 1,
+                        fraction[v0], fraction[v1], fraction[v2]);
+            }
+        } else {
+            int s0 = nodes * nodes * nodes;
+            int s1 = nodes * nodes;
+            int s2 = nodes;
+            for (int pixel = 0, i = 0; i < to; pixel += bands, i++) {
+                int v0 = src[pixel] & 0xff;
+                int v1 = src[pixel + 1] & 0xff;
+                int v2 = src[pixel + 2] & 0xff;
+                int v3 = src[pixel + 3] & 0xff;
+                int base = cell[v0] * s0 + cell[v1] * s1 + cell[v2] * s2 + cell[v3];
+                int f0 = fraction[v0], f1 = fraction[v1], f2 = fraction[v2];
+                int low = tetrahedral(base, s0, s1, s2, f0, f1, f2);
+                int high = tetrahedral(base + 1, s0, s1, s2, f0, f1, f2);
+                dest[i] = mix(low, high, fraction[v3]);
+            }
+        }
+    }
+
+    /**
+     * Interpolates inside the grid cell at base, the cell is split in to six
+     * tetrahedra along its main diagonal and the one containing the point is
+     * used, which needs four nodes rather than the eight of trilinear.
+     */
+    private int tetrahedral(int base, int s0, int s1, int s2,
+                            int f0, int f1, int f2) {
+        // order the axes by fraction, largest first.
+        int a, b, c, fa, fb, fc;
+        if (f0 >= f1) {
+            if (f1 >= f2) {
+                a = s0; b = s1; c = s2; fa = f0; fb = f1; fc = f2;
+            } else if (f0 >= f2) {
+                a = s0; b = s2; c = s1; fa = f0; fb = f2; fc = f1;
+            } else {
+                a = s2; b = s0; c = s1; fa = f2; fb = f0; fc = f1;
+            }
+        } else {
+            if (f0 >= f2) {
+                a = s1; b = s0; c = s2; fa = f1; fb = f0; fc = f2;
+            } else if (f1 >= f2) {
+                a = s1; b = s2; c = s0; fa = f1; fb = f2; fc = f0;
+            } else {
+                a = s2; b = s1; c = s0; fa = f2; fb = f1; fc = f0;
+            }
+        }
+        int c0 = rgb[base];
+        int c1 = rgb[base + a];
+        int c2 = rgb[base + a + b];
+        int c3 = rgb[base + a + b + c];
+        int w0 = 255 - fa, w1 = fa - fb, w2 = fb - fc, w3 = fc;
+        int red = (w0 * ((c0 >> 16) & 0xff) + w1 * ((c1 >> 16) & 0xff) +
+                w2 * ((c2 >> 16) & 0xff) + w3 * ((c3 >> 16) & 0xff) + 127) / 255;
+        int green = (w0 * ((c0 >> 8) & 0xff) + w1 * ((c1 >> 8) & 0xff) +
+                w2 * ((c2 >> 8) & 0xff) + w3 * ((c3 >> 8) & 0xff) + 127) / 255;
+        int blue = (w0 * (c0 & 0xff) + w1 * (c1 & 0xff) +
+                w2 * (c2 & 0xff) + w3 * (c3 & 0xff) + 127) / 255;
+        return 0xff000000 | (red << 16) | (green << 8) | blue;
+    }
+
+    private static int mix(int low, int high, int f) {
+        int w = 255 - f;
+        int red = (w * ((low >> 16) & 0xff) + f * ((high >> 16) & 0xff) + 127) / 255;
+        int green = (w * ((low >> 8) & 0xff) + f * ((high >> 8) & 0xff) + 127) / 255;
+        int blue = (w * (low & 0xff) + f * (high & 0xff) + 127) / 255;
+        return 0xff000000 | (red << 16) | (green << 8) | blue;
+    }
+}
@@ -49,7 +49,15 @@ public class PColorSpaceRasterOp implements RasterOp {
             }
         } else {
             int bands = src.getNumBands();
-            float[] values = new float[3];
+            // convert the whole raster through a lookup table when one is
+            // available for the colour space.
+            ColorLookupTable lookupTable = ColorLookupTable.getInstance(
+                    colorSpace, bands, srcPixels.length / bands);
+            if (lookupTable != null) {
+                lookupTable.convert(srcPixels, destPixels);
+                return dest;
+            }
+            float[] values = new float[Math.max(3, bands)];
             for (int pixel = 0, intPixels = 0; pixel < srcPixels.length; pixel += bands, intPixels++) {
 
                 for (int i = 0; i < bands; i++) {
@@ -94,26 +94,27 @@ public class ScaledImageReference extends CachedImageReference {
         BufferedImage image = null;
         long start = System.nanoTime();
         try {
-            // get the stream image if need, otherwise scale what you have.
-            image = imageStream.getImage(graphicsState, resources);
+            // get eh original image width.
+            int width = imageStream.getWidth();
+            int height = imageStream.getHeight();
+
+            // apply scaling factor
+            double scaleFactor = 1.0;
+            if (width > 1000 && width < 1500) {
+                scaleFactor = 0.75;
+            } else if (width > 1500) {
+                scaleFactor = 0.5;
+            }
+            // halving is done at decode time so the full image is never built,
+            // the stream returns the full image if it's already in the pool.
+            int subsampling = (int) (1 / scaleFactor);
+            image = imageStream.getImage(graphicsState, resources, subsampling);
 
             if (image != null) {
-                // get eh original image width.
-                int width = imageStream.getWidth();
-                int height = imageStream.getHeight();
-
-                // apply scaling factor
-                double scaleFactor = 1.0;
-                if (width > 1000 && width < 1500) {
-                    scaleFactor = 0.75;
-                } else if (width > 1500) {
-                    scaleFactor = 0.5;
-                }
-                // update image size for any scaling.
-                if (scaleFactor < 1.0) {
-                    width = (int) Math.ceil(width * scaleFactor);
-                    height = (int) Math.ceil(height * scaleFactor);
-
+                // update image size for any scaling still needed.
+                width = (int) Math.ceil(width * scaleFactor);
+                height = (int) Math.ceil(height * scaleFactor);
+                if (image.getWidth() > width || image.getHeight() > height) {
                     BufferedImage scaled;
                     if (ImageUtility.hasAlpha(image)) {
                         scaled = ImageUtility.createTranslucentCompatibleImage(width, height);
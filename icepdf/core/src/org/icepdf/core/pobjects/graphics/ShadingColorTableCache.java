@@ -0,0 +1,86 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.graphics;
+
+import org.icepdf.core.util.BoundedLRUCache;
+import org.icepdf.core.util.Defs;
+
+import java.util.HashMap;
+
+/**
+ * The shading colour table cache keeps the colour lookup tables of the axial
+ * and radial shadings, types 2 and 3, so a shading's function and colour
+ * space are only evaluated once no matter how many fills use the shading or
+ * how often the page's content is parsed again.  Tables are looked up by the
+ * entries of the shading dictionary, which name the function, the domain and
+ * the colour space, so every pattern and 'sh' operator referencing the same
+ * shading shares one table.
+ * <p/>
+ * Each document's library has its own cache.  The cache is least recently
+ * used and holds at most org.icepdf.core.shading.colorTable.cache.size
+ * tables, default 256, a value of 0 disables the cache.
+ *
+ * @since 6.2
+ */
+public class ShadingColorTableCache {
+
+    /**
+     * Number of samples in a colour table, enough for every 8 bit step of a
+     * channel that runs from 0 to 255 across the shading.
+     */
+    public static final int SAMPLES = 1024;
+
+    private static int maxTables;
+
+    static {
+        maxTables = Defs.intProperty("org.icepdf.core.shading.colorTable.cache.size", 256);
+    }
+
+    private final BoundedLRUCache<Object, int[]> tables =
+            new BoundedLRUCache<Object, int[]>(maxTables);
+
+    /**
+     * Builds the lookup key for a shading's colour table.
+     *
+     * @param shadingDictionary shading dictionary.
+     * @return cache key, null if the shading can't be cached.
+     */
+    public static Object getKey(HashMap<?, ?> shadingDictionary) {
+        if (shadingDictionary == null) {
+            return null;
+        }
+        // copied so later edits to the dictionary don't change the key.
+        return new HashMap<Object, Object>(shadingDictionary);
+    }
+
+    public int[] get(Object key) {
+        return tables.get(key);
+    }
+
+    /**
+     * Adds a colour table to the cache.  Cached tables must not be changed.
+     *
+     * @param key        key from getKey.
+     * @param colorTable ARGB colour table.
+     */
+    public void put(Object key, int[] colorTable) {
+        tables.put(key, colorTable);
+    }
+
+    public void clear() {
+        tables.clear();
+    }
+}
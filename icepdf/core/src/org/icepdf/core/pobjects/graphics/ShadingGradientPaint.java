@@ -0,0 +1,213 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.graphics;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.*;
+import java.util.Arrays;
+
+/**
+ * Paint for the axial and radial shadings, types 2 and 3.  The colour of a
+ * pixel is looked up in the shading's colour table, which holds the shading
+ * function sampled over its domain, so filling a raster never calls the
+ * function or the colour space.  Axial shadings step a fixed point table
+ * index along each row, radial shadings solve for the largest circle through
+ * each pixel as described in section 8.7.4.5.4 of the PDF specification.
+ * Pixels outside the shading that aren't covered by its Extend entry are left
+ * transparent.
+ *
+ * @since 6.2
+ */
+public class ShadingGradientPaint implements Paint {
+
+    // fractional bits of the axial table index.
+    private static final int FIXED_SHIFT = 16;
+    private static final long FIXED_ONE = 1L << FIXED_SHIFT;
+
+    private int shadingType;
+    private float[] coords;
+    private boolean extendStart;
+    private boolean extendEnd;
+    private int[] colorTable;
+    private AffineTransform matrix;
+
+    /**
+     * Creates a new gradient paint.
+     *
+     * @param shadingType ShadingPattern.SHADING_PATTERN_TYPE_2 or SHADING_PATTERN_TYPE_3.
+     * @param coords      axis [x0 y0 x1 y1] of an axial shading or circles
+     *                    [x0 y0 r0 x1 y1 r1] of a radial shading.
+     * @param extendStart extend the shading before its start.
+     * @param extendEnd   extend the shading past its end.
+     * @param colorTable  ARGB colours evenly spread from the start to the end of the shading.
+     * @param matrix      shading space to pattern space transform.
+     */
+    public ShadingGradientPaint(int shadingType, float[] coords, boolean extendStart, boolean extendEnd,
+                                int[] colorTable, AffineTransform matrix) {
+        this.shadingType = shadingType;
+        this.coords = coords;
+        this.extendStart = extendStart;
+        this.extendEnd = extendEnd;
+        this.colorTable = colorTable;
+        this.matrix = matrix;
+    }
+
+    public PaintContext createContext(ColorModel cm, Rectangle deviceBounds, Rectangle2D userBounds,
+                                      AffineTransform xform, RenderingHints hints) {
+        AffineTransform transform = new AffineTransform(xform);
+        transform.concatenate(matrix);
+        AffineTransform inverse;
+        try {
+            inverse = transform.createInverse();
+        } catch (NoninvertibleTransformException e) {
+            inverse = null;
+        }
+        return new GradientPaintContext(inverse);
+    }
+
+    public int getTransparency() {
+        // an axial shading extended both ways covers everything.
+        return shadingType == ShadingPattern.SHADING_PATTERN_TYPE_2 && extendStart && extendEnd ?
+                Transparency.OPAQUE : Transparency.TRANSLUCENT;
+    }
+
+    /**
+     * Fills one row of an axial shading.
+     */
+    private void fillAxialRow(int[] data, int offset, int width, double sx, double sy,
+                              double stepX, double stepY) {
+        double x0 = coords[0], y0 = coords[1];
+        double dx = coords[2] - x0, dy = coords[3] - y0;
+        double length = dx * dx + dy * dy;
+        int last = colorTable.length - 1;
+        long end = last * FIXED_ONE;
+        // table index times FIXED_ONE at the first pixel and its change per pixel.
+        double scale = last * FIXED_ONE / length;
+        long index = (long) (((sx - x0) * dx + (sy - y0) * dy) * scale);
+        long step = (long) ((stepX * dx + stepY * dy) * scale);
+        int startColor = extendStart ? colorTable[0] : 0;
+        int endColor = extendEnd ? colorTable[last] : 0;
+        for (int i = offset, max = offset + width; i < max; i++, index += step) {
+            if (index < 0) {
+                data[i] = startColor;
+            } else if (index > end) {
+                data[i] = endColor;
+            } else {
+                data[i] = colorTable[(int) ((index + (FIXED_ONE >> 1)) >> FIXED_SHIFT)];
+            }
+        }
+    }
+
+    /**
+     * Fills one row of a radial shading.
+     */
+    private void fillRadialRow(int[] data, int offset, int width, double sx, double sy,
+                               double stepX, double stepY) {
+        double x0 = coords[0], y0 = coords[1], r0 = coords[2];
+        double cdx = coords[3] - x0, cdy = coords[4] - y0, dr = coords[5] - r0;
+        double a = cdx * cdx + cdy * cdy - dr * dr;
+        int last = colorTable.length - 1;
+        for (int i = offset, max = offset + width; i < max; i++, sx += stepX, sy += stepY) {
+            double pdx = sx - x0, pdy = sy - y0;
+            double b = pdx * cdx + pdy * cdy + r0 * dr;
+            double c = pdx * pdx + pdy * pdy - r0 * r0;
+            double s;
+            if (Math.abs(a) < 1e-9) {
+                s = b != 0 ? c / (2 * b) : Double.NaN;
+                if (!isInside(s, r0, dr)) {
+                    s = Double.NaN;
+                }
+            } else {
+                double discriminant = b * b - a * c;
+                if (discriminant < 0) {
+                    s = Double.NaN;
+                } else {
+                    double root = Math.sqrt(discriminant);
+                    double s1 = (b + root) / a;
+                    double s2 = (b - root) / a;
+                    // the larger circle is painted over the smaller one.
+                    double larger = Math.max(s1, s2);
+                    double smaller = Math.min(s1, s2);
+                    s = isInside(larger, r0, dr) ? larger : isInside(smaller, r0, dr) ? smaller : Double.NaN;
+                }
+            }
+            if (Double.isNaN(s)) {
+                data[i] = 0;
+            } else {
+                s = s < 0 ? 0 : s > 1 ? 1 : s;
+                data[i] = colorTable[(int) (s * last + 0.5)];
+            }
+        }
+    }
+
+    private boolean isInside(double s, double r0, double dr) {
+        return !Double.isNaN(s) && r0 + s * dr >= 0 &&
+                (s >= 0 || extendStart) && (s <= 1 || extendEnd);
+    }
+
+    /**
+     * Fills rasters a row at a time from the colour table.
+     */
+    private class GradientPaintContext implements PaintContext {
+
+        private AffineTransform inverse;
+        private WritableRaster savedRaster;
+
+        GradientPaintContext(AffineTransform inverse) {
+            this.inverse = inverse;
+        }
+
+        public void dispose() {
+            savedRaster = null;
+        }
+
+        public ColorModel getColorModel() {
+            return ColorModel.getRGBdefault();
+        }
+
+        public Raster getRaster(int x, int y, int w, int h) {
+            WritableRaster raster = savedRaster;
+            if (raster == null || raster.getWidth() != w || raster.getHeight() != h) {
+                raster = getColorModel().createCompatibleWritableRaster(w, h);
+                savedRaster = raster;
+            }
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            if (inverse == null) {
+                Arrays.fill(data, 0);
+                return raster;
+            }
+            double m00 = inverse.getScaleX(), m01 = inverse.getShearX(), m02 = inverse.getTranslateX();
+            double m10 = inverse.getShearY(), m11 = inverse.getScaleY(), m12 = inverse.getTranslateY();
+            for (int row = 0; row < h; row++) {
+                // shading space location of the first pixel centre of the row.
+                double px = x + 0.5;
+                double py = y + row + 0.5;
+                double sx = m00 * px + m01 * py + m02;
+                double sy = m10 * px + m11 * py + m12;
+                if (shadingType == ShadingPattern.SHADING_PATTERN_TYPE_3) {
+                    fillRadialRow(data, row * stride, w, sx, sy, m00, m10);
+                } else {
+                    fillAxialRow(data, row * stride, w, sx, sy, m00, m10);
+                }
+            }
+            return raster;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.graphics;
+
+import org.icepdf.core.util.BoundedLRUCache;
+import org.icepdf.core.util.Defs;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+/**
+ * The shading mesh cache keeps the rasterised meshes of shading types 4 to 7
+ * so a mesh is only rasterised once for a given device transform and fill
+ * area, repainting a page at the same zoom reuses the raster even when the
+ * page's content has been parsed again.  Rasters are looked up by the mesh's
+ * stream, the pattern to device transform and the device bounds being
+ * filled.
+ * <p/>
+ * Each document's library has its own cache so rasters never outlive their
+ * document.  The cache is least recently used and holds at most
+ * org.icepdf.core.shading.mesh.cache.pixels pixels, default 4194304, a value
+ * of 0 disables the cache.
+ *
+ * @since 6.2
+ */
+public class ShadingMeshCache {
+
+    private static int maxPixels;
+
+    static {
+        maxPixels = Defs.intProperty("org.icepdf.core.shading.mesh.cache.pixels", 1 << 22);
+    }
+
+    private final BoundedLRUCache<Object, Raster> rasters =
+            new BoundedLRUCache<Object, Raster>(maxPixels) {
+                @Override
+                protected long sizeOf(Raster raster) {
+                    return (long) raster.getWidth() * raster.getHeight();
+                }
+            };
+
+    /**
+     * Builds the lookup key for a mesh raster.
+     *
+     * @param mesh         mesh stream reference, or the pattern when the stream is a direct object.
+     * @param transform    pattern space to device space transform.
+     * @param deviceBounds device bounds of the area being filled.
+     * @return cache key.
+     */
+    public static Object getKey(Object mesh, AffineTransform transform, Rectangle deviceBounds) {
+        double[] matrix = new double[6];
+        transform.getMatrix(matrix);
+        return new Key(mesh, matrix, new Rectangle(deviceBounds));
+    }
+
+    public Raster get(Object key) {
+        return rasters.get(key);
+    }
+
+    /**
+     * Adds a mesh raster to the cache, the least recently used rasters are
+     * removed until the cache is back under its budget.  Rasters larger than
+     * the whole budget aren't cached.  Cached rasters must not be changed.
+     *
+     * @param key    key from getKey.
+     * @param raster mesh raster, its origin is the device location of its first pixel.
+     */
+    public void put(Object key, Raster raster) {
+        rasters.put(key, raster);
+    }
+
+    public void clear() {
+        rasters.clear();
+    }
+
+    private static class Key {
+        private Object mesh;
+        private double[] matrix;
+        private Rectangle bounds;
+        private int hashCode;
+
+        Key(Object mesh, double[] matrix, Rectangle bounds) {
+            this.mesh = mesh;
+            this.matrix = matrix;
+            this.bounds = bounds;
+            hashCode = 31 * (31 * mesh.hashCode() + Arrays.hashCode(matrix)) + bounds.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mesh.equals(key.mesh) && Arrays.equals(matrix, key.matrix) && bounds.equals(key.bounds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.graphics;
+
+import org.icepdf.core.pobjects.ImageBands;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.*;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Paint for the mesh shadings, types 4 to 7.  When a fill starts the mesh is
+ * turned in to device space triangles for the fill's transform and the
+ * triangles covering the fill's bounds are rasterised in to an int ARGB
+ * raster.  Each triangle is scan converted a row at a time with its colour
+ * worked out incrementally along the row, and large fills are split in to
+ * bands of rows rasterised concurrently.  Pixels outside the mesh are left
+ * transparent.  Rasters are kept in the document's {@link ShadingMeshCache}.
+ *
+ * @since 6.2
+ */
+public class ShadingMeshPaint implements Paint {
+
+    private static final Logger logger =
+            Logger.getLogger(ShadingMeshPaint.class.toString());
+
+    // pixel centres this close outside an edge still count as inside, so shared edges never leave gaps.
+    private static final float EDGE_TOLERANCE = 1e-3f;
+
+    private ShadingMeshPattern pattern;
+
+    public ShadingMeshPaint(ShadingMeshPattern pattern) {
+        this.pattern = pattern;
+    }
+
+    public PaintContext createContext(ColorModel cm, Rectangle deviceBounds, Rectangle2D userBounds,
+                                      AffineTransform xform, RenderingHints hints) {
+        AffineTransform transform = new AffineTransform(xform);
+        transform.concatenate(pattern.getMatrix());
+        ShadingMeshCache meshCache = pattern.getLibrary().getShadingMeshCache();
+        Object reference = pattern.getMeshReference();
+        Object key = ShadingMeshCache.getKey(reference != null ? reference : pattern, transform, deviceBounds);
+        Raster raster = meshCache.get(key);
+        if (raster == null) {
+            ShadingMeshPattern.Mesh mesh = pattern.getMesh(transform);
+            Rectangle bounds = deviceBounds.intersection(mesh.getBounds());
+            if (bounds.isEmpty()) {
+                bounds = new Rectangle(deviceBounds.x, deviceBounds.y, 0, 0);
+            }
+            raster = rasterize(mesh, bounds);
+            // partly rasterised meshes are done again next time.
+            if (!Thread.currentThread().isInterrupted()) {
+                meshCache.put(key, raster);
+            }
+        }
+        return new MeshPaintContext(raster);
+    }
+
+    public int getTransparency() {
+        return Transparency.TRANSLUCENT;
+    }
+
+    /**
+     * Rasterises the triangles of a mesh covering the given device bounds.
+     *
+     * @param mesh   device space mesh.
+     * @param bounds device area to rasterise.
+     * @return ARGB raster with its origin at the bounds' location.
+     */
+    private static Raster rasterize(final ShadingMeshPattern.Mesh mesh, final Rectangle bounds) {
+        final int width = Math.max(1, bounds.width);
+        final int height = Math.max(1, bounds.height);
+        final int[] pixels = new int[width * height];
+        if (!bounds.isEmpty()) {
+            try {
+                ImageBands.process(width, height, true, new ImageBands.Band() {
+                    public void process(int startRow, int endRow) {
+                        for (int i = 0, max = mesh.triangleCount; i < max; i++) {
+                            if (Thread.currentThread().isInterrupted()) {
+                                return;
+                            }
+                            fillTriangle(mesh, i, pixels, bounds.x, bounds.y, width, startRow, endRow);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Error rasterising shading mesh.", e);
+            }
+        }
+        DirectColorModel colorModel = (DirectColorModel) ColorModel.getRGBdefault();
+        SampleModel sampleModel = colorModel.createCompatibleSampleModel(width, height);
+        return Raster.createWritableRaster(sampleModel, new DataBufferInt(pixels, pixels.length),
+                new Point(bounds.x, bounds.y));
+    }
+
+    /**
+     * Scan converts one triangle in to the rows of the raster between startRow and endRow.  The colour is an
+     * affine function over the triangle so it's worked out once for the start of each span and then stepped
+     * along the row.
+     */
+    private static void fillTriangle(ShadingMeshPattern.Mesh mesh, int triangle, int[] pixels,
+                                     int originX, int originY, int width, int startRow, int endRow) {
+        int channels = mesh.getChannels();
+        int a = mesh.triangles[triangle * 3];
+        int b = mesh.triangles[triangle * 3 + 1];
+        int c = mesh.triangles[triangle * 3 + 2];
+        float x0 = mesh.points[a * 2] - originX, y0 = mesh.points[a * 2 + 1] - originY;
+        float x1 = mesh.points[b * 2] - originX, y1 = mesh.points[b * 2 + 1] - originY;
+        float x2 = mesh.points[c * 2] - originX, y2 = mesh.points[c * 2 + 1] - originY;
+        float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if (Math.abs(area) < 1e-6f) {
+            return;
+        }
+        float minY = Math.min(y0, Math.min(y1, y2));
+        float maxY = Math.max(y0, Math.max(y1, y2));
+        int firstRow = Math.max(startRow, (int) Math.ceil(minY - 0.5f - EDGE_TOLERANCE));
+        int lastRow = Math.min(endRow - 1, (int) Math.floor(maxY - 0.5f + EDGE_TOLERANCE));
+        if (firstRow > lastRow) {
+            return;
+        }
+        // colour planes, value = base + dx * x + dy * y for each channel.
+        float[] dx = new float[channels];
+        float[] dy = new float[channels];
+        float[] base = new float[channels];
+        for (int k = 0; k < channels; k++) {
+            float c0 = mesh.colors[a * channels + k];
+            float c1 = mesh.colors[b * channels + k] - c0;
+            float c2 = mesh.colors[c * channels + k] - c0;
+            dx[k] = (c1 * (y2 - y0) - c2 * (y1 - y0)) / area;
+            dy[k] = (c2 * (x1 - x0) - c1 * (x2 - x0)) / area;
+            base[k] = c0 - dx[k] * x0 - dy[k] * y0;
+        }
+        int[] colorTable = mesh.getColorTable();
+        for (int row = firstRow; row <= lastRow; row++) {
+            float y = row + 0.5f;
+            float left = Float.MAX_VALUE;
+            float right = -Float.MAX_VALUE;
+            // span of the row inside the triangle from its crossings with the three edges.
+            for (int edge = 0; edge < 3; edge++) {
+                float ax = edge == 0 ? x0 : edge == 1 ? x1 : x2;
+                float ay = edge == 0 ? y0 : edge == 1 ? y1 : y2;
+                float bx = edge == 0 ? x1 : edge == 1 ? x2 : x0;
+                float by = edge == 0 ? y1 : edge == 1 ? y2 : y0;
+                if ((y < Math.min(ay, by) - EDGE_TOLERANCE) || (y > Math.max(ay, by) + EDGE_TOLERANCE)) {
+                    continue;
+                }
+                if (Math.abs(by - ay) < 1e-6f) {
+                    // horizontal edge, the whole edge is on the row.
+                    left = Math.min(left, Math.min(ax, bx));
+                    right = Math.max(right, Math.max(ax, bx));
+                } else {
+                    float edgeY = Math.min(Math.max(y, Math.min(ay, by)), Math.max(ay, by));
+                    float x = ax + (edgeY - ay) * (bx - ax) / (by - ay);
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                }
+            }
+            int first = Math.max(0, (int) Math.ceil(left - 0.5f - EDGE_TOLERANCE));
+            int last = Math.min(width - 1, (int) Math.floor(right - 0.5f + EDGE_TOLERANCE));
+            if (first > last) {
+                continue;
+            }
+            int offset = row * width;
+            float start = first + 0.5f;
+            if (channels == 1) {
+                float t = base[0] + dx[0] * start + dy[0] * y;
+                float step = dx[0];
+                for (int column = first; column <= last; column++, t += step) {
+                    pixels[offset + column] = colorTable[clamp(t)];
+                }
+            } else {
+                float red = base[0] + dx[0] * start + dy[0] * y;
+                float green = base[1] + dx[1] * start + dy[1] * y;
+                float blue = base[2] + dx[2] * start + dy[2] * y;
+                for (int column = first; column <= last; column++) {
+                    pixels[offset + column] = 0xFF000000 | clamp(red) << 16 | clamp(green) << 8 | clamp(blue);
+                    red += dx[0];
+                    green += dx[1];
+                    blue += dx[2];
+                }
+            }
+        }
+    }
+
+    private static int clamp(float value) {
+        int v = (int) (value + 0.5f);
+        return v < 0 ? 0 : v > 255 ? 255 : v;
+    }
+
+    /**
+     * Hands out parts of a mesh raster, areas outside of the raster are transparent.
+     */
+    private static class MeshPaintContext implements PaintContext {
+
+        private Raster meshRaster;
+        private int[] meshPixels;
+        private WritableRaster savedRaster;
+
+        MeshPaintContext(Raster meshRaster) {
+            this.meshRaster = meshRaster;
+            meshPixels = ((DataBufferInt) meshRaster.getDataBuffer()).getData();
+        }
+
+        public void dispose() {
+            savedRaster = null;
+        }
+
+        public ColorModel getColorModel() {
+            return ColorModel.getRGBdefault();
+        }
+
+        public Raster getRaster(int x, int y, int w, int h) {
+            WritableRaster raster = savedRaster;
+            if (raster == null || raster.getWidth() != w || raster.getHeight() != h) {
+                raster = getColorModel().createCompatibleWritableRaster(w, h);
+                savedRaster = raster;
+            }
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            int meshX = meshRaster.getMinX();
+            int meshY = meshRaster.getMinY();
+            int meshWidth = meshRaster.getWidth();
+            int meshHeight = meshRaster.getHeight();
+            int left = Math.max(x, meshX);
+            int right = Math.min(x + w, meshX + meshWidth);
+            for (int row = 0; row < h; row++) {
+                int meshRow = y + row - meshY;
+                int offset = row * stride;
+                if (meshRow < 0 || meshRow >= meshHeight || left >= right) {
+                    Arrays.fill(data, offset, offset + w, 0);
+                    continue;
+                }
+                Arrays.fill(data, offset, offset + left - x, 0);
+                System.arraycopy(meshPixels, meshRow * meshWidth + left - meshX,
+                        data, offset + left - x, right - left);
+                Arrays.fill(data, offset + right - x, offset + w, 0);
+            }
+            return raster;
+        }
+    }
+}
@@ -8,7 +8,7 @@ import org.icepdf.core.pobjects.functions.Function;
 import org.icepdf.core.util.Library;
 
 import java.awt.*;
-import java.awt.geom.Point2D;
+import java.awt.geom.AffineTransform;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.logging.Logger;
@@ -16,6 +16,12 @@ import java.util.logging.Logger;
 /**
  * Base class for Mesh shading types 4-7. Each subtype parses the shading vertex information slighly differently
  * but the decode and base parse for flag, coordinate and colour is the same.
+ * <p/>
+ * Vertex data is decoded in to primitive arrays, coordinates in pattern space and colours as RGB values, or as the
+ * parametric value t scaled to 0-255 when the shading has a function.  The vertex colours are interpolated across
+ * the mesh and t values are mapped through a 256 entry colour table built from the function.  Subclasses turn their
+ * vertices in to device space triangles with {@link #getMesh(AffineTransform)} which the
+ * {@link ShadingMeshPaint} returned by getPaint() rasterises.
  *
  * @since 6.2
  */
@@ -52,6 +58,13 @@ public abstract class ShadingMeshPattern extends ShadingPattern implements Patte
     // converted decode data to simply process later on, taken from our DecodeRasterOp class.
     protected float[] decode;
 
+    // interpolated values per vertex, 1 when the colour comes from the function otherwise 3 for r, g and b.
+    protected int channels;
+    // colours of t scaled to 0-255, null if the shading has no function.
+    protected int[] colorTable;
+
+    private ShadingMeshPaint meshPaint;
+
     public ShadingMeshPattern(Library l, HashMap h, Stream meshDataStream) {
         super(l, h);
         this.meshDataStream = meshDataStream;
@@ -77,10 +90,36 @@ public abstract class ShadingMeshPattern extends ShadingPattern implements Patte
             }
         }
         decode = processDecode();
+        channels = function != null ? 1 : 3;
+        if (function != null) {
+            colorTable = processColorTable();
+        }
         vertexBitStream = new BitStream(meshDataStream.getDecodedByteArrayInputStream());
     }
 
-    public abstract Paint getPaint() throws InterruptedException;
+    public synchronized Paint getPaint() throws InterruptedException {
+        if (meshPaint == null) {
+            meshPaint = new ShadingMeshPaint(this);
+        }
+        return meshPaint;
+    }
+
+    /**
+     * Gets the triangles of the mesh in device space.
+     *
+     * @param transform pattern space to device space transform.
+     * @return device space triangles, never null.
+     */
+    public abstract Mesh getMesh(AffineTransform transform);
+
+    /**
+     * Gets the reference of the stream the mesh was read from.
+     *
+     * @return shading stream reference, null if the stream is a direct object.
+     */
+    public Object getMeshReference() {
+        return meshDataStream.getPObjectReference();
+    }
 
     /**
      * An array of numbers specifying how to map vertex coordinates and colour components into the
@@ -88,6 +127,8 @@ public abstract class ShadingMeshPattern extends ShadingPattern implements Patte
      * (see 8.9.5.2, "Decode Arrays"). The ranges shall be specified as follows:
      * [xmin xmax ymin ymax c1,min c1,max … cn,min cn,max]
      * Only one pair of c values shall be specified if a Function entry is present.
+     * <p/>
+     * Each range is converted to its minimum and the step of one unit of encoded value.
      */
     protected float[] processDecode() {
         float[] decode = new float[6];
@@ -97,23 +138,43 @@ public abstract class ShadingMeshPattern extends ShadingPattern implements Patte
 
         java.util.List<Number> decodeVec = (java.util.List<Number>) library.getObject(shadingDictionary, ImageStream.DECODE_KEY);
 
-        float maxValue = bitsPerCoordinate < 32 ? (float) ((1 << bitsPerCoordinate) - 1) : (float) 2.3283064365386963e-10; // 2^-32;
+        double maxValue = Math.pow(2, bitsPerCoordinate) - 1;
         for (int i = 0; i <= DECODE_Y_MAX; ) {
             float Dmin = decodeVec.get(i).floatValue();
             float Dmax = decodeVec.get(i + 1).floatValue();
             decode[i++] = Dmin;
-            decode[i++] = (Dmax - Dmin) / maxValue;
+            decode[i++] = (float) ((Dmax - Dmin) / maxValue);
         }
-        maxValue = ((int) Math.pow(2, bitsPerComponent)) - 1;
-        for (int i = 4; i < decode.length; ) {
+        maxValue = Math.pow(2, bitsPerComponent) - 1;
+        for (int i = 4; i < decode.length && i + 1 < decodeVec.size(); ) {
             float Dmin = decodeVec.get(i).floatValue();
             float Dmax = decodeVec.get(i + 1).floatValue();
             decode[i++] = Dmin;
-            decode[i++] = (Dmax - Dmin) / maxValue;
+            decode[i++] = (float) ((Dmax - Dmin) / maxValue);
         }
         return decode;
     }
 
+    /**
+     * Builds the colour table of a shading with a function, entry i holds the colour of t at i/255 of the way
+     * through the decode range of t.
+     */
+    private int[] processColorTable() {
+        float tMin = decode[4];
+        float tMax = decode[4] + decode[5] * (float) (Math.pow(2, bitsPerComponent) - 1);
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            float[] output = calculateValues(new float[]{tMin + (tMax - tMin) * i / 255f});
+            if (output != null) {
+                output = PColorSpace.reverse(output);
+                table[i] = colorSpace.getColor(output, true).getRGB();
+            } else {
+                table[i] = 0xFF000000;
+            }
+        }
+        return table;
+    }
+
     /**
      * Reads the vertex descriptor flag, length of flag is defined by the bitsPerFlag dictionary entry.
      *
@@ -121,53 +182,168 @@ public abstract class ShadingMeshPattern extends ShadingPattern implements Patte
      * @throws IOException bit stream issue.
      */
     protected int readFlag() throws IOException {
-        return vertexBitStream.getBits(bitsPerFlag);
+        return vertexBitStream.getBits(bitsPerFlag) & 3;
     }
 
     /**
      * Reads the vertex coordinate data, length of flag is defined by the bitsPerCoordinate dictionary entry.
      *
-     * @return int value of the vertex coordinate.
+     * @param coordinates array to store the x and y coordinate in.
+     * @param offset      offset of the x coordinate.
      * @throws IOException bit stream issue.
      */
-    protected Point2D.Float readCoord() throws IOException {
-        float x = vertexBitStream.getBits(bitsPerCoordinate);
-        float y = vertexBitStream.getBits(bitsPerCoordinate);
+    protected void readCoord(float[] coordinates, int offset) throws IOException {
+        long x = vertexBitStream.getBits(bitsPerCoordinate) & 0xFFFFFFFFL;
+        long y = vertexBitStream.getBits(bitsPerCoordinate) & 0xFFFFFFFFL;
         // normalize components to decode array
-        x *= decode[DECODE_X_MAX] - decode[DECODE_X_MIN] + decode[DECODE_X_MIN];
-        y *= decode[DECODE_Y_MAX] - decode[DECODE_Y_MIN] + decode[DECODE_Y_MIN];
-        return new Point2D.Float(x, y);
+        coordinates[offset] = decode[DECODE_X_MIN] + x * decode[DECODE_X_MAX];
+        coordinates[offset + 1] = decode[DECODE_Y_MIN] + y * decode[DECODE_Y_MAX];
     }
 
     /**
      * Reads the vertex colour data, length of flag is defined by the colorSpaceCompCount dictionary entry.
-     * Color data is generate using the function if present as well as the defined colour space.
+     * Colours are stored as r, g and b values or as the parametric value t scaled to the colour table
+     * when the shading has a function.
      *
-     * @return int value of the vertex colour.
+     * @param colors array to store the vertex colour in, {@link #channels} values are stored.
+     * @param offset offset of the first value.
      * @throws IOException bit stream issue.
      */
-    protected Color readColor() throws IOException {
-        float[] primitives;
+    protected void readColor(float[] colors, int offset) throws IOException {
         if (function == null) {
-            primitives = new float[colorSpaceCompCount];
+            float[] primitives = new float[colorSpaceCompCount];
             for (int i = 0, j = 4; i < colorSpaceCompCount; i++, j += 2) {
-                primitives[i] = vertexBitStream.getBits(bitsPerComponent);
                 // normalize
-                primitives[i] *= decode[j + 1] - decode[j] + decode[j];
+                primitives[i] = decode[j] + vertexBitStream.getBits(bitsPerComponent) * decode[j + 1];
             }
             primitives = PColorSpace.reverse(primitives);
-            return colorSpace.getColor(primitives, true);
+            int rgb = colorSpace.getColor(primitives, true).getRGB();
+            colors[offset] = (rgb >> 16) & 0xFF;
+            colors[offset + 1] = (rgb >> 8) & 0xFF;
+            colors[offset + 2] = rgb & 0xFF;
         } else {
-            float value = vertexBitStream.getBits(bitsPerComponent);
-            // normalize
-            value *= (decode[5] - decode[4]) + decode[4];
-            primitives = new float[]{value};
-            float[] output = calculateValues(primitives);
-            if (output != null) {
-                output = PColorSpace.reverse(output);
-                return colorSpace.getColor(output, true);
+            float max = (float) (Math.pow(2, bitsPerComponent) - 1);
+            colors[offset] = vertexBitStream.getBits(bitsPerComponent) / max * 255f;
+        }
+    }
+
+    /**
+     * Builds the device space mesh of a list of pattern space triangles.
+     *
+     * @param transform     pattern space to device space transform.
+     * @param points        vertex x, y pairs.
+     * @param colors        vertex colours, {@link #channels} values per vertex.
+     * @param vertexCount   number of vertices.
+     * @param triangles     vertex indexes, three per triangle.
+     * @param triangleCount number of triangles.
+     * @return device space mesh.
+     */
+    protected Mesh getTriangleMesh(AffineTransform transform, float[] points, float[] colors, int vertexCount,
+                                   int[] triangles, int triangleCount) {
+        Mesh mesh = new Mesh(channels, colorTable, vertexCount, triangleCount);
+        float[] devicePoints = new float[vertexCount * 2];
+        transform.transform(points, 0, devicePoints, 0, vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            mesh.addVertex(devicePoints[i * 2], devicePoints[i * 2 + 1], colors, i * channels);
+        }
+        for (int i = 0; i < triangleCount; i++) {
+            mesh.addTriangle(triangles[i * 3], triangles[i * 3 + 1], triangles[i * 3 + 2]);
+        }
+        return mesh;
+    }
+
+    /**
+     * Doubles the length of a vertex data array.
+     */
+    protected static float[] grow(float[] array) {
+        float[] tmp = new float[Math.max(2, array.length * 2)];
+        System.arraycopy(array, 0, tmp, 0, array.length);
+        return tmp;
+    }
+
+    /**
+     * Growable triangle list in device space, vertices are stored as x, y pairs with {@link #channels} colour
+     * values each and triangles as three vertex indexes.
+     */
+    public static class Mesh {
+
+        private final int channels;
+        private final int[] colorTable;
+
+        float[] points;
+        float[] colors;
+        int[] triangles;
+        int vertexCount;
+        int triangleCount;
+
+        Mesh(int channels, int[] colorTable, int vertices, int triangles) {
+            this.channels = channels;
+            this.colorTable = colorTable;
+            points = new float[Math.max(1, vertices) * 2];
+            colors = new float[Math.max(1, vertices) * channels];
+            this.triangles = new int[Math.max(1, triangles) * 3];
+        }
+
+        /**
+         * Adds a device space vertex.
+         *
+         * @return index of the new vertex.
+         */
+        int addVertex(float x, float y, float[] color, int colorOffset) {
+            if (vertexCount * 2 == points.length) {
+                points = grow(points);
+                colors = grow(colors);
+            }
+            points[vertexCount * 2] = x;
+            points[vertexCount * 2 + 1] = y;
+            System.arraycopy(color, colorOffset, colors, vertexCount * channels, channels);
+            return vertexCount++;
+        }
+
+        void addTriangle(int a, int b, int c) {
+            if (triangleCount * 3 == triangles.length) {
+                int[] tmp = new int[triangles.length * 2];
+                System.arraycopy(triangles, 0, tmp, 0, triangles.length);
+                triangles = tmp;
+            }
+            triangles[triangleCount * 3] = a;
+            triangles[triangleCount * 3 + 1] = b;
+            triangles[triangleCount * 3 + 2] = c;
+            triangleCount++;
+        }
+
+        public int getChannels() {
+            return channels;
+        }
+
+        public int[] getColorTable() {
+            return colorTable;
+        }
+
+        public int getTriangleCount() {
+            return triangleCount;
+        }
+
+        /**
+         * Gets the device space bounds of the mesh.
+         *
+         * @return mesh bounds, empty if the mesh has no vertices.
+         */
+        public Rectangle getBounds() {
+            if (vertexCount == 0) {
+                return new Rectangle();
+            }
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+            for (int i = 0, max = vertexCount * 2; i < max; i += 2) {
+                minX = Math.min(minX, points[i]);
+                maxX = Math.max(maxX, points[i]);
+                minY = Math.min(minY, points[i + 1]);
+                maxY = Math.max(maxY, points[i + 1]);
             }
+            int x = (int) Math.floor(minX);
+            int y = (int) Math.floor(minY);
+            return new Rectangle(x, y, (int) Math.ceil(maxX) - x + 1, (int) Math.ceil(maxY) - y + 1);
         }
-        return null;
     }
 }
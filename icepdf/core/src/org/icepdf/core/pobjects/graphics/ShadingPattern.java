@@ -263,6 +263,50 @@ public abstract class ShadingPattern extends Dictionary implements Pattern {
         return output;
     }
 
+    /**
+     * Gets the colour lookup table of a shading that takes one parametric
+     * variable, the function is sampled evenly over [t0, t1].  Tables are
+     * shared through the document's {@link ShadingColorTableCache} so the
+     * function is only sampled the first time the shading is painted.
+     *
+     * @param t0 domain min.
+     * @param t1 domain max.
+     * @return ARGB colour table of ShadingColorTableCache.SAMPLES entries.
+     */
+    protected int[] getColorTable(float t0, float t1) {
+        ShadingColorTableCache colorTableCache = library.getShadingColorTableCache();
+        Object key = ShadingColorTableCache.getKey(shadingDictionary);
+        int[] colorTable = colorTableCache.get(key);
+        if (colorTable == null) {
+            colorTable = new int[ShadingColorTableCache.SAMPLES];
+            float step = (t1 - t0) / (colorTable.length - 1);
+            for (int i = 0; i < colorTable.length; i++) {
+                Color color = calculateColour(t0 + step * i);
+                colorTable[i] = color != null ? color.getRGB() : 0;
+            }
+            colorTableCache.put(key, colorTable);
+        }
+        return colorTable;
+    }
+
+    /**
+     * Calculates the colour of the parametric value t by applying the shading
+     * function and colour space.
+     *
+     * @param t parametric value.
+     * @return colour of t, null if the shading has no function.
+     */
+    protected Color calculateColour(float t) {
+        if (function == null) {
+            return null;
+        }
+        float[] output = calculateValues(new float[]{t});
+        if (output == null) {
+            return null;
+        }
+        return colorSpace.getColor(PColorSpace.reverse(output), true);
+    }
+
     /**
      * Gets the Paint object need to fill a shape etc.  Each individual
      * implementation will return a particular paint type.
@@ -16,8 +16,6 @@
 package org.icepdf.core.pobjects.graphics;
 
 import org.icepdf.core.pobjects.functions.Function;
-import org.icepdf.core.pobjects.graphics.batik.ext.awt.LinearGradientPaint;
-import org.icepdf.core.pobjects.graphics.batik.ext.awt.MultipleGradientPaint;
 import org.icepdf.core.util.Library;
 
 import java.awt.*;
@@ -56,8 +54,8 @@ public class ShadingType2Pattern extends ShadingPattern {
     // beyond the starting and ending points of the axis, Default [false, false].
     protected List<Boolean> extend;
 
-    // linear gradient paint describing the gradient.
-    private LinearGradientPaint linearGradientPaint;
+    // paint filling from the shading's colour table.
+    private ShadingGradientPaint gradientPaint;
 
     public ShadingType2Pattern(Library library, HashMap entries) {
         super(library, entries);
@@ -140,18 +138,12 @@ public class ShadingType2Pattern extends ShadingPattern {
             endPoint.x++;
         }
 
-        // calculate colour based on points that make up the line, 10 is a good
-        // number for speed and gradient quality.
+        // the function is sampled once in to a colour table shared by every
+        // fill of the shading.
         try {
-            int numberOfPoints = 10;
-            Color[] colors = calculateColorPoints(numberOfPoints, startPoint, endPoint, t0, t1);
-            float[] dist = calculateDomainEntries(numberOfPoints, t0, t1);
-
-            linearGradientPaint = new LinearGradientPaint(
-                    startPoint, endPoint, dist, colors,
-                    MultipleGradientPaint.NO_CYCLE,
-                    MultipleGradientPaint.LINEAR_RGB,
-                    matrix);
+            float[] axis = new float[]{startPoint.x, startPoint.y, endPoint.x, endPoint.y};
+            gradientPaint = new ShadingGradientPaint(SHADING_PATTERN_TYPE_2, axis,
+                    extend.get(0), extend.get(1), getColorTable(t0, t1), matrix);
             inited = true;
         } catch (Exception e) {
             logger.finer("Failed ot initialize gradient paint type 2.");
@@ -318,7 +310,7 @@ public class ShadingType2Pattern extends ShadingPattern {
             Thread.currentThread().interrupt();
             logger.fine("ShadingType2Pattern initialization interrupted");
         }
-        return linearGradientPaint;
+        return gradientPaint;
     }
 
     public String toString() {
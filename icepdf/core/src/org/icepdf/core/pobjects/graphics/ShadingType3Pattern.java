@@ -16,12 +16,9 @@
 package org.icepdf.core.pobjects.graphics;
 
 import org.icepdf.core.pobjects.functions.Function;
-import org.icepdf.core.pobjects.graphics.batik.ext.awt.MultipleGradientPaint;
-import org.icepdf.core.pobjects.graphics.batik.ext.awt.RadialGradientPaint;
 import org.icepdf.core.util.Library;
 
 import java.awt.*;
-import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -57,8 +54,8 @@ public class ShadingType3Pattern extends ShadingPattern {
     // beyond the starting and ending points of the axis, Default [false, false].
     protected List<Boolean> extend;
 
-    // radial gradient paint that is used by java for paint. 
-    protected RadialGradientPaint radialGradientPaint;
+    // radial gradient paint that is used by java for paint.
+    protected ShadingGradientPaint radialGradientPaint;
 
 
     public ShadingType3Pattern(Library library, HashMap entries) {
@@ -124,65 +121,25 @@ public class ShadingType3Pattern extends ShadingPattern {
 
         float t0 = domain.get(0).floatValue();
         float t1 = domain.get(1).floatValue();
-        float s[] = new float[]{0.0f, 0.25f, 0.5f, 0.75f, 1.0f};
-
-        Point2D.Float center = new Point2D.Float(
-                ((Number) coords.get(0)).floatValue(),
-                ((Number) coords.get(1)).floatValue());
-
-        Point2D.Float focus = new Point2D.Float(
-                ((Number) coords.get(3)).floatValue(),
-                ((Number) coords.get(4)).floatValue());
-
-        float radius = ((Number) coords.get(2)).floatValue();
-        float radius2 = ((Number) coords.get(5)).floatValue();
-
-        // approximation, as we don't full support radial point via the paint
-        // class. 
-        if (radius2 > radius) {
-            radius = radius2;
-        }
 
+        // the function is sampled once in to a colour table shared by every
+        // fill of the shading.
         try {
-            // get the number off components in the colour
-            Color color1 = calculateColour(colorSpace, s[0], t0, t1);
-            Color color2 = calculateColour(colorSpace, s[1], t0, t1);
-            Color color3 = calculateColour(colorSpace, s[2], t0, t1);
-            Color color4 = calculateColour(colorSpace, s[3], t0, t1);
-            Color color5 = calculateColour(colorSpace, s[4], t0, t1);
-
-            if (color1 == null || color2 == null) {
-                return;
+            float[] circles = new float[6];
+            for (int i = 0; i < circles.length; i++) {
+                circles[i] = ((Number) coords.get(i)).floatValue();
             }
-            // Construct a LinearGradientPaint object to be use by java2D
-            Color[] colors = {color1, color2, color3, color4, color5};
-
-            radialGradientPaint = new RadialGradientPaint(
-                    center, radius,
-                    focus,
-                    s,
-                    colors,
-                    MultipleGradientPaint.NO_CYCLE,
-                    MultipleGradientPaint.LINEAR_RGB,
-                    matrix);
-
-            // get type 3 specific data.
+            radialGradientPaint = new ShadingGradientPaint(SHADING_PATTERN_TYPE_3, circles,
+                    extend.get(0), extend.get(1), getColorTable(t0, t1), matrix);
             inited = true;
         } catch (Exception e) {
             logger.finer("Failed ot initialize gradient paint type 3.");
         }
     }
 
-    private Color calculateColour(PColorSpace colorSpace, float s,
-                                  float t0, float t1) {
-
-        // find colour at point 1
-        float t = parametrixValue(s, t0, t1, extend);
-        // find colour at point 
-        float[] input = new float[1];
-        input[0] = t;
+    protected Color calculateColour(float t) {
         if (function != null) {
-            float[] output = calculateValues(input);
+            float[] output = calculateValues(new float[]{t});
             if (output != null) {
                 if (!(colorSpace instanceof DeviceN)) {
                     output = PColorSpace.reverse(output);
@@ -197,21 +154,6 @@ public class ShadingType3Pattern extends ShadingPattern {
         }
     }
 
-    /**
-     * Parametric variable t calculation as defined in Section 4.6, Type 2
-     * (axial) shadings.
-     *
-     * @param linearMapping linear mapping of some point x'
-     * @param t0            domain of axial shading, limit 1
-     * @param t1            domain of axial shading, limit 2
-     * @param extended      2 element vector, indicating line extension along domain
-     * @return parametric value.
-     */
-    private float parametrixValue(float linearMapping, float t0, float t1,
-                                  List extended) {
-        return t0 + ((t1 - t0) * linearMapping);
-    }
-
     public Paint getPaint() throws InterruptedException {
         init();
         return radialGradientPaint;
@@ -3,17 +3,16 @@ package org.icepdf.core.pobjects.graphics;
 import org.icepdf.core.pobjects.Stream;
 import org.icepdf.core.util.Library;
 
-import java.awt.*;
-import java.awt.geom.Point2D;
+import java.awt.geom.AffineTransform;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.logging.Logger;
 
 /**
  * Free-form Gouraud-shaded Triangle Meshes support.
- *
- * Note: currently only parsing data and returning the first colour of the first vertex.
+ * <p/>
+ * Each vertex has an edge flag, a flag of 0 starts a new triangle with the next two vertices, a flag of 1 or 2
+ * builds a triangle from the new vertex and an edge of the previous triangle.
  *
  * @since 6.2
  */
@@ -22,32 +21,85 @@ public class ShadingType4Pattern extends ShadingMeshPattern {
     private static final Logger logger =
             Logger.getLogger(ShadingType4Pattern.class.toString());
 
-    private ArrayList<Integer> vertexEdgeFlag = new ArrayList<Integer>();
-    private ArrayList<Point2D.Float> coordinates = new ArrayList<Point2D.Float>();
-    private ArrayList<Color> colorComponents = new ArrayList<Color>();
+    private float[] coordinates = new float[0];
+    private float[] colorComponents = new float[0];
+    private int vertexCount;
+    private int[] triangles = new int[0];
+    private int triangleCount;
 
     public ShadingType4Pattern(Library l, HashMap h, Stream meshDataStream) {
         super(l, h, meshDataStream);
     }
 
-    public void init(GraphicsState graphicsState) {
-
-        vertexEdgeFlag = new ArrayList<Integer>();
-        coordinates = new ArrayList<Point2D.Float>();
-        colorComponents = new ArrayList<Color>();
+    public synchronized void init(GraphicsState graphicsState) {
+        if (inited) {
+            return;
+        }
+        coordinates = new float[64];
+        colorComponents = new float[32 * channels];
+        triangles = new int[96];
+        vertexCount = 0;
+        triangleCount = 0;
+        // vertices of the last triangle, and how many vertices a new triangle still needs.
+        int a = 0, b = 0, c = 0;
+        int needed = 0;
         try {
             while (vertexBitStream.available() > 0) {
-                vertexEdgeFlag.add(readFlag());
-                coordinates.add(readCoord());
-                colorComponents.add(readColor());
+                int flag = readFlag();
+                if (vertexCount * 2 == coordinates.length) {
+                    coordinates = grow(coordinates);
+                    colorComponents = grow(colorComponents);
+                }
+                readCoord(coordinates, vertexCount * 2);
+                readColor(colorComponents, vertexCount * channels);
+                // each vertex starts on a byte boundary.
+                vertexBitStream.skipByte();
+                if (vertexBitStream.atEndOfFile()) {
+                    break;
+                }
+                int vertex = vertexCount++;
+                if (needed > 0) {
+                    if (needed == 2) {
+                        b = vertex;
+                    } else {
+                        c = vertex;
+                        addTriangle(a, b, c);
+                    }
+                    needed--;
+                } else if (flag == 0) {
+                    a = vertex;
+                    needed = 2;
+                } else if (flag == 1) {
+                    a = b;
+                    b = c;
+                    c = vertex;
+                    addTriangle(a, b, c);
+                } else {
+                    b = c;
+                    c = vertex;
+                    addTriangle(a, b, c);
+                }
             }
         } catch (IOException e) {
             logger.warning("Error parsing Shading type 4 pattern vertices.");
         }
+        inited = true;
     }
 
-    public Paint getPaint() throws InterruptedException {
-        return colorComponents.get(0);
+    public Mesh getMesh(AffineTransform transform) {
+        init(null);
+        return getTriangleMesh(transform, coordinates, colorComponents, vertexCount, triangles, triangleCount);
     }
 
+    private void addTriangle(int a, int b, int c) {
+        if (triangleCount * 3 == triangles.length) {
+            int[] tmp = new int[triangles.length * 2];
+            System.arraycopy(triangles, 0, tmp, 0, triangles.length);
+            triangles = tmp;
+        }
+        triangles[triangleCount * 3] = a;
+        triangles[triangleCount * 3 + 1] = b;
+        triangles[triangleCount * 3 + 2] = c;
+        triangleCount++;
+    }
 }
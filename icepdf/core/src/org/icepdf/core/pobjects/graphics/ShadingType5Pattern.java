@@ -1,19 +1,19 @@
 package org.icepdf.core.pobjects.graphics;
 
+import org.icepdf.core.pobjects.Name;
 import org.icepdf.core.pobjects.Stream;
 import org.icepdf.core.util.Library;
 
-import java.awt.*;
-import java.awt.geom.Point2D;
+import java.awt.geom.AffineTransform;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.logging.Logger;
 
 /**
  * Lattice-Form Gouraud-shaded Triangle Meshes support.
- *
- * Note: currently only parsing data and returning the first colour of the first vertex.
+ * <p/>
+ * Vertices are laid out in rows of VerticesPerRow vertices, each cell between two rows is split in to two
+ * triangles.
  *
  * @since 6.2
  */
@@ -22,27 +22,69 @@ public class ShadingType5Pattern extends ShadingMeshPattern {
     private static final Logger logger =
             Logger.getLogger(ShadingType5Pattern.class.toString());
 
-    private ArrayList<Point2D.Float> coordinates = new ArrayList<Point2D.Float>();
-    private ArrayList<Color> colorComponents = new ArrayList<Color>();
+    public static final Name VERTICES_PER_ROW_KEY = new Name("VerticesPerRow");
+
+    private int verticesPerRow;
+
+    private float[] coordinates = new float[0];
+    private float[] colorComponents = new float[0];
+    private int vertexCount;
 
     public ShadingType5Pattern(Library l, HashMap h, Stream meshDataStream) {
         super(l, h, meshDataStream);
+        verticesPerRow = library.getInt(shadingDictionary, VERTICES_PER_ROW_KEY);
     }
 
-    public void init(GraphicsState graphicsState) {
-        coordinates = new ArrayList<Point2D.Float>();
-        colorComponents = new ArrayList<Color>();
+    public synchronized void init(GraphicsState graphicsState) {
+        if (inited) {
+            return;
+        }
+        coordinates = new float[64];
+        colorComponents = new float[32 * channels];
+        vertexCount = 0;
         try {
             while (vertexBitStream.available() > 0) {
-                coordinates.add(readCoord());
-                colorComponents.add(readColor());
+                if (vertexCount * 2 == coordinates.length) {
+                    coordinates = grow(coordinates);
+                    colorComponents = grow(colorComponents);
+                }
+                readCoord(coordinates, vertexCount * 2);
+                readColor(colorComponents, vertexCount * channels);
+                if (vertexBitStream.atEndOfFile()) {
+                    break;
+                }
+                vertexCount++;
             }
         } catch (IOException e) {
             logger.warning("Error parsing Shading type 5 pattern vertices.");
         }
+        inited = true;
     }
 
-    public Paint getPaint() throws InterruptedException {
-        return colorComponents.get(0);
+    public Mesh getMesh(AffineTransform transform) {
+        init(null);
+        if (verticesPerRow < 2) {
+            return getTriangleMesh(transform, coordinates, colorComponents, 0, null, 0);
+        }
+        int rows = vertexCount / verticesPerRow;
+        int cells = Math.max(0, rows - 1) * (verticesPerRow - 1);
+        int[] triangles = new int[cells * 6];
+        int triangleCount = 0;
+        for (int row = 0; row < rows - 1; row++) {
+            for (int column = 0; column < verticesPerRow - 1; column++) {
+                int v = row * verticesPerRow + column;
+                int below = v + verticesPerRow;
+                triangles[triangleCount * 3] = v;
+                triangles[triangleCount * 3 + 1] = v + 1;
+                triangles[triangleCount * 3 + 2] = below;
+                triangleCount++;
+                triangles[triangleCount * 3] = v + 1;
+                triangles[triangleCount * 3 + 1] = below + 1;
+                triangles[triangleCount * 3 + 2] = below;
+                triangleCount++;
+            }
+        }
+        return getTriangleMesh(transform, coordinates, colorComponents, rows * verticesPerRow,
+                triangles, triangleCount);
     }
 }
@@ -3,52 +3,200 @@ package org.icepdf.core.pobjects.graphics;
 import org.icepdf.core.pobjects.Stream;
 import org.icepdf.core.util.Library;
 
-import java.awt.*;
-import java.awt.geom.Point2D;
+import java.awt.geom.AffineTransform;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.logging.Logger;
 
 /**
  * Coons Patch Meshes support.
- *
- * Note: currently only parsing data and returning the first colour of the first vertex.
+ * <p/>
+ * Patches are kept as the 16 control points of a tensor-product patch, the interior points of a Coons patch are
+ * worked out from its boundary, so types 6 and 7 share the same tessellation.  Patches are split in to a grid of
+ * triangles fine enough for the device resolution, about one step every {@link #STEP_SIZE} pixels along the
+ * patch's control polygon, with colours interpolated bilinearly from the patch corners.
  *
  * @since 6.2
  */
-public class ShadingType6Pattern  extends ShadingMeshPattern {
+public class ShadingType6Pattern extends ShadingMeshPattern {
 
     private static final Logger logger =
             Logger.getLogger(ShadingType6Pattern.class.toString());
 
-    private ArrayList<Point2D.Float> coordinates = new ArrayList<Point2D.Float>();
-    private ArrayList<Color> colorComponents = new ArrayList<Color>();
+    // device space pixels per tessellation step.
+    protected static final float STEP_SIZE = 3;
+    // most steps per patch edge.
+    protected static final int MAX_STEPS = 64;
+
+    // control point p(i,j) is stored at (i * 4 + j) * 2, boundary points in the order they're streamed.
+    private static final int[] BOUNDARY = {0, 1, 2, 3, 7, 11, 15, 14, 13, 12, 8, 4};
+    // corner points p00, p03, p33 and p30 in the order of the streamed colours.
+    private static final int[] CORNERS = {0, 3, 15, 12};
+
+    // 16 control points a patch.
+    protected float[] patchPoints = new float[0];
+    // 4 corner colours a patch.
+    protected float[] patchColors = new float[0];
+    protected int patchCount;
 
     public ShadingType6Pattern(Library l, HashMap h, Stream meshDataStream) {
         super(l, h, meshDataStream);
     }
 
-    public void init(GraphicsState graphicsState) {
-        coordinates = new ArrayList<Point2D.Float>();
-        colorComponents = new ArrayList<Color>();
+    public synchronized void init(GraphicsState graphicsState) {
+        if (inited) {
+            return;
+        }
+        patchPoints = new float[32 * 8];
+        patchColors = new float[4 * channels * 8];
+        patchCount = 0;
+        float[] point = new float[2];
         try {
             while (vertexBitStream.available() > 0) {
                 int flag = readFlag();
-                // read control points.
-                for (int i = 0, ii = (flag != 0 ? 8 : 12); i < ii; i++) {
-                    coordinates.add(readCoord());
+                if (flag != 0 && patchCount == 0) {
+                    break;
+                }
+                if ((patchCount + 1) * 32 > patchPoints.length) {
+                    patchPoints = grow(patchPoints);
+                    patchColors = grow(patchColors);
+                }
+                int points = patchCount * 32;
+                int colors = patchCount * 4 * channels;
+                int firstPoint = 0;
+                int firstColor = 0;
+                if (flag != 0) {
+                    // the first edge and its two colours are taken from the previous patch.
+                    int last = points - 32;
+                    int lastColors = colors - 4 * channels;
+                    for (int j = 0; j < 4; j++) {
+                        int i = flag == 1 ? j * 4 + 3 : flag == 2 ? 15 - j : 12 - j * 4;
+                        patchPoints[points + j * 2] = patchPoints[last + i * 2];
+                        patchPoints[points + j * 2 + 1] = patchPoints[last + i * 2 + 1];
+                    }
+                    for (int k = 0; k < 2; k++) {
+                        System.arraycopy(patchColors, lastColors + ((flag + k) % 4) * channels,
+                                patchColors, colors + k * channels, channels);
+                    }
+                    firstPoint = 4;
+                    firstColor = 2;
                 }
-                for (int i = 0, ii = (flag != 0 ? 2 : 4); i < ii; i++) {
-                    colorComponents.add(readColor());
+                for (int i = firstPoint; i < BOUNDARY.length; i++) {
+                    readCoord(point, 0);
+                    patchPoints[points + BOUNDARY[i] * 2] = point[0];
+                    patchPoints[points + BOUNDARY[i] * 2 + 1] = point[1];
                 }
+                readInteriorPoints(patchPoints, points);
+                for (int k = firstColor; k < 4; k++) {
+                    readColor(patchColors, colors + k * channels);
+                }
+                if (vertexBitStream.atEndOfFile()) {
+                    break;
+                }
+                patchCount++;
             }
         } catch (IOException e) {
-            logger.warning("Error parsing Shading type 6 pattern vertices.");
+            logger.warning("Error parsing Shading patch mesh pattern vertices.");
+        }
+        inited = true;
+    }
+
+    /**
+     * Sets the four interior control points of a patch, a Coons patch works them out from its boundary.
+     *
+     * @param points control points.
+     * @param offset offset of the patch's first control point.
+     * @throws IOException bit stream issue.
+     */
+    protected void readInteriorPoints(float[] points, int offset) throws IOException {
+        for (int k = 0; k < 2; k++) {
+            int o = offset + k;
+            float p00 = points[o], p01 = points[o + 2], p02 = points[o + 4], p03 = points[o + 6];
+            float p10 = points[o + 8], p13 = points[o + 14];
+            float p20 = points[o + 16], p23 = points[o + 22];
+            float p30 = points[o + 24], p31 = points[o + 26], p32 = points[o + 28], p33 = points[o + 30];
+            // p11, p12, p21 and p22
+            points[o + 10] = (-4 * p00 + 6 * (p01 + p10) - 2 * (p03 + p30) + 3 * (p31 + p13) - p33) / 9;
+            points[o + 12] = (-4 * p03 + 6 * (p02 + p13) - 2 * (p00 + p33) + 3 * (p32 + p10) - p30) / 9;
+            points[o + 18] = (-4 * p30 + 6 * (p31 + p20) - 2 * (p33 + p00) + 3 * (p01 + p23) - p03) / 9;
+            points[o + 20] = (-4 * p33 + 6 * (p32 + p23) - 2 * (p30 + p03) + 3 * (p02 + p20) - p00) / 9;
+        }
+    }
+
+    public Mesh getMesh(AffineTransform transform) {
+        init(null);
+        Mesh mesh = new Mesh(channels, colorTable, patchCount * 16, patchCount * 8);
+        float[] device = new float[32];
+        float[] color = new float[channels];
+        float[] bu = new float[4];
+        float[] bv = new float[4];
+        for (int patch = 0; patch < patchCount; patch++) {
+            transform.transform(patchPoints, patch * 32, device, 0, 16);
+            // steps along u follow the first index of p(i,j) and steps along v the second.
+            int uSteps = getSteps(device, 8, 2);
+            int vSteps = getSteps(device, 2, 8);
+            int colors = patch * 4 * channels;
+            int first = mesh.vertexCount;
+            for (int i = 0; i <= uSteps; i++) {
+                float u = i / (float) uSteps;
+                bernstein(u, bu);
+                for (int j = 0; j <= vSteps; j++) {
+                    float v = j / (float) vSteps;
+                    bernstein(v, bv);
+                    float x = 0, y = 0;
+                    for (int pi = 0; pi < 4; pi++) {
+                        for (int pj = 0; pj < 4; pj++) {
+                            float b = bu[pi] * bv[pj];
+                            x += b * device[(pi * 4 + pj) * 2];
+                            y += b * device[(pi * 4 + pj) * 2 + 1];
+                        }
+                    }
+                    // corners c1 (0,0), c2 (0,1), c3 (1,1) and c4 (1,0).
+                    for (int c = 0; c < channels; c++) {
+                        color[c] = (1 - u) * (1 - v) * patchColors[colors + c] +
+                                (1 - u) * v * patchColors[colors + channels + c] +
+                                u * v * patchColors[colors + 2 * channels + c] +
+                                u * (1 - v) * patchColors[colors + 3 * channels + c];
+                    }
+                    mesh.addVertex(x, y, color, 0);
+                }
+            }
+            for (int i = 0; i < uSteps; i++) {
+                for (int j = 0; j < vSteps; j++) {
+                    int v = first + i * (vSteps + 1) + j;
+                    int next = v + vSteps + 1;
+                    mesh.addTriangle(v, v + 1, next);
+                    mesh.addTriangle(v + 1, next + 1, next);
+                }
+            }
+        }
+        return mesh;
+    }
+
+    /**
+     * Works out the number of steps along one direction of a patch from the longest of the four control
+     * polygon lines running in that direction.
+     */
+    private static int getSteps(float[] device, int along, int across) {
+        float length = 0;
+        for (int line = 0; line < 4; line++) {
+            float lineLength = 0;
+            for (int k = 0; k < 3; k++) {
+                int p = line * across + k * along;
+                float dx = device[p + along] - device[p];
+                float dy = device[p + along + 1] - device[p + 1];
+                lineLength += (float) Math.sqrt(dx * dx + dy * dy);
+            }
+            length = Math.max(length, lineLength);
         }
+        return Math.max(1, Math.min(MAX_STEPS, (int) Math.ceil(length / STEP_SIZE)));
     }
 
-    public Paint getPaint() throws InterruptedException {
-        return colorComponents.get(0);
+    private static void bernstein(float t, float[] b) {
+        float s = 1 - t;
+        b[0] = s * s * s;
+        b[1] = 3 * t * s * s;
+        b[2] = 3 * t * t * s;
+        b[3] = t * t * t;
     }
 }
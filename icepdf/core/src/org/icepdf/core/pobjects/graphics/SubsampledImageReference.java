@@ -0,0 +1,151 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.graphics;
+
+import org.icepdf.core.pobjects.ImageStream;
+import org.icepdf.core.pobjects.Page;
+import org.icepdf.core.pobjects.Resources;
+import org.icepdf.core.util.Defs;
+import org.icepdf.core.util.Library;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The SubsampledImageReference decodes images at the resolution they are
+ * painted at rather than at the resolution they are stored at.  The size of
+ * the image on the page is taken from the CTM when the image is painted and
+ * the image is decoded with the largest subsampling that still leaves enough
+ * pixels to paint it at the zoom given by the system property
+ * org.icepdf.core.imageReference.subsampled.zoom, default 2.0.  Images that
+ * are drawn at or above their own resolution are decoded as is.
+ * <p/>
+ * Scanned pages and photos placed at a fraction of their resolution are
+ * never decoded in full, which saves most of the memory and decode time,
+ * at the cost of a softer image when zooming past the configured zoom.
+ *
+ * @see ImageStream#getImage(GraphicsState, Resources, int)
+ * @since 6.2
+ */
+public class SubsampledImageReference extends CachedImageReference {
+
+    private static final Logger logger =
+            Logger.getLogger(SubsampledImageReference.class.toString());
+
+    private static float defaultZoom;
+
+    static {
+        try {
+            defaultZoom = Float.parseFloat(Defs.sysProperty(
+                    "org.icepdf.core.imageReference.subsampled.zoom", "2.0"));
+        } catch (NumberFormatException e) {
+            logger.warning("Error reading subsampled image zoom");
+            defaultZoom = 2.0f;
+        }
+    }
+
+    private int subsampling;
+
+    protected SubsampledImageReference(ImageStream imageStream, GraphicsState graphicsState,
+                                       Resources resources, int imageIndex,
+                                       Page page) {
+        this(imageStream, graphicsState, resources, imageIndex, page, defaultZoom);
+    }
+
+    /**
+     * Creates an image reference that decodes enough pixels to paint the
+     * image at the given zoom, used for draft renders at a known zoom.
+     */
+    protected SubsampledImageReference(ImageStream imageStream, GraphicsState graphicsState,
+                                       Resources resources, int imageIndex,
+                                       Page page, float zoom) {
+        super(imageStream, graphicsState, resources, imageIndex, page);
+
+        subsampling = calculateSubsampling(imageStream.getWidth(), imageStream.getHeight(),
+                graphicsState.getCTM(), zoom);
+
+        // kick off a new thread to load the image, if not already in pool.
+        ImagePool imagePool = imageStream.getLibrary().getImagePool();
+        if (useProxy && imagePool.get(reference) == null) {
+            futureTask = new FutureTask<BufferedImage>(this);
+            Library.executeImage(futureTask);
+        } else if (!useProxy && imagePool.get(reference) == null) {
+            image = call();
+        }
+    }
+
+    /**
+     * Works out the subsampling for an image painted with the given CTM, the
+     * CTM maps the unit square on to the image's area on the page in points.
+     */
+    private static int calculateSubsampling(int width, int height, AffineTransform ctm, float zoom) {
+        if (ctm == null || width <= 0 || height <= 0) {
+            return 1;
+        }
+        double paintedWidth = Math.hypot(ctm.getScaleX(), ctm.getShearY()) * zoom;
+        double paintedHeight = Math.hypot(ctm.getShearX(), ctm.getScaleY()) * zoom;
+        if (paintedWidth < 1 || paintedHeight < 1) {
+            return 1;
+        }
+        int subsampling = (int) Math.min(width / paintedWidth, height / paintedHeight);
+        return Math.max(1, subsampling);
+    }
+
+    /**
+     * Subsampled images are only good for the size they were decoded for so
+     * they are kept by the reference and never put in the library's image
+     * pool where a reference painting the image larger would find them.
+     */
+    public BufferedImage getImage() {
+        if (subsampling == 1) {
+            return super.getImage();
+        }
+        if (image != null) {
+            return image;
+        }
+        BufferedImage pooled = reference != null ?
+                imageStream.getLibrary().getImagePool().get(reference) : null;
+        if (pooled != null) {
+            return pooled;
+        }
+        return createImage();
+    }
+
+    public int getWidth() {
+        return imageStream.getWidth();
+    }
+
+    public int getHeight() {
+        return imageStream.getHeight();
+    }
+
+    public BufferedImage call() {
+        BufferedImage image = null;
+        long start = System.nanoTime();
+        try {
+            image = imageStream.getImage(graphicsState, resources, subsampling);
+        } catch (Throwable e) {
+            logger.log(Level.WARNING, "Error loading image: " + imageStream.getPObjectReference() +
+                    " " + imageStream.toString(), e);
+        }
+        long end = System.nanoTime();
+        notifyImagePageEvents((end - start));
+        return image;
+    }
+}
@@ -396,6 +396,23 @@ public class TilingPattern extends Stream implements Pattern {
             imageHeight = bBox.getHeight();
         }
 
+        // the cell only depends on the scale and shear it's painted with, so a cell
+        // painted for an earlier fill at about the same scale can be used as is.
+        AffineTransform cellTransform = new AffineTransform(originalPageSpace);
+        cellTransform.concatenate(matrix);
+        cellTransform.scale(baseScale, baseScale);
+        PatternCellCache patternCellCache = library.getPatternCellCache();
+        Object cellKey = PatternCellCache.getKey(this, cellTransform,
+                (int) Math.round(imageWidth), (int) Math.round(imageHeight),
+                paintType == PAINTING_TYPE_UNCOLORED_TILING_PATTERN ? unColored : null);
+        BufferedImage cell = patternCellCache.get(cellKey);
+        if (cell != null) {
+            g.setPaint(new TexturePaint(cell, new Rectangle2D.Double(
+                    xOffset, yOffset,
+                    width, height)));
+            return;
+        }
+
         // create the new image to write too.
         final BufferedImage bi = ImageUtility.createTranslucentCompatibleImage((int)Math.round(imageWidth), (int) Math.round(imageHeight));
         Graphics2D canvas = bi.createGraphics();
@@ -417,6 +434,7 @@ public class TilingPattern extends Stream implements Pattern {
         // paint the pattern
         try {
             paintPattern(canvas, tilingShapes, matrix, originalPageSpace, baseScale);
+            patternCellCache.put(cellKey, bi);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.log(Level.FINE, "Error painting tiling pattern.", e);
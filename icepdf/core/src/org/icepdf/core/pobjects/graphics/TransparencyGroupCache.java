@@ -0,0 +1,140 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.graphics;
+
+import org.icepdf.core.pobjects.Form;
+import org.icepdf.core.pobjects.Reference;
+import org.icepdf.core.pobjects.StateManager;
+import org.icepdf.core.util.BoundedLRUCache;
+import org.icepdf.core.util.Defs;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * The transparency group cache keeps the composited rasters of transparency
+ * groups, the form content with its soft masks applied, so a group isn't
+ * painted and masked again each time its page is parsed.  Groups are
+ * rasterised in form space, one pixel per unit, so one raster serves every
+ * zoom and rotation of the page.  The content of a form depends on the state
+ * it's drawn in though, so rasters are looked up by the form's reference
+ * along with the transform, colours, alphas, blending mode and soft masks
+ * the form was parsed with and the rendering hints it was painted with.
+ * The key also holds the version of the document's changes, so a group
+ * whose form or resources were edited through the StateManager is painted
+ * again rather than served from the cache.
+ * <p/>
+ * Each document's library has its own cache so rasters never outlive their
+ * document.  The cache is least recently used and holds at most
+ * org.icepdf.core.transparencyGroup.cache.pixels pixels, default 4194304,
+ * a value of 0 disables the cache.
+ *
+ * @since 6.2
+ */
+public class TransparencyGroupCache {
+
+    private static int maxPixels;
+
+    static {
+        maxPixels = Defs.intProperty("org.icepdf.core.transparencyGroup.cache.pixels", 1 << 22);
+    }
+
+    private final BoundedLRUCache<Object, BufferedImage> groups =
+            new BoundedLRUCache<Object, BufferedImage>(maxPixels) {
+                @Override
+                protected long sizeOf(BufferedImage group) {
+                    return (long) group.getWidth() * group.getHeight();
+                }
+            };
+
+    /**
+     * Builds the lookup key for a transparency group.
+     *
+     * @param form           form of the group, must have been initialized.
+     * @param softMask       soft mask of the graphics state the form is drawn in, can be null.
+     * @param formSoftMask   soft mask of the form, can be null.
+     * @param renderingHints rendering hints the group is painted with.
+     * @return cache key, null if the form can't be told apart from other forms.
+     */
+    public static Object getKey(Form form, SoftMask softMask, SoftMask formSoftMask,
+                                RenderingHints renderingHints) {
+        Reference reference = form.getPObjectReference();
+        if (reference == null) {
+            return null;
+        }
+        StateManager stateManager = form.getLibrary().getStateManager();
+        GraphicsState graphicsState = form.getGraphicsState();
+        ExtGState extGState = form.getExtGState();
+        ExtGState stateExtGState = graphicsState != null ? graphicsState.getExtGState() : null;
+        return new Key(
+                reference,
+                stateManager != null ? stateManager.getSnapshot().getVersion() : 0,
+                form.getBBox(),
+                graphicsState != null ? new AffineTransform(graphicsState.getCTM()) : null,
+                graphicsState != null ? graphicsState.getFillColor() : null,
+                graphicsState != null ? graphicsState.getStrokeColor() : null,
+                graphicsState != null ? graphicsState.getFillAlpha() : null,
+                graphicsState != null ? graphicsState.getStrokeAlpha() : null,
+                extGState != null ? extGState.getBlendingMode() : null,
+                stateExtGState != null ? stateExtGState.getBlendingMode() : null,
+                softMask != null ? softMask.getG().getPObjectReference() : null,
+                formSoftMask != null ? formSoftMask.getG().getPObjectReference() : null,
+                renderingHints);
+    }
+
+    public BufferedImage get(Object key) {
+        return groups.get(key);
+    }
+
+    /**
+     * Adds a group raster to the cache, the least recently used rasters are
+     * removed until the cache is back under its budget.  Rasters larger than
+     * the whole budget aren't cached.  Cached rasters must not be painted to
+     * again.
+     *
+     * @param key   key from getKey, null keys are ignored.
+     * @param group composited group raster.
+     */
+    public void put(Object key, BufferedImage group) {
+        groups.put(key, group);
+    }
+
+    public void clear() {
+        groups.clear();
+    }
+
+    private static class Key {
+        private Object[] parts;
+        private int hashCode;
+
+        Key(Object... parts) {
+            this.parts = parts;
+            hashCode = Arrays.hashCode(parts);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(parts, ((Key) o).parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -129,6 +129,21 @@ public class FormDrawCmd extends AbstractDrawCmd {
                 xForm.setShading(isFormShading);
             }
 
+            // groups outside of the area being painted aren't composited at all.
+            Shape clipArea = g.getClip();
+            if (clipArea != null && !clipArea.intersects(getPaintBounds(softMask, formSoftMask))) {
+                return currentShape;
+            }
+            // the group may already have been composited when its page was last parsed.
+            TransparencyGroupCache groupCache = xForm.getLibrary().getTransparencyGroupCache();
+            Object groupKey = TransparencyGroupCache.getKey(xForm, softMask, formSoftMask, renderingHints);
+            BufferedImage group = groupCache.get(groupKey);
+            if (group != null) {
+                xFormBuffer = group;
+                g.drawImage(xFormBuffer, null, x, y);
+                return currentShape;
+            }
+
             // create the form and we'll paint it at the very least
             xFormBuffer = createBufferXObject(parentPage, xForm, null, renderingHints, normalBM);
             if (!disableXObjectSMask && hasMask) {
@@ -174,6 +189,10 @@ public class FormDrawCmd extends AbstractDrawCmd {
                 BufferedImage shape = createBufferXObject(parentPage, xForm, null, renderingHints, true);
                 xFormBuffer = ImageUtility.applyExplicitOutline(xFormBuffer, shape);
             }
+            // partly painted groups are left for the next paint to finish.
+            if (!Thread.currentThread().isInterrupted()) {
+                groupCache.put(groupKey, xFormBuffer);
+            }
 //            ImageUtility.displayImage(xFormBuffer, "final" + xForm.getGroup() + " " + xForm.getPObjectReference() +
 //                    xFormBuffer.getHeight() + "x" + xFormBuffer.getHeight());
         }
@@ -181,6 +200,24 @@ public class FormDrawCmd extends AbstractDrawCmd {
         return currentShape;
     }
 
+    /**
+     * Gets the area the group's raster covers once painted, the form's bounds
+     * along with the bounds of its soft masks which can move the raster.
+     */
+    private Rectangle2D getPaintBounds(SoftMask softMask, SoftMask formSoftMask) {
+        Rectangle2D bBox = xForm.getBBox();
+        Rectangle2D bounds = new Rectangle2D.Double(x, y,
+                Math.max(1, (int) bBox.getWidth()), Math.max(1, (int) bBox.getHeight()));
+        bounds.add(bBox);
+        if (softMask != null && softMask.getG().getBBox() != null) {
+            bounds.add(softMask.getG().getBBox());
+        }
+        if (formSoftMask != null && formSoftMask.getG().getBBox() != null) {
+            bounds.add(formSoftMask.getG().getBBox());
+        }
+        return bounds;
+    }
+
     private BufferedImage applyMask(Page parentPage, BufferedImage xFormBuffer, SoftMask softMask, SoftMask gsSoftMask,
                                     RenderingHints renderingHints) {
         if (softMask != null && softMask.getS().equals(SoftMask.SOFT_MASK_TYPE_ALPHA)) {
@@ -15,6 +15,7 @@
  */
 package org.icepdf.core.pobjects.graphics.commands;
 
+import org.icepdf.core.io.ContentWriter;
 import org.icepdf.core.pobjects.LiteralStringObject;
 import org.icepdf.core.pobjects.graphics.TextSprite;
 import org.icepdf.core.pobjects.graphics.text.GlyphText;
@@ -30,7 +31,9 @@ import java.util.logging.Logger;
 /**
  * The PostScriptEncoder is responsible for converting an ArrayList<DrawCmd>
  * into postscript operands.  Basically the reverse of what the content
- * parser does.
+ * parser does.  Operands and operators are written straight in to a
+ * {@link ContentWriter} which can be reused when encoding many appearance
+ * streams in a row.
  * <p/>
  * NOTE: this is currently a partial implementation to vac
  *
@@ -41,15 +44,11 @@ public class PostScriptEncoder {
     private static final Logger logger =
             Logger.getLogger(PostScriptEncoder.class.toString());
 
-    private static final String SPACE = " ";
-    private static final String NEWLINE = "\r\n";
-    private static final String TRUE = "true";
-    private static final String FALSE = "false";
-    private static final String NAME = "/";
-    private static final String BEGIN_ARRAY = "[";
-    private static final String END_ARRAY = "]";
-    private static final String BEGIN_STRING = "(";
-    private static final String END_STRING = ")";
+    private static final byte[] BEGIN_ARRAY = "[".getBytes();
+    private static final byte[] END_ARRAY = "]".getBytes();
+    private static final byte[] BEGIN_STRING = "(".getBytes();
+    private static final byte[] END_STRING = ")".getBytes();
+    private static final byte[] TEXT_MATRIX = "1 0 0 -1 ".getBytes();
 
     private PostScriptEncoder() {
 
@@ -63,7 +62,20 @@ public class PostScriptEncoder {
      * @return byte[] of PostScript notation.
      */
     public static byte[] generatePostScript(ArrayList<DrawCmd> drawCmds) {
-        StringBuilder postScript = new StringBuilder();
+        ContentWriter postScript = new ContentWriter(1024);
+        generatePostScript(drawCmds, postScript);
+        return postScript.toByteArray();
+    }
+
+    /**
+     * Processes the given DrawCmd objects and appends the PostScript to draw
+     * simple shapes and text to the given writer.
+     *
+     * @param drawCmds   commands to convert to postscript.
+     * @param postScript writer to append the PostScript notation to.
+     */
+    public static void generatePostScript(ArrayList<DrawCmd> drawCmds, ContentWriter postScript) {
+        int start = postScript.size();
         Color color = null;
         Shape currentShape = null;
         if (logger.isLoggable(Level.FINEST)) {
@@ -80,22 +92,12 @@ public class PostScriptEncoder {
                 // setup an affine transform
                 if (drawCmd instanceof TransformDrawCmd) {
                     AffineTransform af = ((TransformDrawCmd) drawCmd).getAffineTransform();
-                    postScript.append(af.getScaleX()).append(SPACE)
-                            .append(af.getShearX()).append(SPACE)
-                            .append(af.getShearY()).append(SPACE)
-                            .append(af.getScaleY()).append(SPACE)
-                            .append(af.getTranslateX()).append(SPACE)
-                            .append(af.getTranslateY()).append(SPACE)
-                            .append(PdfOps.cm_TOKEN).append(NEWLINE);
+                    writeTransform(af, postScript);
+                    postScript.writeAscii(PdfOps.cm_TOKEN).writeNewLine();
                 } else if (drawCmd instanceof TextTransformDrawCmd) {
                     AffineTransform af = ((TransformDrawCmd) drawCmd).getAffineTransform();
-                    postScript.append(af.getScaleX()).append(SPACE)
-                            .append(af.getShearX()).append(SPACE)
-                            .append(af.getShearY()).append(SPACE)
-                            .append(af.getScaleY()).append(SPACE)
-                            .append(af.getTranslateX()).append(SPACE)
-                            .append(af.getTranslateY()).append(SPACE)
-                            .append(PdfOps.Tm_TOKEN).append(NEWLINE);
+                    writeTransform(af, postScript);
+                    postScript.writeAscii(PdfOps.Tm_TOKEN).writeNewLine();
                 }
                 // reference the colour, we'll decide later if its fill or stroke.
                 else if (drawCmd instanceof ColorDrawCmd) {
@@ -104,31 +106,25 @@ public class PostScriptEncoder {
                 // stroke the shape.
                 else if (drawCmd instanceof DrawDrawCmd) {
                     if (color != null) {
-                        float[] colors = color.getRGBColorComponents(null);
                         // set the stroke color
-                        postScript.append(colors[0]).append(SPACE)
-                                .append(colors[1]).append(SPACE)
-                                .append(colors[2]).append(SPACE)
-                                .append(PdfOps.RG_TOKEN).append(NEWLINE);
+                        writeColor(color, postScript);
+                        postScript.writeAscii(PdfOps.RG_TOKEN).writeNewLine();
                         // generate the draw operands for current shape.
                         generateShapePostScript(currentShape, postScript);
                         // add  the fill
-                        postScript.append(PdfOps.S_TOKEN).append(NEWLINE);
+                        postScript.writeAscii(PdfOps.S_TOKEN).writeNewLine();
                     }
                 }
                 // fill the shape.
                 else if (drawCmd instanceof FillDrawCmd) {
                     if (color != null) {
-                        float[] colors = color.getRGBColorComponents(null);
                         // set fill color
-                        postScript.append(colors[0]).append(SPACE)
-                                .append(colors[1]).append(SPACE)
-                                .append(colors[2]).append(SPACE)
-                                .append(PdfOps.rg_TOKEN).append(NEWLINE);
+                        writeColor(color, postScript);
+                        postScript.writeAscii(PdfOps.rg_TOKEN).writeNewLine();
                         // generate the draw operands for the current shape.
                         generateShapePostScript(currentShape, postScript);
                         // add  the fill
-                        postScript.append(PdfOps.f_TOKEN).append(SPACE);
+                        postScript.writeAscii(PdfOps.f_TOKEN).writeSpace();
                     }
                 }
                 // current shape.
@@ -138,78 +134,74 @@ public class PostScriptEncoder {
                 // Sets the stroke.
                 else if (drawCmd instanceof StrokeDrawCmd) {
                     BasicStroke stroke = (BasicStroke) ((StrokeDrawCmd) drawCmd).getStroke();
-                    postScript.append(
-                            // line width
-                            stroke.getLineWidth()).append(SPACE)
-                            .append(PdfOps.w_TOKEN).append(SPACE);
+                    // line width
+                    postScript.writeReal(stroke.getLineWidth()).writeSpace()
+                            .writeAscii(PdfOps.w_TOKEN).writeSpace();
                     // dash phase
                     float[] dashes = stroke.getDashArray();
-                    postScript.append(BEGIN_ARRAY);
+                    postScript.write(BEGIN_ARRAY);
                     if (dashes != null) {
                         for (int i = 0, max = dashes.length; i < max; i++) {
-                            postScript.append(dashes[i]);
+                            postScript.writeReal(dashes[i]);
                             if (i < max - 1) {
-                                postScript.append(SPACE);
+                                postScript.writeSpace();
                             }
                         }
                     }
-                    postScript.append(END_ARRAY).append(SPACE);
-                    postScript.append(stroke.getDashPhase()).append(SPACE)
-                            .append(PdfOps.d_TOKEN).append(SPACE);
+                    postScript.write(END_ARRAY).writeSpace();
+                    postScript.writeReal(stroke.getDashPhase()).writeSpace()
+                            .writeAscii(PdfOps.d_TOKEN).writeSpace();
                     // cap butt
                     if (stroke.getEndCap() == BasicStroke.CAP_BUTT) {
-                        postScript.append(0).append(SPACE)
-                                .append(PdfOps.J_TOKEN).append(SPACE);
+                        postScript.writeInt(0).writeSpace()
+                                .writeAscii(PdfOps.J_TOKEN).writeSpace();
                     } else if (stroke.getEndCap() == BasicStroke.CAP_ROUND) {
-                        postScript.append(1).append(SPACE)
-                                .append(PdfOps.J_TOKEN).append(SPACE);
+                        postScript.writeInt(1).writeSpace()
+                                .writeAscii(PdfOps.J_TOKEN).writeSpace();
                     } else if (stroke.getEndCap() == BasicStroke.CAP_SQUARE) {
-                        postScript.append(2).append(SPACE)
-                                .append(PdfOps.J_TOKEN).append(SPACE);
+                        postScript.writeInt(2).writeSpace()
+                                .writeAscii(PdfOps.J_TOKEN).writeSpace();
                     }
                     // miter join.
                     if (stroke.getMiterLimit() == BasicStroke.JOIN_MITER) {
-                        postScript.append(0).append(SPACE)
-                                .append(PdfOps.j_TOKEN).append(SPACE);
+                        postScript.writeInt(0).writeSpace()
+                                .writeAscii(PdfOps.j_TOKEN).writeSpace();
                     } else if (stroke.getMiterLimit() == BasicStroke.JOIN_ROUND) {
-                        postScript.append(1).append(SPACE)
-                                .append(PdfOps.j_TOKEN).append(SPACE);
+                        postScript.writeInt(1).writeSpace()
+                                .writeAscii(PdfOps.j_TOKEN).writeSpace();
                     } else if (stroke.getMiterLimit() == BasicStroke.JOIN_BEVEL) {
-                        postScript.append(2).append(SPACE)
-                                .append(PdfOps.j_TOKEN).append(SPACE);
+                        postScript.writeInt(2).writeSpace()
+                                .writeAscii(PdfOps.j_TOKEN).writeSpace();
                     }
-                    postScript.append(NEWLINE);
+                    postScript.writeNewLine();
                 }
                 // graphics state setup
                 else if (drawCmd instanceof GraphicsStateCmd) {
-                    postScript.append('/')
-                            .append(((GraphicsStateCmd) drawCmd).getGraphicStateName()).append(SPACE)
-                            .append(PdfOps.gs_TOKEN).append(SPACE);
+                    postScript.writeName(((GraphicsStateCmd) drawCmd).getGraphicStateName().getName()).writeSpace()
+                            .writeAscii(PdfOps.gs_TOKEN).writeSpace();
                 }
                 // break out a text block and child paint operands.
                 else if (drawCmd instanceof TextSpriteDrawCmd) {
-                    postScript.append(PdfOps.BT_TOKEN).append(NEWLINE);
+                    postScript.writeAscii(PdfOps.BT_TOKEN).writeNewLine();
                     TextSpriteDrawCmd textSpriteDrawCmd = (TextSpriteDrawCmd) drawCmd;
                     TextSprite textSprite = textSpriteDrawCmd.getTextSprite();
 
                     ArrayList<GlyphText> glyphTexts = textSprite.getGlyphSprites();
                     if (glyphTexts.size() > 0) {
                         // write out stat of text paint
-                        postScript.append("1 0 0 -1 ")
-                                .append(glyphTexts.get(0).getX()).append(SPACE)
-                                .append(glyphTexts.get(0).getY()).append(SPACE).append(PdfOps.Tm_TOKEN).append(NEWLINE);
+                        postScript.write(TEXT_MATRIX)
+                                .writeReal(glyphTexts.get(0).getX()).writeSpace()
+                                .writeReal(glyphTexts.get(0).getY()).writeSpace()
+                                .writeAscii(PdfOps.Tm_TOKEN).writeNewLine();
 
                         // write out font
-                        postScript.append("/").append(textSprite.getFontName()).append(SPACE)
-                                .append(textSprite.getFontSize()).append(SPACE).append(PdfOps.Tf_TOKEN).append(NEWLINE);
+                        postScript.writeName(textSprite.getFontName()).writeSpace()
+                                .writeReal(textSprite.getFontSize()).writeSpace()
+                                .writeAscii(PdfOps.Tf_TOKEN).writeNewLine();
 
                         // set the colour
-                        float[] colors = textSprite.getStrokeColor().getRGBColorComponents(null);
-                        // set fill color
-                        postScript.append(colors[0]).append(SPACE)
-                                .append(colors[1]).append(SPACE)
-                                .append(colors[2]).append(SPACE)
-                                .append(PdfOps.rg_TOKEN).append(NEWLINE);
+                        writeColor(textSprite.getStrokeColor(), postScript);
+                        postScript.writeAscii(PdfOps.rg_TOKEN).writeNewLine();
                         float y = glyphTexts.get(0).getY();
                         StringBuilder line = new StringBuilder();
                         GlyphText glyphText;
@@ -222,22 +214,22 @@ public class PostScriptEncoder {
                                 if (i == max - 1) {
                                     line.append(glyphText.getUnicode());
                                 }
-                                postScript.append(BEGIN_ARRAY).append(BEGIN_STRING)
+                                postScript.write(BEGIN_ARRAY).write(BEGIN_STRING)
                                         // use literal string to make sure string is escaped correctly
-                                        .append(new LiteralStringObject(line.toString()).toString())
-                                        .append(END_STRING)
-                                        .append(END_ARRAY).append(SPACE)
-                                        .append(PdfOps.TJ_TOKEN).append(NEWLINE);
+                                        .write(new LiteralStringObject(line.toString()).toString().getBytes())
+                                        .write(END_STRING)
+                                        .write(END_ARRAY).writeSpace()
+                                        .writeAscii(PdfOps.TJ_TOKEN).writeNewLine();
                                 // add shift if newline
-                                postScript.append(0).append(SPACE).append(y - glyphText.getY())
-                                        .append(SPACE).append(PdfOps.Td_TOKEN).append(NEWLINE);
+                                postScript.writeInt(0).writeSpace().writeReal(y - glyphText.getY())
+                                        .writeSpace().writeAscii(PdfOps.Td_TOKEN).writeNewLine();
                                 // update the current.
                                 y = glyphText.getY();
                                 line = new StringBuilder();
                             }
                             line.append(glyphText.getUnicode());
                         }
-                        postScript.append(PdfOps.ET_TOKEN).append(NEWLINE);
+                        postScript.writeAscii(PdfOps.ET_TOKEN).writeNewLine();
                     }
                 }
             }
@@ -245,9 +237,24 @@ public class PostScriptEncoder {
             logger.log(Level.WARNING, "Error encoding PostScript notation ", e);
         }
         if (logger.isLoggable(Level.FINER)) {
-            logger.finer("PostEncoding: " + postScript.toString());
+            logger.finer("PostEncoding: " + postScript.toString().substring(start));
         }
-        return postScript.toString().getBytes();
+    }
+
+    private static void writeTransform(AffineTransform af, ContentWriter postScript) {
+        postScript.writeReal(af.getScaleX()).writeSpace()
+                .writeReal(af.getShearX()).writeSpace()
+                .writeReal(af.getShearY()).writeSpace()
+                .writeReal(af.getScaleY()).writeSpace()
+                .writeReal(af.getTranslateX()).writeSpace()
+                .writeReal(af.getTranslateY()).writeSpace();
+    }
+
+    private static void writeColor(Color color, ContentWriter postScript) {
+        float[] colors = color.getRGBColorComponents(null);
+        postScript.writeReal(colors[0]).writeSpace()
+                .writeReal(colors[1]).writeSpace()
+                .writeReal(colors[2]).writeSpace();
     }
 
     /**
@@ -255,9 +262,9 @@ public class PostScriptEncoder {
      * iterator.
      *
      * @param currentShape shape to build out draw commands.
-     * @param postScript   string to append draw operands to.
+     * @param postScript   writer to append draw operands to.
      */
-    private static void generateShapePostScript(Shape currentShape, StringBuilder postScript) {
+    private static void generateShapePostScript(Shape currentShape, ContentWriter postScript) {
         PathIterator pathIterator = currentShape.getPathIterator(null);
         float[] segment = new float[6];
         int segmentType;
@@ -265,33 +272,33 @@ public class PostScriptEncoder {
             segmentType = pathIterator.currentSegment(segment);
             switch (segmentType) {
                 case PathIterator.SEG_MOVETO:
-                    postScript.append(segment[0]).append(SPACE)
-                            .append(segment[1]).append(SPACE)
-                            .append(PdfOps.m_TOKEN).append(NEWLINE);
+                    postScript.writeReal(segment[0]).writeSpace()
+                            .writeReal(segment[1]).writeSpace()
+                            .writeAscii(PdfOps.m_TOKEN).writeNewLine();
                     break;
                 case PathIterator.SEG_LINETO:
-                    postScript.append(segment[0]).append(SPACE)
-                            .append(segment[1]).append(SPACE)
-                            .append(PdfOps.l_TOKEN).append(NEWLINE);
+                    postScript.writeReal(segment[0]).writeSpace()
+                            .writeReal(segment[1]).writeSpace()
+                            .writeAscii(PdfOps.l_TOKEN).writeNewLine();
                     break;
                 case PathIterator.SEG_QUADTO:
-                    postScript.append(segment[0]).append(SPACE)
-                            .append(segment[1]).append(SPACE)
-                            .append(segment[2]).append(SPACE)
-                            .append(segment[3]).append(SPACE)
-                            .append(PdfOps.v_TOKEN).append(NEWLINE);
+                    postScript.writeReal(segment[0]).writeSpace()
+                            .writeReal(segment[1]).writeSpace()
+                            .writeReal(segment[2]).writeSpace()
+                            .writeReal(segment[3]).writeSpace()
+                            .writeAscii(PdfOps.v_TOKEN).writeNewLine();
                     break;
                 case PathIterator.SEG_CUBICTO:
-                    postScript.append(segment[0]).append(SPACE)
-                            .append(segment[1]).append(SPACE)
-                            .append(segment[2]).append(SPACE)
-                            .append(segment[3]).append(SPACE)
-                            .append(segment[4]).append(SPACE)
-                            .append(segment[5]).append(SPACE)
-                            .append(PdfOps.c_TOKEN).append(NEWLINE);
+                    postScript.writeReal(segment[0]).writeSpace()
+                            .writeReal(segment[1]).writeSpace()
+                            .writeReal(segment[2]).writeSpace()
+                            .writeReal(segment[3]).writeSpace()
+                            .writeReal(segment[4]).writeSpace()
+                            .writeReal(segment[5]).writeSpace()
+                            .writeAscii(PdfOps.c_TOKEN).writeNewLine();
                     break;
                 case PathIterator.SEG_CLOSE:
-                    postScript.append(PdfOps.h_TOKEN).append(SPACE);
+                    postScript.writeAscii(PdfOps.h_TOKEN).writeSpace();
                     break;
             }
             pathIterator.next();
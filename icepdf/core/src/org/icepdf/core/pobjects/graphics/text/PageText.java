@@ -61,6 +61,8 @@ public class PageText implements TextSelect {
 
     private ArrayList<LineText> pageLines;
     private ArrayList<LineText> sortedPageLines;
+    // spatial index of the sorted page lines, built on first use.
+    private PageTextIndex textIndex;
 
     private AffineTransform previousTextTransform;
 
@@ -128,6 +130,24 @@ public class PageText implements TextSelect {
         return sortedPageLines;
     }
 
+    /**
+     * Gets the spatial index of the lines returned by {@link #getPageLines()},
+     * used to find the lines under the mouse or inside a painted area without
+     * walking every line of the page.  The index is built on first use and
+     * again after the text was sorted again.
+     *
+     * @return index of the sorted page lines.
+     */
+    public PageTextIndex getTextIndex() {
+        ArrayList<LineText> lines = getPageLines();
+        PageTextIndex index = textIndex;
+        if (index == null || index.getLines() != lines) {
+            index = new PageTextIndex(lines);
+            textIndex = index;
+        }
+        return index;
+    }
+
     /**
      * Gets all visible lines, checking the page text for any text that is
      * in an optional content group and that that group is flagged as visible.
@@ -280,6 +300,23 @@ public class PageText implements TextSelect {
         }
     }
 
+    /**
+     * Deselects the sorted page lines in the given range.  Selection tools
+     * that know which lines they selected use this to clear only those
+     * instead of all of the page's text.
+     *
+     * @param fromLine index of the first sorted page line to clear.
+     * @param toLine   index of the last sorted page line to clear, inclusive.
+     */
+    public void clearSelected(int fromLine, int toLine) {
+        if (sortedPageLines != null) {
+            for (int i = Math.max(0, fromLine), max = Math.min(toLine, sortedPageLines.size() - 1);
+                 i <= max; i++) {
+                sortedPageLines.get(i).clearSelected();
+            }
+        }
+    }
+
     public void clearHighlighted() {
         for (LineText lineText : pageLines) {
             lineText.clearHighlighted();
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.pobjects.graphics.text;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Spatial index of the sorted lines of a page's text.  The line bounds are
+ * bucketed in to a grid of square cells in page space so text selection,
+ * highlighting and search hit painting only look at the lines near the
+ * mouse or inside the painted area, the words and glyphs of those lines are
+ * then walked as before.
+ * <p/>
+ * Lines are returned by their index in the sorted page lines and in
+ * ascending order.  The index tests bounds inclusively so it may return a
+ * line that the exact contains or intersects test of the line rejects, it
+ * never leaves out a line that test would accept.  An index is only valid
+ * for the list of lines it was built from, PageText builds a new one when
+ * the text is sorted again.
+ *
+ * @since 6.2
+ */
+public class PageTextIndex {
+
+    // cell size in page space units, an inch.
+    private static final double CELL_SIZE = 72;
+    // lines covering more cells go to the large list.
+    private static final int MAX_CELLS = 64;
+
+    private final List<LineText> lines;
+    private final Rectangle2D[] bounds;
+    private final HashMap<Long, int[]> cells = new HashMap<Long, int[]>();
+    private int[] large;
+
+    /**
+     * Creates an index of the given lines, the lines' bounds must no longer
+     * change.
+     *
+     * @param lines sorted page lines.
+     */
+    public PageTextIndex(List<LineText> lines) {
+        this.lines = lines;
+        int size = lines != null ? lines.size() : 0;
+        bounds = new Rectangle2D[size];
+        for (int i = 0; i < size; i++) {
+            LineText line = lines.get(i);
+            if (line == null) {
+                continue;
+            }
+            Rectangle2D lineBounds = line.getBounds();
+            Rectangle2D rectangle = new Rectangle2D.Double();
+            rectangle.setFrameFromDiagonal(lineBounds.getMinX(), lineBounds.getMinY(),
+                    lineBounds.getMaxX(), lineBounds.getMaxY());
+            bounds[i] = rectangle;
+            int x1 = cell(rectangle.getMinX()), x2 = cell(rectangle.getMaxX());
+            int y1 = cell(rectangle.getMinY()), y2 = cell(rectangle.getMaxY());
+            if ((long) (x2 - x1 + 1) * (y2 - y1 + 1) > MAX_CELLS) {
+                large = append(large, i);
+                continue;
+            }
+            for (int x = x1; x <= x2; x++) {
+                for (int y = y1; y <= y2; y++) {
+                    Long key = cellKey(x, y);
+                    cells.put(key, append(cells.get(key), i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the lines the index was built from.
+     *
+     * @return indexed lines.
+     */
+    public List<LineText> getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the lines whose bounds may contain the given point.
+     *
+     * @param point point in page space.
+     * @return ascending line indexes, empty if none.
+     */
+    public int[] findLines(Point2D point) {
+        BitSet found = new BitSet(bounds.length);
+        double x = point.getX();
+        double y = point.getY();
+        collect(cells.get(cellKey(cell(x), cell(y))), x, y, x, y, found);
+        collect(large, x, y, x, y, found);
+        return toIndexes(found);
+    }
+
+    /**
+     * Gets the lines whose bounds may intersect the given rectangle.
+     *
+     * @param area rectangle in page space.
+     * @return ascending line indexes, empty if none.
+     */
+    public int[] findLines(Rectangle2D area) {
+        BitSet found = new BitSet(bounds.length);
+        double minX = area.getMinX();
+        double minY = area.getMinY();
+        double maxX = area.getMaxX();
+        double maxY = area.getMaxY();
+        int x1 = cell(minX), x2 = cell(maxX);
+        int y1 = cell(minY), y2 = cell(maxY);
+        if ((long) (x2 - x1 + 1) * (y2 - y1 + 1) > cells.size()) {
+            // the area covers more cells than are used, look at every cell.
+            for (int[] cell : cells.values()) {
+                collect(cell, minX, minY, maxX, maxY, found);
+            }
+        } else {
+            for (int x = x1; x <= x2; x++) {
+                for (int y = y1; y <= y2; y++) {
+                    collect(cells.get(cellKey(x, y)), minX, minY, maxX, maxY, found);
+                }
+            }
+        }
+        collect(large, minX, minY, maxX, maxY, found);
+        return toIndexes(found);
+    }
+
+    private void collect(int[] cell, double minX, double minY, double maxX, double maxY,
+                         BitSet found) {
+        if (cell == null) {
+            return;
+        }
+        // the cell's length is kept in its first slot.
+        for (int i = 1, max = cell[0]; i <= max; i++) {
+            Rectangle2D rectangle = bounds[cell[i]];
+            if (rectangle.getMaxX() >= minX && rectangle.getMinX() <= maxX &&
+                    rectangle.getMaxY() >= minY && rectangle.getMinY() <= maxY) {
+                found.set(cell[i]);
+            }
+        }
+    }
+
+    private static int[] toIndexes(BitSet found) {
+        int[] indexes = new int[found.cardinality()];
+        for (int i = found.nextSetBit(0), j = 0; i >= 0; i = found.nextSetBit(i + 1)) {
+            indexes[j++] = i;
+        }
+        return indexes;
+    }
+
+    private static int[] append(int[] cell, int index) {
+        if (cell == null) {
+            cell = new int[4];
+        } else if (cell[0] + 1 == cell.length) {
+            int[] grown = new int[cell.length * 2];
+            System.arraycopy(cell, 0, grown, 0, cell.length);
+            cell = grown;
+        }
+        cell[++cell[0]] = index;
+        return cell;
+    }
+
+    private static int cell(double coordinate) {
+        // clamp so NaN and huge coordinates from broken files still index.
+        double cell = Math.floor(coordinate / CELL_SIZE);
+        if (cell != cell) {
+            return 0;
+        }
+        return (int) Math.max(-(1 << 24), Math.min(1 << 24, cell));
+    }
+
+    private static Long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used cache holding values up to a total size.  Each value
+ * counts as one unless sizeOf(Object) is overridden, raster caches for
+ * example count pixels.  Values larger than the whole budget aren't cached
+ * and a budget of 0 or less disables the cache.  Null keys and values are
+ * ignored.
+ *
+ * @since 6.2
+ */
+public class BoundedLRUCache<K, V> {
+
+    private final long maxSize;
+    private long size;
+    private final LinkedHashMap<K, V> values =
+            new LinkedHashMap<K, V>(16, 0.75f, true);
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize total size of the values the cache holds, 0 or less disables the cache.
+     */
+    public BoundedLRUCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the size a value counts for against the budget.
+     *
+     * @param value cached value.
+     * @return size of the value, one by default.
+     */
+    protected long sizeOf(V value) {
+        return 1;
+    }
+
+    public synchronized V get(K key) {
+        if (maxSize <= 0 || key == null) {
+            return null;
+        }
+        return values.get(key);
+    }
+
+    /**
+     * Adds a value to the cache, the least recently used values are removed
+     * until the cache is back under its budget.
+     *
+     * @param key   key of the value.
+     * @param value value to cache.
+     */
+    public synchronized void put(K key, V value) {
+        if (key == null || value == null) {
+            return;
+        }
+        long valueSize = sizeOf(value);
+        if (valueSize > maxSize) {
+            return;
+        }
+        V old = values.put(key, value);
+        if (old != null) {
+            size -= sizeOf(old);
+        }
+        size += valueSize;
+        for (Iterator<V> iterator = values.values().iterator();
+             size > maxSize && iterator.hasNext(); ) {
+            V cached = iterator.next();
+            if (cached != value) {
+                size -= sizeOf(cached);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of values in the cache.
+     *
+     * @return number of cached values.
+     */
+    public synchronized int size() {
+        return values.size();
+    }
+
+    public synchronized void clear() {
+        values.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.util;
+
+import java.util.logging.Logger;
+
+import static org.icepdf.core.util.TestChecks.check;
+
+/**
+ * Testing of the bounded least recently used cache, counted by entries and
+ * by the size of its values.
+ *
+ * @since 6.2
+ */
+public class BoundedLRUCacheTest {
+
+    private static final Logger logger =
+            Logger.getLogger(BoundedLRUCacheTest.class.toString());
+
+    public static void main(String[] args) {
+        BoundedLRUCacheTest test = new BoundedLRUCacheTest();
+        test.testCount();
+        test.testSize();
+        test.testDisabled();
+        logger.info("BoundedLRUCacheTest passed");
+    }
+
+    public void testCount() {
+        BoundedLRUCache<String, String> cache = new BoundedLRUCache<String, String>(2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        // a is used last, so b is the one removed.
+        check("A".equals(cache.get("a")), "a");
+        cache.put("c", "C");
+        check(cache.size() == 2 && cache.get("b") == null, "b wasn't removed");
+        check("A".equals(cache.get("a")) && "C".equals(cache.get("c")), "a or c was removed");
+        // replacing a value doesn't count it twice.
+        cache.put("c", "C2");
+        check(cache.size() == 2 && "A".equals(cache.get("a")), "replaced value counted twice");
+        cache.put(null, "N");
+        cache.put("n", null);
+        check(cache.size() == 2 && cache.get(null) == null, "null key or value cached");
+        cache.clear();
+        check(cache.size() == 0 && cache.get("a") == null, "not cleared");
+    }
+
+    public void testSize() {
+        BoundedLRUCache<String, int[]> cache = new BoundedLRUCache<String, int[]>(10) {
+            @Override
+            protected long sizeOf(int[] value) {
+                return value.length;
+            }
+        };
+        cache.put("a", new int[4]);
+        cache.put("b", new int[4]);
+        check(cache.size() == 2, "size " + cache.size());
+        // a value larger than the budget isn't cached and removes nothing.
+        cache.put("big", new int[11]);
+        check(cache.size() == 2 && cache.get("big") == null, "value over the budget cached");
+        // six more units only fit by removing a and b.
+        cache.put("c", new int[6]);
+        check(cache.size() == 2 && cache.get("a") == null && cache.get("b") != null, "a wasn't removed");
+        cache.get("b");
+        cache.put("d", new int[10]);
+        check(cache.size() == 1 && cache.get("d") != null, "cache over its budget");
+        // removed sizes are given back.
+        cache.put("d", new int[2]);
+        cache.put("e", new int[8]);
+        check(cache.size() == 2, "size after replacing " + cache.size());
+    }
+
+    public void testDisabled() {
+        BoundedLRUCache<String, String> cache = new BoundedLRUCache<String, String>(0);
+        cache.put("a", "A");
+        check(cache.size() == 0 && cache.get("a") == null, "disabled cache holds values");
+    }
+}
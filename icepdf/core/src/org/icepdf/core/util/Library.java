@@ -24,6 +24,10 @@ import org.icepdf.core.pobjects.fonts.Font;
 import org.icepdf.core.pobjects.fonts.FontDescriptor;
 import org.icepdf.core.pobjects.graphics.ICCBased;
 import org.icepdf.core.pobjects.graphics.ImagePool;
+import org.icepdf.core.pobjects.graphics.PatternCellCache;
+import org.icepdf.core.pobjects.graphics.ShadingColorTableCache;
+import org.icepdf.core.pobjects.graphics.ShadingMeshCache;
+import org.icepdf.core.pobjects.graphics.TransparencyGroupCache;
 import org.icepdf.core.pobjects.security.SecurityManager;
 
 import java.awt.geom.Rectangle2D;
@@ -50,9 +54,13 @@ public class Library {
 
     protected static ThreadPoolExecutor commonThreadPool;
     protected static ThreadPoolExecutor imageThreadPool;
+    protected static ThreadPoolExecutor imageBandThreadPool;
+    protected static ThreadPoolExecutor formThreadPool;
 
     protected static int commonPoolThreads;
     protected static int imagePoolThreads;
+    protected static int imageBandPoolThreads;
+    protected static int formPoolThreads;
     private static final long KEEP_ALIVE_TIME = 90;
 
     static {
@@ -77,8 +85,34 @@ public class Library {
             log.warning("Error reading buffered scale factor");
         }
 
+        try {
+            // large images are decoded in bands, bands only ever do cpu work and
+            // never wait on other tasks so the pool is sized to the machine.
+            imageBandPoolThreads =
+                    Defs.intProperty("org.icepdf.core.library.imageBandThreadPoolSize",
+                            Runtime.getRuntime().availableProcessors());
+            if (imageBandPoolThreads < 1) {
+                imageBandPoolThreads = 1;
+            }
+        } catch (NumberFormatException e) {
+            log.warning("Error reading image band thread pool size");
+        }
+
+        try {
+            // form widget appearances are regenerated in parallel when forms
+            // are filled in bulk, like bands the tasks never wait on others.
+            formPoolThreads =
+                    Defs.intProperty("org.icepdf.core.library.formThreadPoolSize",
+                            Runtime.getRuntime().availableProcessors());
+            if (formPoolThreads < 1) {
+                formPoolThreads = 1;
+            }
+        } catch (NumberFormatException e) {
+            log.warning("Error reading form thread pool size");
+        }
+
         log.fine("Starting ICEpdf Thread Pools: " +
-                (commonPoolThreads + imagePoolThreads) +
+                (commonPoolThreads + imagePoolThreads + imageBandPoolThreads + formPoolThreads) +
                 " threads.");
         initializeThreadPool();
     }
@@ -111,6 +145,11 @@ public class Library {
     private boolean isEncrypted;
     private boolean isLinearTraversal;
     private ImagePool imagePool;
+    private PatternCellCache patternCellCache;
+    private TransparencyGroupCache transparencyGroupCache;
+    private ShadingMeshCache shadingMeshCache;
+    private ShadingColorTableCache shadingColorTableCache;
+    private ResourceCache resourceCache;
 
     /**
      * Sets a document loader for the library.
@@ -147,12 +186,10 @@ public class Library {
             // check stateManager first to allow for annotations to be injected
             // from a separate file.
             if (stateManager != null) {
-                if (stateManager.contains(reference)) {
-                    ob = stateManager.getChange(reference);
-                    if (ob instanceof PObject){
-                        return ((PObject) ob).getObject();
-                    }
-                    return ob;
+                // a single lookup in the current, or pinned, changes.
+                Object change = stateManager.getChange(reference);
+                if (change != null) {
+                    return ((PObject) change).getObject();
                 }
             }
             ob = obRef != null ? obRef.get() : null;
@@ -575,6 +612,11 @@ public class Library {
     public Library() {
         // set Catalog memory Manager and cache manager.
         imagePool = new ImagePool();
+        patternCellCache = new PatternCellCache();
+        transparencyGroupCache = new TransparencyGroupCache();
+        shadingMeshCache = new ShadingMeshCache();
+        shadingColorTableCache = new ShadingColorTableCache();
+        resourceCache = new ResourceCache();
         signatureHandler = new SignatureHandler();
     }
 
@@ -748,6 +790,26 @@ public class Library {
         return imagePool;
     }
 
+    public PatternCellCache getPatternCellCache() {
+        return patternCellCache;
+    }
+
+    public TransparencyGroupCache getTransparencyGroupCache() {
+        return transparencyGroupCache;
+    }
+
+    public ShadingMeshCache getShadingMeshCache() {
+        return shadingMeshCache;
+    }
+
+    public ShadingColorTableCache getShadingColorTableCache() {
+        return shadingColorTableCache;
+    }
+
+    public ResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
     public static void initializeThreadPool() {
 
         log.fine("Starting ICEpdf Thread Pool: " + commonPoolThreads + " threads.");
@@ -778,6 +840,34 @@ public class Library {
                 return newThread;
             }
         });
+
+        imageBandThreadPool = new ThreadPoolExecutor(
+                imageBandPoolThreads, imageBandPoolThreads, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        imageBandThreadPool.allowCoreThreadTimeOut(true);
+        imageBandThreadPool.setThreadFactory(new ThreadFactory() {
+            public Thread newThread(java.lang.Runnable command) {
+                Thread newThread = new Thread(command);
+                newThread.setName("ICEpdf-thread-image-band-pool");
+                newThread.setPriority(Thread.NORM_PRIORITY);
+                newThread.setDaemon(true);
+                return newThread;
+            }
+        });
+
+        formThreadPool = new ThreadPoolExecutor(
+                formPoolThreads, formPoolThreads, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        formThreadPool.allowCoreThreadTimeOut(true);
+        formThreadPool.setThreadFactory(new ThreadFactory() {
+            public Thread newThread(java.lang.Runnable command) {
+                Thread newThread = new Thread(command);
+                newThread.setName("ICEpdf-thread-form-pool");
+                newThread.setPriority(Thread.NORM_PRIORITY);
+                newThread.setDaemon(true);
+                return newThread;
+            }
+        });
     }
 
     public static void shutdownThreadPool() {
@@ -786,6 +876,10 @@ public class Library {
         commonThreadPool.shutdownNow();
         imageThreadPool.purge();
         imageThreadPool.shutdownNow();
+        imageBandThreadPool.purge();
+        imageBandThreadPool.shutdownNow();
+        formThreadPool.purge();
+        formThreadPool.shutdownNow();
     }
 
     public static void execute(Runnable runnable) {
@@ -803,4 +897,47 @@ public class Library {
             log.severe("ICEpdf Common Thread Pool was shutdown!");
         }
     }
+
+    /**
+     * Queues a band of a larger image decode on the image band pool.
+     *
+     * @param callable band task.
+     * @return true if the task was queued, false if the pool was shutdown in
+     * which case the caller should run the task itself.
+     */
+    public static boolean executeImageBand(FutureTask<?> callable) {
+        try {
+            imageBandThreadPool.execute(callable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.severe("ICEpdf Image Band Thread Pool was shutdown!");
+            return false;
+        }
+    }
+
+    /**
+     * Queues the appearance regeneration of a form field on the form pool.
+     *
+     * @param callable field task.
+     * @return true if the task was queued, false if the pool was shutdown in
+     * which case the caller should run the task itself.
+     */
+    public static boolean executeForm(FutureTask<?> callable) {
+        try {
+            formThreadPool.execute(callable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.severe("ICEpdf Form Thread Pool was shutdown!");
+            return false;
+        }
+    }
+
+    /**
+     * Gets the number of threads used to decode image bands.
+     *
+     * @return image band pool size.
+     */
+    public static int getImageBandPoolThreads() {
+        return imageBandPoolThreads;
+    }
 }
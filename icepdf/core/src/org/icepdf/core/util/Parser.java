@@ -43,6 +43,12 @@ public class Parser {
     private static final Logger logger =
             Logger.getLogger(Parser.class.toString());
 
+    // keywords the window lexer returns without creating a new string.
+    private static final String[] KEYWORDS = {"obj", "endobj", "R", "stream",
+            "endstream", "true", "false", "null", "xref", "trailer", "startxref"};
+
+    private static final byte[] ENDSTREAM = "endstream".getBytes();
+
     public static final int PARSE_MODE_NORMAL = 0;
     public static final int PARSE_MODE_OBJECT_STREAM = 1;
 
@@ -51,6 +57,11 @@ public class Parser {
 //    private BufferedMarkedInputStream reader;
 
     private InputStream reader;
+    // window over the document when parsing a SeekableInput, null otherwise.
+    private BufferedSeekableInput window;
+    private long windowStart;
+    // token characters collected by the window lexer.
+    private char[] tokenChars = new char[64];
     boolean lastTokenHString = false;
     private Stack<Object> stack = new Stack<Object>();
     private int parseMode;
@@ -63,7 +74,14 @@ public class Parser {
 
     public Parser(SeekableInput r, int pm) {
 //        reader = new BufferedMarkedInputStream(r.getInputStream());
-        reader = r.getInputStream();
+        try {
+            window = new BufferedSeekableInput(r);
+            windowStart = window.getAbsolutePosition();
+            reader = window;
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error creating parser window.", e);
+            reader = r.getInputStream();
+        }
         parseMode = pm;
     }
 
@@ -95,8 +113,12 @@ public class Parser {
             reader.mark(1);
             // capture the byte offset of this object so we can rebuild
             // the cross reference entries for lazy loading after CG.
-            if (library.isLinearTraversal() && reader instanceof BufferedMarkedInputStream) {
-                linearTraversalOffset = ((BufferedMarkedInputStream) reader).getMarkedPosition();
+            if (library.isLinearTraversal()) {
+                if (window != null) {
+                    linearTraversalOffset = (int) (window.getAbsolutePosition() - windowStart);
+                } else if (reader instanceof BufferedMarkedInputStream) {
+                    linearTraversalOffset = ((BufferedMarkedInputStream) reader).getMarkedPosition();
+                }
             }
             do { //while (!complete);
                 // keep track of currently parsed objects reference
@@ -226,10 +248,22 @@ public class Parser {
                                 lengthOfStreamData = streamLength;
                                 streamDataInput.seekRelative(streamLength);
                                 // Read any extraneous data coming after the length, but before endstream
-                                lengthOfStreamData += skipUntilEndstream(null);
+                                long skipped = skipUntilEndstream(null);
+                                if (skipped > 0 && library.isLinearTraversal()) {
+                                    // the length of a damaged file can't be trusted, search
+                                    // for the endstream from the start of the data instead.
+                                    streamDataInput.seekAbsolute(filePositionOfStreamData);
+                                    lengthOfStreamData = captureStreamData(null);
+                                } else {
+                                    lengthOfStreamData += skipped;
+                                }
                             } else {
                                 lengthOfStreamData = captureStreamData(null);
                             }
+                            // stream data is read from the document, not through the window.
+                            if (window != null) {
+                                streamDataInput = window.getSeekableInput();
+                            }
                             streamInputWrapper = new SeekableInputConstrainedWrapper(
                                     streamDataInput, filePositionOfStreamData, lengthOfStreamData);
                         } else { // reader is just regular InputStream (BufferedInputStream)
@@ -737,6 +771,13 @@ public class Parser {
         boolean inNumber = false;
         lastTokenHString = false;
 
+        if (window != null) {
+            Object token = getWindowToken();
+            if (token != null) {
+                return token;
+            }
+        }
+
         // strip all white space characters
         do {
             currentByte = reader.read();
@@ -1023,6 +1064,100 @@ public class Parser {
         return stringBuffer.toString();
     }
 
+    /**
+     * Lexes the next token straight out of the window.  Numbers, names,
+     * keywords and the array and dictionary delimiters are parsed from the
+     * window's bytes without going through a StringBuilder, the common
+     * keywords are returned as constants.  Strings, comments and anything
+     * else unusual are left for getToken() to parse, the window is then left
+     * at the start of the token.
+     *
+     * @return next token, null if the token has to be parsed by getToken().
+     * @throws IOException end of the input has been reached.
+     */
+    private Object getWindowToken() throws IOException {
+        int currentByte;
+        // strip all white space characters
+        do {
+            currentByte = window.read();
+            // input stream interrupted
+            if (currentByte < 0) {
+                throw new IOException();
+            }
+        }
+        while (isWhitespace((char) currentByte));
+
+        if (currentByte == '[') {
+            return "[";
+        } else if (currentByte == ']') {
+            return "]";
+        } else if (currentByte == '<' || currentByte == '>') {
+            if (window.peek() == currentByte) {
+                window.read();
+                return currentByte == '<' ? "<<" : ">>";
+            }
+            // hex string
+            window.unread();
+            return null;
+        } else if (currentByte != '/' && (currentByte >= 128 || isDelimiter((char) currentByte))) {
+            // strings, comments and stray delimiters.
+            window.unread();
+            return null;
+        }
+
+        // collect the rest of the token up to the next white space or delimiter.
+        char[] chars = tokenChars;
+        int length = 0;
+        chars[length++] = (char) currentByte;
+        while ((currentByte = window.read()) >= 0) {
+            if (isWhitespace((char) currentByte)) {
+                // we need to return the CR LR, as it is need by stream parsing
+                if (currentByte == 13 || currentByte == 10) {
+                    window.unread();
+                }
+                break;
+            } else if (isDelimiter((char) currentByte)) {
+                window.unread();
+                break;
+            }
+            // eat any junk characters
+            if (currentByte < 128) {
+                if (length == chars.length) {
+                    char[] newChars = new char[length * 2];
+                    System.arraycopy(chars, 0, newChars, 0, length);
+                    chars = tokenChars = newChars;
+                }
+                chars[length++] = (char) currentByte;
+            }
+        }
+
+        char first = chars[0];
+        if (first == '/') {
+            return new Name(new String(chars, 1, length - 1));
+        } else if ((first >= '0' && first <= '9') ||
+                first == '-' || first == '+' || first == '.') {
+            return parseNumber(chars, length);
+        }
+        for (String keyword : KEYWORDS) {
+            if (isKeyword(keyword, chars, length)) {
+                return keyword;
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    private static boolean isKeyword(String keyword, char[] chars, int length) {
+        if (keyword.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (keyword.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public Object getNumberOrStringWithMark(int maxLength) throws IOException {
         reader.mark(maxLength);
 
@@ -1108,22 +1243,28 @@ public class Parser {
     }
 
     public Number getNumber(StringBuilder value) {
+        int length = value.length();
+        char[] chars = new char[length];
+        value.getChars(0, length, chars, 0);
+        return parseNumber(chars, length);
+    }
+
+    private static Number parseNumber(char[] streamBytes, int length) {
         int digit = 0;
         float decimal = 0;
         float divisor = 10;
         boolean isDigit;
         boolean isDecimal = false;
-        byte[] streamBytes = value.toString().getBytes();
         int startTokenPos = 0;
         boolean singed = streamBytes[startTokenPos] == '-';
         boolean positive = streamBytes[startTokenPos] == '+';
         startTokenPos = singed || positive ? startTokenPos + 1 : startTokenPos;
         // check for  double sign, thanks oracle forms!
-        if (singed && streamBytes[startTokenPos] == '-') {
+        if (singed && startTokenPos < length && streamBytes[startTokenPos] == '-') {
             startTokenPos++;
         }
         int current;
-        for (int i = startTokenPos, max = streamBytes.length; i < max; i++) {
+        for (int i = startTokenPos; i < length; i++) {
             current = streamBytes[i] - 48;
             isDigit = streamBytes[i] >= 48 && streamBytes[i] <= 57;
             if (!isDecimal && isDigit) {
@@ -1227,6 +1368,16 @@ public class Parser {
     }
 
     private long captureStreamData(OutputStream out) throws IOException {
+        if (window != null && out == null) {
+            // bulk search the window and step over the endstream.
+            long start = window.getAbsolutePosition();
+            long end = window.indexOf(ENDSTREAM);
+            if (end < 0) {
+                return window.getAbsolutePosition() - start;
+            }
+            window.seekRelative(ENDSTREAM.length);
+            return end - start;
+        }
         long numBytes = 0;
         while (true) {
             // read bytes
@@ -1257,6 +1408,23 @@ public class Parser {
     }
 
     private long skipUntilEndstream(OutputStream out) throws IOException {
+        if (window != null && out == null) {
+            // find the endstream first, then count the extraneous bytes before it.
+            long start = window.getAbsolutePosition();
+            long end = window.indexOf(ENDSTREAM);
+            if (end < 0) {
+                end = window.getAbsolutePosition();
+            }
+            long skipped = 0L;
+            window.seekAbsolute(start);
+            for (long i = start; i < end; i++) {
+                int nextByte = window.read();
+                if (nextByte != 0x0A && nextByte != 0x0D && nextByte != 0x20) {
+                    skipped++;
+                }
+            }
+            return skipped;
+        }
         long skipped = 0L;
         while (true) {
             reader.mark(10);
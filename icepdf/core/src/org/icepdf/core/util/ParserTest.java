@@ -0,0 +1,238 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.util;
+
+import org.icepdf.core.io.SeekableByteArrayInputStream;
+import org.icepdf.core.io.SeekableInput;
+import org.icepdf.core.pobjects.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import static org.icepdf.core.util.TestChecks.check;
+
+/**
+ * Testing of the window lexer.  The same bytes are parsed by a parser over a
+ * SeekableInput, which lexes from a BufferedSeekableInput window, and by a
+ * parser over a plain InputStream, which lexes everything with the original
+ * getToken() character loop, and the results must be the same.  The bytes
+ * are shifted by a growing amount of leading white space so every token
+ * and every stream keyword in turn straddles the edge of the first window
+ * and of the larger windows after it.
+ *
+ * @since 6.2
+ */
+public class ParserTest {
+
+    private static final Logger logger =
+            Logger.getLogger(ParserTest.class.toString());
+
+    // size of the window's first read.
+    private static final int WINDOW = 1024;
+
+    private static final String TOKENS =
+            "1 0 obj << /Type /Page /Name#20X /A/B/C#23 /Long" + repeat('n', 100) + " " +
+                    "[1 -2 +3 .5 -.25 4. --7 0.000 123456789 2147483648 -0]" +
+                    "(a (nested (deep)) string) (esc \\( \\) \\\\ \\n \\r \\t \\b \\f \\053 \\0053 \\7 \\q)" +
+                    "(line\\\r\nsplit) (unbalanced \\) paren) () " +
+                    "<48656C6C6F> <4 8 6 5 7> <> <abc> " +
+                    "true false null R obj endobj stream endstream xref trailer startxref " +
+                    "%comment to the end of the line\r\n" +
+                    "<</Inner<</Deeper[/X 1 2 R]>>>> 42 0 R >>\n" +
+                    "keyword" + repeat('k', 70) + " ABéCD éjunk 12é34 endobj ";
+
+    public static void main(String[] args) throws Exception {
+        ParserTest test = new ParserTest();
+        test.testTokens();
+        test.testStreams();
+        logger.info("ParserTest passed");
+    }
+
+    /**
+     * Compares the token sequences of the two lexers with the tokens shifted
+     * across the first window edge, and with enough tokens to run through
+     * the larger windows that follow.
+     */
+    public void testTokens() throws IOException {
+        for (int shift = WINDOW - TOKENS.length() - 1; shift <= WINDOW + 1; shift++) {
+            checkTokens(repeat(' ', shift) + TOKENS);
+        }
+        StringBuilder many = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            many.append(repeat('\n', i)).append(TOKENS);
+        }
+        checkTokens(many.toString());
+        // a token running in to the end of the input.
+        checkTokens(repeat(' ', WINDOW - 3) + "/Last");
+        checkTokens(repeat(' ', WINDOW - 3) + "123.5");
+        checkTokens(repeat(' ', WINDOW - 3) + "(unterminated");
+        checkTokens(repeat(' ', WINDOW - 3) + "%%EOF");
+    }
+
+    private static void checkTokens(String text) throws IOException {
+        byte[] data = text.getBytes("ISO-8859-1");
+        Parser window = new Parser((SeekableInput) new SeekableByteArrayInputStream(data));
+        Parser stream = new Parser(new ByteArrayInputStream(data));
+        List<String> windowTokens = getTokens(window);
+        List<String> streamTokens = getTokens(stream);
+        for (int i = 0; i < Math.min(windowTokens.size(), streamTokens.size()); i++) {
+            check(windowTokens.get(i).equals(streamTokens.get(i)), "token " + i + " is " +
+                    windowTokens.get(i) + " instead of " + streamTokens.get(i));
+        }
+        check(windowTokens.size() == streamTokens.size(),
+                windowTokens.size() + " tokens instead of " + streamTokens.size());
+    }
+
+    private static List<String> getTokens(Parser parser) {
+        List<String> tokens = new ArrayList<String>();
+        while (true) {
+            try {
+                Object token = parser.getToken();
+                if (token == null) {
+                    break;
+                }
+                tokens.add(describe(token) + (parser.lastTokenHString ? " hex" : ""));
+            } catch (IOException e) {
+                break;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Compares streams parsed with declared lengths that are right, with junk
+     * after them and with no usable length, and with the stream keyword
+     * followed by CR LF, LF or a lone CR.  The dictionaries must be the same
+     * as the ones parsed from a plain InputStream, and the stream data the
+     * same as when the objects are all in the first window, where the clean
+     * streams must hold exactly their data.  The plain InputStream parser
+     * doesn't keep the data of a stream with a trusted length, so it can't be
+     * compared with for the stream data.
+     */
+    public void testStreams() throws Exception {
+        String data = "stream data with endstrea and endobj in it\r\nsecond line";
+        String[] objects = {
+                "1 0 obj << /Length " + data.length() + " >> stream\r\n" + data + "\r\nendstream endobj\n",
+                "2 0 obj << /Length " + data.length() + " >>\nstream\n" + data + "\nendstream\nendobj\n",
+                "3 0 obj <</Length " + (data.length() - 5) + ">>stream\r\n" + data + "\r\nendstream endobj\n",
+                "4 0 obj << /Length 99 0 R >> stream\n" + data + "endstream endobj\n",
+                "5 0 obj << /Length " + data.length() + " >> stream\r" + data + "\nendstream endobj\n",
+                "6 0 obj << /Filter /ASCIIHexDecode /Length 11 >> stream\n48656C6C6F>\nendstream endobj\n",
+                "7 0 obj << /Kids [1 0 R 2 0 R] /Title (not a stream) >> endobj\n",
+        };
+        StringBuilder all = new StringBuilder();
+        for (String object : objects) {
+            all.append(object);
+        }
+        List<String> expected = checkObjects(all.toString(), objects.length, null);
+        String[] contents = {data, data, null, data, data, null, null};
+        for (int i = 0; i < contents.length; i++) {
+            if (contents[i] != null) {
+                check(expected.get(i).endsWith("[" + contents[i] + "]"),
+                        "stream " + i + " is " + expected.get(i));
+            }
+        }
+        for (int shift = WINDOW - all.length() - 1; shift <= WINDOW + 1; shift++) {
+            checkObjects(repeat(' ', shift) + all, objects.length, expected);
+        }
+    }
+
+    private static List<String> checkObjects(String text, int count, List<String> expected)
+            throws Exception {
+        byte[] data = text.getBytes("ISO-8859-1");
+        Parser window = new Parser((SeekableInput) new SeekableByteArrayInputStream(data));
+        Parser stream = new Parser(new ByteArrayInputStream(data));
+        Library windowLibrary = new Library();
+        Library streamLibrary = new Library();
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            Object windowObject = window.getObject(windowLibrary);
+            Object streamObject = stream.getObject(streamLibrary);
+            check(windowObject instanceof PObject && streamObject instanceof PObject,
+                    "object " + i + " is " + windowObject + " and " + streamObject);
+            PObject windowPObject = (PObject) windowObject;
+            PObject streamPObject = (PObject) streamObject;
+            Reference reference = windowPObject.getReference();
+            check(reference.equals(streamPObject.getReference()), "reference " + reference);
+            Object windowValue = windowPObject.getObject();
+            Object streamValue = streamPObject.getObject();
+            check(windowValue instanceof Stream == streamValue instanceof Stream, "object " + reference +
+                    " is " + describe(windowValue) + " instead of " + describe(streamValue));
+            if (windowValue instanceof Stream) {
+                windowValue = ((Stream) windowValue).getEntries();
+                streamValue = ((Stream) streamValue).getEntries();
+            }
+            check(describe(windowValue).equals(describe(streamValue)), "object " + reference +
+                    " is " + describe(windowValue) + " instead of " + describe(streamValue));
+            values.add(describe(windowPObject.getObject()));
+            if (expected != null) {
+                check(values.get(i).equals(expected.get(i)), "object " + reference +
+                        " is " + values.get(i) + " instead of " + expected.get(i));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Describes a parsed token or object by its type and value.
+     */
+    private static String describe(Object object) {
+        if (object instanceof Stream) {
+            Stream stream = (Stream) object;
+            byte[] bytes = stream.getDecodedStreamBytes();
+            return "Stream" + describe(stream.getEntries()) + "[" +
+                    (bytes != null ? new String(bytes) : "null") + "]";
+        } else if (object instanceof Dictionary) {
+            return object.getClass().getSimpleName() + describe(((Dictionary) object).getEntries());
+        } else if (object instanceof HashMap) {
+            // entries in a fixed order.
+            return "Dictionary" + new TreeMap<String, String>(describeEntries((HashMap<?, ?>) object));
+        } else if (object instanceof List) {
+            List<String> values = new ArrayList<String>();
+            for (Object value : (List<?>) object) {
+                values.add(describe(value));
+            }
+            return "Array" + values;
+        } else if (object instanceof StringObject) {
+            return object.getClass().getSimpleName() + ":" + ((StringObject) object).getLiteralString();
+        } else if (object instanceof Name) {
+            return "Name:" + ((Name) object).getName();
+        } else if (object != null) {
+            return object.getClass().getSimpleName() + ":" + object;
+        }
+        return "null";
+    }
+
+    private static HashMap<String, String> describeEntries(HashMap<?, ?> entries) {
+        HashMap<String, String> values = new HashMap<String, String>();
+        for (Object key : entries.keySet()) {
+            values.put(describe(key), describe(entries.get(key)));
+        }
+        return values;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder text = new StringBuilder(Math.max(0, count));
+        for (int i = 0; i < count; i++) {
+            text.append(c);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.core.util;
+
+/**
+ * Checks shared by the tests kept with the core sources.  Each test is run
+ * through its main method with no arguments and fails with the
+ * AssertionError thrown by #check(boolean, String), a test that returns
+ * passed.
+ *
+ * @since 6.2
+ */
+public final class TestChecks {
+
+    private TestChecks() {
+    }
+
+    /**
+     * Fails the running test if a condition doesn't hold.
+     *
+     * @param condition condition that must hold.
+     * @param message   description of the failure.
+     * @throws AssertionError if the condition is false.
+     */
+    public static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -104,16 +104,15 @@ public class CurrentPageChanger extends MouseAdapter implements AdjustmentListen
             ArrayList<PageViewComponent> visiblePages =
                     new ArrayList<PageViewComponent>(10);
             Rectangle pageBounds;
-            int pageCount = 0;
-            for (AbstractPageViewComponent pageComponent : pageComponents) {
+            // only pages near the view have components.
+            for (AbstractPageViewComponent pageComponent : documentViewModel.getActivePageComponents()) {
                 if (pageComponent != null) {
-                    pageBounds = documentViewModel.getPageBounds(pageCount);
+                    pageBounds = documentViewModel.getPageBounds(pageComponent.getPageIndex());
                     if (pageBounds != null &&
                             pageComponent.isShowing()) {
                         visiblePages.add(pageComponent);
                     }
                 }
-                pageCount++;
             }
 
             // find center point of view port
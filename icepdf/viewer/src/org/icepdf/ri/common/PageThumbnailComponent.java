@@ -18,26 +18,33 @@ package org.icepdf.ri.common;
 
 import org.icepdf.core.pobjects.Page;
 import org.icepdf.core.pobjects.PageTree;
-import org.icepdf.core.util.Library;
+import org.icepdf.core.pobjects.Thumbnail;
+import org.icepdf.core.pobjects.graphics.ImageReferenceFactory;
+import org.icepdf.core.util.GraphicsRenderingHints;
 import org.icepdf.core.util.PropertyConstants;
+import org.icepdf.ri.common.utility.thumbs.ThumbnailCache;
 import org.icepdf.ri.common.views.AbstractPageViewComponent;
+import org.icepdf.ri.common.views.PageBufferCache;
+import org.icepdf.ri.common.views.PageRenderScheduler;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.util.concurrent.FutureTask;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The PageThumbnailComponent represents one page thumbnail preview in the larger
- * ThumbnailsPanel.  The Component when visible will try to load a thumbnail
- * from the Page object, the size of this thumbnail is defined by the document
- * and is displayed as is.  If no embedded thumbnail is found the page is
- * initialized and page thumbnail is captured and cached.  The size of this
- * thumbnail can be configure with the system property:
- * <p/>
- * org.icepdf.vi.views.buffersize.vertical
+ * ThumbnailsPanel.  The Component when visible will first look for the thumbnail
+ * in the ThumbnailCache and then try to load the thumbnail embedded in the Page
+ * object, which is scaled to the thumbnail size.  If no embedded thumbnail is
+ * found the page is captured with a draft render, using draft rendering hints,
+ * images decoded at the thumbnail size and no annotations, and the capture is
+ * stored in the ThumbnailCache.  Pages that weren't initialized before a draft
+ * render are reset afterwards so the page view never paints the draft images.
  */
 @SuppressWarnings("serial")
 public class PageThumbnailComponent extends AbstractPageViewComponent implements MouseListener {
@@ -45,7 +52,11 @@ public class PageThumbnailComponent extends AbstractPageViewComponent implements
     private static final Logger logger =
             Logger.getLogger(PageThumbnailComponent.class.toString());
 
+    // how far the proportions of an embedded thumbnail may be off the page's.
+    private static final float THUMBNAIL_RATIO_TOLERANCE = 0.1f;
+
     private SwingController controller;
+    private ThumbnailCache thumbnailCache;
 
     public PageThumbnailComponent(SwingController controller,
                                   JScrollPane parentScrollPane, PageTree pageTree,
@@ -76,6 +87,7 @@ public class PageThumbnailComponent extends AbstractPageViewComponent implements
 
 
     protected void calculateBufferLocation() {
+        updateViewportDistance();
         // grab a reference to the graphics configuration via the AWT thread,  if we get it on the worker thread
         // it sometimes return null.
         graphicsConfiguration = parentScrollPane.getGraphicsConfiguration();
@@ -88,17 +100,45 @@ public class PageThumbnailComponent extends AbstractPageViewComponent implements
         if (viewPort.intersects(pageLocation) && pageBufferStore.getImageReference() == null) {
             // start future task to paint back pageBufferPadding
             if (pageImageCaptureTask == null || pageImageCaptureTask.isDone() || pageImageCaptureTask.isCancelled()) {
-                pageImageCaptureTask = new FutureTask<Object>(
-                        new PageImageCaptureTask(this, pageSize, pageSize,
-                                pageZoom,
-                                pageRotation));
-                Library.execute(pageImageCaptureTask);
+                pageImageCaptureTask = PageRenderScheduler.execute(
+                        new ThumbnailCaptureTask(), PageRenderScheduler.PRIORITY_THUMBNAIL);
             }
         }
     }
 
+    /**
+     * Thumbnails live in their own scroll pane so the page bounds in the
+     * document view don't apply.
+     */
+    protected boolean isPageIntersectViewport() {
+        return isShowing() && getBounds().intersects(parentScrollPane.getViewport().getViewRect());
+    }
+
+    protected int getViewportDistance() {
+        if (!isShowing()) {
+            return Integer.MAX_VALUE;
+        }
+        Rectangle viewRect = parentScrollPane.getViewport().getViewRect();
+        Rectangle bounds = getBounds();
+        return Math.max(0, Math.max(viewRect.y - bounds.y - bounds.height,
+                bounds.y - viewRect.y - viewRect.height));
+    }
+
+    /**
+     * Sets the cache rendered thumbnails are read from and stored in.
+     *
+     * @param thumbnailCache document's thumbnail cache, null to not cache.
+     */
+    public void setThumbnailCache(ThumbnailCache thumbnailCache) {
+        this.thumbnailCache = thumbnailCache;
+    }
+
     public void dispose() {
         removeMouseListener(this);
+        if (pageImageCaptureTask != null) {
+            pageImageCaptureTask.cancel(true);
+        }
+        pageBufferStore.dispose();
     }
 
     public void mouseClicked(MouseEvent e) {
@@ -135,4 +175,106 @@ public class PageThumbnailComponent extends AbstractPageViewComponent implements
 
     }
 
+    /**
+     * Scales the page's embedded thumbnail to the size of the component.
+     *
+     * @return scaled thumbnail, null if the page has no thumbnail or its
+     * proportions don't match the page's.
+     */
+    private BufferedImage captureEmbeddedThumbnail() throws InterruptedException {
+        Thumbnail thumbnail = getPage().getThumbnail();
+        if (thumbnail == null) {
+            return null;
+        }
+        BufferedImage thumbImage = thumbnail.getImage();
+        if (thumbImage == null || thumbImage.getWidth() <= 0 || thumbImage.getHeight() <= 0) {
+            return null;
+        }
+        // a thumbnail that isn't shaped like the page was likely made of a rotated page.
+        float thumbRatio = thumbImage.getWidth() / (float) thumbImage.getHeight();
+        float pageRatio = pageSize.width / (float) pageSize.height;
+        if (Math.abs(thumbRatio - pageRatio) > pageRatio * THUMBNAIL_RATIO_TOLERANCE) {
+            return null;
+        }
+        BufferedImage image = PageBufferCache.getInstance().createImage(
+                graphicsConfiguration, pageSize.width, pageSize.height);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(thumbImage, 0, 0, pageSize.width, pageSize.height, null);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Renders the page with draft quality settings.  If the page wasn't
+     * initialized it's initialized with images decoded at the thumbnail zoom
+     * and reset once painted.
+     */
+    private BufferedImage captureDraftThumbnail() throws InterruptedException {
+        Page page = getPage();
+        BufferedImage image = PageBufferCache.getInstance().createImage(
+                graphicsConfiguration, pageSize.width, pageSize.height);
+        synchronized (page) {
+            boolean draft = !page.isInitiated();
+            try {
+                if (draft) {
+                    ImageReferenceFactory.setDraftZoom(pageZoom);
+                }
+                page.init();
+                Graphics2D g = image.createGraphics();
+                g.setClip(0, 0, pageSize.width, pageSize.height);
+                page.paint(g, GraphicsRenderingHints.DRAFT, pageBoundaryBox, pageRotation, pageZoom,
+                        false, false);
+                g.dispose();
+            } finally {
+                if (draft) {
+                    ImageReferenceFactory.setDraftZoom(null);
+                    page.resetInitializedState();
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Thumbnail capture, tries the thumbnail cache, then the embedded thumbnail
+     * and then a draft render of the page.
+     */
+    private class ThumbnailCaptureTask implements Callable<Object> {
+
+        public Object call() throws Exception {
+            if (!isPageIntersectViewport()) {
+                return null;
+            }
+            try {
+                BufferedImage image = null;
+                if (thumbnailCache != null) {
+                    image = thumbnailCache.get(pageIndex, pageSize.width, pageSize.height);
+                }
+                if (image == null) {
+                    image = captureEmbeddedThumbnail();
+                }
+                if (image == null) {
+                    image = captureDraftThumbnail();
+                    if (thumbnailCache != null) {
+                        thumbnailCache.put(pageIndex, image);
+                    }
+                }
+                pageBufferStore.setState(image, pageSize, pageSize, pageSize,
+                        pageZoom, pageRotation, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.finer("Interrupted thumbnail capture: " + pageIndex);
+            } catch (Throwable e) {
+                logger.log(Level.WARNING, "Error capturing thumbnail " + pageIndex, e);
+            }
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    repaint();
+                }
+            });
+            return null;
+        }
+    }
+
 }
\ No newline at end of file
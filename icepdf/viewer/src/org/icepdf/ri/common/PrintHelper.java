@@ -18,7 +18,9 @@ package org.icepdf.ri.common;
 import org.icepdf.core.pobjects.PDimension;
 import org.icepdf.core.pobjects.Page;
 import org.icepdf.core.pobjects.PageTree;
+import org.icepdf.core.util.Defs;
 import org.icepdf.core.util.GraphicsRenderingHints;
+import org.icepdf.core.util.Library;
 
 import javax.print.*;
 import javax.print.attribute.HashDocAttributeSet;
@@ -26,9 +28,18 @@ import javax.print.attribute.HashPrintRequestAttributeSet;
 import javax.print.attribute.standard.*;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.awt.print.PageFormat;
 import java.awt.print.Printable;
 import java.awt.print.PrinterJob;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +47,19 @@ import java.util.logging.Logger;
  * <p>The <code>PrintHelper</code> class is utility class to aid developers in
  * printing PDF document content.  The PrintHelper takes advantage of the
  * Pageable and Printable interfaces availabe in Java 2.</p>
+ * <p/>
+ * <p>While a job is spooling the pages following the one being printed are
+ * initialized in the background and every initialized page is held on to
+ * until the job moves past it, so the repeated print calls a print service
+ * makes for the same page only paint the page's content.  The number of pages
+ * initialized ahead is set with the system property
+ * org.icepdf.core.print.prefetch, default 2.</p>
+ * <p/>
+ * <p>Pages are printed as vector graphics by default.  Large jobs can be
+ * printed as raster images at a given resolution instead to keep the spool
+ * size down, see {@link #setRasterPrintDpi(int)}.  The default resolution is
+ * set with the system property org.icepdf.core.print.raster.dpi, 0 for vector
+ * printing.</p>
  *
  * @since 2.0
  */
@@ -53,6 +77,21 @@ public class PrintHelper implements Printable {
     private boolean paintAnnotation = true;
     private boolean paintSearchHighlight = true;
 
+    // most pixels painted at once when printing a raster, larger pages are printed in bands.
+    private static final int RASTER_BAND_PIXELS = 1 << 22;
+
+    private static int prefetchPages;
+    private static int defaultRasterDpi;
+
+    static {
+        prefetchPages = Defs.intProperty("org.icepdf.core.print.prefetch", 2);
+        defaultRasterDpi = Defs.intProperty("org.icepdf.core.print.raster.dpi", 0);
+    }
+
+    private int rasterPrintDpi = defaultRasterDpi;
+    // pages initialized for the current job keyed by page index.
+    private final Map<Integer, FutureTask<Page>> printPages = new HashMap<Integer, FutureTask<Page>>();
+
     private static PrintService[] services;
     private PrintService printService;
     private HashDocAttributeSet docAttributeSet;
@@ -343,10 +382,10 @@ public class PrintHelper implements Printable {
         }
         try {
 
-            // Initiate the Page to print, not adding to the pageTree cache purposely,
-            // after we finish using it we'll dispose it.
-            Page currentPage = pageTree.getPage(pageIndex);
-            currentPage.init();
+            // Initiate the Page to print, pages held by the job are reused
+            // and the following pages are initialized in the background.
+            Page currentPage = getPrintPage(pageIndex);
+            prefetchPrintPages(pageIndex);
             PDimension pageDim = currentPage.getSize(userRotation);
 
             // Grab default page width and height
@@ -401,26 +440,141 @@ public class PrintHelper implements Printable {
                     imageablePrintLocation.y);
 
             // Paint the page content
-            currentPage.paint(printGraphics,
-                    GraphicsRenderingHints.PRINT,
-                    Page.BOUNDARY_CROPBOX,
-                    rotation, zoomFactor, paintAnnotation, paintSearchHighlight);
+            if (rasterPrintDpi > 0 && printGraphics instanceof Graphics2D) {
+                paintRaster((Graphics2D) printGraphics, currentPage, rotation, zoomFactor);
+            } else {
+                currentPage.paint(printGraphics,
+                        GraphicsRenderingHints.PRINT,
+                        Page.BOUNDARY_CROPBOX,
+                        rotation, zoomFactor, paintAnnotation, paintSearchHighlight);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.log(Level.SEVERE, "Printing: Page initialization and painting was interrupted", e);
         }
 
-        // Paint content to page buffer to reduce spool size but quality will suffer.
-//        Image image = viewController.getDocument().getPageImage(pageIndex,
-//                GraphicsRenderingHints.PRINT,
-//                Page.BOUNDARY_CROPBOX,
-//                rotation, zoomFactor);
-//        printGraphics.drawImage(image,0,0,null);
-//        image.flush();
-
         return Printable.PAGE_EXISTS;
     }
 
+    /**
+     * Paints a page to the printer as a raster at the raster print
+     * resolution, a band of rows at a time to keep the image buffer small.
+     * Each band is painted with a clip so only the content crossing the band
+     * is drawn.
+     */
+    private void paintRaster(Graphics2D printGraphics, Page page, float rotation, float zoomFactor)
+            throws InterruptedException {
+        float scale = rasterPrintDpi / 72f;
+        PDimension size = page.getSize(Page.BOUNDARY_CROPBOX, rotation, zoomFactor * scale);
+        int width = (int) Math.ceil(size.getWidth());
+        int height = (int) Math.ceil(size.getHeight());
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        int bandHeight = Math.max(1, Math.min(height, RASTER_BAND_PIXELS / width));
+        BufferedImage band = new BufferedImage(width, bandHeight, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y += bandHeight) {
+            Graphics2D g = band.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, bandHeight);
+            g.translate(0, -y);
+            g.clipRect(0, y, width, bandHeight);
+            page.paint(g, GraphicsRenderingHints.PRINT, Page.BOUNDARY_CROPBOX,
+                    rotation, zoomFactor * scale, paintAnnotation, paintSearchHighlight);
+            g.dispose();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Printing raster band interrupted");
+            }
+            int rows = Math.min(bandHeight, height - y);
+            printGraphics.drawImage(rows < bandHeight ? band.getSubimage(0, 0, width, rows) : band,
+                    new AffineTransform(1 / scale, 0, 0, 1 / scale, 0, y / scale), null);
+        }
+        band.flush();
+    }
+
+    /**
+     * Gets the initialized page for the print job, waiting for or taking
+     * over its background initialization when it has been prefetched.
+     */
+    private Page getPrintPage(int pageIndex) throws InterruptedException {
+        FutureTask<Page> task;
+        synchronized (printPages) {
+            task = printPages.get(pageIndex);
+            if (task == null) {
+                task = createPrintPageTask(pageTree.getPage(pageIndex));
+                printPages.put(pageIndex, task);
+            }
+        }
+        // does nothing if the pool has already started the task.
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            logger.log(Level.FINE, "Error initializing print page " + pageIndex, e.getCause());
+        } catch (CancellationException e) {
+            logger.finer("Print page initialization cancelled " + pageIndex);
+        }
+        // try again on this thread.
+        synchronized (printPages) {
+            printPages.remove(pageIndex);
+        }
+        Page page = pageTree.getPage(pageIndex);
+        page.init();
+        return page;
+    }
+
+    /**
+     * Queues the initialization of the pages in the print range that follow
+     * the specified page and lets go of the pages before it.
+     */
+    private void prefetchPrintPages(int pageIndex) {
+        PageRanges pageRanges = (PageRanges) printRequestAttributeSet.get(PageRanges.class);
+        synchronized (printPages) {
+            for (Iterator<Map.Entry<Integer, FutureTask<Page>>> iterator =
+                         printPages.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<Integer, FutureTask<Page>> entry = iterator.next();
+                if (entry.getKey() < pageIndex) {
+                    entry.getValue().cancel(true);
+                    iterator.remove();
+                }
+            }
+            // page ranges are one based, next(x) gives the first page after x.
+            int next = pageIndex + 1;
+            for (int i = 0; i < prefetchPages; i++) {
+                next = pageRanges != null ? pageRanges.next(next) : next + 1;
+                if (next < 1 || next > pageTree.getNumberOfPages()) {
+                    break;
+                }
+                if (!printPages.containsKey(next - 1)) {
+                    FutureTask<Page> task = createPrintPageTask(pageTree.getPage(next - 1));
+                    printPages.put(next - 1, task);
+                    Library.execute(task);
+                }
+            }
+        }
+    }
+
+    private FutureTask<Page> createPrintPageTask(final Page page) {
+        return new FutureTask<Page>(new Callable<Page>() {
+            public Page call() throws Exception {
+                page.init();
+                return page;
+            }
+        });
+    }
+
+    /**
+     * Lets go of the pages held for a print job once it's done.
+     */
+    private void releasePrintPages() {
+        synchronized (printPages) {
+            for (FutureTask<Page> task : printPages.values()) {
+                task.cancel(true);
+            }
+            printPages.clear();
+        }
+    }
+
     /**
      * Print a range of pages from the document as specified by #setupPrintService.
      *
@@ -440,11 +594,15 @@ public class PrintHelper implements Printable {
             // calculate total pages being printed
             calculateTotalPagesToPrint();
 
-            printService.createPrintJob().print(
-                    new SimpleDoc(this,
-                            DocFlavor.SERVICE_FORMATTED.PRINTABLE,
-                            null),
-                    printRequestAttributeSet);
+            try {
+                printService.createPrintJob().print(
+                        new SimpleDoc(this,
+                                DocFlavor.SERVICE_FORMATTED.PRINTABLE,
+                                null),
+                        printRequestAttributeSet);
+            } finally {
+                releasePrintPages();
+            }
         } else {
             logger.fine("No print could be found to print to.");
         }
@@ -465,11 +623,15 @@ public class PrintHelper implements Printable {
             calculateTotalPagesToPrint();
 
             DocPrintJob printerJob = printService.createPrintJob();
-            printerJob.print(
-                    new SimpleDoc(this,
-                            DocFlavor.SERVICE_FORMATTED.PRINTABLE,
-                            null),
-                    printRequestAttributeSet);
+            try {
+                printerJob.print(
+                        new SimpleDoc(this,
+                                DocFlavor.SERVICE_FORMATTED.PRINTABLE,
+                                null),
+                        printRequestAttributeSet);
+            } finally {
+                releasePrintPages();
+            }
 
             return (CancelablePrintJob) printerJob;
         } else {
@@ -493,13 +655,17 @@ public class PrintHelper implements Printable {
             DocPrintJob printerJob = printService.createPrintJob();
             printJobWatcher.setPrintJob(printerJob);
 
-            printerJob.print(
-                    new SimpleDoc(this,
-                            DocFlavor.SERVICE_FORMATTED.PRINTABLE,
-                            null),
-                    printRequestAttributeSet);
+            try {
+                printerJob.print(
+                        new SimpleDoc(this,
+                                DocFlavor.SERVICE_FORMATTED.PRINTABLE,
+                                null),
+                        printRequestAttributeSet);
 
-            printJobWatcher.waitForDone();
+                printJobWatcher.waitForDone();
+            } finally {
+                releasePrintPages();
+            }
         } else {
             logger.fine("No print could be found to print to.");
         }
@@ -610,4 +776,26 @@ public class PrintHelper implements Printable {
     public void setPaintSearchHighlight(boolean paintSearchHighlight) {
         this.paintSearchHighlight = paintSearchHighlight;
     }
+
+    /**
+     * Gets the resolution pages are printed at as raster images.
+     *
+     * @return resolution in dots per inch, 0 if pages are printed as vector graphics.
+     */
+    public int getRasterPrintDpi() {
+        return rasterPrintDpi;
+    }
+
+    /**
+     * Prints pages as raster images at the specified resolution rather than
+     * as vector graphics.  Rasters make for a much smaller spool on pages
+     * with lots of content at the expense of print quality.  Pages are
+     * painted in bands so the resolution doesn't change how much memory
+     * printing a page takes.
+     *
+     * @param rasterPrintDpi resolution in dots per inch, 0 to print vector graphics.
+     */
+    public void setRasterPrintDpi(int rasterPrintDpi) {
+        this.rasterPrintDpi = Math.max(0, rasterPrintDpi);
+    }
 }
@@ -19,7 +19,7 @@ import javax.swing.JFrame;
 import org.icepdf.core.SecurityCallback;
 import org.icepdf.core.exceptions.PDFException;
 import org.icepdf.core.exceptions.PDFSecurityException;
-import org.icepdf.core.io.SizeInputStream;
+import org.icepdf.core.io.ProgressiveSeekableInput;
 import org.icepdf.core.pobjects.*;
 import org.icepdf.core.pobjects.actions.Action;
 import org.icepdf.core.pobjects.actions.GoToAction;
@@ -66,7 +66,6 @@ import java.beans.PropertyChangeListener;
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.text.MessageFormat;
 import java.text.NumberFormat;
 import java.util.HashMap;
@@ -1108,7 +1107,7 @@ public class SwingController
         boolean opened = document != null;
         boolean pdfCollection = opened && isPdfCollection();
 
-        int nPages = (getPageTree() != null) ? getPageTree().getNumberOfPages() : 0;
+        int nPages = (document != null) ? document.getNumberOfPages() : 0;
 
         // get security information for printing and text extraction
         boolean canPrint = havePermissionToPrint();
@@ -1246,7 +1245,7 @@ public class SwingController
 
     private void reflectPageChangeInComponents() {
         boolean opened = document != null;
-        int nPages = (getPageTree() != null) ? getPageTree().getNumberOfPages() : 0;
+        int nPages = (document != null) ? document.getNumberOfPages() : 0;
         int currentPage = isCurrentPage() ?
                 documentViewController.getCurrentPageDisplayValue() : 0;
 
@@ -1928,38 +1927,56 @@ public class SwingController
             // load the document
             document = new Document();
             try {
-                // make a connection
-                final URLConnection urlConnection = location.openConnection();
-                final int size = urlConnection.getContentLength();
+                final Document urlDocument = document;
+                // download progress, cancelling closes the download.
+                Object[] messageArguments = {location.toString()};
+                MessageFormat formatter = new MessageFormat(
+                        messageBundle.getString("viewer.dialog.openURL.downloading.msg"));
+                final ProgressMonitor downloadMonitor = new ProgressMonitor(
+                        viewer, formatter.format(messageArguments), "", 0, 100);
+                final Timer downloadTimer = new Timer(500, null);
+                downloadTimer.addActionListener(new ActionListener() {
+                    public void actionPerformed(ActionEvent event) {
+                        ProgressiveSeekableInput download = urlDocument.getProgressiveInput();
+                        if (download == null) {
+                            return;
+                        }
+                        if (downloadMonitor.isCanceled()) {
+                            downloadTimer.stop();
+                            try {
+                                download.close();
+                            } catch (IOException e) {
+                                logger.log(Level.FINE, "Error cancelling download.", e);
+                            }
+                        } else if (download.getExpectedLength() > 0) {
+                            downloadMonitor.setProgress((int)
+                                    (download.getBytesReceived() * 100 / download.getExpectedLength()));
+                        }
+                    }
+                });
                 SwingWorker worker = new SwingWorker() {
                     public Object construct() {
-                        InputStream in = null;
                         try {
-                            // Create ProgressMonitorInputStream
-                            Object[] messageArguments = {location.toString()};
-                            MessageFormat formatter = new MessageFormat(
-                                    messageBundle.getString("viewer.dialog.openURL.downloading.msg"));
-                            ProgressMonitorInputStream progressMonitorInputStream =
-                                    new ProgressMonitorInputStream(
-                                            viewer,
-                                            formatter.format(messageArguments),
-                                            new SizeInputStream(urlConnection.getInputStream(), size));
-                            // Create a stream on the URL connection
-                            in = new BufferedInputStream(progressMonitorInputStream);
-                            String pathOrURL = location.toString();
-                            document.setInputStream(in, pathOrURL);
+                            // a linearized document opens with its first page while the rest downloads.
+                            urlDocument.setUrl(location);
                             // create default security callback is user has not created one
-                            setupSecurityHandler(document, documentViewController.getSecurityCallback());
+                            setupSecurityHandler(urlDocument, documentViewController.getSecurityCallback());
+                            if (!urlDocument.isPageTreeLoaded()) {
+                                // show the first page, the view is set up again once the page tree is read.
+                                documentViewController.setDocument(urlDocument);
+                                urlDocument.getPageTree();
+                                if (document != urlDocument) {
+                                    // closed while downloading.
+                                    return null;
+                                }
+                                if (downloadMonitor.isCanceled()) {
+                                    closeDocument();
+                                    return null;
+                                }
+                            }
                             commonNewDocumentHandling(location.getPath());
                             setDisplayTool(DocumentViewModelImpl.DISPLAY_TOOL_PAN);
                         } catch (IOException ex) {
-                            if (in != null) {
-                                try {
-                                    in.close();
-                                } catch (IOException e) {
-                                    logger.log(Level.FINE, "Error opening document.", e);
-                                }
-                            }
                             closeDocument();
                             document = null;
                         } catch (PDFException e) {
@@ -1995,8 +2012,14 @@ public class SwingController
                         }
                         return null;
                     }
+
+                    public void finished() {
+                        downloadTimer.stop();
+                        downloadMonitor.close();
+                    }
                 };
                 worker.start();
+                downloadTimer.start();
 
             } catch (Exception e) {
                 org.icepdf.ri.util.Resources.showMessageDialog(
@@ -2454,6 +2477,9 @@ public class SwingController
 
         // free the document
         if (document != null) {
+            if (document.getLibrary() != null) {
+                PageBufferCache.getInstance().remove(document.getLibrary());
+            }
             document.dispose();
             document = null;
         }
@@ -2745,9 +2771,9 @@ public class SwingController
                     //  but that could cause problems with slow network links too,
                     //  and would complicate the incremental update code, so we're
                     //  harmonising on this approach.
+                    // the document copies itself straight in to the file's
+                    // channel and buffers the update, so no buffered stream.
                     FileOutputStream fileOutputStream = new FileOutputStream(file);
-                    BufferedOutputStream buf = new BufferedOutputStream(
-                            fileOutputStream, 4096 * 2);
 
                     // We want 'save as' or 'save a copy to always occur
                     if (document.getStateManager().isChanged() &&
@@ -2761,15 +2787,13 @@ public class SwingController
                     } else {
                         if (!document.getStateManager().isChanged()) {
                             // save as copy
-                            document.writeToOutputStream(buf);
+                            document.writeToOutputStream(fileOutputStream);
                         } else {
                             // save as will append changes.
-                            document.saveToOutputStream(buf);
+                            document.saveToOutputStream(fileOutputStream);
                         }
                     }
-                    buf.flush();
                     fileOutputStream.flush();
-                    buf.close();
                     fileOutputStream.close();
                 } catch (MalformedURLException e) {
                     logger.log(Level.FINE, "Malformed URL Exception ", e);
@@ -3449,10 +3473,13 @@ public class SwingController
      * @return true if their is a current page, otherwise false.
      */
     public boolean isCurrentPage() {
-        PageTree pageTree = getPageTree();
-        if (pageTree == null)
+        if (document == null)
             return false;
-        Page page = pageTree.getPage(documentViewController.getCurrentPageIndex());
+        int pageIndex = documentViewController.getCurrentPageIndex();
+        // pages of a downloading document are counted rather than read.
+        if (!document.isPageAvailable(pageIndex))
+            return pageIndex >= 0 && pageIndex < document.getNumberOfPages();
+        Page page = document.getPage(pageIndex);
         return page != null;
     }
 
@@ -3475,7 +3502,7 @@ public class SwingController
      * @see org.icepdf.ri.common.views.DocumentViewControllerImpl#setCurrentPageIndex
      */
     public void showPage(int nPage) {
-        if (nPage >= 0 && nPage < getPageTree().getNumberOfPages()) {
+        if (nPage >= 0 && nPage < document.getNumberOfPages()) {
             documentViewController.setCurrentPageIndex(nPage);
             updateDocumentView();
         }
@@ -3493,7 +3520,7 @@ public class SwingController
     public void goToDeltaPage(int delta) {
         int currPage = documentViewController.getCurrentPageIndex();
         int nPage = currPage + delta;
-        int totalPages = getPageTree().getNumberOfPages();
+        int totalPages = document.getNumberOfPages();
         if (totalPages == 0)
             return;
         if (nPage >= totalPages)
@@ -3517,14 +3544,12 @@ public class SwingController
             reflectPageChangeInComponents();
 
 
-            PageTree pageTree = getPageTree();
-
             if (currentPageNumberTextField != null)
                 currentPageNumberTextField.setText(Integer.toString(documentViewController.getCurrentPageDisplayValue()));
             if (numberOfPagesLabel != null) {
 
-                if (pageTree != null) {
-                    Object[] messageArguments = new Object[]{String.valueOf(pageTree.getNumberOfPages())};
+                if (document != null) {
+                    Object[] messageArguments = new Object[]{String.valueOf(document.getNumberOfPages())};
                     MessageFormat formatter =
                             new MessageFormat(
                                     messageBundle.getString("viewer.toolbar.pageIndicator"));
@@ -3535,11 +3560,11 @@ public class SwingController
             }
 
             if (statusLabel != null) {
-                if (pageTree != null) {
+                if (document != null) {
                     // progress bar for printing
                     Object[] messageArguments = new Object[]{
                             String.valueOf(documentViewController.getCurrentPageDisplayValue()),
-                            String.valueOf(pageTree.getNumberOfPages())
+                            String.valueOf(document.getNumberOfPages())
                     };
                     MessageFormat formatter = new MessageFormat(
                             messageBundle.getString("viewer.statusbar.currentPage"));
@@ -19,6 +19,7 @@ import org.icepdf.core.pobjects.Page;
 import org.icepdf.core.pobjects.graphics.text.GlyphText;
 import org.icepdf.core.pobjects.graphics.text.LineText;
 import org.icepdf.core.pobjects.graphics.text.PageText;
+import org.icepdf.core.pobjects.graphics.text.PageTextIndex;
 import org.icepdf.core.pobjects.graphics.text.WordText;
 import org.icepdf.core.util.Defs;
 import org.icepdf.core.util.PropertyConstants;
@@ -30,6 +31,7 @@ import org.icepdf.ri.common.views.PageViewComponentImpl;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
@@ -57,6 +59,11 @@ public class TextSelection extends SelectionBoxHandler {
     private GlyphLocation lastGlyphStartLocation;
     private GlyphLocation lastGlyphEndLocation;
 
+    // lines selected by the last drag, only those have to be cleared on the next one.
+    private ArrayList<LineText> selectedPageLines;
+    private int selectedFromLine = -1;
+    private int selectedToLine = -1;
+
     // todo configurable system property to switch to rightToLeft.
     private boolean leftToRight = true;
 
@@ -148,9 +155,11 @@ public class TextSelection extends SelectionBoxHandler {
 
                 ArrayList<LineText> pageLines = pageText.getPageLines();
                 Point2D.Float dragStartLocation = convertMouseToPageSpace(startPoint, pageTransform);
-                glyphStartLocation = GlyphLocation.findGlyphLocation(pageLines, dragStartLocation, true, false, null,
-                        topMarginExclusion, bottomMarginExclusion);
+                glyphStartLocation = GlyphLocation.findGlyphLocation(pageLines, pageText.getTextIndex(),
+                        dragStartLocation, true, false, null, topMarginExclusion, bottomMarginExclusion);
                 glyphEndLocation = null;
+                // text selected before this selection could be anywhere on the page.
+                selectedPageLines = null;
             }
 
             // text selection box.
@@ -208,11 +217,13 @@ public class TextSelection extends SelectionBoxHandler {
         glyphStartLocation = null;
         glyphEndLocation = null;
 
+        selectedPageLines = null;
+
         selectedCount = 0;
     }
 
     public void clearSelectionState() {
-        java.util.List<AbstractPageViewComponent> pages = documentViewModel.getPageComponents();
+        java.util.List<AbstractPageViewComponent> pages = documentViewModel.getActivePageComponents();
         for (AbstractPageViewComponent page : pages) {
             ((PageViewComponentImpl)page).getTextSelectionPageHandler().clearSelection();
         }
@@ -265,7 +276,9 @@ public class TextSelection extends SelectionBoxHandler {
                         Point2D.Float pageMouseLocation =
                                 convertMouseToPageSpace(mouseLocation, pageTransform);
 
-                        for (LineText pageLine : pageLines) {
+                        // only the lines near the mouse can contain it.
+                        for (int lineIndex : pageText.getTextIndex().findLines(pageMouseLocation)) {
+                            LineText pageLine = pageLines.get(lineIndex);
                             // check for containment, if so break into words.
                             if (pageLine.getBounds().contains(pageMouseLocation)
                                     && ((topMarginExclusion == null || bottomMarginExclusion == null)
@@ -334,7 +347,23 @@ public class TextSelection extends SelectionBoxHandler {
                 GeneralPath textPath;
                 ArrayList<LineText> visiblePageLines = pageText.getPageLines();
                 if (visiblePageLines != null) {
-                    for (LineText lineText : visiblePageLines) {
+                    // only the lines that can paint in to the clip.
+                    int[] lineIndexes = null;
+                    Rectangle clip = gg.getClipBounds();
+                    if (clip != null) {
+                        clip.grow(2, 2);
+                        try {
+                            Rectangle2D pageClip = pageTransform.createInverse()
+                                    .createTransformedShape(clip).getBounds2D();
+                            lineIndexes = pageText.getTextIndex().findLines(pageClip);
+                        } catch (NoninvertibleTransformException e) {
+                            logger.log(Level.FINE, "Error converting clip to page space.", e);
+                        }
+                    }
+                    int max = lineIndexes != null ? lineIndexes.length : visiblePageLines.size();
+                    LineText lineText;
+                    for (int i = 0; i < max; i++) {
+                        lineText = visiblePageLines.get(lineIndexes != null ? lineIndexes[i] : i);
                         for (WordText wordText : lineText.getWords()) {
                             // paint whole word
                             if (wordText.isSelected() || wordText.isHighlighted()) {
@@ -446,8 +475,19 @@ public class TextSelection extends SelectionBoxHandler {
             PageText pageText = currentPage.getViewText();
             if (pageText != null) {
 
-                // clear the currently selected state, ignore highlighted.
-                pageText.clearSelected();
+                ArrayList<LineText> pageLines = pageText.getPageLines();
+                PageTextIndex textIndex = pageText.getTextIndex();
+
+                // clear the currently selected state, ignore highlighted.  Only the
+                // lines of the last drag need clearing unless the text was sorted since.
+                if (selectedPageLines != null && selectedPageLines == pageLines) {
+                    pageText.clearSelected(selectedFromLine, selectedToLine);
+                } else {
+                    pageText.clearSelected();
+                }
+                selectedPageLines = pageLines;
+                selectedFromLine = -1;
+                selectedToLine = -1;
 
                 // get page transform, same for all calculations
                 AffineTransform pageTransform = currentPage.getPageTransform(
@@ -455,8 +495,6 @@ public class TextSelection extends SelectionBoxHandler {
                         documentViewModel.getViewRotation(),
                         documentViewModel.getViewZoom());
 
-                ArrayList<LineText> pageLines = pageText.getPageLines();
-
                 // create exclusion boxes
                 calculateTextSelectionExclusion(pageTransform);
 
@@ -474,8 +512,8 @@ public class TextSelection extends SelectionBoxHandler {
                     }
                 } else if (glyphStartLocation != null) {
                     // should already have start but no end.
-                    glyphEndLocation = GlyphLocation.findGlyphLocation(pageLines, draggingMouseLocation, isDown, isLocalDown,
-                            lastGlyphEndLocation, topMarginExclusion, bottomMarginExclusion);
+                    glyphEndLocation = GlyphLocation.findGlyphLocation(pageLines, textIndex, draggingMouseLocation,
+                            isDown, isLocalDown, lastGlyphEndLocation, topMarginExclusion, bottomMarginExclusion);
                 }
 
                 // normal page selection,  fill in the the highlight between start and end.
@@ -484,17 +522,28 @@ public class TextSelection extends SelectionBoxHandler {
                             isDown, isLocalDown, isMovingRight, topMarginExclusion, bottomMarginExclusion);
                     lastGlyphStartLocation = glyphStartLocation;
                     lastGlyphEndLocation = glyphEndLocation;
+                    setSelectedLines(glyphStartLocation, glyphEndLocation);
                 }
                 // check if last draw are still around and draw them.
                 else if (lastGlyphStartLocation != null && lastGlyphEndLocation != null) {
                     selectedCount = GlyphLocation.highLightGlyphs(pageLines, lastGlyphStartLocation, lastGlyphEndLocation, leftToRight,
                             isDown, isLocalDown, isMovingRight, topMarginExclusion, bottomMarginExclusion);
+                    setSelectedLines(lastGlyphStartLocation, lastGlyphEndLocation);
                 }
             }
             pageViewComponent.repaint();
         }
     }
 
+    /**
+     * Records the lines between the two locations as the ones the last drag
+     * selected text on.
+     */
+    private void setSelectedLines(GlyphLocation start, GlyphLocation end) {
+        selectedFromLine = Math.min(start.getLine(), end.getLine());
+        selectedToLine = Math.max(start.getLine(), end.getLine());
+    }
+
     /**
      * Utility for selecting multiple lines via rectangle like tool. The
      * selection works based on the intersection of the rectangle and glyph
@@ -514,6 +563,7 @@ public class TextSelection extends SelectionBoxHandler {
 
                 // clear the currently selected state, ignore highlighted.
                 pageText.clearSelected();
+                selectedPageLines = null;
 
                 // get page transform, same for all calculations
                 AffineTransform pageTransform = currentPage.getPageTransform(
@@ -525,7 +575,8 @@ public class TextSelection extends SelectionBoxHandler {
                         convertMouseToPageSpace(mouseLocation, pageTransform);
                 ArrayList<LineText> pageLines = pageText.getPageLines();
                 if (pageLines != null) {
-                    for (LineText pageLine : pageLines) {
+                    for (int lineIndex : pageText.getTextIndex().findLines(pageMouseLocation)) {
+                        LineText pageLine = pageLines.get(lineIndex);
                         // check for containment, if so break into words.
                         if (pageLine.getBounds().contains(pageMouseLocation)) {
                             pageLine.setHasSelected(true);
@@ -565,6 +616,7 @@ public class TextSelection extends SelectionBoxHandler {
 
                 // clear the currently selected state, ignore highlighted.
                 pageText.clearSelected();
+                selectedPageLines = null;
 
                 // get page transform, same for all calculations
                 AffineTransform pageTransform = currentPage.getPageTransform(
@@ -576,7 +628,8 @@ public class TextSelection extends SelectionBoxHandler {
                         convertMouseToPageSpace(mouseLocation, pageTransform);
                 ArrayList<LineText> pageLines = pageText.getPageLines();
                 if (pageLines != null) {
-                    for (LineText pageLine : pageLines) {
+                    for (int lineIndex : pageText.getTextIndex().findLines(pageMouseLocation)) {
+                        LineText pageLine = pageLines.get(lineIndex);
                         // check for containment, if so break into words.
                         if (pageLine.getBounds().contains(pageMouseLocation)) {
                             pageLine.selectAll();
@@ -639,6 +692,10 @@ class GlyphLocation {
         this.glyph = glyphLocation.glyph;
     }
 
+    public int getLine() {
+        return line;
+    }
+
     @Override
     public String toString() {
         return "GlyphLocation{" +
@@ -703,13 +760,14 @@ class GlyphLocation {
         return true;
     }
 
-    public static GlyphLocation findGlyphLocation(ArrayList<LineText> pageLines, Point2D.Float cursorLocation,
+    public static GlyphLocation findGlyphLocation(ArrayList<LineText> pageLines, PageTextIndex textIndex,
+                                                  Point2D.Float cursorLocation,
                                                   boolean isDown, boolean isLocalDown, GlyphLocation lastGlyphEndLocation,
                                                   Shape topMarginExclusion, Shape bottomMarginExclusion) {
         if (pageLines != null) {
             // check for a direct intersection.
-            GlyphLocation glyphLocation =
-                    findGlyphIntersection(pageLines, cursorLocation, topMarginExclusion, bottomMarginExclusion);
+            GlyphLocation glyphLocation = findGlyphIntersection(pageLines, textIndex, cursorLocation,
+                    topMarginExclusion, bottomMarginExclusion);
             if (glyphLocation != null) return glyphLocation;
 
             // check mouse location against y-coordinate of a line  and grab the last line
@@ -770,11 +828,12 @@ class GlyphLocation {
         return null;
     }
 
-    public static GlyphLocation findGlyphIntersection(ArrayList<LineText> pageLines, Point2D.Float cursorLocation,
+    public static GlyphLocation findGlyphIntersection(ArrayList<LineText> pageLines, PageTextIndex textIndex,
+                                                      Point2D.Float cursorLocation,
                                                       Shape topMarginExclusion, Shape bottomMarginExclusion) {
         LineText pageLine;
-        // check for a direct intersection.
-        for (int lineIndex = 0, lineMax = pageLines.size(); lineIndex < lineMax; lineIndex++) {
+        // check for a direct intersection, only the lines near the cursor can have one.
+        for (int lineIndex : textIndex.findLines(cursorLocation)) {
             pageLine = pageLines.get(lineIndex);
             if (pageLine.intersects(cursorLocation) && isLineTextIncluded(pageLine, topMarginExclusion, bottomMarginExclusion)) {
                 java.util.List<WordText> lineWords = pageLines.get(lineIndex).getWords();
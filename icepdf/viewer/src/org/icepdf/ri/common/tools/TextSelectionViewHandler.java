@@ -156,7 +156,7 @@ public class TextSelectionViewHandler extends TextSelection
             // add selection box to child pages
             if (documentViewModel != null) {
                 java.util.List<AbstractPageViewComponent> pages =
-                        documentViewModel.getPageComponents();
+                        documentViewModel.getActivePageComponents();
                 for (AbstractPageViewComponent page : pages) {
                     Rectangle tmp = SwingUtilities.convertRectangle(
                             parentComponent, getRectToDraw(), page);
@@ -57,7 +57,7 @@ public class ZoomInViewHandler extends SelectionBoxHandler implements ToolHandle
             // add selection box to child pages
             if (documentViewModel != null) {
                 java.util.List<AbstractPageViewComponent> pages =
-                        documentViewModel.getPageComponents();
+                        documentViewModel.getActivePageComponents();
                 for (AbstractPageViewComponent page : pages) {
                     Rectangle tmp = SwingUtilities.convertRectangle(
                             parentComponent, getRectToDraw(), page);
@@ -124,7 +124,7 @@ public class ZoomInViewHandler extends SelectionBoxHandler implements ToolHandle
             // deselect rectangles on other selected pages.
             // consider only repainting visible pages.
             List<AbstractPageViewComponent> selectedPages =
-                    documentViewModel.getPageComponents();
+                    documentViewModel.getActivePageComponents();
             if (selectedPages != null &&
                     selectedPages.size() > 0) {
                 for (AbstractPageViewComponent pageComp : selectedPages) {
@@ -164,8 +164,8 @@ public class LayersPanel extends JPanel {
                 boolean isSelected = !(node.isSelected());
                 node.setSelected(isSelected);
                 // the current page and repaint
-                List<AbstractPageViewComponent> pages = documentViewModel.getPageComponents();
-                AbstractPageViewComponent page = pages.get(documentViewModel.getViewCurrentPageIndex());
+                AbstractPageViewComponent page =
+                        documentViewModel.getPageComponent(documentViewModel.getViewCurrentPageIndex());
                 // resort page text as layer visibility will have changed.
                 try {
                     page.getPage().getText().sortAndFormatText();
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.ri.common.utility.thumbs;
+
+import org.icepdf.core.pobjects.Document;
+import org.icepdf.core.pobjects.PTrailer;
+import org.icepdf.core.pobjects.StringObject;
+import org.icepdf.core.util.Defs;
+import org.icepdf.core.util.Library;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the thumbnails rendered for a document on disk so they don't have to
+ * be rendered again the next time the document is opened.  Each document gets
+ * its own folder named after a digest of the document's location, its file
+ * size and modification time and its trailer ID, so an edited document never
+ * shows the thumbnails of its previous version.  Thumbnails are stored as PNG
+ * files named after their page index and are only used when their size
+ * matches the size asked for.
+ * <p/>
+ * The cache is off by default as the thumbnails are pictures of the pages'
+ * content, written unencrypted to disk where they outlive the document and
+ * can be read by anyone who can read the cache folder.  Documents that are
+ * encrypted are never cached.  The cache is turned on with the system
+ * property org.icepdf.core.views.thumbnails.cache=true and its location set
+ * with org.icepdf.core.views.thumbnails.cache.dir, by default the thumbnails
+ * folder of the viewer's .icesoft/icepdf_viewer folder in the user's home.
+ * <p/>
+ * The cache is kept to org.icepdf.core.views.thumbnails.cache.maxSize
+ * megabytes, default 64.  Each time a document is opened its folder is
+ * marked as used and, in the background, the folders of the least recently
+ * used documents are deleted until the others fit the budget.
+ *
+ * @since 6.2
+ */
+public class ThumbnailCache {
+
+    private static final Logger logger =
+            Logger.getLogger(ThumbnailCache.class.toString());
+
+    private static boolean enabled;
+    private static File cacheDir;
+    private static long maxSize;
+
+    static {
+        enabled = Defs.booleanProperty("org.icepdf.core.views.thumbnails.cache", false);
+        String dir = Defs.sysProperty("org.icepdf.core.views.thumbnails.cache.dir");
+        if (dir != null) {
+            cacheDir = new File(dir);
+        } else {
+            cacheDir = new File(Defs.sysProperty("user.home"),
+                    ".icesoft/icepdf_viewer/thumbnails");
+        }
+        maxSize = Defs.intProperty("org.icepdf.core.views.thumbnails.cache.maxSize", 64) * 1024L * 1024L;
+    }
+
+    private File documentDir;
+
+    private ThumbnailCache(File documentDir) {
+        this.documentDir = documentDir;
+    }
+
+    /**
+     * Gets the thumbnail cache of the given document.
+     *
+     * @param document document to cache thumbnails for.
+     * @return thumbnail cache, null if caching is turned off, the document is
+     * encrypted or it can't be told apart from other documents.
+     */
+    public static ThumbnailCache getInstance(Document document) {
+        if (!enabled || document == null || document.getSecurityManager() != null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        String location = document.getDocumentLocation();
+        if (location != null) {
+            key.append(location);
+            File file = new File(location);
+            if (file.isFile()) {
+                key.append('|').append(file.length()).append('|').append(file.lastModified());
+            }
+        }
+        PTrailer trailer = document.getStateManager() != null ?
+                document.getStateManager().getTrailer() : null;
+        List<?> id = trailer != null ? trailer.getID() : null;
+        if (id != null) {
+            for (Object part : id) {
+                if (part instanceof StringObject) {
+                    key.append('|').append(((StringObject) part).getHexString());
+                }
+            }
+        }
+        if (location == null && id == null) {
+            return null;
+        }
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            byte[] digest = md5.digest(key.toString().getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16));
+                name.append(Character.forDigit(b & 0xF, 16));
+            }
+            final File documentDir = new File(cacheDir, name.toString());
+            if (documentDir.isDirectory()) {
+                documentDir.setLastModified(System.currentTimeMillis());
+            }
+            Library.execute(new Runnable() {
+                public void run() {
+                    trim(documentDir);
+                }
+            });
+            return new ThumbnailCache(documentDir);
+        } catch (NoSuchAlgorithmException e) {
+            logger.log(Level.FINE, "Thumbnail cache disabled.", e);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Thumbnail cache disabled.", e);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the cached thumbnail of a page.
+     *
+     * @param pageIndex zero based page index.
+     * @param width     expected thumbnail width.
+     * @param height    expected thumbnail height.
+     * @return thumbnail image, null if there is no thumbnail of that size.
+     */
+    public BufferedImage get(int pageIndex, int width, int height) {
+        File file = new File(documentDir, pageIndex + ".png");
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            BufferedImage image = ImageIO.read(file);
+            if (image != null && image.getWidth() == width && image.getHeight() == height) {
+                return image;
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error reading cached thumbnail " + file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Stores the thumbnail of a page.  The thumbnail is written to a temporary
+     * file first so other viewers never read a partly written thumbnail.
+     *
+     * @param pageIndex zero based page index.
+     * @param image     thumbnail image.
+     */
+    public void put(int pageIndex, BufferedImage image) {
+        if (!documentDir.isDirectory() && !documentDir.mkdirs()) {
+            return;
+        }
+        File file = new File(documentDir, pageIndex + ".png");
+        try {
+            File tmp = File.createTempFile("thumb", ".tmp", documentDir);
+            if (ImageIO.write(image, "png", tmp)) {
+                file.delete();
+                if (tmp.renameTo(file)) {
+                    return;
+                }
+            }
+            tmp.delete();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error writing cached thumbnail " + file, e);
+        }
+    }
+
+    /**
+     * Deletes the folders of the least recently used documents until the
+     * cache fits its budget, the folder of the open document is kept.
+     *
+     * @param documentDir folder of the document that was just opened.
+     */
+    private static void trim(File documentDir) {
+        File[] dirs = cacheDir.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        // most recently used first.
+        Arrays.sort(dirs, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long aTime = a.lastModified();
+                long bTime = b.lastModified();
+                return aTime > bTime ? -1 : aTime < bTime ? 1 : 0;
+            }
+        });
+        long size = getSize(documentDir);
+        for (File dir : dirs) {
+            // only ever touch document folders, the cache folder is configurable.
+            if (!dir.isDirectory() || dir.equals(documentDir) || !isDocumentDir(dir)) {
+                continue;
+            }
+            size += getSize(dir);
+            if (size > maxSize) {
+                delete(dir);
+            }
+        }
+    }
+
+    private static boolean isDocumentDir(File dir) {
+        String name = dir.getName();
+        if (name.length() != 32) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.digit(name.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long getSize(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        if (!dir.delete() && logger.isLoggable(Level.FINE)) {
+            logger.fine("Could not delete thumbnail cache " + dir);
+        }
+    }
+}
@@ -22,7 +22,7 @@ import org.icepdf.ri.common.PageThumbnailComponent;
 import org.icepdf.ri.common.SwingController;
 import org.icepdf.ri.common.views.DocumentViewController;
 import org.icepdf.ri.common.views.DocumentViewModel;
-import org.icepdf.ri.common.views.ModifiedFlowLayout;
+import org.icepdf.ri.common.views.PageViewGridLayout;
 import org.icepdf.ri.util.PropertiesManager;
 
 import javax.swing.*;
@@ -31,11 +31,13 @@ import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.AdjustmentEvent;
 import java.awt.event.AdjustmentListener;
+import java.util.BitSet;
 
 /**
  * The ThumbnailsPanel class is responsible for showing a document preview
  * of all pages in a document.  This panel is show as a tab in the utility
- * panel of the Viewer RI.
+ * panel of the Viewer RI.  Thumbnail components are only built for the pages
+ * in or near the visible part of the panel.
  *
  * @since 4.3
  */
@@ -48,10 +50,17 @@ public class ThumbnailsPanel extends JPanel {
     protected DocumentViewModel documentViewModel;
     protected float thumbNailZoom = 0.1f; // default zoom is 10%
 
-    protected static final int MAX_PAGE_SIZE_READ_AHEAD = 10;
+    // thumbnail spacing, same as the flow layout that used to be used.
+    protected static final int THUMBNAIL_GAP = 5;
 
     private SwingController controller;
 
+    // thumbnails by page index and the pages that currently have one.
+    private PageThumbnailComponent[] pageThumbnails;
+    private BitSet activeThumbnails;
+    // thumbnails rendered for the current document, kept on disk.
+    private ThumbnailCache thumbnailCache;
+
     public ThumbnailsPanel(SwingController controller,
                            PropertiesManager propertiesManager) {
         this.controller = controller;
@@ -66,25 +75,33 @@ public class ThumbnailsPanel extends JPanel {
     public void setDocument(Document document) {
         this.currentDocument = document;
         documentViewController = controller.getDocumentViewController();
+        documentViewModel = documentViewController.getDocumentViewModel();
 
         if (document != null) {
             buildUI();
         } else {
             // tear down the old container.
             this.removeAll();
+            releaseThumbnails(0, -1);
         }
     }
 
     public void dispose() {
         this.removeAll();
+        releaseThumbnails(0, -1);
     }
 
     private void buildUI() {
 
-        final ModifiedFlowLayout layout = new ModifiedFlowLayout();
-        final JPanel pageThumbsPanel = new JPanel(layout);
+        releaseThumbnails(0, -1);
+        int numberOfPages = currentDocument.getNumberOfPages();
+        thumbnailCache = ThumbnailCache.getInstance(currentDocument);
+        pageThumbnails = new PageThumbnailComponent[numberOfPages];
+        activeThumbnails = new BitSet(numberOfPages);
+
+        final JPanel pageThumbsPanel = new JPanel();
         this.setLayout(new BorderLayout());
-        JScrollPane scrollPane = new JScrollPane(pageThumbsPanel,
+        final JScrollPane scrollPane = new JScrollPane(pageThumbsPanel,
                 JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
                 JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
         scrollPane.getVerticalScrollBar().setUnitIncrement(20);
@@ -92,11 +109,37 @@ public class ThumbnailsPanel extends JPanel {
         this.add(scrollPane,
                 BorderLayout.CENTER);
 
+        // thumbnails are laid out in rows that fill the width of the panel,
+        // components are only built for the rows in and around the view.
+        final PageViewGridLayout layout = new PageViewGridLayout(
+                documentViewModel, 0, 0, THUMBNAIL_GAP, THUMBNAIL_GAP) {
+            protected Dimension getCellSize() {
+                return documentViewModel.getMaxPageSize(0, thumbNailZoom);
+            }
+
+            protected Component buildPageComponent(int pageIndex) {
+                return getThumbnail(scrollPane, pageIndex);
+            }
+
+            protected void releasePageComponents(int firstPage, int lastPage) {
+                releaseThumbnails(firstPage, lastPage);
+            }
+        };
+        pageThumbsPanel.setLayout(layout);
+        pageThumbsPanel.setBorder(BorderFactory.createEmptyBorder(
+                THUMBNAIL_GAP, THUMBNAIL_GAP, THUMBNAIL_GAP, THUMBNAIL_GAP));
+
         scrollPane.getViewport().addChangeListener(new ChangeListener() {
+            private int width = -1;
+
             public void stateChanged(ChangeEvent e) {
                 JViewport tmp = (JViewport) e.getSource();
-                Dimension dim = layout.computeSize(tmp.getWidth(), pageThumbsPanel);
-                pageThumbsPanel.setPreferredSize(dim);
+                // the number of thumbnails in a row depends on the width.
+                if (tmp.getWidth() != width) {
+                    width = tmp.getWidth();
+                    pageThumbsPanel.revalidate();
+                }
+                layout.updatePageWindow(pageThumbsPanel);
             }
         });
 
@@ -109,40 +152,43 @@ public class ThumbnailsPanel extends JPanel {
                     }
                 });
 
-        // load the page components into the layout
-        PageThumbnailComponent pageThumbnailComponent = null;
-        PageTree pageTree = currentDocument.getPageTree();
-        int numberOfPages = currentDocument.getNumberOfPages();
-        int avgPageWidth = 0;
-        int avgPageHeight = 0;
-
-        // add components for every page in the document
-        for (int i = 0; i < numberOfPages; i++) {
-            // also a way to pass in an average document size.
-            if (i < MAX_PAGE_SIZE_READ_AHEAD) {
-                pageThumbnailComponent =
-                        new PageThumbnailComponent(
-                                controller, scrollPane, pageTree, i, thumbNailZoom);
-                avgPageWidth += pageThumbnailComponent.getPreferredSize().width;
-                avgPageHeight += pageThumbnailComponent.getPreferredSize().height;
-            } else if (i > MAX_PAGE_SIZE_READ_AHEAD) {
-                pageThumbnailComponent =
-                        new PageThumbnailComponent(controller, scrollPane, pageTree, i,
-                                avgPageWidth, avgPageHeight, thumbNailZoom);
-            }
-            // calculate average page size
-            else if (i == MAX_PAGE_SIZE_READ_AHEAD) {
-                avgPageWidth /= (MAX_PAGE_SIZE_READ_AHEAD);
-                avgPageHeight /= (MAX_PAGE_SIZE_READ_AHEAD);
-                pageThumbnailComponent =
-                        new PageThumbnailComponent(controller, scrollPane, pageTree, i,
-                                avgPageWidth, avgPageHeight, thumbNailZoom);
-            }
-            pageThumbsPanel.add(pageThumbnailComponent);
-        }
-
+        layout.updatePageWindow(pageThumbsPanel);
         pageThumbsPanel.revalidate();
         scrollPane.validate();
 
     }
+
+    /**
+     * Gets the thumbnail for the specified page, building it if needed.
+     */
+    private PageThumbnailComponent getThumbnail(JScrollPane scrollPane, int pageIndex) {
+        PageThumbnailComponent pageThumbnailComponent = pageThumbnails[pageIndex];
+        if (pageThumbnailComponent == null) {
+            PageTree pageTree = currentDocument.getPageTree();
+            Dimension size = documentViewModel.getPageSize(pageIndex, 0, thumbNailZoom);
+            pageThumbnailComponent =
+                    new PageThumbnailComponent(controller, scrollPane, pageTree, pageIndex,
+                            size.width, size.height, thumbNailZoom);
+            pageThumbnailComponent.setThumbnailCache(thumbnailCache);
+            pageThumbnails[pageIndex] = pageThumbnailComponent;
+            activeThumbnails.set(pageIndex);
+        }
+        return pageThumbnailComponent;
+    }
+
+    /**
+     * Disposes of the thumbnails outside of the given page range.
+     */
+    private void releaseThumbnails(int firstPage, int lastPage) {
+        if (pageThumbnails == null) {
+            return;
+        }
+        for (int i = activeThumbnails.nextSetBit(0); i >= 0; i = activeThumbnails.nextSetBit(i + 1)) {
+            if (i < firstPage || i > lastPage) {
+                pageThumbnails[i].dispose();
+                pageThumbnails[i] = null;
+                activeThumbnails.clear(i);
+            }
+        }
+    }
 }
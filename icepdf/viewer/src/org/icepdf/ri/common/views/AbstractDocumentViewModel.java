@@ -17,13 +17,17 @@ package org.icepdf.ri.common.views;
 
 import org.icepdf.core.Memento;
 import org.icepdf.core.pobjects.Document;
+import org.icepdf.core.pobjects.PDimension;
 import org.icepdf.core.pobjects.Page;
 import org.icepdf.core.pobjects.PageTree;
 import org.icepdf.ri.common.UndoCaretaker;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
@@ -35,6 +39,14 @@ import java.util.logging.Logger;
  * PageViewComponents who's state is update as the model changes.  The
  * AbstractDocumentViewModel can be swapped into different page views quickly
  * and efficiently.</p>
+ * <p/>
+ * <p>Page components can be built on demand, see
+ * {@link #initPageComponents(JScrollPane)}, in which case only the pages that
+ * are in or near the view have a component and the model keeps the size of
+ * every page in point arrays so views can be laid out without them.  Pages are
+ * measured the first time their size is needed, pages that haven't been
+ * measured yet are given the average size of the first few pages of the
+ * document.</p>
  *
  * @see org.icepdf.ri.common.views.DocumentViewModelImpl
  * @since 2.5
@@ -68,10 +80,29 @@ public abstract class AbstractDocumentViewModel implements DocumentViewModel {
     // the rest of the page sizes will be figured out later.
     protected static final int MAX_PAGE_SIZE_READ_AHEAD = 10;
 
+    // page components by page index when built on demand, null otherwise.
+    protected AbstractPageViewComponent[] pageViewComponents;
+    // indexes of the pages that currently have a component.
+    protected BitSet activePages;
+    // scroll pane passed to page components built on demand.
+    protected JScrollPane parentScrollPane;
+
+    // page size in points at a zoom of one and no user rotation, zero when
+    // the page hasn't been measured yet.
+    protected float[] pageWidths;
+    protected float[] pageHeights;
+    // size used for pages that haven't been measured.
+    protected float averagePageWidth, averagePageHeight;
+    protected float maxPageWidth, maxPageHeight;
+
     public AbstractDocumentViewModel(Document currentDocument) {
         this.currentDocument = currentDocument;
         // create new instance of the undoCaretaker
         undoCaretaker = new UndoCaretaker();
+        // page geometry, filled in as pages are measured.
+        int numberOfPages = currentDocument.getNumberOfPages();
+        pageWidths = new float[numberOfPages];
+        pageHeights = new float[numberOfPages];
     }
 
     protected abstract AbstractPageViewComponent buildPageViewComponent(DocumentViewModel documentViewModel,
@@ -87,6 +118,154 @@ public abstract class AbstractDocumentViewModel implements DocumentViewModel {
         return pageComponents;
     }
 
+    /**
+     * Sets up the model to build page components on demand.  The page
+     * components list is replaced by a list that builds the components as they
+     * are fetched and the first few pages are measured to give the size of the
+     * pages that haven't been measured yet.
+     *
+     * @param parentScrollPane scroll pane the page components are shown in.
+     */
+    protected void initPageComponents(JScrollPane parentScrollPane) {
+        this.parentScrollPane = parentScrollPane;
+        int numberOfPages = pageWidths.length;
+        pageViewComponents = new AbstractPageViewComponent[numberOfPages];
+        activePages = new BitSet(numberOfPages);
+        pageComponents = new PageComponentList();
+        initPageSizes();
+    }
+
+    public AbstractPageViewComponent getPageComponent(int pageIndex) {
+        if (pageViewComponents == null) {
+            return pageComponents != null && pageIndex >= 0 && pageIndex < pageComponents.size() ?
+                    pageComponents.get(pageIndex) : null;
+        }
+        if (pageIndex < 0 || pageIndex >= pageViewComponents.length) {
+            return null;
+        }
+        AbstractPageViewComponent pageViewComponent = pageViewComponents[pageIndex];
+        if (pageViewComponent == null) {
+            Dimension size = getPageSize(pageIndex, userRotation, userZoom);
+            // components of a downloading document get their pages from the document.
+            PageTree pageTree = currentDocument.isPageTreeLoaded() ? currentDocument.getPageTree() : null;
+            pageViewComponent = buildPageViewComponent(this, pageTree,
+                    pageIndex, parentScrollPane, size.width, size.height);
+            pageViewComponents[pageIndex] = pageViewComponent;
+            activePages.set(pageIndex);
+        }
+        return pageViewComponent;
+    }
+
+    public List<AbstractPageViewComponent> getActivePageComponents() {
+        if (pageViewComponents == null) {
+            return pageComponents;
+        }
+        List<AbstractPageViewComponent> active =
+                new ArrayList<AbstractPageViewComponent>(activePages.cardinality());
+        for (int i = activePages.nextSetBit(0); i >= 0; i = activePages.nextSetBit(i + 1)) {
+            active.add(pageViewComponents[i]);
+        }
+        return active;
+    }
+
+    public void releasePageComponents(int firstPage, int lastPage) {
+        if (pageViewComponents == null) {
+            return;
+        }
+        for (int i = activePages.nextSetBit(0); i >= 0; i = activePages.nextSetBit(i + 1)) {
+            if ((i < firstPage || i > lastPage) && i != currentPageIndex &&
+                    (selectedPageText == null || !selectedPageText.containsKey(i))) {
+                AbstractPageViewComponent pageViewComponent = pageViewComponents[i];
+                if (pageViewComponent.getParent() != null) {
+                    pageViewComponent.getParent().remove(pageViewComponent);
+                }
+                pageViewComponent.dispose();
+                pageViewComponents[i] = null;
+                activePages.clear(i);
+            }
+        }
+    }
+
+    /**
+     * Measures the first few pages of the document, their average size is
+     * used for the pages that haven't been measured yet.  Only the first page
+     * of a linearized document is measured while its page tree downloads.
+     */
+    protected void initPageSizes() {
+        int pages = Math.min(pageWidths.length, MAX_PAGE_SIZE_READ_AHEAD);
+        int count = 0;
+        float width = 0;
+        float height = 0;
+        for (int i = 0; i < pages; i++) {
+            measurePage(i);
+            if (pageWidths[i] > 0) {
+                width += pageWidths[i];
+                height += pageHeights[i];
+                count++;
+            }
+        }
+        if (count > 0) {
+            averagePageWidth = width / count;
+            averagePageHeight = height / count;
+        }
+        maxPageWidth = Math.max(maxPageWidth, averagePageWidth);
+        maxPageHeight = Math.max(maxPageHeight, averagePageHeight);
+    }
+
+    /**
+     * Records the size of the specified page if it hasn't been measured yet,
+     * pages that can't be read without waiting for the page tree are left
+     * for later.
+     *
+     * @param pageIndex zero based page index.
+     */
+    protected void measurePage(int pageIndex) {
+        if (pageWidths[pageIndex] > 0 || !currentDocument.isPageAvailable(pageIndex)) {
+            return;
+        }
+        Page page = currentDocument.getPage(pageIndex);
+        if (page != null) {
+            PDimension size = page.getSize(pageBoundary, 0, 1.0f);
+            pageWidths[pageIndex] = (float) size.getWidth();
+            pageHeights[pageIndex] = (float) size.getHeight();
+            maxPageWidth = Math.max(maxPageWidth, pageWidths[pageIndex]);
+            maxPageHeight = Math.max(maxPageHeight, pageHeights[pageIndex]);
+        }
+    }
+
+    public Dimension getPageSize(int pageIndex, float rotation, float zoom) {
+        float width = averagePageWidth;
+        float height = averagePageHeight;
+        if (pageIndex >= 0 && pageIndex < pageWidths.length) {
+            measurePage(pageIndex);
+            if (pageWidths[pageIndex] > 0) {
+                width = pageWidths[pageIndex];
+                height = pageHeights[pageIndex];
+            }
+        }
+        return toDimension(width, height, rotation, zoom);
+    }
+
+    public Dimension getMaxPageSize(float rotation, float zoom) {
+        return toDimension(maxPageWidth, maxPageHeight, rotation, zoom);
+    }
+
+    /**
+     * Applies the zoom and rotation to a page size the same way
+     * {@link Page#getSize(int, float, float)} does.
+     */
+    private static Dimension toDimension(float width, float height, float rotation, float zoom) {
+        width *= zoom;
+        height *= zoom;
+        float quadrant = Math.abs(rotation % 180);
+        if (quadrant > 89.99f && quadrant < 90.001f) {
+            float tmp = width;
+            width = height;
+            height = tmp;
+        }
+        return new Dimension((int) width, (int) height);
+    }
+
     public boolean setViewCurrentPageIndex(int pageIndex) {
         boolean changed = pageIndex != currentPageIndex;
         oldPageIndex = currentPageIndex;
@@ -244,7 +423,18 @@ public abstract class AbstractDocumentViewModel implements DocumentViewModel {
      * @param pageBoundary page bounds
      */
     public void setPageBoundary(int pageBoundary) {
+        boolean changed = this.pageBoundary != pageBoundary;
         this.pageBoundary = pageBoundary;
+        if (changed && pageViewComponents != null) {
+            // page sizes depend on the boundary so they need to be measured again.
+            Arrays.fill(pageWidths, 0);
+            Arrays.fill(pageHeights, 0);
+            maxPageWidth = maxPageHeight = 0;
+            initPageSizes();
+            for (int i = activePages.nextSetBit(0); i >= 0; i = activePages.nextSetBit(i + 1)) {
+                measurePage(i);
+            }
+        }
     }
 
     public int getPageBoundary() {
@@ -253,18 +443,27 @@ public abstract class AbstractDocumentViewModel implements DocumentViewModel {
 
     public Rectangle getPageBounds(int pageIndex) {
         Rectangle pageBounds = new Rectangle();
-        if (pageComponents != null && pageIndex < pageComponents.size()) {
-            Component pageViewComponentImpl = pageComponents.get(pageIndex);
-            if (pageViewComponentImpl != null) {
-                Component parentComponent = pageViewComponentImpl;
-                Dimension size = pageViewComponentImpl.getPreferredSize();
-                pageBounds.setSize(size.width, size.height);
-                while (parentComponent != null &&
-                        !(parentComponent instanceof DocumentView)) {
-                    pageBounds.x += parentComponent.getBounds().x;
-                    pageBounds.y += parentComponent.getBounds().y;
-                    parentComponent = parentComponent.getParent();
-                }
+        Component pageViewComponentImpl = null;
+        if (pageViewComponents != null) {
+            if (pageIndex >= 0 && pageIndex < pageViewComponents.length) {
+                pageViewComponentImpl = pageViewComponents[pageIndex];
+            }
+            if (pageViewComponentImpl == null) {
+                // not built yet so all we know is its size.
+                pageBounds.setSize(getPageSize(pageIndex, userRotation, userZoom));
+            }
+        } else if (pageComponents != null && pageIndex < pageComponents.size()) {
+            pageViewComponentImpl = pageComponents.get(pageIndex);
+        }
+        if (pageViewComponentImpl != null) {
+            Component parentComponent = pageViewComponentImpl;
+            Dimension size = pageViewComponentImpl.getPreferredSize();
+            pageBounds.setSize(size.width, size.height);
+            while (parentComponent != null &&
+                    !(parentComponent instanceof DocumentView)) {
+                pageBounds.x += parentComponent.getBounds().x;
+                pageBounds.y += parentComponent.getBounds().y;
+                parentComponent = parentComponent.getParent();
             }
         }
         return pageBounds;
@@ -272,7 +471,13 @@ public abstract class AbstractDocumentViewModel implements DocumentViewModel {
 
     public void dispose() {
 
-        if (pageComponents != null) {
+        if (pageViewComponents != null) {
+            for (int i = activePages.nextSetBit(0); i >= 0; i = activePages.nextSetBit(i + 1)) {
+                pageViewComponents[i].dispose();
+                pageViewComponents[i] = null;
+            }
+            activePages.clear();
+        } else if (pageComponents != null) {
             for (AbstractPageViewComponent pageComponent : pageComponents) {
                 if (pageComponent != null) {
                     pageComponent.dispose();
@@ -323,4 +528,23 @@ public abstract class AbstractDocumentViewModel implements DocumentViewModel {
     public void addMemento(Memento oldMementoState, Memento newMementoState) {
         undoCaretaker.addState(oldMementoState, newMementoState);
     }
+
+    /**
+     * List of all the document's page components, components are built as
+     * they are fetched so iterating over the list builds every page, use
+     * {@link #getActivePageComponents()} to visit the existing components.
+     */
+    protected class PageComponentList extends AbstractList<AbstractPageViewComponent> {
+
+        public AbstractPageViewComponent get(int index) {
+            if (index < 0 || index >= pageViewComponents.length) {
+                throw new IndexOutOfBoundsException("Page index: " + index);
+            }
+            return getPageComponent(index);
+        }
+
+        public int size() {
+            return pageViewComponents.length;
+        }
+    }
 }
@@ -24,10 +24,11 @@ import org.icepdf.ri.common.views.listeners.DefaultPageViewLoadingListener;
 import org.icepdf.ri.common.views.listeners.PageViewLoadingListener;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.lang.ref.SoftReference;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
@@ -94,6 +95,10 @@ public abstract class AbstractPageViewComponent
     // Main worker task.
     protected FutureTask<Object> pageImageCaptureTask;
 
+    // distance to the viewport recorded on the AWT thread for the page buffer cache.
+    private volatile int viewportDistance = Integer.MAX_VALUE;
+    private ChangeListener viewportListener;
+
     public AbstractPageViewComponent(DocumentViewModel documentViewModel, PageTree pageTree,
                                      final int pageIndex, JScrollPane parentScrollPane, int width, int height) {
         // needed to propagate mouse events.
@@ -116,6 +121,16 @@ public abstract class AbstractPageViewComponent
         // setup the store for the pageBufferPadding and current clip
         pageBufferStore = new PageBufferStore();
 
+        // pages that scroll out of view aren't painted, so their distance is recorded on scroll.
+        if (parentScrollPane != null) {
+            viewportListener = new ChangeListener() {
+                public void stateChanged(ChangeEvent e) {
+                    updateViewportDistance();
+                }
+            };
+            parentScrollPane.getViewport().addChangeListener(viewportListener);
+        }
+
         // initialize page size
         pageSize = new Rectangle();
         if (documentViewModel != null && width == 0 && height == 0) {
@@ -172,8 +187,29 @@ public abstract class AbstractPageViewComponent
         return pageIndex;
     }
 
+    /**
+     * Gets the page shown by this component.  Components built while a
+     * linearized document downloads have no page tree, their pages wait for
+     * it unless #isPageAvailable() is true.
+     *
+     * @return page shown, null if not found.
+     */
     public Page getPage() {
-        return pageTree.getPage(pageIndex);
+        if (pageTree != null) {
+            return pageTree.getPage(pageIndex);
+        }
+        return documentViewModel.getDocument().getPage(pageIndex);
+    }
+
+    /**
+     * Indicates the page can be read without waiting for the page tree of a
+     * document that is still downloading.
+     *
+     * @return true if #getPage() returns without waiting, otherwise false.
+     */
+    public boolean isPageAvailable() {
+        return pageTree != null ||
+                (documentViewModel != null && documentViewModel.getDocument().isPageAvailable(pageIndex));
     }
 
     public void setDocumentViewCallback(DocumentView parentDocumentView) {
@@ -228,7 +264,7 @@ public abstract class AbstractPageViewComponent
      * @return true if page is visible in viewport,  false otherwise.
      * @throws NullPointerException if the parent scrollPane is null.
      */
-    private boolean isPageIntersectViewport() {
+    protected boolean isPageIntersectViewport() {
         Rectangle pageBounds = documentViewModel != null ? documentViewModel.getPageBounds(pageIndex) : getBounds();
         return pageBounds != null && this.isShowing() &&
                 pageBounds.intersects(parentScrollPane.getViewport().getViewRect());
@@ -242,12 +278,15 @@ public abstract class AbstractPageViewComponent
      * @param zoom     zoom of page
      */
     protected void calculatePageSize(Rectangle pageSize, float rotation, float zoom) {
-        if (pageTree != null) {
-            Page currentPage = pageTree.getPage(pageIndex);
+        if (isPageAvailable()) {
+            Page currentPage = getPage();
             if (currentPage != null) {
                 pageSize.setSize(currentPage.getSize(pageBoundaryBox,
                         rotation, zoom).toDimension());
             }
+        } else if (documentViewModel != null) {
+            // not downloaded yet, use the size the page is laid out at.
+            pageSize.setSize(documentViewModel.getPageSize(pageIndex, rotation, zoom));
         }
     }
 
@@ -284,6 +323,7 @@ public abstract class AbstractPageViewComponent
      * is deemed dirty. The Parent scrollpane viewport is taken into account to setup the clipping.
      */
     protected void calculateBufferLocation() {
+        updateViewportDistance();
 
         // grab a reference to the graphics configuration via the AWT thread,  if we get it on the worker thread
         // it sometimes return null.
@@ -325,11 +365,11 @@ public abstract class AbstractPageViewComponent
         if (pageBufferStore.isDirty() || pageBufferStore.getImageReference() == null) {
             // start future task to paint back pageBufferPadding
             if (pageImageCaptureTask == null || pageImageCaptureTask.isDone() || pageImageCaptureTask.isCancelled()) {
-                pageImageCaptureTask = new FutureTask<Object>(
+                pageImageCaptureTask = PageRenderScheduler.execute(
                         new PageImageCaptureTask(this, imageLocation, imageClipLocation,
                                 pageZoom,
-                                pageRotation));
-                Library.execute(pageImageCaptureTask);
+                                pageRotation),
+                        PageRenderScheduler.PRIORITY_VISIBLE);
             }
         }
     }
@@ -396,8 +436,12 @@ public abstract class AbstractPageViewComponent
                 pageTeardownCallback();
                 return null;
             }
+            // pages of a downloading document are painted once the page tree is read.
+            if (!isPageAvailable()) {
+                return null;
+            }
             // paint page.
-            Page page = pageTree.getPage(pageIndex);
+            Page page = getPage();
             // page loading progress
             PageViewLoadingListener pageLoadingListener = new DefaultPageViewLoadingListener(parent, documentViewController);
             boolean isFirstProgressivePaint = false;
@@ -409,9 +453,8 @@ public abstract class AbstractPageViewComponent
                 Rectangle pageSize = new Rectangle();
                 calculatePageSize(pageSize, rotation, zoom);
 
-                BufferedImage pageBufferImage = graphicsConfiguration.createCompatibleImage(
-                        imageLocation.width, imageLocation.height,
-                        BufferedImage.TYPE_INT_ARGB);
+                BufferedImage pageBufferImage = PageBufferCache.getInstance().createImage(
+                        graphicsConfiguration, imageLocation.width, imageLocation.height);
                 Graphics g2d = pageBufferImage.createGraphics();
 
                 // if we don't have a soft reference then we are likely on a first clean paint at which
@@ -464,12 +507,38 @@ public abstract class AbstractPageViewComponent
     }
 
     /**
-     * Synchronized page buffer property store, insures that a page capture occurs using the correct properties.
+     * Records the distance between the page and the viewport for the page buffer cache, must be
+     * called on the AWT thread.
      */
-    protected class PageBufferStore {
+    protected void updateViewportDistance() {
+        viewportDistance = getViewportDistance();
+    }
 
-        // last page buffer store,
-        private SoftReference<BufferedImage> imageReference;
+    /**
+     * Gets the distance between the page and the viewport, used by the page buffer cache to
+     * decide which buffers to drop first.  Reads Swing state so it must be called on the AWT
+     * thread, the cache only sees the distance recorded by updateViewportDistance().
+     *
+     * @return distance in pixels, zero if the page intersects the viewport.
+     */
+    protected int getViewportDistance() {
+        Rectangle pageBounds = documentViewModel != null ? documentViewModel.getPageBounds(pageIndex) : getBounds();
+        if (pageBounds == null || !isShowing()) {
+            return Integer.MAX_VALUE;
+        }
+        Rectangle viewRect = parentScrollPane.getViewport().getViewRect();
+        int dx = Math.max(0, Math.max(viewRect.x - pageBounds.x - pageBounds.width,
+                pageBounds.x - viewRect.x - viewRect.width));
+        int dy = Math.max(0, Math.max(viewRect.y - pageBounds.y - pageBounds.height,
+                pageBounds.y - viewRect.y - viewRect.height));
+        return Math.max(dx, dy);
+    }
+
+    /**
+     * Synchronized page buffer property store, insures that a page capture occurs using the correct properties.
+     * The buffer itself is held by the shared PageBufferCache.
+     */
+    protected class PageBufferStore implements PageBufferCache.Owner {
         // paint location if buffer is clipped to be smaller then the page size.
         private Rectangle imageLocation;
         // location of the current clip,  generally the viewport intersection with the page bounds.
@@ -483,13 +552,12 @@ public abstract class AbstractPageViewComponent
         private final Object objectLock = new Object();
 
         PageBufferStore() {
-            imageReference = new SoftReference<BufferedImage>(null);
         }
 
-        void setState(BufferedImage pageBufferImage, Rectangle imageLocation, Rectangle imageClipLocation,
-                      Rectangle pageSize, float pageZoom, float pageRotation, boolean isDirty) {
+        public void setState(BufferedImage pageBufferImage, Rectangle imageLocation, Rectangle imageClipLocation,
+                             Rectangle pageSize, float pageZoom, float pageRotation, boolean isDirty) {
             synchronized (objectLock) {
-                this.imageReference = new SoftReference<BufferedImage>(pageBufferImage);
+                PageBufferCache.getInstance().put(this, pageBufferImage);
                 this.imageLocation = imageLocation;
                 this.imageClipLocation = imageClipLocation;
                 this.pageSize = pageSize;
@@ -501,14 +569,31 @@ public abstract class AbstractPageViewComponent
 
         void setImageReference(BufferedImage bufferedImage) {
             synchronized (objectLock) {
-                this.imageReference = new SoftReference<BufferedImage>(bufferedImage);
+                PageBufferCache.getInstance().put(this, bufferedImage);
             }
         }
 
         public BufferedImage getImageReference() {
-            synchronized (objectLock) {
-                return imageReference.get();
+            return PageBufferCache.getInstance().get(this);
+        }
+
+        public int getViewportDistance() {
+            return viewportDistance;
+        }
+
+        public Library getLibrary() {
+            return pageTree != null ? pageTree.getLibrary() : documentViewModel.getDocument().getLibrary();
+        }
+
+        /**
+         * Hands the buffer back to the cache for reuse, called when the component is disposed.
+         */
+        public void dispose() {
+            if (viewportListener != null) {
+                parentScrollPane.getViewport().removeChangeListener(viewportListener);
+                viewportListener = null;
             }
+            PageBufferCache.getInstance().remove(this);
         }
 
         Rectangle getImageLocation() {
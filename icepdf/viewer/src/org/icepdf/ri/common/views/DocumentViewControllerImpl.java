@@ -147,8 +147,9 @@ public class DocumentViewControllerImpl
 
 
     public void setDocument(Document newDocument) {
-        // clean up any previous documents
-        if (document != null) {
+        // clean up any previous documents, setting the same document again
+        // only rebuilds the view.
+        if (document != null && document != newDocument) {
             document.dispose();
             document = null;
         }
@@ -601,7 +602,7 @@ public class DocumentViewControllerImpl
                     PropertyConstants.DOCUMENT_VIEW_DEMO_MODE_CHANGE.equals(prop) ||
                     PropertyConstants.DOCUMENT_VIEW_ZOOM_CHANGE.equals(prop) ||
                     PropertyConstants.DOCUMENT_VIEW_ROTATION_CHANGE.equals(prop)) {
-                List<AbstractPageViewComponent> pageComponents = documentViewModel.getPageComponents();
+                List<AbstractPageViewComponent> pageComponents = documentViewModel.getActivePageComponents();
                 for (AbstractPageViewComponent pageViewComponent : pageComponents) {
                     // pass in zoom, rotation etc, or get form model....
                     pageViewComponent.updateView(prop, oldValue, newValue);
@@ -871,9 +872,10 @@ public class DocumentViewControllerImpl
                 if (documentView != null)
                     documentView.setToolMode(viewToolMode);
 
-                // notify the page components of the tool change.
+                // notify the page components of the tool change, pages built
+                // later pick up the tool when they're added to the view.
                 List<AbstractPageViewComponent> pageComponents =
-                        documentViewModel.getPageComponents();
+                        documentViewModel.getActivePageComponents();
                 for (AbstractPageViewComponent page : pageComponents) {
                     ((PageViewComponentImpl) page).setToolMode(viewToolMode);
                 }
@@ -170,11 +170,66 @@ public interface DocumentViewModel {
 
     /**
      * Gets the page components associated with this view model.
+     * <p/>
+     * When the components are built on demand, the list builds the
+     * component of a page as it is fetched, so iterating over it builds a
+     * component for every page of the document.  Use
+     * {@link #getPageComponent(int)} for single pages and
+     * {@link #getActivePageComponents()} to visit the pages that have a
+     * component.
      *
      * @return vector of page components.
      */
     public List<AbstractPageViewComponent> getPageComponents();
 
+    /**
+     * Gets the page component for the specified page, the component is built
+     * if it doesn't exist yet.
+     *
+     * @param pageIndex zero based page index.
+     * @return page component for the page.
+     */
+    public AbstractPageViewComponent getPageComponent(int pageIndex);
+
+    /**
+     * Gets the page components that have been built and not yet released.  Page
+     * components are only built for pages that are in or near the view so this
+     * is normally a small subset of all the pages in the document.
+     *
+     * @return list of built page components.
+     */
+    public List<AbstractPageViewComponent> getActivePageComponents();
+
+    /**
+     * Releases the built page components outside of the given page range.  The
+     * current page and pages with selected text are never released.
+     *
+     * @param firstPage first page index to keep.
+     * @param lastPage  last page index to keep.
+     */
+    public void releasePageComponents(int firstPage, int lastPage);
+
+    /**
+     * Gets the size of the specified page at the given rotation and zoom.  The
+     * page is measured the first time its size is asked for, until then views
+     * lay it out with the average size of the first few pages.
+     *
+     * @param pageIndex zero based page index.
+     * @param rotation  user rotation.
+     * @param zoom      user zoom.
+     * @return size of the page.
+     */
+    public Dimension getPageSize(int pageIndex, float rotation, float zoom);
+
+    /**
+     * Gets the size of the largest page at the given rotation and zoom.
+     *
+     * @param rotation user rotation.
+     * @param zoom     user zoom.
+     * @return size of the largest page.
+     */
+    public Dimension getMaxPageSize(float rotation, float zoom);
+
     /**
      * Sets the view model current page index.
      *
@@ -19,12 +19,11 @@ import org.icepdf.core.pobjects.Document;
 import org.icepdf.core.pobjects.PageTree;
 
 import javax.swing.*;
-import java.util.ArrayList;
 
 /**
  * <p>Default Swing implementation of the AbstractDocumentViewModel class.  The
- * constructor for this class constructs the needed PageViewComponentImpl objects
- * and associates a reference to the parent JScrollPane.</p>
+ * PageViewComponentImpl objects are built on demand as pages come in to view
+ * and are associated with the parent JScrollPane.</p>
  * <p/>
  * <p>Swing specific setup is handle by this class.</p>
  *
@@ -36,38 +35,9 @@ public class DocumentViewModelImpl extends AbstractDocumentViewModel {
         // construct abstract parent
         super(document);
 
-        // load the page components into the layout
-        AbstractPageViewComponent pageViewComponent = null;
-        PageTree pageTree = document.getPageTree();
-        int numberOfPages = document.getNumberOfPages();
-        int avgPageWidth = 0;
-        int avgPageHeight = 0;
-
-        // add components for every page in the document
-        pageComponents = new ArrayList<AbstractPageViewComponent>(numberOfPages);
-        for (int i = 0; i < numberOfPages; i++) {
-            // also a way to pass in an average document size.
-            if (i < MAX_PAGE_SIZE_READ_AHEAD) {
-                pageViewComponent =
-                        buildPageViewComponent(this, pageTree, i, parentScrollPane, 0, 0);
-                avgPageWidth += pageViewComponent.getPreferredSize().width;
-                avgPageHeight += pageViewComponent.getPreferredSize().height;
-            } else if (i > MAX_PAGE_SIZE_READ_AHEAD) {
-                pageViewComponent =
-                        buildPageViewComponent(this, pageTree, i,
-                                parentScrollPane,
-                                avgPageWidth, avgPageHeight);
-            }
-            // calculate average page size
-            else if (i == MAX_PAGE_SIZE_READ_AHEAD) {
-                avgPageWidth /= (MAX_PAGE_SIZE_READ_AHEAD);
-                avgPageHeight /= (MAX_PAGE_SIZE_READ_AHEAD);
-                pageViewComponent = buildPageViewComponent(this, pageTree, i,
-                                parentScrollPane,
-                                avgPageWidth, avgPageHeight);
-            }
-            pageComponents.add(pageViewComponent);
-        }
+        // page components are built as the views need them, only the page
+        // sizes are worked out up front.
+        initPageComponents(parentScrollPane);
     }
 
     protected AbstractPageViewComponent buildPageViewComponent(
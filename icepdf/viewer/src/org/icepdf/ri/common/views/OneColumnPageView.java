@@ -21,7 +21,7 @@ import org.icepdf.ri.common.SwingController;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.List;
+import java.awt.event.AdjustmentEvent;
 
 
 /**
@@ -29,13 +29,15 @@ import java.util.List;
  * column page view displays pages continuously in one column.</p>
  * <p/>
  * <p>Page views are basic containers which use Swing Layout Containers to
- * place pages </p>
+ * place pages, only the pages in or near the viewport have components.</p>
  *
  * @since 2.5
  */
 @SuppressWarnings("serial")
 public class OneColumnPageView extends AbstractDocumentView {
 
+    protected PageViewGridLayout pageViewLayout;
+
     // specialized listeners for different gui operations
     protected CurrentPageChanger currentPageChanger;
 
@@ -71,8 +73,8 @@ public class OneColumnPageView extends AbstractDocumentView {
         pagesPanel = new JPanel();
         pagesPanel.setBackground(BACKGROUND_COLOUR);
         // one column equals single page view continuous
-        GridLayout gridLayout = new GridLayout(0, 1, horizontalSpace, verticalSpace);
-        pagesPanel.setLayout(gridLayout);
+        pageViewLayout = new PageViewGridLayout(this, 1, 0);
+        pagesPanel.setLayout(pageViewLayout);
 
         // use a grid bag to center the page component panel
         GridBagConstraints gbc = new GridBagConstraints();
@@ -85,26 +87,23 @@ public class OneColumnPageView extends AbstractDocumentView {
         this.setLayout(new GridBagLayout());
         this.add(pagesPanel, gbc);
 
-        // finally add all the components
-        // add components for every page in the document
-        List<AbstractPageViewComponent> pageComponents =
-                documentViewModel.getPageComponents();
-
-        if (pageComponents != null) {
-            for (PageViewComponent pageViewComponent : pageComponents) {
-                if (pageViewComponent != null) {
-                    pageViewComponent.setDocumentViewCallback(this);
-                    // add component to layout
-                    pagesPanel.add(new PageViewDecorator(
-                            (AbstractPageViewComponent) pageViewComponent));
-                }
-            }
-        }
+        // finally add the components for the pages around the current page,
+        // the rest are added as they're scrolled in to view.
+        pageViewLayout.updatePageWindow(pagesPanel);
     }
 
-    // nothing needs to be done for a column view as all components are already
-    // available
+    // make sure the current page has a component so it can be scrolled to.
     public void updateDocumentView() {
+        if (!disposing) {
+            pageViewLayout.showPage(pagesPanel, documentViewModel.getViewCurrentPageIndex());
+            validate();
+        }
+    }
+
+    public void adjustmentValueChanged(AdjustmentEvent e) {
+        if (!disposing) {
+            pageViewLayout.updatePageWindow(pagesPanel);
+        }
     }
 
     /**
@@ -131,6 +130,8 @@ public class OneColumnPageView extends AbstractDocumentView {
             keyListenerPageChanger.uninstall();
         }
 
+        pageViewLayout.dispose();
+
         // trigger a re-layout
         pagesPanel.removeAll();
         pagesPanel.invalidate();
@@ -140,25 +141,11 @@ public class OneColumnPageView extends AbstractDocumentView {
     }
 
     public Dimension getDocumentSize() {
-        float pageViewWidth = 0;
-        float pageViewHeight = 0;
-        if (pagesPanel != null) {
-            int currCompIndex = documentViewController.getCurrentPageIndex();
-            int numComponents = pagesPanel.getComponentCount();
-            if (currCompIndex >= 0 && currCompIndex < numComponents) {
-                Component comp = pagesPanel.getComponent(currCompIndex);
-                if (comp instanceof PageViewDecorator) {
-                    PageViewDecorator pvd = (PageViewDecorator) comp;
-                    Dimension dim = pvd.getPreferredSize();
-                    pageViewWidth = dim.width;
-                    pageViewHeight = dim.height;
-                }
-            }
-        }
         // normalize the dimensions to a zoom level of zero.
-        float currentZoom = documentViewModel.getViewZoom();
-        pageViewWidth = Math.abs(pageViewWidth / currentZoom);
-        pageViewHeight = Math.abs(pageViewHeight / currentZoom);
+        Dimension dim = documentViewModel.getPageSize(documentViewController.getCurrentPageIndex(),
+                documentViewModel.getViewRotation(), 1.0f);
+        float pageViewWidth = dim.width + PageViewDecorator.SHADOW_SIZE / documentViewModel.getViewZoom();
+        float pageViewHeight = dim.height + PageViewDecorator.SHADOW_SIZE / documentViewModel.getViewZoom();
 
         // add any horizontal padding from layout manager
         pageViewWidth += AbstractDocumentView.horizontalSpace * 2;
@@ -99,7 +99,7 @@ public class OnePageView extends AbstractDocumentView {
         if (pageComponents != null) {
 
             PageViewComponent pageViewComponent =
-                    pageComponents.get(documentViewModel.getViewCurrentPageIndex());
+                    documentViewModel.getPageComponent(documentViewModel.getViewCurrentPageIndex());
             if (pageViewComponent != null) {
 
                 // remove old component
@@ -113,7 +113,7 @@ public class OnePageView extends AbstractDocumentView {
             }
 
             // make sure we have setup all pages with callback call.
-            for (PageViewComponent pageViewCom : pageComponents) {
+            for (PageViewComponent pageViewCom : documentViewModel.getActivePageComponents()) {
                 if (pageViewCom != null) {
                     pageViewCom.setDocumentViewCallback(this);
                 }
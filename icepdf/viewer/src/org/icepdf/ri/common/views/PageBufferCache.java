@@ -0,0 +1,280 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.ri.common.views;
+
+import org.icepdf.core.util.Defs;
+import org.icepdf.core.util.Library;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <p>Holds the back buffers of all the page and thumbnail components in a
+ * single pixel budget.  When a new buffer pushes the cache over budget the
+ * buffers furthest from their viewport are dropped first and buffers at the
+ * same distance are dropped least recently used first, so the pages in view
+ * keep their buffers and are never re-rendered all at once as they were
+ * when every buffer sat behind its own soft reference.</p>
+ * <p/>
+ * <p>Buffers replaced by a newer capture are kept and handed out again for
+ * the next capture of the same size, scrolling a view of same sized pages
+ * only allocates new images when the viewport size changes.  Kept buffers
+ * count against the budget and are the first to go.</p>
+ * <p/>
+ * <p>The budget is set in pixels with the system property
+ * org.icepdf.core.views.page.bufferCache.pixels, it defaults to the number
+ * of pixels that fit in a quarter of the maximum heap.</p>
+ *
+ * @since 6.2
+ */
+public class PageBufferCache {
+
+    private static final Logger logger =
+            Logger.getLogger(PageBufferCache.class.toString());
+
+    // kept buffers above this count are dropped regardless of budget.
+    private static final int MAX_FREE_BUFFERS = 8;
+
+    private static PageBufferCache pageBufferCache;
+
+    /**
+     * Owner of a cached buffer, the cache uses the owner's distance from its
+     * viewport to decide which buffers to drop first.
+     */
+    public interface Owner {
+        /**
+         * Gets the distance in pixels between the owner and its viewport as
+         * it was last recorded on the AWT thread.  The cache trims from the
+         * threads that render buffers, so the distance must not be worked out
+         * from Swing state when asked for.
+         *
+         * @return zero if the owner intersects the viewport, Integer.MAX_VALUE
+         * if it isn't showing or its distance wasn't recorded yet.
+         */
+        int getViewportDistance();
+
+        /**
+         * Gets the library of the document the owner shows.
+         *
+         * @return document library.
+         */
+        Library getLibrary();
+    }
+
+    private long maxPixels;
+    private long pixels;
+
+    // cached buffers in access order, least recently used first.
+    private final LinkedHashMap<Owner, BufferedImage> buffers =
+            new LinkedHashMap<Owner, BufferedImage>(16, 0.75f, true);
+    // replaced buffers waiting to be reused, oldest first.
+    private final LinkedList<BufferedImage> freeBuffers = new LinkedList<BufferedImage>();
+
+    private PageBufferCache() {
+        long defaultPixels = Runtime.getRuntime().maxMemory() / 4 / 4;
+        maxPixels = Defs.intProperty("org.icepdf.core.views.page.bufferCache.pixels",
+                (int) Math.min(Integer.MAX_VALUE, defaultPixels));
+        if (maxPixels < 1) {
+            maxPixels = defaultPixels;
+        }
+    }
+
+    public static synchronized PageBufferCache getInstance() {
+        if (pageBufferCache == null) {
+            pageBufferCache = new PageBufferCache();
+        }
+        return pageBufferCache;
+    }
+
+    /**
+     * Gets an image to paint a new buffer in to, reusing a replaced buffer of
+     * the same size when there is one.  Reused buffers are cleared.
+     *
+     * @param graphicsConfiguration configuration to create new images for.
+     * @param width                 buffer width.
+     * @param height                buffer height.
+     * @return transparent ARGB image.
+     */
+    public BufferedImage createImage(GraphicsConfiguration graphicsConfiguration, int width, int height) {
+        BufferedImage image = null;
+        synchronized (this) {
+            for (Iterator<BufferedImage> iterator = freeBuffers.iterator(); iterator.hasNext(); ) {
+                BufferedImage freeBuffer = iterator.next();
+                if (freeBuffer.getWidth() == width && freeBuffer.getHeight() == height) {
+                    iterator.remove();
+                    pixels -= (long) width * height;
+                    image = freeBuffer;
+                    break;
+                }
+            }
+        }
+        if (image == null) {
+            if (graphicsConfiguration != null) {
+                return graphicsConfiguration.createCompatibleImage(width, height,
+                        BufferedImage.TYPE_INT_ARGB);
+            }
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Gets the buffer cached for the owner and marks it as recently used.
+     *
+     * @param owner buffer owner.
+     * @return cached buffer, null if the owner has none or it was dropped.
+     */
+    public synchronized BufferedImage get(Owner owner) {
+        return buffers.get(owner);
+    }
+
+    /**
+     * Caches a new buffer for the owner, the owner's previous buffer is kept
+     * for reuse.  Buffers are dropped until the cache is back under budget.
+     *
+     * @param owner buffer owner.
+     * @param image new buffer, null removes the owner's buffer.
+     */
+    public void put(Owner owner, BufferedImage image) {
+        BufferedImage oldImage;
+        synchronized (this) {
+            if (image == null) {
+                oldImage = buffers.remove(owner);
+            } else {
+                oldImage = buffers.put(owner, image);
+                pixels += pixels(image);
+            }
+            if (oldImage != null) {
+                pixels -= pixels(oldImage);
+            }
+            if (oldImage == image) {
+                return;
+            }
+            trim(owner);
+        }
+        if (oldImage != null) {
+            release(oldImage);
+        }
+    }
+
+    /**
+     * Removes the owner's buffer and keeps it for reuse.
+     *
+     * @param owner buffer owner.
+     */
+    public void remove(Owner owner) {
+        put(owner, null);
+    }
+
+    /**
+     * Drops the buffers of all owners showing the given document, called when
+     * the document is closed so none of its buffers outlive it even if some
+     * of its components weren't disposed.
+     *
+     * @param library library of the closed document.
+     */
+    public synchronized void remove(Library library) {
+        for (Iterator<Map.Entry<Owner, BufferedImage>> iterator = buffers.entrySet().iterator();
+             iterator.hasNext(); ) {
+            Map.Entry<Owner, BufferedImage> entry = iterator.next();
+            if (entry.getKey().getLibrary() == library) {
+                pixels -= pixels(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all cached and kept buffers.
+     */
+    public synchronized void clear() {
+        buffers.clear();
+        freeBuffers.clear();
+        pixels = 0;
+    }
+
+    /**
+     * Keeps a replaced buffer for reuse.  Components paint their buffer on the
+     * AWT thread so the buffer is only added to the free list from that thread,
+     * once any paint holding on to it has finished.
+     */
+    private void release(final BufferedImage image) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    release(image);
+                }
+            });
+            return;
+        }
+        synchronized (this) {
+            freeBuffers.addLast(image);
+            pixels += pixels(image);
+            trim(null);
+        }
+    }
+
+    /**
+     * Drops buffers until the cache is under budget, kept buffers first and
+     * then the cached buffers furthest from their viewport.  The cache can go
+     * over budget when the buffers in view alone don't fit.
+     */
+    private void trim(Owner keep) {
+        while ((pixels > maxPixels && !freeBuffers.isEmpty()) ||
+                freeBuffers.size() > MAX_FREE_BUFFERS) {
+            pixels -= pixels(freeBuffers.removeFirst());
+        }
+        if (pixels <= maxPixels) {
+            return;
+        }
+        // take the recorded distances once, a buffer's owner can move while trimming.
+        List<Owner> owners = new ArrayList<Owner>(buffers.keySet());
+        final Map<Owner, Integer> distances = new HashMap<Owner, Integer>(owners.size());
+        for (Owner owner : owners) {
+            distances.put(owner, owner.getViewportDistance());
+        }
+        // furthest first, the sort is stable so equal distances stay least recently used first.
+        Collections.sort(owners, new Comparator<Owner>() {
+            public int compare(Owner o1, Owner o2) {
+                return distances.get(o2).compareTo(distances.get(o1));
+            }
+        });
+        for (Owner owner : owners) {
+            if (pixels <= maxPixels) {
+                break;
+            }
+            // buffers in view are never dropped, they would only be painted again straight away.
+            if (owner != keep && distances.get(owner) > 0) {
+                pixels -= pixels(buffers.remove(owner));
+            }
+        }
+        if (pixels > maxPixels) {
+            logger.finer("Page buffer cache over budget, " + pixels + " of " + maxPixels);
+        }
+    }
+
+    private static long pixels(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight();
+    }
+}
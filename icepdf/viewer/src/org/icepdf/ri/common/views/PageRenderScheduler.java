@@ -0,0 +1,310 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.ri.common.views;
+
+import org.icepdf.core.pobjects.Page;
+import org.icepdf.core.util.Defs;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Schedules the page work of the viewer.  Page captures for visible pages,
+ * thumbnail captures and page prefetching share one pool of render threads
+ * and are run in that order of priority, so prefetching never holds up a
+ * page the user is looking at.</p>
+ * <p/>
+ * <p>A scheduler instance tracks the scroll position of a document view.  The
+ * speed and direction of the scroll decide how many pages ahead of the
+ * visible ones are initialized, at rest only the pages next to the visible
+ * ones are.  Prefetch work for pages that are no longer ahead of the view is
+ * cancelled, and no prefetching is done when the heap is running low.</p>
+ * <p/>
+ * <p>The following system properties configure the scheduler:</p>
+ * <ul>
+ * <li>org.icepdf.core.views.page.render.threads - number of render threads,
+ * defaults to the number of cores but no more than one per 64MB of heap.</li>
+ * <li>org.icepdf.core.views.page.prefetch - pages initialized on either side
+ * of the visible pages when not scrolling, default 1, 0 disables prefetching.</li>
+ * <li>org.icepdf.core.views.page.prefetch.max - most pages initialized ahead
+ * of a fast scroll, default 8.</li>
+ * </ul>
+ *
+ * @since 6.2
+ */
+public class PageRenderScheduler {
+
+    private static final Logger logger =
+            Logger.getLogger(PageRenderScheduler.class.toString());
+
+    /**
+     * Priority of captures of pages that are in the viewport.
+     */
+    public static final int PRIORITY_VISIBLE = 0;
+    /**
+     * Priority of thumbnail captures.
+     */
+    public static final int PRIORITY_THUMBNAIL = 1;
+    /**
+     * Priority of page prefetching.
+     */
+    public static final int PRIORITY_PREFETCH = 2;
+
+    // heap needed per render thread, a screen sized buffer plus the page.
+    private static final long HEAP_PER_THREAD = 64L * 1024 * 1024;
+    // how far ahead in time a scroll is prefetched for, in milliseconds.
+    private static final float LOOK_AHEAD_TIME = 500;
+    // weight of the newest velocity sample.
+    private static final float VELOCITY_SMOOTHING = 0.5f;
+    // scrolls stopping for longer than this start over at rest.
+    private static final long SCROLL_TIMEOUT = 250;
+
+    private static int renderThreads;
+    private static int prefetchPages;
+    private static int maxPrefetchPages;
+
+    private static final ThreadPoolExecutor renderThreadPool;
+    private static final AtomicLong sequence = new AtomicLong();
+
+    static {
+        Runtime runtime = Runtime.getRuntime();
+        int defaultThreads = (int) Math.min(runtime.availableProcessors(),
+                runtime.maxMemory() / HEAP_PER_THREAD);
+        renderThreads = Defs.intProperty("org.icepdf.core.views.page.render.threads",
+                defaultThreads);
+        if (renderThreads < 1) {
+            renderThreads = 1;
+        }
+        prefetchPages = Defs.intProperty("org.icepdf.core.views.page.prefetch", 1);
+        maxPrefetchPages = Math.max(prefetchPages,
+                Defs.intProperty("org.icepdf.core.views.page.prefetch.max", 8));
+
+        renderThreadPool = new ThreadPoolExecutor(
+                renderThreads, renderThreads, 90, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>());
+        renderThreadPool.allowCoreThreadTimeOut(true);
+        renderThreadPool.setThreadFactory(new ThreadFactory() {
+            public Thread newThread(Runnable command) {
+                Thread newThread = new Thread(command);
+                newThread.setName("ICEpdf-thread-render-pool");
+                newThread.setPriority(Thread.NORM_PRIORITY);
+                newThread.setDaemon(true);
+                return newThread;
+            }
+        });
+    }
+
+    private DocumentViewModel documentViewModel;
+
+    // queued or running prefetch work keyed by page index.
+    private final Map<Integer, RenderTask> prefetchTasks = new HashMap<Integer, RenderTask>();
+
+    // last scroll position in pages and when it was recorded.
+    private float lastPosition = -1;
+    private long lastTime;
+    // smoothed scroll velocity in pages per millisecond, negative scrolling back.
+    private float velocity;
+
+    public PageRenderScheduler(DocumentViewModel documentViewModel) {
+        this.documentViewModel = documentViewModel;
+    }
+
+    /**
+     * Queues page work on the render pool.
+     *
+     * @param callable work to do.
+     * @param priority one of the PRIORITY_* constants.
+     * @return task that can be used to cancel the work.
+     */
+    public static FutureTask<Object> execute(Callable<Object> callable, int priority) {
+        RenderTask task = new RenderTask(callable, priority, 0);
+        try {
+            renderThreadPool.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.severe("ICEpdf Render Thread Pool was shutdown!");
+        }
+        return task;
+    }
+
+    /**
+     * Gets the number of threads pages are rendered on.
+     *
+     * @return render pool size.
+     */
+    public static int getRenderThreads() {
+        return renderThreads;
+    }
+
+    /**
+     * Called by the view when it has scrolled, updates the scroll velocity
+     * and queues the pages ahead of the view for initialization.
+     *
+     * @param position         scroll position in pages, the page index at the
+     *                         top of the view plus the fraction scrolled past it.
+     * @param firstVisiblePage first page in the view.
+     * @param lastVisiblePage  last page in the view.
+     */
+    public void viewChanged(float position, int firstVisiblePage, int lastVisiblePage) {
+        long time = System.currentTimeMillis();
+        long elapsed = time - lastTime;
+        if (lastPosition < 0 || elapsed > SCROLL_TIMEOUT) {
+            velocity = 0;
+        } else if (elapsed > 0) {
+            velocity += VELOCITY_SMOOTHING * ((position - lastPosition) / elapsed - velocity);
+        }
+        lastPosition = position;
+        lastTime = time;
+
+        int pageCount = documentViewModel.getDocument().getNumberOfPages();
+        int ahead = Math.min(maxPrefetchPages,
+                prefetchPages + Math.round(Math.abs(velocity) * LOOK_AHEAD_TIME));
+        int first;
+        int last;
+        if (prefetchPages <= 0 || isHeapLow()) {
+            first = 0;
+            last = -1;
+        } else if (velocity > 0) {
+            first = lastVisiblePage + 1;
+            last = lastVisiblePage + ahead;
+        } else if (velocity < 0) {
+            first = firstVisiblePage - ahead;
+            last = firstVisiblePage - 1;
+        } else {
+            first = firstVisiblePage - prefetchPages;
+            last = lastVisiblePage + prefetchPages;
+        }
+        first = Math.max(0, first);
+        last = Math.min(pageCount - 1, last);
+
+        synchronized (prefetchTasks) {
+            // cancel the work for pages that are no longer ahead of the view.
+            for (Iterator<Map.Entry<Integer, RenderTask>> iterator =
+                         prefetchTasks.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<Integer, RenderTask> entry = iterator.next();
+                int pageIndex = entry.getKey();
+                RenderTask task = entry.getValue();
+                if (task.isDone()) {
+                    iterator.remove();
+                } else if (pageIndex < first || pageIndex > last ||
+                        (pageIndex >= firstVisiblePage && pageIndex <= lastVisiblePage)) {
+                    task.cancel(true);
+                    renderThreadPool.remove(task);
+                    iterator.remove();
+                }
+            }
+            // and queue the pages that came in to range, nearest first.
+            for (int i = first; i <= last; i++) {
+                if (i >= firstVisiblePage && i <= lastVisiblePage ||
+                        prefetchTasks.containsKey(i) ||
+                        !documentViewModel.getDocument().isPageAvailable(i)) {
+                    continue;
+                }
+                final Page page = documentViewModel.getDocument().getPage(i);
+                if (page == null || page.isInitiated()) {
+                    continue;
+                }
+                int distance = i > lastVisiblePage ? i - lastVisiblePage : firstVisiblePage - i;
+                RenderTask task = new RenderTask(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        if (!isHeapLow()) {
+                            page.init();
+                        }
+                        return null;
+                    }
+                }, PRIORITY_PREFETCH, distance);
+                prefetchTasks.put(i, task);
+                try {
+                    renderThreadPool.execute(task);
+                } catch (RejectedExecutionException e) {
+                    logger.severe("ICEpdf Render Thread Pool was shutdown!");
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels all of the outstanding prefetch work.
+     */
+    public void dispose() {
+        synchronized (prefetchTasks) {
+            for (RenderTask task : prefetchTasks.values()) {
+                task.cancel(true);
+                renderThreadPool.remove(task);
+            }
+            prefetchTasks.clear();
+        }
+        lastPosition = -1;
+        velocity = 0;
+    }
+
+    /**
+     * Prefetching stops once less than a quarter of the heap is left.
+     */
+    private static boolean isHeapLow() {
+        Runtime runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+        return available < runtime.maxMemory() / 4;
+    }
+
+    /**
+     * Future task that orders itself in the render queue by priority, then by
+     * its distance from the view and then first come first served.
+     */
+    private static class RenderTask extends FutureTask<Object>
+            implements Comparable<RenderTask> {
+
+        private int priority;
+        private int distance;
+        private long order;
+
+        RenderTask(Callable<Object> callable, int priority, int distance) {
+            super(callable);
+            this.priority = priority;
+            this.distance = distance;
+            this.order = sequence.getAndIncrement();
+        }
+
+        public int compareTo(RenderTask task) {
+            if (priority != task.priority) {
+                return priority < task.priority ? -1 : 1;
+            }
+            if (distance != task.distance) {
+                return distance < task.distance ? -1 : 1;
+            }
+            return order < task.order ? -1 : order == task.order ? 0 : 1;
+        }
+
+        @Override
+        protected void done() {
+            if (!isCancelled()) {
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof InterruptedException)) {
+                        logger.log(Level.FINE, "Error running page task.", e.getCause());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.awt.*;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
@@ -57,6 +58,11 @@ public class PageViewComponentImpl extends AbstractPageViewComponent implements
     public void setDocumentViewCallback(DocumentView parentDocumentView) {
         super.setDocumentViewCallback(parentDocumentView);
         textSelectionPageHandler.setDocumentViewController(documentViewController);
+        // pages are built as they come in to view so they may have missed the
+        // tool selection, pick it up without disturbing the current selection.
+        if (currentToolHandler == null) {
+            setToolMode(documentViewModel.getViewToolMode(), false);
+        }
     }
 
     @Override
@@ -67,10 +73,13 @@ public class PageViewComponentImpl extends AbstractPageViewComponent implements
         GraphicsRenderingHints grh = GraphicsRenderingHints.getDefault();
         g2d.setRenderingHints(grh.getRenderingHints(GraphicsRenderingHints.SCREEN));
 
-        // paint the annotation components.
-        paintAnnotationComponents(g2d);
-        // paint selected and highlighted text.
-        paintTextSelection(g2d);
+        // a page still downloading has no annotations or text to paint yet.
+        if (isPageAvailable()) {
+            // paint the annotation components.
+            paintAnnotationComponents(g2d);
+            // paint selected and highlighted text.
+            paintTextSelection(g2d);
+        }
 
         // paint annotation handler effect if any.
         if (currentToolHandler != null) {
@@ -83,6 +92,11 @@ public class PageViewComponentImpl extends AbstractPageViewComponent implements
     }
 
     public void dispose() {
+        // stop any capture still queued or running for the page.
+        if (pageImageCaptureTask != null) {
+            pageImageCaptureTask.cancel(true);
+        }
+        pageBufferStore.dispose();
         // remove annotation listeners.
         removeMouseMotionListener(currentToolHandler);
         removeMouseListener(currentToolHandler);
@@ -105,6 +119,19 @@ public class PageViewComponentImpl extends AbstractPageViewComponent implements
      *                     DocumentViewMode.DISPLAY_TOOL_*
      */
     public void setToolMode(final int viewToolMode) {
+        setToolMode(viewToolMode, true);
+    }
+
+    /**
+     * Sets the tool mode for the current page component implementation.
+     *
+     * @param viewToolMode view tool modes as defined in
+     *                     DocumentViewMode.DISPLAY_TOOL_*
+     * @param toolChanged  true if the tool was just selected, selected text is
+     *                     cleared or turned in to markup annotations, false if
+     *                     the page is only catching up with the current tool.
+     */
+    protected void setToolMode(final int viewToolMode, boolean toolChanged) {
         if (currentToolHandler != null) {
             currentToolHandler.uninstallTool();
             removeMouseListener(currentToolHandler);
@@ -126,7 +153,7 @@ public class PageViewComponentImpl extends AbstractPageViewComponent implements
                         documentViewController,
                         this,
                         documentViewModel);
-                documentViewController.clearSelectedText();
+                if (toolChanged) documentViewController.clearSelectedText();
                 break;
             case DocumentViewModel.DISPLAY_TOOL_LINK_ANNOTATION:
                 // handler is responsible for the initial creation of the annotation
@@ -134,7 +161,7 @@ public class PageViewComponentImpl extends AbstractPageViewComponent implements
                         documentViewController,
                         this,
                         documentViewModel);
-                documentViewController.clearSelectedText();
+                if (toolChanged) documentViewController.clearSelectedText();
                 break;
             case DocumentViewModel.DISPLAY_TOOL_HIGHLIGHT_ANNOTATION:
                 // handler is responsible for the initial creation of the annotation
@@ -142,73 +169,79 @@ public class PageViewComponentImpl extends AbstractPageViewComponent implements
                         documentViewController,
                         this,
                         documentViewModel);
-                ((HighLightAnnotationHandler) currentToolHandler).createTextMarkupAnnotation(null);
-                documentViewController.clearSelectedText();
+                if (toolChanged) {
+                    ((HighLightAnnotationHandler) currentToolHandler).createTextMarkupAnnotation(null);
+                    documentViewController.clearSelectedText();
+                }
                 break;
             case DocumentViewModel.DISPLAY_TOOL_STRIKEOUT_ANNOTATION:
                 currentToolHandler = new StrikeOutAnnotationHandler(
                         documentViewController,
                         this,
                         documentViewModel);
-                ((StrikeOutAnnotationHandler) currentToolHandler).createTextMarkupAnnotation(null);
-                documentViewController.clearSelectedText();
+                if (toolChanged) {
+                    ((StrikeOutAnnotationHandler) currentToolHandler).createTextMarkupAnnotation(null);
+                    documentViewController.clearSelectedText();
+                }
                 break;
             case DocumentViewModel.DISPLAY_TOOL_UNDERLINE_ANNOTATION:
                 currentToolHandler = new UnderLineAnnotationHandler(
                         documentViewController,
                         this,
                         documentViewModel);
-                ((UnderLineAnnotationHandler) currentToolHandler).createTextMarkupAnnotation(null);
-                documentViewController.clearSelectedText();
+                if (toolChanged) {
+                    ((UnderLineAnnotationHandler) currentToolHandler).createTextMarkupAnnotation(null);
+                    documentViewController.clearSelectedText();
+                }
                 break;
             case DocumentViewModel.DISPLAY_TOOL_LINE_ANNOTATION:
                 currentToolHandler = new LineAnnotationHandler(
                         documentViewController,
                         this,
                         documentViewModel);
-                documentViewController.clearSelectedText();
+                if (toolChanged) documentViewController.clearSelectedText();
                 break;
             case DocumentViewModel.DISPLAY_TOOL_LINE_ARROW_ANNOTATION:
                 currentToolHandler = new LineArrowAnnotationHandler(
                         documentViewController,
                         this,
                         documentViewModel);
-                documentViewController.clearSelectedText();
+                if (toolChanged) documentViewController.clearSelectedText();
                 break;
             case DocumentViewModel.DISPLAY_TOOL_SQUARE_ANNOTATION:
                 currentToolHandler = new SquareAnnotationHandler(
                         documentViewController,
                         this,
                         documentViewModel);
-                documentViewController.clearSelectedText();
+                if (toolChanged) documentViewController.clearSelectedText();
                 break;
             case DocumentViewModel.DISPLAY_TOOL_CIRCLE_ANNOTATION:
                 currentToolHandler = new CircleAnnotationHandler(
                         documentViewController,
                         this,
                         documentViewModel);
-                documentViewController.clearSelectedText();
+                if (toolChanged) documentViewController.clearSelectedText();
                 break;
             case DocumentViewModel.DISPLAY_TOOL_INK_ANNOTATION:
                 currentToolHandler = new InkAnnotationHandler(
                         documentViewController,
                         this,
                         documentViewModel);
-                documentViewController.clearSelectedText();
+                if (toolChanged) documentViewController.clearSelectedText();
                 break;
             case DocumentViewModel.DISPLAY_TOOL_FREE_TEXT_ANNOTATION:
                 currentToolHandler = new FreeTextAnnotationHandler(
                         documentViewController,
                         this,
                         documentViewModel);
-                documentViewController.clearSelectedText();
+                if (toolChanged) documentViewController.clearSelectedText();
                 break;
             case DocumentViewModel.DISPLAY_TOOL_TEXT_ANNOTATION:
                 currentToolHandler = new TextAnnotationHandler(
                         documentViewController,
                         this,
                         documentViewModel);
-                documentViewController.clearSelectedText();
+                if (toolChanged) documentViewController.clearSelectedText();
                 break;
             default:
                 currentToolHandler = null;
@@ -304,11 +337,21 @@ public class PageViewComponentImpl extends AbstractPageViewComponent implements
             boolean notSelectTool =
                     documentViewModel.getViewToolMode() !=
                             DocumentViewModel.DISPLAY_TOOL_SELECTION;
+            // only annotations that can paint in to the clip are painted, the
+            // clip is grown by a couple of pixels for antialiased edges.
+            Shape userClip = gg2.getClip();
+            Rectangle2D clip = userClip != null ? userClip.getBounds2D() : null;
+            if (clip != null) {
+                double pad = 2 / documentViewModel.getViewZoom();
+                clip.setRect(clip.getX() - pad, clip.getY() - pad,
+                        clip.getWidth() + 2 * pad, clip.getHeight() + 2 * pad);
+            }
             // paint all annotations on top of the content buffer
             AnnotationComponent annotation;
             for (int i = 0; i < annotationComponents.size(); i++) {
                 annotation = annotationComponents.get(i);
                 if (annotation != null && ((Component) annotation).isVisible() &&
+                        isPaintable(annotation.getAnnotation(), clip) &&
                         !(annotation.getAnnotation() instanceof FreeTextAnnotation
                                 && ((AbstractAnnotationComponent) annotation).isActive()) &&
                         !(annotation.getAnnotation() instanceof TextWidgetAnnotation
@@ -329,6 +372,24 @@ public class PageViewComponentImpl extends AbstractPageViewComponent implements
         }
     }
 
+    /**
+     * Tests if an annotation can paint in to the clip.  The components may
+     * still hold the annotations of a page instance that was reloaded since,
+     * so the annotation's rectangle is tested rather than the page's
+     * annotation index.
+     */
+    private static boolean isPaintable(Annotation annotation, Rectangle2D clip) {
+        if (clip == null || annotation.getFlagNoZoom() || annotation.getFlagNoRotate()) {
+            return true;
+        }
+        Rectangle2D rect = annotation.getUserSpaceRectangle();
+        return rect == null ||
+                (Math.max(rect.getMinX(), rect.getMaxX()) >= clip.getMinX() &&
+                        Math.min(rect.getMinX(), rect.getMaxX()) <= clip.getMaxX() &&
+                        Math.max(rect.getMinY(), rect.getMaxY()) >= clip.getMinY() &&
+                        Math.min(rect.getMinY(), rect.getMaxY()) <= clip.getMaxY());
+    }
+
     public void focusGained(FocusEvent e) {
         int oldCurrentPage = documentViewModel.getViewCurrentPageIndex();
         documentViewModel.setViewCurrentPageIndex(pageIndex);
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2006-2017 ICEsoft Technologies Canada Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS
+ * IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.icepdf.ri.common.views;
+
+import org.icepdf.core.util.Defs;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.BitSet;
+
+/**
+ * <p>Lays out pages in a grid of equally sized cells, much like a GridLayout,
+ * but only the pages in and around the visible part of the container are given
+ * components.  The size of the container and the location of every page are
+ * worked out from the page sizes kept by the DocumentViewModel so a document
+ * with thousands of pages only ever has a handful of page components.</p>
+ * <p/>
+ * <p>The owning view calls {@link #updatePageWindow(JComponent)} when the
+ * container is scrolled or resized which adds the components for pages that
+ * have come in to view and removes the ones that have left it.  The number of
+ * rows built above and below the visible area can be set with the system
+ * property org.icepdf.core.views.page.readAheadRows, default 2.  Layouts for a
+ * document view also pass the scroll position on to a PageRenderScheduler
+ * which initializes the pages ahead of the scroll.</p>
+ *
+ * @since 6.2
+ */
+public class PageViewGridLayout implements LayoutManager {
+
+    protected static int readAheadRows;
+
+    static {
+        readAheadRows = Defs.intProperty("org.icepdf.core.views.page.readAheadRows", 2);
+    }
+
+    protected DocumentView documentView;
+    protected DocumentViewModel documentViewModel;
+    // prefetches the pages ahead of a scroll, null for no prefetching.
+    protected PageRenderScheduler renderScheduler;
+
+    // number of columns, zero fits as many columns as the width allows.
+    protected int columns;
+    // empty cells in front of the first page.
+    protected int leadingCells;
+    protected int hgap, vgap;
+
+    // pages that currently have components.
+    protected int firstPage = -1, lastPage = -1;
+
+    /**
+     * Creates a grid layout for decorated page views of the given document view.
+     *
+     * @param documentView document view that owns the container.
+     * @param columns      number of columns.
+     * @param leadingCells empty cells in front of the first page.
+     */
+    public PageViewGridLayout(DocumentView documentView, int columns, int leadingCells) {
+        this(documentView.getViewModel(), columns, leadingCells,
+                AbstractDocumentView.horizontalSpace, AbstractDocumentView.verticalSpace);
+        this.documentView = documentView;
+        renderScheduler = new PageRenderScheduler(documentViewModel);
+    }
+
+    /**
+     * Creates a grid layout for the pages of the given document view model.
+     *
+     * @param documentViewModel model that keeps the page sizes.
+     * @param columns           number of columns, zero to fit as many as possible.
+     * @param leadingCells      empty cells in front of the first page.
+     * @param hgap              horizontal space between cells.
+     * @param vgap              vertical space between cells.
+     */
+    public PageViewGridLayout(DocumentViewModel documentViewModel, int columns, int leadingCells,
+                              int hgap, int vgap) {
+        this.documentViewModel = documentViewModel;
+        this.columns = columns;
+        this.leadingCells = leadingCells;
+        this.hgap = hgap;
+        this.vgap = vgap;
+    }
+
+    /**
+     * Gets the number of pages laid out.
+     *
+     * @return page count.
+     */
+    protected int getPageCount() {
+        return documentViewModel.getDocument().getNumberOfPages();
+    }
+
+    /**
+     * Gets the size of a cell, large enough for the largest page at the
+     * current zoom and rotation plus its decoration.
+     *
+     * @return cell size.
+     */
+    protected Dimension getCellSize() {
+        Dimension size = documentViewModel.getMaxPageSize(
+                documentViewModel.getViewRotation(), documentViewModel.getViewZoom());
+        size.width += PageViewDecorator.SHADOW_SIZE;
+        size.height += PageViewDecorator.SHADOW_SIZE;
+        return size;
+    }
+
+    /**
+     * Builds the component for the specified page, by default a decorated
+     * page view from the document view model.
+     *
+     * @param pageIndex zero based page index.
+     * @return component to add to the container.
+     */
+    protected Component buildPageComponent(int pageIndex) {
+        AbstractPageViewComponent pageViewComponent = documentViewModel.getPageComponent(pageIndex);
+        if (pageViewComponent == null) {
+            return null;
+        }
+        if (documentView != null) {
+            pageViewComponent.setDocumentViewCallback(documentView);
+        }
+        return new PageViewDecorator(pageViewComponent);
+    }
+
+    /**
+     * Called once the window of pages with components has changed so
+     * components outside of the window can be released.
+     *
+     * @param firstPage first page in the window.
+     * @param lastPage  last page in the window.
+     */
+    protected void releasePageComponents(int firstPage, int lastPage) {
+        documentViewModel.releasePageComponents(firstPage, lastPage);
+    }
+
+    /**
+     * Gets the page index a child component of the container shows.
+     *
+     * @param component child component.
+     * @return zero based page index, -1 if the component isn't a page.
+     */
+    protected int getPageIndex(Component component) {
+        if (component instanceof PageViewDecorator) {
+            return ((PageViewDecorator) component).getPageViewComponent().getPageIndex();
+        } else if (component instanceof PageViewComponent) {
+            return ((PageViewComponent) component).getPageIndex();
+        }
+        return -1;
+    }
+
+    protected int getColumns(Container target, Dimension cell) {
+        if (columns > 0) {
+            return columns;
+        }
+        Container parent = target.getParent();
+        int width = parent instanceof JViewport ? parent.getWidth() : target.getWidth();
+        Insets insets = target.getInsets();
+        width -= insets.left + insets.right;
+        return Math.max(1, (width + hgap) / (cell.width + hgap));
+    }
+
+    /**
+     * Gets the bounds of the cell holding the specified page.
+     *
+     * @param target    container being laid out.
+     * @param pageIndex zero based page index.
+     * @return cell bounds in the container's coordinate space.
+     */
+    public Rectangle getCellBounds(Container target, int pageIndex) {
+        Dimension cell = getCellSize();
+        int columns = getColumns(target, cell);
+        Insets insets = target.getInsets();
+        int gridWidth = columns * cell.width + (columns - 1) * hgap;
+        int x = insets.left +
+                Math.max(0, (target.getWidth() - insets.left - insets.right - gridWidth) / 2);
+        int cellIndex = pageIndex + leadingCells;
+        return new Rectangle(
+                x + (cellIndex % columns) * (cell.width + hgap),
+                insets.top + (cellIndex / columns) * (cell.height + vgap),
+                cell.width, cell.height);
+    }
+
+    /**
+     * Adds components for the pages in or near the visible part of the
+     * container and removes the components of pages that are no longer near
+     * it.  When the container isn't showing the window is placed around the
+     * current page.
+     *
+     * @param target container laid out by this layout.
+     */
+    public void updatePageWindow(JComponent target) {
+        Rectangle visible = target.getVisibleRect();
+        if (visible.isEmpty()) {
+            showPage(target, documentViewModel.getViewCurrentPageIndex());
+            return;
+        }
+        Dimension cell = getCellSize();
+        int rowHeight = cell.height + vgap;
+        int top = target.getInsets().top;
+        int firstRow = Math.max(0, visible.y - top) / rowHeight;
+        int lastRow = Math.max(0, visible.y + visible.height - top) / rowHeight;
+        setPageWindow(target, cell, firstRow, lastRow);
+        if (renderScheduler != null) {
+            int columns = getColumns(target, cell);
+            float position = Math.max(0, visible.y - top) / (float) rowHeight * columns - leadingCells;
+            int lastPage = getPageCount() - 1;
+            renderScheduler.viewChanged(position,
+                    Math.min(lastPage, Math.max(0, firstRow * columns - leadingCells)),
+                    Math.min(lastPage, (lastRow + 1) * columns - 1 - leadingCells));
+        }
+    }
+
+    /**
+     * Stops any page prefetching started by the layout.
+     */
+    public void dispose() {
+        if (renderScheduler != null) {
+            renderScheduler.dispose();
+        }
+    }
+
+    /**
+     * Makes sure the specified page has a component and lays out the container
+     * so the page's bounds are valid, for moving the view to a page that
+     * isn't near the visible area.
+     *
+     * @param target    container laid out by this layout.
+     * @param pageIndex zero based page index.
+     */
+    public void showPage(JComponent target, int pageIndex) {
+        Dimension cell = getCellSize();
+        int row = (Math.max(0, pageIndex) + leadingCells) / getColumns(target, cell);
+        setPageWindow(target, cell, row, row);
+        // place the page now rather than on the next validation.
+        layoutContainer(target);
+    }
+
+    private void setPageWindow(JComponent target, Dimension cell, int firstRow, int lastRow) {
+        int columns = getColumns(target, cell);
+        firstRow = Math.max(0, firstRow - readAheadRows);
+        lastRow += readAheadRows;
+        int first = Math.max(0, firstRow * columns - leadingCells);
+        int last = Math.min(getPageCount() - 1, (lastRow + 1) * columns - 1 - leadingCells);
+        if (first == firstPage && last == lastPage) {
+            return;
+        }
+        // drop the pages that have left the window
+        BitSet attached = new BitSet();
+        for (int i = target.getComponentCount() - 1; i >= 0; i--) {
+            int pageIndex = getPageIndex(target.getComponent(i));
+            if (pageIndex < first || pageIndex > last) {
+                target.remove(i);
+            } else {
+                attached.set(pageIndex);
+            }
+        }
+        // and add the ones that came in to it.
+        for (int i = first; i <= last; i++) {
+            if (!attached.get(i)) {
+                Component component = buildPageComponent(i);
+                if (component != null) {
+                    target.add(component);
+                }
+            }
+        }
+        firstPage = first;
+        lastPage = last;
+        releasePageComponents(first, last);
+        target.revalidate();
+        target.repaint();
+    }
+
+    public void addLayoutComponent(String name, Component comp) {
+    }
+
+    public void removeLayoutComponent(Component comp) {
+    }
+
+    public Dimension preferredLayoutSize(Container target) {
+        synchronized (target.getTreeLock()) {
+            Dimension cell = getCellSize();
+            int columns = getColumns(target, cell);
+            int rows = (getPageCount() + leadingCells + columns - 1) / columns;
+            Insets insets = target.getInsets();
+            return new Dimension(
+                    insets.left + insets.right + columns * cell.width + (columns - 1) * hgap,
+                    insets.top + insets.bottom + rows * cell.height + Math.max(0, rows - 1) * vgap);
+        }
+    }
+
+    public Dimension minimumLayoutSize(Container target) {
+        return preferredLayoutSize(target);
+    }
+
+    public void layoutContainer(Container target) {
+        synchronized (target.getTreeLock()) {
+            for (int i = 0, max = target.getComponentCount(); i < max; i++) {
+                Component component = target.getComponent(i);
+                int pageIndex = getPageIndex(component);
+                if (pageIndex < 0) {
+                    continue;
+                }
+                // components get their preferred size centred in the cell.
+                Rectangle bounds = getCellBounds(target, pageIndex);
+                Dimension size = component.getPreferredSize();
+                int width = Math.min(size.width, bounds.width);
+                int height = Math.min(size.height, bounds.height);
+                component.setBounds(bounds.x + (bounds.width - width) / 2,
+                        bounds.y + (bounds.height - height) / 2, width, height);
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.icepdf.ri.common.SwingController;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.AdjustmentEvent;
 import java.awt.event.MouseEvent;
 
 /**
@@ -29,7 +30,7 @@ import java.awt.event.MouseEvent;
  * on the left.</p>
  * <p/>
  * <p>Page views are basic containers which use Swing Layout Containers to
- * place pages </p>
+ * place pages, only the pages in or near the viewport have components.</p>
  *
  * @since 2.5
  */
@@ -38,6 +39,8 @@ public class TwoColumnPageView extends AbstractDocumentView {
 
     protected int viewAlignment;
 
+    protected PageViewGridLayout pageViewLayout;
+
     // specialized listeners for different gui operations
     protected CurrentPageChanger currentPageChanger;
 
@@ -77,9 +80,12 @@ public class TwoColumnPageView extends AbstractDocumentView {
         // add all page components to gridlayout panel
         pagesPanel = new JPanel();
         pagesPanel.setBackground(BACKGROUND_COLOUR);
-        // two column equals facing page view continuous
-        GridLayout gridLayout = new GridLayout(0, 2, horizontalSpace, verticalSpace);
-        pagesPanel.setLayout(gridLayout);
+        // two column equals facing page view continuous, right alignment
+        // leaves an empty cell in front of the first page.
+        int leadingCells = viewAlignment == RIGHT_VIEW &&
+                currentDocument.getNumberOfPages() > 2 ? 1 : 0;
+        pageViewLayout = new PageViewGridLayout(this, 2, leadingCells);
+        pagesPanel.setLayout(pageViewLayout);
 
         // use a gridbag to center the page component panel
         GridBagConstraints gbc = new GridBagConstraints();
@@ -92,33 +98,23 @@ public class TwoColumnPageView extends AbstractDocumentView {
         this.setLayout(new GridBagLayout());
         this.add(pagesPanel, gbc);
 
-        // finally add all the components
-        // add components for every page in the document
-        java.util.List<AbstractPageViewComponent> pageComponents =
-                documentViewModel.getPageComponents();
-
-        if (pageComponents != null) {
-            PageViewComponent pageViewComponent;
-            for (int i = 0, max = pageComponents.size(), max2 = pageComponents.size();
-                 i < max && i < max2; i++) {
-                // save for facing page
-                if (i == 0 && max2 > 2 && viewAlignment == RIGHT_VIEW) {
-                    // should be adding spacer
-                    pagesPanel.add(new JLabel());
-                }
-                pageViewComponent = pageComponents.get(i);
-                if (pageViewComponent != null) {
-                    pageViewComponent.setDocumentViewCallback(this);
-                    pagesPanel.add(new PageViewDecorator(
-                            (AbstractPageViewComponent) pageViewComponent));
-                }
-            }
-        }
+        // finally add the components for the pages around the current page,
+        // the rest are added as they're scrolled in to view.
+        pageViewLayout.updatePageWindow(pagesPanel);
     }
 
-    // nothing needs to be done for a column view as all components are already
-    // available
+    // make sure the current page has a component so it can be scrolled to.
     public void updateDocumentView() {
+        if (!disposing) {
+            pageViewLayout.showPage(pagesPanel, documentViewModel.getViewCurrentPageIndex());
+            validate();
+        }
+    }
+
+    public void adjustmentValueChanged(AdjustmentEvent e) {
+        if (!disposing) {
+            pageViewLayout.updatePageWindow(pagesPanel);
+        }
     }
 
     /**
@@ -151,6 +147,8 @@ public class TwoColumnPageView extends AbstractDocumentView {
             keyListenerPageChanger.uninstall();
         }
 
+        pageViewLayout.dispose();
+
         // trigger a relayout
         pagesPanel.removeAll();
         pagesPanel.invalidate();
@@ -160,60 +158,20 @@ public class TwoColumnPageView extends AbstractDocumentView {
     }
 
     public Dimension getDocumentSize() {
-        float pageViewWidth = 0;
-        float pageViewHeight = 0;
-        if (pagesPanel != null) {
-            // The page index and corresponding component index are approximately equal
-            // If the first page is on the right, then there's a spacer on the left,
-            //  bumping indexes up by one.
-            int currPageIndex = documentViewController.getCurrentPageIndex();
-            int currCompIndex = currPageIndex;
-            int numComponents = pagesPanel.getComponentCount();
-            boolean foundCurrent = false;
-            while (currCompIndex >= 0 && currCompIndex < numComponents) {
-                Component comp = pagesPanel.getComponent(currCompIndex);
-                if (comp instanceof PageViewDecorator) {
-                    PageViewDecorator pvd = (PageViewDecorator) comp;
-                    PageViewComponent pvc = pvd.getPageViewComponent();
-                    if (pvc.getPageIndex() == currPageIndex) {
-                        Dimension dim = pvd.getPreferredSize();
-                        pageViewWidth = dim.width;
-                        pageViewHeight = dim.height;
-                        foundCurrent = true;
-                        break;
-                    }
-                }
-                currCompIndex++;
-            }
-            if (foundCurrent) {
-                // Determine if the page at (currPageIndex,currCompIndex) was
-                //  on the left or right, so that if there's a page next to
-                //  it, whether it's earlier or later in the component list,
-                //  so we can get it's pageViewHeight and use that for our pageViewHeight
-                //  calculation.
-                // If the other component is past the ends of the component
-                //  list, or not a PageViewDecorator, then current was either
-                //  the first or last page in the document
-                boolean evenPageIndex = ((currPageIndex & 0x1) == 0);
-                boolean bumpedIndex = (currCompIndex != currPageIndex);
-                boolean onLeft = evenPageIndex ^ bumpedIndex; // XOR
-                int otherCompIndex = onLeft ? (currCompIndex + 1) : (currCompIndex - 1);
-                if (otherCompIndex >= 0 && otherCompIndex < numComponents) {
-                    Component comp = pagesPanel.getComponent(otherCompIndex);
-                    if (comp instanceof PageViewDecorator) {
-                        PageViewDecorator pvd = (PageViewDecorator) comp;
-                        Dimension dim = pvd.getPreferredSize();
-                        pageViewWidth = dim.width;
-                        pageViewHeight = dim.height;
-                    }
-                }
-            }
-        }
+        // use the size of the page facing the current page if there is one,
+        // otherwise the current page is either the first or last page.
+        int currPageIndex = documentViewController.getCurrentPageIndex();
+        int cellIndex = currPageIndex + pageViewLayout.leadingCells;
+        int otherPageIndex = (cellIndex & 0x1) == 0 ? currPageIndex + 1 : currPageIndex - 1;
+        int numberOfPages = currentDocument != null ? currentDocument.getNumberOfPages() : 0;
+        int pageIndex = otherPageIndex >= 0 && otherPageIndex < numberOfPages ?
+                otherPageIndex : currPageIndex;
 
         // normalize the dimensions to a zoom level of zero.
-        float currentZoom = documentViewModel.getViewZoom();
-        pageViewWidth = Math.abs(pageViewWidth / currentZoom);
-        pageViewHeight = Math.abs(pageViewHeight / currentZoom);
+        Dimension dim = documentViewModel.getPageSize(pageIndex,
+                documentViewModel.getViewRotation(), 1.0f);
+        float pageViewWidth = dim.width + PageViewDecorator.SHADOW_SIZE / documentViewModel.getViewZoom();
+        float pageViewHeight = dim.height + PageViewDecorator.SHADOW_SIZE / documentViewModel.getViewZoom();
 
         // two pages wide, generalization, pages are usually the same size we
         // don't bother to look at the second pages size for the time being.
@@ -130,7 +130,7 @@ public class TwoPageView extends AbstractDocumentView {
                     pagesPanel.add(new JLabel());
                     count++;
                 }
-                pageViewComponent = pageComponents.get(i);
+                pageViewComponent = documentViewModel.getPageComponent(i);
                 if (pageViewComponent != null) {
                     pageViewComponent.setDocumentViewCallback(this);
                     // add component to layout
@@ -143,7 +143,7 @@ public class TwoPageView extends AbstractDocumentView {
             documentScrollpane.validate();
 
             // make sure we have setup all pages with callback call.
-            for (PageViewComponent pageViewCom : pageComponents) {
+            for (PageViewComponent pageViewCom : documentViewModel.getActivePageComponents()) {
                 if (pageViewCom != null) {
                     pageViewCom.setDocumentViewCallback(this);
                 }